@@ -0,0 +1,272 @@
+package org.lagalag.crawldaddy;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.lagalag.crawldaddy.pages.FetchAbortReason;
+import org.lagalag.crawldaddy.pages.FetchPhase;
+import org.lagalag.crawldaddy.pages.FetchTimingStats;
+import org.lagalag.crawldaddy.pages.PageFetchException;
+import org.lagalag.crawldaddy.pages.TransferStats;
+import org.lagalag.crawldaddy.util.LatencyHistogram;
+
+/**
+ * Connection between the coordinator and a worker of a distributed crawl, over which they exchange messages: one
+ * line of tab-separated fields each, the first of which is the type of message. Messages are sent from a thread of
+ * their own, so sending never blocks; they are flushed whenever there are no more to send, so that the many urls
+ * found while crawling a page go out together.
+ */
+class ClusterChannel implements Closeable {
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    /* Worker to coordinator: the url the worker is to crawl (part of). */
+    static final String HELLO = "HELLO";
+    /* Coordinator to worker: the index of the worker's partition, and the number of partitions. */
+    static final String PARTITION = "PARTITION";
+    /* Both ways: an internal link to crawl (with the index of its partition, worker to coordinator). */
+    static final String URL = "URL";
+    /* Worker to coordinator: the worker has found as many internal links as were leased to it, and needs more. */
+    static final String LEASE_REQUEST = "MORE";
+    /* Coordinator to worker: the number of internal links leased (none once the limit is reached). */
+    static final String LEASE = "LEASE";
+    /* 
+     * Worker to coordinator: the worker has run out of work, having received the given number of urls; with the 
+     * number of internal links leased to it that it didn't use.
+     */
+    static final String IDLE = "IDLE";
+    /* Coordinator to worker: all the workers have run out of work; time to send the results back. */
+    static final String DONE = "DONE";
+    /* Worker to coordinator: the last of the results. */
+    static final String END = "END";
+
+    /* The results of a worker's partition, worker to coordinator, between DONE and END. */
+    private static final String STATUS = "STATUS";
+    private static final String ERROR = "ERROR";
+    private static final String PAGES = "PAGES";
+    private static final String PAGES_FROM_CACHE = "CACHED";
+    private static final String FETCHES_ABORTED = "ABORTED";
+    private static final String INTERNAL_LINK = "INTERNAL";
+    private static final String INTERNAL_LINK_COUNT = "INTERNALS";
+    private static final String EXTERNAL_LINK = "EXTERNAL";
+    private static final String BROKEN_LINK = "BROKEN";
+    private static final String DEAD_EXTERNAL_LINK = "DEAD";
+    private static final String EXTERNAL_SCRIPT = "SCRIPT";
+    private static final String DUPLICATE_URL_VARIANT = "VARIANT";
+    private static final String DISALLOWED_LINK = "DISALLOWED";
+    private static final String SITEMAP_LINKS = "SITEMAP";
+    private static final String BYTES = "BYTES";
+    private static final String TIMINGS = "TIMINGS";
+
+    private static final String FIELD_SEPARATOR = "\t";
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long CLOSE_TIMEOUT_SECONDS = 10;
+    /* Compared by identity: tells the sending thread to stop. */
+    private static final String CLOSE_MESSAGE = new String("CLOSE");
+
+    private final Socket socket;
+    private final BufferedReader reader;
+    private final Writer writer;
+    private final BlockingQueue<String> outgoingMessages = new LinkedBlockingQueue<>();
+    private final Thread sendingThread;
+
+    ClusterChannel(Socket socket, String name) throws IOException {
+        this.socket = socket;
+        socket.setTcpNoDelay(true);
+        this.reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8), BUFFER_SIZE);
+        this.writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), BUFFER_SIZE);
+        this.sendingThread = new Thread(this::sendMessages, name);
+        this.sendingThread.setDaemon(true);
+        this.sendingThread.start();
+    }
+
+    /**
+     * Queues a message for sending. Tabs and line breaks in the fields (which valid urls don't have) are escaped.
+     */
+    void send(String... fields) {
+        StringBuilder message = new StringBuilder();
+        for (String field : fields) {
+            if (message.length() > 0) {
+                message.append(FIELD_SEPARATOR);
+            }
+            message.append(field.replace("\t", "%09").replace("\r", "%0D").replace("\n", "%0A"));
+        }
+        outgoingMessages.add(message.toString());
+    }
+
+    /**
+     * Sends the results of a worker's partition, then END. The urls found must have been retained.
+     */
+    void sendResult(CrawldaddyResult result) {
+        if (result.getHttpStatusCode() != 0) {
+            send(STATUS, String.valueOf(result.getHttpStatusCode()));
+        }
+        if (result.hasPageFetchException()) {
+            send(ERROR, result.getPageFetchException().getMessage());
+        }
+        send(PAGES, String.valueOf(result.getPagesFetched()));
+        send(PAGES_FROM_CACHE, String.valueOf(result.getPagesFromCache()));
+        for (FetchAbortReason reason : FetchAbortReason.values()) {
+            if (result.getFetchesAborted(reason) > 0) {
+                send(FETCHES_ABORTED, reason.name(), String.valueOf(result.getFetchesAborted(reason)));
+            }
+        }
+        if (result.isInternalLinksRetained()) {
+            sendUrls(INTERNAL_LINK, result.getInternalLinks());
+        } else {
+            send(INTERNAL_LINK_COUNT, String.valueOf(result.getInternalLinkCount()));
+        }
+        sendUrls(EXTERNAL_LINK, result.getExternalLinks());
+        sendUrls(BROKEN_LINK, result.getBrokenLinks());
+        sendUrls(DEAD_EXTERNAL_LINK, result.getDeadExternalLinks());
+        sendUrls(EXTERNAL_SCRIPT, result.getExternalScripts());
+        sendUrls(DUPLICATE_URL_VARIANT, result.getDuplicateUrlVariants());
+        sendUrls(DISALLOWED_LINK, result.getDisallowedLinks());
+        if (result.getSitemapLinkCount() > 0) {
+            send(SITEMAP_LINKS, String.valueOf(result.getSitemapLinkCount()));
+        }
+        TransferStats transferStats = result.getTransferStats();
+        for (String host : transferStats.getHosts()) {
+            send(BYTES, host, String.valueOf(transferStats.getNumBytesReceived(host)), 
+                 String.valueOf(transferStats.getNumBytesDecoded(host)), 
+                 String.valueOf(transferStats.getNumUnmeasuredFetches(host)), 
+                 String.valueOf(transferStats.getNumUnmeasuredBytesDecoded(host)));
+        }
+        FetchTimingStats fetchTimings = result.getFetchTimings();
+        for (String host : fetchTimings.getHosts()) {
+            for (FetchPhase phase : FetchPhase.values()) {
+                LatencyHistogram histogram = fetchTimings.getHistogram(host, phase);
+                if (histogram.getCount() > 0) {
+                    send(TIMINGS, host, phase.name(), histogram.encode());
+                }
+            }
+        }
+        send(END);
+    }
+
+    /**
+     * Adds the results sent by sendResult() (message by message, END excepted) to the given result.
+     * @return false if the message isn't part of the results.
+     */
+    static boolean mergeResult(String[] message, CrawldaddyResult result) {
+        switch (message[0]) {
+        case STATUS:
+            result.setHttpStatusCode(Integer.parseInt(message[1]));
+            break;
+        case ERROR:
+            result.setPageFetchException(new PageFetchException(message[1]));
+            break;
+        case PAGES:
+            result.addPagesFetched(Integer.parseInt(message[1]));
+            break;
+        case PAGES_FROM_CACHE:
+            result.addPagesFromCache(Integer.parseInt(message[1]));
+            break;
+        case FETCHES_ABORTED:
+            result.addFetchesAborted(FetchAbortReason.valueOf(message[1]), Integer.parseInt(message[2]));
+            break;
+        case INTERNAL_LINK:
+            result.checkAndAddInternalLink(message[1], Integer.MAX_VALUE);
+            break;
+        case INTERNAL_LINK_COUNT:
+            result.addUnretainedInternalLinks(Integer.parseInt(message[1]));
+            break;
+        case EXTERNAL_LINK:
+            result.addExternalLink(message[1]);
+            break;
+        case BROKEN_LINK:
+            result.addBrokenLink(message[1]);
+            break;
+        case DEAD_EXTERNAL_LINK:
+            result.addDeadExternalLink(message[1]);
+            break;
+        case EXTERNAL_SCRIPT:
+            result.addExternalScript(message[1]);
+            break;
+        case DUPLICATE_URL_VARIANT:
+            result.addDuplicateUrlVariant(message[1]);
+            break;
+        case DISALLOWED_LINK:
+            result.addDisallowedLink(message[1]);
+            break;
+        case SITEMAP_LINKS:
+            result.addSitemapLinks(Integer.parseInt(message[1]));
+            break;
+        case BYTES:
+            result.getTransferStats().record(message[1], Long.parseLong(message[2]), Long.parseLong(message[3]));
+            result.getTransferStats().recordUnmeasured(message[1], Long.parseLong(message[4]), Long.parseLong(message[5]));
+            break;
+        case TIMINGS:
+            result.getFetchTimings().add(message[1], FetchPhase.valueOf(message[2]), LatencyHistogram.decode(message[3]));
+            break;
+        default:
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Waits for the next message, and returns its fields; returns null if the other end closed the connection.
+     */
+    String[] receive() throws IOException {
+        String message = reader.readLine();
+        return (message != null ? message.split(FIELD_SEPARATOR, -1) : null);
+    }
+
+    /**
+     * Sends the messages still queued, then closes the connection.
+     */
+    @Override
+    public void close() {
+        outgoingMessages.add(CLOSE_MESSAGE);
+        try {
+            sendingThread.join(TimeUnit.SECONDS.toMillis(CLOSE_TIMEOUT_SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Nothing more we can do.
+        }
+    }
+
+    private void sendUrls(String type, Collection<String> urls) {
+        for (String url : urls) {
+            send(type, url);
+        }
+    }
+
+    private void sendMessages() {
+        try {
+            while (true) {
+                String message = outgoingMessages.take();
+                if (message == CLOSE_MESSAGE) {
+                    break;
+                }
+                writer.write(message);
+                writer.write('\n');
+                if (outgoingMessages.isEmpty()) {
+                    writer.flush();
+                }
+            }
+            writer.flush();
+        } catch (IOException e) {
+            LOGGER.error("Unable to send to " + socket.getRemoteSocketAddress() + ": " + e.getMessage());
+        } catch (InterruptedException e) {
+            // Closing down.
+        }
+    }
+}
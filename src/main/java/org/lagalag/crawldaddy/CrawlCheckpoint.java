@@ -0,0 +1,313 @@
+package org.lagalag.crawldaddy;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.lagalag.crawldaddy.util.Fingerprints;
+
+/**
+ * Append-only journal of the progress of a crawl, from which an interrupted crawl can be resumed. Every url queued 
+ * for crawling, every page done, and every external link, broken link, dead external link and external script found 
+ * is appended to a file on local disk, one small record at a time; the file is flushed every few seconds, so a crawl 
+ * that dies loses at most the last few seconds of work. A page is only recorded as done after the links found on it 
+ * were recorded as queued, and records are written in order, so whatever part of the journal made it to disk is 
+ * consistent. A checkpoint that is not enabled (no directory) records nothing. Thread-safe.
+ */
+class CrawlCheckpoint implements Closeable {
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    private static final String CHECKPOINT_FILE_PREFIX = "crawldaddy-";
+    private static final String CHECKPOINT_FILE_SUFFIX = ".checkpoint";
+
+    private static final byte START_RECORD = 1;
+    private static final byte INITIAL_STATUS_RECORD = 2;
+    private static final byte QUEUED_RECORD = 3;
+    private static final byte DONE_RECORD = 4;
+    private static final byte EXTERNAL_LINK_RECORD = 5;
+    private static final byte BROKEN_LINK_RECORD = 6;
+    private static final byte EXTERNAL_SCRIPT_RECORD = 7;
+    private static final byte DUPLICATE_URL_VARIANT_RECORD = 8;
+    private static final byte DEAD_EXTERNAL_LINK_RECORD = 9;
+
+    private final File checkpointFile;
+    private final long flushIntervalNanos;
+    private DataOutputStream writer;
+    private long lastFlushNanos;
+
+    /**
+     * @param directory directory in which the checkpoint file of the crawl of the given url is kept; null to 
+     *        disable checkpoints.
+     */
+    CrawlCheckpoint(File directory, String url, int flushIntervalSeconds) {
+        this.checkpointFile = (directory != null ? new File(directory, getCheckpointFileName(url)) : null);
+        this.flushIntervalNanos = TimeUnit.SECONDS.toNanos(flushIntervalSeconds);
+    }
+
+    boolean isEnabled() {
+        return (checkpointFile != null);
+    }
+
+    /**
+     * Starts a new checkpoint for the crawl of the given url, discarding any earlier one.
+     */
+    synchronized void start(String url) {
+        if (isEnabled()) {
+            open(false);
+            writeRecord(START_RECORD, url);
+        }
+    }
+
+    /**
+     * Restores the progress recorded in an earlier checkpoint of the crawl of the given url into the given result, 
+     * and keeps recording to that checkpoint from there on.
+     * @return the progress restored, or null if there was nothing to resume (in which case start() must be called).
+     */
+    synchronized ResumedCrawl resume(String url, CrawldaddyResult result, int maxInternalLinks) {
+        if (!isEnabled()) {
+            return null;
+        }
+        ResumedCrawl resumedCrawl = null;
+        if (checkpointFile.isFile()) {
+            try {
+                resumedCrawl = replay(url, result, maxInternalLinks);
+            } catch (IOException e) {
+                LOGGER.error("Unable to read checkpoint " + checkpointFile + ": " + e.getMessage());
+            }
+        }
+        if (resumedCrawl == null) {
+            LOGGER.warn("No checkpoint to resume the crawl of " + url + " from; starting over");
+            return null;
+        }
+        open(true);
+        LOGGER.info("Resuming crawl of " + url + ": " + resumedCrawl.getNumPagesDone() + " page(s) done, " 
+                    + resumedCrawl.getPendingUrls().size() + " pending");
+        return resumedCrawl;
+    }
+
+    synchronized void recordInitialStatus(int httpStatusCode) {
+        if (writer != null) {
+            try {
+                writer.writeByte(INITIAL_STATUS_RECORD);
+                writer.writeInt(httpStatusCode);
+            } catch (IOException e) {
+                writeFailed(e);
+            }
+        }
+    }
+
+    synchronized void recordQueued(Collection<String> urls) {
+        for (String url : urls) {
+            writeRecord(QUEUED_RECORD, url);
+        }
+    }
+
+    synchronized void recordDone(String url) {
+        writeRecord(DONE_RECORD, url);
+        flushIfDue();
+    }
+
+    synchronized void recordExternalLink(String url) {
+        writeRecord(EXTERNAL_LINK_RECORD, url);
+    }
+
+    synchronized void recordBrokenLink(String url) {
+        writeRecord(BROKEN_LINK_RECORD, url);
+    }
+
+    synchronized void recordExternalScript(String url) {
+        writeRecord(EXTERNAL_SCRIPT_RECORD, url);
+    }
+
+    synchronized void recordDuplicateUrlVariant(String url) {
+        writeRecord(DUPLICATE_URL_VARIANT_RECORD, url);
+    }
+
+    synchronized void recordDeadExternalLink(String url) {
+        writeRecord(DEAD_EXTERNAL_LINK_RECORD, url);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                writeFailed(e);
+            }
+            writer = null;
+        }
+    }
+
+    private ResumedCrawl replay(String url, CrawldaddyResult result, int maxInternalLinks) throws IOException {
+        Set<String> pendingUrls = new LinkedHashSet<>();
+        int numPagesDone = 0;
+        // The status of the initial page is recorded before its links: it's only done once recorded as such.
+        boolean isInitialStatusKnown = false;
+        boolean isInitialPageDone = false;
+        long validLength = 0;
+        try (DataInputStream reader = new DataInputStream(new BufferedInputStream(new FileInputStream(checkpointFile)))) {
+            if ((reader.readByte() != START_RECORD) || !url.equals(readString(reader))) {
+                LOGGER.warn("Checkpoint " + checkpointFile + " is not for " + url);
+                return null;
+            }
+            validLength = 1 + 4 + url.getBytes(StandardCharsets.UTF_8).length;
+            while (true) {
+                byte recordType;
+                String recordUrl = null;
+                try {
+                    recordType = reader.readByte();
+                    if (recordType == INITIAL_STATUS_RECORD) {
+                        result.setHttpStatusCode(reader.readInt());
+                        isInitialStatusKnown = true;
+                        validLength += 1 + 4;
+                        continue;
+                    }
+                    recordUrl = readString(reader);
+                } catch (EOFException e) {
+                    // Anything after the last complete record never made it to disk.
+                    break;
+                }
+                switch (recordType) {
+                case QUEUED_RECORD:
+                    result.checkAndAddInternalLink(recordUrl, maxInternalLinks);
+                    pendingUrls.add(recordUrl);
+                    break;
+                case DONE_RECORD:
+                    pendingUrls.remove(recordUrl);
+                    numPagesDone++;
+                    if (recordUrl.equals(url)) {
+                        isInitialPageDone = isInitialStatusKnown;
+                    }
+                    break;
+                case EXTERNAL_LINK_RECORD:
+                    result.addExternalLink(recordUrl);
+                    break;
+                case BROKEN_LINK_RECORD:
+                    result.addBrokenLink(recordUrl);
+                    break;
+                case EXTERNAL_SCRIPT_RECORD:
+                    result.addExternalScript(recordUrl);
+                    break;
+                case DUPLICATE_URL_VARIANT_RECORD:
+                    result.addDuplicateUrlVariant(recordUrl);
+                    break;
+                case DEAD_EXTERNAL_LINK_RECORD:
+                    result.addDeadExternalLink(recordUrl);
+                    break;
+                default:
+                    throw new IOException("Unknown checkpoint record type " + recordType);
+                }
+                validLength += 1 + 4 + recordUrl.getBytes(StandardCharsets.UTF_8).length;
+            }
+        }
+        // New records must follow the last complete one.
+        try (RandomAccessFile file = new RandomAccessFile(checkpointFile, "rw")) {
+            file.setLength(validLength);
+        }
+        return new ResumedCrawl(new ArrayList<>(pendingUrls), numPagesDone, isInitialPageDone);
+    }
+
+    private void open(boolean append) {
+        close();
+        try {
+            writer = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(checkpointFile, append)));
+            lastFlushNanos = System.nanoTime();
+        } catch (IOException e) {
+            LOGGER.error("Unable to open checkpoint " + checkpointFile + "; crawling without checkpoints: " + e.getMessage());
+        }
+    }
+
+    private void writeRecord(byte recordType, String url) {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.writeByte(recordType);
+            byte[] urlBytes = url.getBytes(StandardCharsets.UTF_8);
+            writer.writeInt(urlBytes.length);
+            writer.write(urlBytes);
+        } catch (IOException e) {
+            writeFailed(e);
+        }
+    }
+
+    /* Flushing (rather than syncing) is enough to survive the death of the process, which is what we're after. */
+    private void flushIfDue() {
+        long now = System.nanoTime();
+        if ((writer != null) && (now - lastFlushNanos >= flushIntervalNanos)) {
+            try {
+                writer.flush();
+            } catch (IOException e) {
+                writeFailed(e);
+            }
+            lastFlushNanos = now;
+        }
+    }
+
+    private void writeFailed(IOException e) {
+        LOGGER.error("Unable to write to checkpoint " + checkpointFile + "; no more checkpoints will be taken: " + e.getMessage());
+        writer = null;
+    }
+
+    private static String readString(DataInputStream reader) throws IOException {
+        int length = reader.readInt();
+        if (length < 0) {
+            throw new IOException("Damaged checkpoint record");
+        }
+        byte[] bytes = new byte[length];
+        reader.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static String getCheckpointFileName(String url) {
+        return CHECKPOINT_FILE_PREFIX + String.format("%016x", Fingerprints.of(url)) + CHECKPOINT_FILE_SUFFIX;
+    }
+
+    /**
+     * The progress of a crawl, as restored from a checkpoint.
+     */
+    static class ResumedCrawl {
+        private final List<String> pendingUrls;
+        private final int numPagesDone;
+        private final boolean isInitialPageDone;
+
+        ResumedCrawl(List<String> pendingUrls, int numPagesDone, boolean isInitialPageDone) {
+            this.pendingUrls = pendingUrls;
+            this.numPagesDone = numPagesDone;
+            this.isInitialPageDone = isInitialPageDone;
+        }
+
+        /**
+         * Returns the urls that were queued but not done, in the order they were queued.
+         */
+        List<String> getPendingUrls() {
+            return pendingUrls;
+        }
+
+        int getNumPagesDone() {
+            return numPagesDone;
+        }
+
+        boolean isInitialPageDone() {
+            return isInitialPageDone;
+        }
+    }
+}
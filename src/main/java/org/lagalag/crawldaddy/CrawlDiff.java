@@ -0,0 +1,59 @@
+package org.lagalag.crawldaddy;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * How the links of a site changed between two incremental crawls. Immutable.
+ */
+public class CrawlDiff {
+    private final SortedSet<String> newLinks;
+    private final SortedSet<String> removedLinks;
+    private final SortedSet<String> newlyBrokenLinks;
+
+    static CrawlDiff between(PageGraph previousGraph, PageGraph currentGraph) {
+        Set<String> previousLinks = previousGraph.getLinks();
+        Set<String> currentLinks = currentGraph.getLinks();
+        Set<String> previousBrokenLinks = previousGraph.getBrokenLinks();
+        SortedSet<String> newLinks = new TreeSet<>(currentLinks);
+        newLinks.removeAll(previousLinks);
+        SortedSet<String> removedLinks = new TreeSet<>(previousLinks);
+        removedLinks.removeAll(currentLinks);
+        SortedSet<String> newlyBrokenLinks = new TreeSet<>(currentGraph.getBrokenLinks());
+        newlyBrokenLinks.removeAll(previousBrokenLinks);
+        return new CrawlDiff(newLinks, removedLinks, newlyBrokenLinks);
+    }
+
+    private CrawlDiff(SortedSet<String> newLinks, SortedSet<String> removedLinks, SortedSet<String> newlyBrokenLinks) {
+        this.newLinks = newLinks;
+        this.removedLinks = removedLinks;
+        this.newlyBrokenLinks = newlyBrokenLinks;
+    }
+
+    /**
+     * Returns the links (internal and external) found by this crawl, but not by the previous one.
+     */
+    public Set<String> getNewLinks() {
+        return Collections.unmodifiableSet(newLinks);
+    }
+
+    /**
+     * Returns the links (internal and external) found by the previous crawl, but no more by this one.
+     */
+    public Set<String> getRemovedLinks() {
+        return Collections.unmodifiableSet(removedLinks);
+    }
+
+    /**
+     * Returns the internal links that lead to a missing page, but didn't in the previous crawl (or weren't there).
+     */
+    public Set<String> getNewlyBrokenLinks() {
+        return Collections.unmodifiableSet(newlyBrokenLinks);
+    }
+
+    public boolean isEmpty() {
+        return newLinks.isEmpty() && removedLinks.isEmpty() && newlyBrokenLinks.isEmpty();
+    }
+}
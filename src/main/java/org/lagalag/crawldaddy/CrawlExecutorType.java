@@ -0,0 +1,35 @@
+package org.lagalag.crawldaddy;
+
+/**
+ * Identifies the kinds of executors that crawl actions can be run on.
+ *
+ */
+public enum CrawlExecutorType {
+    /** Dedicated ForkJoinPool; blocking page fetches are run as ForkJoinPool.ManagedBlockers. */
+    FORK_JOIN,
+    /** Fixed-size thread pool. */
+    FIXED,
+    /** One virtual thread per crawl action (JDK 21+; falls back to FORK_JOIN on older JDKs). */
+    VIRTUAL;
+    
+    /**
+     * Returns the executor type with the given (case-insensitive) name, or null if there is no such type.
+     * Underscores and dashes are ignored, so e.g. "forkjoin" and "fork-join" are both accepted.
+     */
+    public static CrawlExecutorType fromName(String name) {
+        if (name == null) {
+            return null;
+        }
+        String normalizedName = normalize(name);
+        for (CrawlExecutorType type : values()) {
+            if (normalize(type.name()).equals(normalizedName)) {
+                return type;
+            }
+        }
+        return null;
+    }
+    
+    private static String normalize(String name) {
+        return name.trim().replace("_", "").replace("-", "").toLowerCase();
+    }
+}
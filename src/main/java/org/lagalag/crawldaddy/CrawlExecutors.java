@@ -0,0 +1,83 @@
+package org.lagalag.crawldaddy;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Creates (and shuts down) the executors that crawl actions are run on.
+ *
+ */
+class CrawlExecutors {
+    private static final Logger LOGGER = LogManager.getLogger();
+    
+    private static final String THREAD_NAME_PREFIX = "crawldaddy-worker-";
+    private static final long SHUTDOWN_WAIT_SECS = 10;
+    
+    static ExecutorService create(CrawldaddyParams params) {
+        switch (params.getExecutorType()) {
+        case FIXED:
+            return Executors.newFixedThreadPool(params.getNumThreads(), createDaemonThreadFactory());
+        case VIRTUAL:
+            ExecutorService virtualThreadExecutor = createVirtualThreadExecutor();
+            if (virtualThreadExecutor != null) {
+                return virtualThreadExecutor;
+            }
+            LOGGER.warn("Virtual threads are not available in this JVM; using a ForkJoinPool instead");
+            return createForkJoinPool(params.getNumThreads());
+        case FORK_JOIN:
+        default:
+            return createForkJoinPool(params.getNumThreads());
+        }
+    }
+    
+    static void shutdown(ExecutorService executor) {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_WAIT_SECS, TimeUnit.SECONDS)) {
+                LOGGER.warn("Crawl executor did not terminate within " + SHUTDOWN_WAIT_SECS + " second(s)");
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private static ForkJoinPool createForkJoinPool(int parallelism) {
+        return new ForkJoinPool(parallelism, pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName(THREAD_NAME_PREFIX + thread.getPoolIndex());
+            return thread;
+        }, null, false);
+    }
+    
+    /* Looked up reflectively since we still compile against Java 8. */
+    private static ExecutorService createVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+    
+    private static ThreadFactory createDaemonThreadFactory() {
+        AtomicInteger threadCount = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, THREAD_NAME_PREFIX + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+    
+    private CrawlExecutors() {
+        // Prevents instantiation.
+    }
+}
@@ -0,0 +1,172 @@
+package org.lagalag.crawldaddy;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Queue of the urls that are waiting to be crawled. At most a fixed number of urls are kept in memory; any overflow
+ * is appended to a file on local disk and read back (in order) as the in-memory window drains, so the memory used by
+ * the frontier stays flat no matter how wide the site being crawled is. If the spill file can't be written to, 
+ * spilling stops: the urls that follow those on disk are then kept in memory, still in order. Thread-safe.
+ */
+class CrawlFrontier implements Closeable {
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    private static final String SPILL_FILE_PREFIX = "crawldaddy-frontier-";
+    private static final String SPILL_FILE_SUFFIX = ".spill";
+
+    private final int memoryCapacity;
+    private final File spillDirectory;
+    private final Deque<String> inMemoryUrls = new ArrayDeque<>();
+    /* Urls that follow those on disk, but couldn't be written there. */
+    private final Deque<String> unspilledUrls = new ArrayDeque<>();
+    private boolean spillFailed;
+    private File spillFile;
+    private DataOutputStream spillWriter;
+    private DataInputStream spillReader;
+    private long numSpilledUrls;
+    private long numUrlsEverSpilled;
+
+    /**
+     * @param spillDirectory directory in which to create the spill file; null for the default temp directory.
+     */
+    CrawlFrontier(int memoryCapacity, File spillDirectory) {
+        this.memoryCapacity = memoryCapacity;
+        this.spillDirectory = spillDirectory;
+    }
+
+    synchronized void add(String url) {
+        // Once urls have been spilled, new urls must follow them to disk to keep the queue in order.
+        if ((numSpilledUrls == 0) && unspilledUrls.isEmpty() && (spillFailed || (inMemoryUrls.size() < memoryCapacity))) {
+            inMemoryUrls.add(url);
+        } else if (spillFailed) {
+            unspilledUrls.add(url);
+        } else {
+            spill(url);
+        }
+    }
+
+    synchronized void addAll(Collection<String> urls) {
+        for (String url : urls) {
+            add(url);
+        }
+    }
+
+    /**
+     * Returns the next url to crawl, or null if the frontier is empty.
+     */
+    synchronized String poll() {
+        if (inMemoryUrls.isEmpty()) {
+            if (numSpilledUrls > 0) {
+                refillFromSpillFile();
+            } else {
+                inMemoryUrls.addAll(unspilledUrls);
+                unspilledUrls.clear();
+            }
+        }
+        return inMemoryUrls.poll();
+    }
+
+    synchronized boolean isEmpty() {
+        return inMemoryUrls.isEmpty() && (numSpilledUrls == 0) && unspilledUrls.isEmpty();
+    }
+
+    synchronized long size() {
+        return inMemoryUrls.size() + numSpilledUrls + unspilledUrls.size();
+    }
+
+    /**
+     * Returns the total number of urls that had to be written to disk over the life of this frontier.
+     */
+    synchronized long getNumUrlsEverSpilled() {
+        return numUrlsEverSpilled;
+    }
+
+    @Override
+    public synchronized void close() {
+        deleteSpillFile();
+        inMemoryUrls.clear();
+        unspilledUrls.clear();
+        numSpilledUrls = 0;
+    }
+
+    private void spill(String url) {
+        try {
+            if (spillWriter == null) {
+                openSpillFile();
+            }
+            byte[] urlBytes = url.getBytes(StandardCharsets.UTF_8);
+            spillWriter.writeInt(urlBytes.length);
+            spillWriter.write(urlBytes);
+            numSpilledUrls++;
+            numUrlsEverSpilled++;
+        } catch (IOException e) {
+            // Better to run out of memory later than to lose urls now; they stay behind those already on disk.
+            LOGGER.error("Unable to write to frontier spill file; keeping the frontier in memory from now on: " + e.getMessage());
+            spillFailed = true;
+            unspilledUrls.add(url);
+        }
+    }
+
+    private void refillFromSpillFile() {
+        try {
+            spillWriter.flush();
+            while ((inMemoryUrls.size() < memoryCapacity) && (numSpilledUrls > 0)) {
+                byte[] urlBytes = new byte[spillReader.readInt()];
+                spillReader.readFully(urlBytes);
+                inMemoryUrls.add(new String(urlBytes, StandardCharsets.UTF_8));
+                numSpilledUrls--;
+            }
+        } catch (IOException e) {
+            LOGGER.error("Unable to read from frontier spill file; dropping " + numSpilledUrls + " url(s): " + e.getMessage());
+            numSpilledUrls = 0;
+        }
+        if (numSpilledUrls == 0) {
+            // Everything on disk has been read back: start over with an empty file next time we need one.
+            deleteSpillFile();
+        }
+    }
+
+    private void openSpillFile() throws IOException {
+        spillFile = File.createTempFile(SPILL_FILE_PREFIX, SPILL_FILE_SUFFIX, spillDirectory);
+        spillFile.deleteOnExit();
+        spillWriter = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(spillFile, true)));
+        spillReader = new DataInputStream(new BufferedInputStream(new FileInputStream(spillFile)));
+        LOGGER.debug("Spilling frontier to " + spillFile);
+    }
+
+    private void deleteSpillFile() {
+        closeQuietly(spillWriter);
+        closeQuietly(spillReader);
+        spillWriter = null;
+        spillReader = null;
+        if ((spillFile != null) && !spillFile.delete()) {
+            LOGGER.warn("Unable to delete frontier spill file " + spillFile);
+        }
+        spillFile = null;
+    }
+
+    private void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                // Nothing more we can do.
+            }
+        }
+    }
+}
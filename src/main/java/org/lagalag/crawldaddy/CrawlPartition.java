@@ -0,0 +1,32 @@
+package org.lagalag.crawldaddy;
+
+import org.lagalag.crawldaddy.util.ParsedUrl;
+
+/**
+ * The share of a distributed crawl that a CrawldaddySession takes care of: the session only crawls (and only keeps
+ * track of) the internal links that its partition owns, and hands the others over to the partitions that own them.
+ */
+interface CrawlPartition {
+    /**
+     * Returns true if the given internal link is to be crawled by this partition.
+     */
+    boolean owns(ParsedUrl url);
+
+    /**
+     * Sends the given internal link, found here but owned by another partition, to that partition.
+     */
+    void forward(ParsedUrl url);
+
+    /**
+     * Asks for more internal links, once the session has found as many as were leased to it; the answer is passed 
+     * to CrawldaddySession.leaseInternalLinks().
+     */
+    void requestInternalLinks();
+
+    /**
+     * Called each time the session runs out of work, with the number of urls it had received from the other
+     * partitions by then, and the number of internal links leased to it that it hands back, unused. Called outside 
+     * of the session lock, one call at a time, with non-decreasing counts.
+     */
+    void idle(long numUrlsReceived, int numInternalLinksReturned);
+}
@@ -0,0 +1,40 @@
+package org.lagalag.crawldaddy;
+
+import org.lagalag.crawldaddy.util.Fingerprints;
+import org.lagalag.crawldaddy.util.ParsedUrl;
+
+/**
+ * Assigns each internal link of a distributed crawl to one of a fixed number of partitions, each crawled (and
+ * deduplicated) by a single worker. Links are assigned by a hash of their host; as the internal links of a crawl
+ * all share the host of the initial url, that would leave every link in one partition, so a crawl that is
+ * confined to a single host (all of them, for now) hashes the rest of the url instead. Either way, a given url
+ * always lands in the same partition, whichever worker found it.
+ */
+class CrawlPartitioner {
+    private final int numPartitions;
+    private final boolean singleHost;
+
+    CrawlPartitioner(int numPartitions, boolean singleHost) {
+        if (numPartitions <= 0) {
+            throw new IllegalArgumentException("Number of partitions must be positive: " + numPartitions);
+        }
+        this.numPartitions = numPartitions;
+        this.singleHost = singleHost;
+    }
+
+    int getNumPartitions() {
+        return numPartitions;
+    }
+
+    /**
+     * Returns the partition (0 to getNumPartitions() - 1) of the given (valid) url.
+     */
+    int partitionOf(ParsedUrl url) {
+        if (numPartitions == 1) {
+            return 0;
+        }
+        // The host is the same for every url of a single-host crawl, so hashing the whole url is hashing the rest.
+        long hash = Fingerprints.of(singleHost ? url.getUrl() : url.getHost().toLowerCase());
+        return (int) Long.remainderUnsigned(hash, numPartitions);
+    }
+}
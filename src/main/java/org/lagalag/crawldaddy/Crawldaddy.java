@@ -1,12 +1,28 @@
 package org.lagalag.crawldaddy;
 
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.lagalag.crawldaddy.pages.CachingPageFetchService;
+import org.lagalag.crawldaddy.pages.ConnectionPoolStats;
+import org.lagalag.crawldaddy.pages.ExternalLinkVerifier;
+import org.lagalag.crawldaddy.pages.FetchLimiter;
+import org.lagalag.crawldaddy.pages.LinkExtractor;
+import org.lagalag.crawldaddy.pages.ManagedBlockingPageFetchService;
+import org.lagalag.crawldaddy.pages.PageCache;
+import org.lagalag.crawldaddy.pages.PageFetchEngine;
+import org.lagalag.crawldaddy.pages.PageFetchService;
+import org.lagalag.crawldaddy.pages.PageFetchServiceLocator;
+import org.lagalag.crawldaddy.pages.PolitenessScheduler;
+import org.lagalag.crawldaddy.pages.PooledPageFetchService;
+import org.lagalag.crawldaddy.pages.RobotsTxtCache;
 
 /**
  * Main crawler class.
@@ -18,17 +34,36 @@ public class Crawldaddy {
     private static final int MAX_WAIT_SECS_BETWEEN_CRAWLS = 5;
     
     private CrawldaddyParams params;
+    private PageCache pageCache;
+    private boolean pageCacheOpened;
+    private ExternalLinkVerifier externalLinkVerifier;
+    private RobotsTxtCache robotsTxtCache;
+    private PooledPageFetchService pooledPageFetchService;
     
     public Crawldaddy(CrawldaddyParams params) {
         this.params = params;
     }
     
     public CompletableFuture<CrawldaddyResultSet> crawl() {
-        return CompletableFuture.supplyAsync(this::doCrawl);
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return doCrawl();
+            } finally {
+                closePooledPageFetchService();
+                closeExternalLinkVerifier();
+            }
+        });
     }
     
     public CompletableFuture<CrawldaddyResult> crawlOnce() {
-        return CompletableFuture.supplyAsync(this::doSingleCrawl);
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return doSingleCrawl(params.getResume());
+            } finally {
+                closePooledPageFetchService();
+                closeExternalLinkVerifier();
+            }
+        });
     }
     
     private CrawldaddyResultSet doCrawl() {
@@ -40,18 +75,138 @@ public class Crawldaddy {
                 waitArbitrarilyBeforeProceeding();
             }
             log.info("Pass " + (pass + 1) + " start");
-            CrawldaddyResult result = doSingleCrawl();
+            // Only the first pass picks up where an earlier crawl left off.
+            CrawldaddyResult result = doSingleCrawl(params.getResume() && (pass == 0));
             log.info("Pass " + (pass + 1) + " done");
             results.addResult(result);
         }
         return results;
     }
     
-    private CrawldaddyResult doSingleCrawl() {
-        CrawldaddyAction cdAction = new CrawldaddyAction(params);
-        // Invoke the action to perform the crawl and wait for the result.
-        ForkJoinPool.commonPool().invoke(cdAction);
-        return cdAction.getResult();
+    private CrawldaddyResult doSingleCrawl(boolean resume) {
+        ExecutorService executor = CrawlExecutors.create(params);
+        PooledPageFetchService pooledPageFetchService = getPooledPageFetchService();
+        ConnectionPoolStats poolStatsBefore = (pooledPageFetchService != null ? pooledPageFetchService.getPoolStats() : null);
+        try (CrawldaddySession session = new CrawldaddySession(params, createPageFetchService(), getExternalLinkVerifier(), 
+                                                               getRobotsTxtCache(), executor)) {
+            Instant startTime = Instant.now();
+            // Start crawling at the initial url (or the last checkpoint) and wait for the frontier to be exhausted.
+            if (resume) {
+                session.resume();
+            } else {
+                session.start();
+            }
+            CrawldaddyResult result = session.awaitResult();
+            session.savePageGraph();
+            result.setCrawlTime(Duration.between(startTime, Instant.now()));
+            if (pooledPageFetchService != null) {
+                result.setConnectionPoolStats(pooledPageFetchService.getPoolStats().since(poolStatsBefore));
+            }
+            return result;
+        } finally {
+            CrawlExecutors.shutdown(executor);
+        }
+    }
+    
+    private PageFetchService createPageFetchService() {
+        return createPageFetchService(params.getMaxConcurrentFetches(), false);
+    }
+    
+    /**
+     * Creates the chain of page fetch services that crawl actions fetch pages through, with at most 
+     * maxConcurrentFetches fetches in progress at once.
+     * @param shared true if the service is shared by crawls that run at the same time (in which case even a 
+     *        non-blocking engine needs limiting, as each crawl only limits its own fetches).
+     */
+    PageFetchService createPageFetchService(int maxConcurrentFetches, boolean shared) {
+        PageFetchService pageFetchService = getPooledPageFetchService();
+        if (pageFetchService == null) {
+            pageFetchService = PageFetchServiceLocator.getService(params.getPageFetchEngine(), params.getLinkExtractorType(), 
+                                                                  params.getContentPolicy());
+        }
+        PageCache pageCache = getPageCache();
+        if (pageCache != null) {
+            // Directly on top of the engine, so that the conditional GET headers reach it.
+            pageFetchService = new CachingPageFetchService(pageFetchService, pageCache);
+        }
+        if (pageFetchService.isBlocking()) {
+            // Keep blocked fetches from starving the pool (or, with virtual threads, from flooding the network).
+            pageFetchService = new ManagedBlockingPageFetchService(pageFetchService, maxConcurrentFetches);
+        } else if (shared) {
+            pageFetchService = new FetchLimiter(pageFetchService, maxConcurrentFetches);
+        }
+        return new PolitenessScheduler(pageFetchService, params.getMaxConnectionsPerHost(), 
+                                       params.getMaxRequestsPerSecondPerHost(), getRobotsTxtCache());
+    }
+    
+    /* Shared by all the passes of the crawl (or sites of a batch), so that each external link is only checked once. */
+    synchronized ExternalLinkVerifier getExternalLinkVerifier() {
+        if ((externalLinkVerifier == null) && params.getVerifyExternalLinks()) {
+            externalLinkVerifier = new ExternalLinkVerifier(params.getMaxConcurrentLinkChecks(), params.getMaxConnectionsPerHost());
+        }
+        return externalLinkVerifier;
+    }
+    
+    /* 
+     * Shared by all the passes of the crawl (or sites of a batch), so that robots.txt is only fetched once per host. 
+     * Null if robots.txt is ignored.
+     */
+    synchronized RobotsTxtCache getRobotsTxtCache() {
+        if ((robotsTxtCache == null) && params.getObeyRobotsTxt()) {
+            robotsTxtCache = new RobotsTxtCache(params.getRobotsTxtTtlSeconds());
+        }
+        return robotsTxtCache;
+    }
+    
+    /* 
+     * Shared by all the passes of the crawl, so that connections are kept alive from one pass to the next, and 
+     * closed once the crawl is over. Null unless the pooled page fetch engine is used.
+     */
+    synchronized PooledPageFetchService getPooledPageFetchService() {
+        if ((pooledPageFetchService == null) && (params.getPageFetchEngine() == PageFetchEngine.POOLED)) {
+            LinkExtractor linkExtractor = PageFetchServiceLocator.createLinkExtractor(params.getLinkExtractorType());
+            pooledPageFetchService = new PooledPageFetchService(params.getConnectionPoolSize(), 
+                                                                params.getConnectionIdleTimeoutSeconds(), linkExtractor, 
+                                                                params.getContentPolicy());
+        }
+        return pooledPageFetchService;
+    }
+    
+    /* Once the crawl (or batch) is over, so that the verifier's I/O threads and connections don't outlive it. */
+    synchronized void closeExternalLinkVerifier() {
+        if (externalLinkVerifier != null) {
+            try {
+                externalLinkVerifier.close();
+            } catch (IOException e) {
+                log.warn("Unable to close the external link verifier: " + e.getMessage());
+            }
+            externalLinkVerifier = null;
+        }
+    }
+    
+    synchronized void closePooledPageFetchService() {
+        if (pooledPageFetchService != null) {
+            try {
+                pooledPageFetchService.close();
+            } catch (IOException e) {
+                log.warn("Unable to close pooled connections: " + e.getMessage());
+            }
+            pooledPageFetchService = null;
+        }
+    }
+    
+    /* The cache is opened once, and shared by all the passes of the crawl. */
+    private synchronized PageCache getPageCache() {
+        if (!pageCacheOpened && (params.getPageCacheDirectory() != null)) {
+            pageCacheOpened = true;
+            try {
+                pageCache = new PageCache(params.getPageCacheDirectory(), params.getPageCacheMaxBytes(), 
+                                          params.getPageCacheEvictionPolicy());
+            } catch (IOException e) {
+                log.error("Unable to open page cache; crawling without it: " + e.getMessage());
+            }
+        }
+        return pageCache;
     }
     
     private void waitArbitrarilyBeforeProceeding() {
@@ -1,54 +1,46 @@
 package org.lagalag.crawldaddy;
 
 import java.net.HttpURLConnection;
-import java.time.Duration;
-import java.time.Instant;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Optional;
-import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.CompletionException;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.lagalag.crawldaddy.pages.FetchPhase;
 import org.lagalag.crawldaddy.pages.PageFetchConsumer;
 import org.lagalag.crawldaddy.pages.PageFetchException;
 import org.lagalag.crawldaddy.pages.PageFetchResults;
 import org.lagalag.crawldaddy.pages.PageFetchService;
-import org.lagalag.crawldaddy.pages.PageFetchServiceLocator;
+import org.lagalag.crawldaddy.pages.PageFetchTimings;
+import org.lagalag.crawldaddy.util.ParsedUrl;
 import org.lagalag.crawldaddy.util.URLUtils;
 
 /**
  * Retrieves and processes the document at a specified URL, extracting links and external javascript references.
- * Internal links (e.g. links that are in the same domain as the initial URL) will also be retrieved and processed, 
- * possibly in another thread.
+ * Internal links (e.g. links that are in the same domain as the initial URL) are queued in the crawl frontier, to be
+ * retrieved and processed later by another action (possibly in another thread). The action never waits for the 
+ * actions that follow it: the crawl is done once the frontier is empty and the last action has finished.
  */
-public class CrawldaddyAction extends RecursiveAction implements PageFetchConsumer {
-    private static final long serialVersionUID = 1L;
+public class CrawldaddyAction implements Runnable, PageFetchConsumer {
     private static final Logger LOGGER = LogManager.getLogger();
     
-    private static final List<String> UNSUPPORTED_TYPES = Arrays.asList("jpg", "pdf", "png", "gif", "zip", 
-                                                                        "tar", "jar", "gz", "svg", "ppt", "pptx");
-    
     private String myUrl;
     private CrawldaddyParams params;
     private CrawldaddyResult crawldaddyResult;
+    private CrawldaddySession session;
     private boolean isInitiatingAction;
+    private long createdNanos = System.nanoTime();
 
-    public CrawldaddyAction(CrawldaddyParams params) {
-        this.myUrl = params.getUrl();
-        this.params = params;
-        this.crawldaddyResult = new CrawldaddyResult(myUrl);
-        this.isInitiatingAction = true;
-    }
-    
-    /* Used only when crawling links from a page that has been downloaded */
-    private CrawldaddyAction(String url, CrawldaddyParams params, CrawldaddyResult result) {
+    /* Created by the session, for the initial url and for each url taken from the crawl frontier. */
+    CrawldaddyAction(String url, CrawldaddySession session, boolean isInitiatingAction) {
         this.myUrl = url;
-        this.params = params;
-        this.crawldaddyResult = result;
-        this.isInitiatingAction = false;
+        this.params = session.getParams();
+        this.crawldaddyResult = session.getResult();
+        this.session = session;
+        this.isInitiatingAction = isInitiatingAction;
     }
     
     public CrawldaddyResult getResult() {
@@ -56,7 +48,7 @@ public class CrawldaddyAction extends RecursiveAction implements PageFetchConsum
     }
     
     @Override
-    protected void compute() {
+    public void run() {
         if (params.getShowVisitedLink()) {
             System.out.println("VISITING: " + myUrl);
         }
@@ -65,18 +57,25 @@ public class CrawldaddyAction extends RecursiveAction implements PageFetchConsum
     }
     
     private void fetchPageAtMyUrl() {
-        Instant startTime = (isInitiatingAction ? Instant.now() : null);
-        try {
-            PageFetchService pageFetchService = PageFetchServiceLocator.getService();
-            pageFetchService.fetch(myUrl, this);
-        } catch (PageFetchException e) {
-            LOGGER.error(e.getMessage());
-            if (isInitiatingAction) {
-                crawldaddyResult.setPageFetchException(e);
+        PageFetchService pageFetchService = session.getPageFetchService();
+        pageFetchService.fetchAsync(myUrl, this, session.getExecutor()).whenComplete((none, e) -> {
+            if (e != null) {
+                handlePageFetchException(e);
             }
-        } finally {
-            if (isInitiatingAction) {
-                crawldaddyResult.setCrawlTime(Duration.between(startTime, Instant.now()));
+            session.actionFinished(myUrl);
+        });
+    }
+    
+    private void handlePageFetchException(Throwable e) {
+        if (e instanceof CompletionException) {
+            e = e.getCause();
+        }
+        LOGGER.error(e.getMessage());
+        if (isInitiatingAction) {
+            if (e instanceof PageFetchException) {
+                crawldaddyResult.setPageFetchException((PageFetchException) e);
+            } else {
+                crawldaddyResult.setPageFetchException(new PageFetchException("Unable to crawl " + myUrl + ": " + e));
             }
         }
     }
@@ -85,37 +84,122 @@ public class CrawldaddyAction extends RecursiveAction implements PageFetchConsum
     public void handlePageFetchResults(PageFetchResults pageFetchResults) {
         if (isInitiatingAction) {
             crawldaddyResult.setHttpStatusCode(pageFetchResults.getHttpStatusCode());
+            session.getCheckpoint().recordInitialStatus(pageFetchResults.getHttpStatusCode());
+        }
+        recordFetchTimings(pageFetchResults.getTimings());
+        crawldaddyResult.getTransferStats().record(URLUtils.getHost(myUrl), pageFetchResults.getNumBytesReceived(), 
+                                                   pageFetchResults.getNumBytesDecoded());
+        if (pageFetchResults.isFetchAborted()) {
+            LOGGER.debug("GET " + myUrl + " aborted: " + pageFetchResults.getAbortReason().getLabel());
+            crawldaddyResult.incrementFetchesAborted(pageFetchResults.getAbortReason());
+            return;
+        }
+        crawldaddyResult.incrementPagesFetched();
+        if (pageFetchResults.isFromCache()) {
+            crawldaddyResult.incrementPagesFromCache();
         }
         if (pageFetchResults.isHttpStatusOK()) {
-            processScriptUrls(pageFetchResults.getScriptUrls());
-            
-            Collection<CrawldaddyAction> childCrawlers = processLinkUrls(pageFetchResults.getLinkUrls());
-            if (childCrawlers.size() > 0) {
-                invokeAll(childCrawlers);
+            PageGraph.PageRecord previousPage = session.getPreviousPage(myUrl);
+            long contentFingerprint = (session.isIncremental() ? PageGraph.fingerprintOf(pageFetchResults) : 0);
+            if ((previousPage != null) && (previousPage.getHttpStatusCode() == pageFetchResults.getHttpStatusCode())
+                && (previousPage.getContentFingerprint() == contentFingerprint)) {
+                processUnchangedPage(previousPage);
+            } else {
+                processPage(pageFetchResults, previousPage, contentFingerprint);
             }
         } else {
             handleNonOKHttpStatus(pageFetchResults.getUrl(), pageFetchResults.getHttpStatusCode());
+            session.recordPage(PageGraph.PageRecord.onHttpNotOK(myUrl, pageFetchResults.getHttpStatusCode()));
+        }
+    }
+    
+    private void recordFetchTimings(PageFetchTimings timings) {
+        if (timings != null) {
+            // From the action being handed to the executor to the page fetch engine starting on it.
+            timings.setPhaseNanos(FetchPhase.QUEUE, timings.getStartNanos() - createdNanos);
+            crawldaddyResult.getFetchTimings().record(URLUtils.getHost(myUrl), timings);
         }
     }
     
-    private Collection<CrawldaddyAction> processLinkUrls(List<String> linkUrls) {
-        Collection<CrawldaddyAction> childCrawlers = new ArrayList<>();
+    private void processPage(PageFetchResults pageFetchResults, PageGraph.PageRecord previousPage, long contentFingerprint) {
+        processScriptUrls(pageFetchResults.getScriptUrls());
+        
+        // The links found are only kept track of in incremental crawls.
+        Collection<String> internalLinks = (session.isIncremental() ? new LinkedHashSet<>() : null);
+        Collection<String> externalLinks = (session.isIncremental() ? new LinkedHashSet<>() : null);
+        Collection<String> urlsToCrawl = processLinkUrls(pageFetchResults.getLinkUrls(), internalLinks, externalLinks);
+        session.enqueueUrls(urlsToCrawl);
+        
+        if (session.isIncremental()) {
+            int numChanges = (previousPage != null ? previousPage.getNumChanges() + 1 : 0);
+            session.recordPage(new PageGraph.PageRecord(myUrl, pageFetchResults.getHttpStatusCode(), contentFingerprint, 
+                                                        numChanges, new ArrayList<>(internalLinks), 
+                                                        new ArrayList<>(externalLinks), 
+                                                        new ArrayList<>(pageFetchResults.getScriptUrls())));
+        }
+    }
+    
+    /* The page is the same as in the previous incremental crawl, so there's no need to go through its links again. */
+    private void processUnchangedPage(PageGraph.PageRecord previousPage) {
+        processScriptUrls(previousPage.getScripts());
+        for (String linkUrl : previousPage.getExternalLinks()) {
+            processExternalLinkUrl(linkUrl);
+        }
+        // Normally all queued already, along with the rest of the pages of the previous crawl.
+        Collection<String> urlsToCrawl = new ArrayList<>();
+        for (String linkUrl : previousPage.getInternalLinks()) {
+            if (processInternalLinkUrl(linkUrl)) {
+                urlsToCrawl.add(linkUrl);
+            }
+        }
+        session.enqueueUrls(urlsToCrawl);
+        session.recordPage(previousPage);
+    }
+    
+    /**
+     * Returns the internal links that are to be crawled; if given, the internal and external links found (normalized,
+     * skipped links excepted) are added to internalLinks and externalLinks.
+     */
+    Collection<String> processLinkUrls(List<String> linkUrls, Collection<String> internalLinks, 
+                                               Collection<String> externalLinks) {
+        Collection<String> urlsToCrawl = new ArrayList<>();
         String baseUrl = URLUtils.getBaseUrl(myUrl);
+        // Each link is parsed once, into the same (reused) ParsedUrl.
+        ParsedUrl parsedLinkUrl = new ParsedUrl();
         for (String linkUrl : linkUrls) {
-            linkUrl = URLUtils.canonicalize(linkUrl, baseUrl);
-            if (skipProcessing(linkUrl)) {
+            String rawLinkUrl = URLUtils.canonicalize(linkUrl, baseUrl);
+            linkUrl = session.normalizeUrl(rawLinkUrl);
+            parsedLinkUrl.parse(linkUrl);
+            if (skipProcessing(parsedLinkUrl)) {
                 continue;
             }
-            if (isInternalLink(linkUrl)) {
-                processInternalLinkUrl(linkUrl).ifPresent(childCrawler -> childCrawlers.add(childCrawler));
+            if (isInternalLink(parsedLinkUrl)) {
+                if (internalLinks != null) {
+                    internalLinks.add(linkUrl);
+                }
+                if (!session.ownsUrl(parsedLinkUrl)) {
+                    // Deduplicated (and crawled) by the partition of the distributed crawl that owns it.
+                    session.forwardUrl(parsedLinkUrl);
+                } else if (processInternalLinkUrl(linkUrl)) {
+                    urlsToCrawl.add(linkUrl);
+                } else if (!linkUrl.equals(rawLinkUrl) && crawldaddyResult.hasInternalLink(linkUrl)) {
+                    // Only a duplicate thanks to normalization.
+                    if (crawldaddyResult.addDuplicateUrlVariant(rawLinkUrl)) {
+                        session.getCheckpoint().recordDuplicateUrlVariant(rawLinkUrl);
+                    }
+                }
             } else {
+                if (externalLinks != null) {
+                    externalLinks.add(linkUrl);
+                }
                 processExternalLinkUrl(linkUrl);
             }
         }
-        return childCrawlers;
+        return urlsToCrawl;
     }
     
-    private boolean skipProcessing(String linkUrl) {
+    boolean skipProcessing(ParsedUrl parsedLinkUrl) {
+        String linkUrl = parsedLinkUrl.getUrl();
         boolean skipProcessing = false;
         // Some sites have empty hrefs apparently.
         if (linkUrl.trim().length() == 0) {
@@ -126,66 +210,64 @@ public class CrawldaddyAction extends RecursiveAction implements PageFetchConsum
             skipProcessing = true;
         }
         // If the link points back to the initial url, skip it. 
-        String initialUrl = params.getUrl();
-        if (initialUrl.equalsIgnoreCase(linkUrl)) {
+        if (params.getUrl().equalsIgnoreCase(linkUrl) || session.getNormalizedUrl().equals(linkUrl)) {
+            skipProcessing = true;
+        }
+        if (!isSupportedType(parsedLinkUrl)) {
             skipProcessing = true;
         }
-        if (!isSupportedType(linkUrl)) {
+        // Checked last, as the first check for a host waits for its robots.txt.
+        if (!skipProcessing && isInternalLink(parsedLinkUrl) && !session.isAllowedByRobots(parsedLinkUrl)) {
+            crawldaddyResult.addDisallowedLink(linkUrl);
             skipProcessing = true;
         }
         return skipProcessing;
     }
     
-    private boolean isInternalLink(String url) {
+    private boolean isInternalLink(ParsedUrl url) {
         return hasSameHost(url, params.getInternalLinksScope());
     }
     
     private void handleNonOKHttpStatus(String url, int httpStatusCode) {
         if (httpStatusCode == HttpURLConnection.HTTP_NOT_FOUND) {
             LOGGER.error("GET " + url + " --> 404 (Not Found)");
-            crawldaddyResult.addBrokenLink(url);
+            if (crawldaddyResult.addBrokenLink(url)) {
+                session.getCheckpoint().recordBrokenLink(url);
+            }
         } else {
             LOGGER.error("GET " + url + " resulted in a " + httpStatusCode);
         }
     }
 
-    private Optional<CrawldaddyAction> processInternalLinkUrl(String linkUrl) {
-        CrawldaddyAction childCrawlerForLinkUrl = null;
-        // Create a child crawler iff we haven't visited/planned to visit this url.
-        if (crawldaddyResult.checkAndAddInternalLink(linkUrl, params.getMaxInternalLinks())) {
-            childCrawlerForLinkUrl = new CrawldaddyAction(linkUrl, params, crawldaddyResult);
-        }
-        return Optional.ofNullable(childCrawlerForLinkUrl);
+    private boolean processInternalLinkUrl(String linkUrl) {
+        // Crawl the url iff we haven't visited/planned to visit it.
+        return session.checkAndAddInternalLink(linkUrl);
     }
     
     private void processExternalLinkUrl(String linkUrl) {
-        crawldaddyResult.addExternalLink(linkUrl);
+        if (crawldaddyResult.addExternalLink(linkUrl)) {
+            session.getCheckpoint().recordExternalLink(linkUrl);
+            session.verifyExternalLink(linkUrl);
+        }
     }
 
     private void processScriptUrls(List<String> scriptUrls) {
-        crawldaddyResult.addExternalScripts(scriptUrls);
+        for (String scriptUrl : scriptUrls) {
+            if (crawldaddyResult.addExternalScript(scriptUrl)) {
+                session.getCheckpoint().recordExternalScript(scriptUrl);
+            }
+        }
     }
     
-    private boolean hasSameHost(String url, String inputHost) {
-        String urlHost = URLUtils.getHost(url);
-        return urlHost.equals(inputHost);
+    private boolean hasSameHost(ParsedUrl url, String inputHost) {
+        return url.hasHost(inputHost);
     }
     
-    private boolean isSupportedType(String url) {
-        String path = URLUtils.getPath(url);
-        if (path == null) {
+    boolean isSupportedType(ParsedUrl url) {
+        if (!url.isValid()) {
             // Possibly malformed URL -- definitely not supported.
             return false;
         }
-        if (path.isEmpty()) {
-            // URL has no path -- assume it's an HTML doc.
-            return true;
-        }
-        String ext = URLUtils.getExtension(path);
-        if (ext == null) {
-            // No extension -- assume it's an HTML doc.
-            return true;
-        }
-        return (!UNSUPPORTED_TYPES.contains(ext));
+        return session.getExtensionFilter().accepts(url);
     }
 }
@@ -1,9 +1,25 @@
 package org.lagalag.crawldaddy;
 
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetSocketAddress;
 import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Objects;
 import java.util.Set;
+import java.util.function.Function;
 
+import org.lagalag.crawldaddy.pages.ConnectionPoolStats;
+import org.lagalag.crawldaddy.pages.FetchAbortReason;
+import org.lagalag.crawldaddy.pages.FetchPhase;
+import org.lagalag.crawldaddy.pages.FetchTimingStats;
 import org.lagalag.crawldaddy.pages.PageFetchException;
+import org.lagalag.crawldaddy.pages.TransferStats;
+import org.lagalag.crawldaddy.util.LatencyHistogram;
 import org.lagalag.crawldaddy.util.URLUtils;
 
 /**
@@ -11,6 +27,8 @@ import org.lagalag.crawldaddy.util.URLUtils;
  *
  */
 public class CrawldaddyApp {
+    private static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
+    
     public void runApp(String[] args) {
         CrawldaddyCommandLine commandLine = CrawldaddyCommandLine.parse(args);
         if (commandLine == null) {
@@ -24,7 +42,15 @@ public class CrawldaddyApp {
             return;
         }
         
-        startCrawl(params, commandLine);
+        if (commandLine.isBatchFileSet()) {
+            startBatchCrawl(params, commandLine);
+        } else if (commandLine.isCoordinatorSet()) {
+            startCoordinatedCrawl(params, commandLine);
+        } else if (commandLine.isWorkerSet()) {
+            startWorkerCrawl(params, commandLine);
+        } else {
+            startCrawl(params, commandLine);
+        }
     }
     
     private void startCrawl(CrawldaddyParams params, CrawldaddyCommandLine commandLine) {
@@ -38,7 +64,73 @@ public class CrawldaddyApp {
         }
     }
     
-    private CrawldaddyParams createParams(CrawldaddyCommandLine commandLine) {
+    private void startBatchCrawl(CrawldaddyParams params, CrawldaddyCommandLine commandLine) {
+        File batchFile = commandLine.getBatchFile();
+        List<String> seedUrls;
+        try {
+            seedUrls = CrawldaddyBatch.readSeedUrls(batchFile);
+        } catch (IOException e) {
+            System.err.println("Unable to read seed urls from " + batchFile + ": " + e.getMessage());
+            return;
+        }
+        if (seedUrls.isEmpty()) {
+            System.err.println("No seed urls found in " + batchFile);
+            return;
+        }
+        warnIfFileOptionsSet(commandLine, "batch");
+        System.out.println("Crawling " + seedUrls.size() + " site(s) from " + batchFile + "...");
+        Instant startTime = Instant.now();
+        try {
+            CrawldaddyResultSet results = new CrawldaddyBatch(params, seedUrls).crawl().get();
+            showBatchSummary(results, Duration.between(startTime, Instant.now()));
+        } catch (Exception e) {
+            System.err.println("A problem was encountered during the crawling operation: " + e.getMessage());
+        }
+    }
+    
+    private void startCoordinatedCrawl(CrawldaddyParams params, CrawldaddyCommandLine commandLine) {
+        warnIfFileOptionsSet(commandLine, "distributed");
+        int numWorkers = commandLine.getNumWorkers(CrawldaddyCoordinator.DEFAULT_NUM_WORKERS);
+        try {
+            CrawldaddyCoordinator coordinator = new CrawldaddyCoordinator(params, numWorkers, 
+                                                                          commandLine.getCoordinatorPort(CrawldaddyCoordinator.DEFAULT_PORT));
+            System.out.println("Crawling " + params.getUrl() + " with " + numWorkers + " worker(s), which are to connect on port " 
+                               + coordinator.getPort() + "...");
+            CrawldaddyResultSet results = new CrawldaddyResultSet();
+            results.addResult(coordinator.crawl().get());
+            processResults(results, commandLine);
+        } catch (Exception e) {
+            System.err.println("A problem was encountered during the crawling operation: " + e.getMessage());
+        }
+    }
+    
+    private void startWorkerCrawl(CrawldaddyParams params, CrawldaddyCommandLine commandLine) {
+        InetSocketAddress coordinatorAddress = commandLine.getCoordinatorAddress();
+        if (coordinatorAddress == null) {
+            System.err.println("Unknown coordinator host (expected --worker HOST:PORT)");
+            return;
+        }
+        warnIfFileOptionsSet(commandLine, "distributed");
+        System.out.println("Crawling part of " + params.getUrl() + " for the coordinator at " + coordinatorAddress + "...");
+        CrawldaddyWorker worker = new CrawldaddyWorker(params, coordinatorAddress);
+        try {
+            CrawldaddyResult result = worker.crawl().get();
+            System.out.printf("Partition %d of %d: %d page(s) fetched in %s(%.2f pages/sec)\n", worker.getPartitionIndex(), 
+                              worker.getNumPartitions(), result.getPagesFetched(), formatDuration(result.getCrawlTime()), 
+                              result.getPagesPerSecond());
+        } catch (Exception e) {
+            System.err.println("A problem was encountered during the crawling operation: " + e.getMessage());
+        }
+    }
+    
+    private void warnIfFileOptionsSet(CrawldaddyCommandLine commandLine, String mode) {
+        if (commandLine.isOutputFileSet() || (commandLine.getCheckpointDirectory() != null) 
+            || (commandLine.getPageGraphFile() != null) || (commandLine.getInternalLinksFile() != null)) {
+            System.err.println("Output, checkpoint, incremental and internal links files are ignored in " + mode + " mode");
+        }
+    }
+    
+    CrawldaddyParams createParams(CrawldaddyCommandLine commandLine) {
         if (requiredParamsMissing(commandLine)) {
             return null;
         }
@@ -47,12 +139,52 @@ public class CrawldaddyApp {
         params.setShowVisitedLink(commandLine.isGenerateVerboseOutputSet());
         params.setNumRepetitions(commandLine.getNumRepetitions(CrawldaddyParams.DEFAULT_CRAWL_REPETITIONS));
         params.setInternalLinksScope(URLUtils.getHost(commandLine.getInputUrl()));
+        params.setPageFetchEngine(commandLine.getPageFetchEngine(CrawldaddyParams.DEFAULT_PAGE_FETCH_ENGINE));
+        params.setLinkExtractorType(commandLine.getLinkExtractorType(CrawldaddyParams.DEFAULT_LINK_EXTRACTOR_TYPE));
+        params.setExecutorType(commandLine.getExecutorType(CrawldaddyParams.DEFAULT_EXECUTOR_TYPE));
+        params.setNumThreads(commandLine.getNumThreads(CrawldaddyParams.DEFAULT_NUM_THREADS));
+        if (commandLine.isMaxConcurrentFetchesSet()) {
+            params.setMaxConcurrentFetches(commandLine.getMaxConcurrentFetches(params.getMaxConcurrentFetches()));
+        }
+        if (commandLine.isMaxTotalFetchesSet()) {
+            params.setMaxTotalFetches(commandLine.getMaxTotalFetches(params.getMaxTotalFetches()));
+        }
+        params.setMaxConcurrentSites(commandLine.getMaxConcurrentSites(CrawldaddyParams.DEFAULT_MAX_CONCURRENT_SITES));
+        params.setMaxConnectionsPerHost(commandLine.getMaxConnectionsPerHost(CrawldaddyParams.DEFAULT_MAX_CONNECTIONS_PER_HOST));
+        params.setMaxRequestsPerSecondPerHost(commandLine.getMaxRequestsPerSecondPerHost(CrawldaddyParams.DEFAULT_MAX_REQUESTS_PER_SECOND_PER_HOST));
+        if (commandLine.isConnectionPoolSizeSet()) {
+            params.setConnectionPoolSize(commandLine.getConnectionPoolSize(params.getConnectionPoolSize()));
+        }
+        params.setConnectionIdleTimeoutSeconds(commandLine.getConnectionIdleTimeoutSeconds(CrawldaddyParams.DEFAULT_CONNECTION_IDLE_TIMEOUT_SECONDS));
+        params.setDedupMode(commandLine.getDedupMode(CrawldaddyParams.DEFAULT_DEDUP_MODE));
+        params.setInternalLinksFile(commandLine.getInternalLinksFile());
+        params.setNormalizeUrls(!commandLine.isNoUrlNormalizationSet());
+        params.setSortQueryParameters(commandLine.isSortQueryParametersSet());
+        params.setStrippedQueryParameters(commandLine.getStrippedQueryParameters());
+        params.setCrawledContentTypes(commandLine.getCrawledContentTypes(CrawldaddyParams.DEFAULT_CRAWLED_CONTENT_TYPES));
+        params.setMaxBodyBytes(commandLine.getMaxBodyBytes(CrawldaddyParams.DEFAULT_MAX_BODY_BYTES));
+        params.setAllowedExtensions(commandLine.getAllowedExtensions());
+        params.setDeniedExtensions(commandLine.getDeniedExtensions(CrawldaddyParams.DEFAULT_DENIED_EXTENSIONS));
+        params.setPageCacheDirectory(commandLine.getPageCacheDirectory());
+        params.setPageCacheMaxBytes(commandLine.getPageCacheMaxBytes(CrawldaddyParams.DEFAULT_PAGE_CACHE_MAX_BYTES));
+        params.setPageCacheEvictionPolicy(commandLine.getPageCacheEvictionPolicy(CrawldaddyParams.DEFAULT_PAGE_CACHE_EVICTION_POLICY));
+        params.setCheckpointDirectory(commandLine.getCheckpointDirectory());
+        params.setResume(commandLine.isResumeSet());
+        params.setPageGraphFile(commandLine.getPageGraphFile());
+        params.setVerifyExternalLinks(commandLine.isVerifyExternalLinksSet());
+        params.setMaxConcurrentLinkChecks(commandLine.getMaxConcurrentLinkChecks(CrawldaddyParams.DEFAULT_MAX_CONCURRENT_LINK_CHECKS));
+        params.setObeyRobotsTxt(!commandLine.isIgnoreRobotsTxtSet());
+        params.setRobotsTxtTtlSeconds(commandLine.getRobotsTxtTtlSeconds(CrawldaddyParams.DEFAULT_ROBOTS_TXT_TTL_SECONDS));
+        params.setSeedFromSitemaps(commandLine.isSitemapsSet());
+        params.setResultFile(commandLine.getOutputFile(null));
+        params.setResultFormat(commandLine.getOutputFormat(CrawldaddyParams.DEFAULT_RESULT_FORMAT));
+        params.setCountsOnly(commandLine.isCountsOnlySet());
         return params;
     }
     
     private boolean requiredParamsMissing(CrawldaddyCommandLine commandLine) {
         String inputUrl = commandLine.getInputUrl();
-        return (inputUrl == null);
+        return (inputUrl == null) && !commandLine.isBatchFileSet();
     }
     
     private void processResults(CrawldaddyResultSet results, CrawldaddyCommandLine commandLine) {
@@ -61,6 +193,57 @@ public class CrawldaddyApp {
         showCrawlTimes(results);
     }
     
+    private void showBatchSummary(CrawldaddyResultSet results, Duration batchTime) {
+        System.out.println("BATCH RESULTS for " + results.size() + " site(s):");
+        System.out.printf("%-10s %8s %9s %9s %7s %8s %9s  %s\n", "STATUS", "PAGES", "INTERNAL", "EXTERNAL", "BROKEN", "SCRIPTS", 
+                          "SECS", "SITE");
+        int numSitesOK = 0;
+        int totalPagesFetched = 0;
+        long totalInternalLinks = 0;
+        long totalExternalLinks = 0;
+        long totalBrokenLinks = 0;
+        for (CrawldaddyResult result : results) {
+            if (!result.hasPageFetchException() && result.isHttpStatusOK()) {
+                numSitesOK++;
+            }
+            totalPagesFetched += result.getPagesFetched();
+            totalInternalLinks += result.getInternalLinkCount();
+            totalExternalLinks += result.getExternalLinkCount();
+            totalBrokenLinks += result.getBrokenLinkCount();
+            Duration crawlTime = result.getCrawlTime();
+            System.out.printf("%-10s %8d %9d %9d %7d %8d %9.1f  %s\n", formatSiteStatus(result), result.getPagesFetched(), 
+                              result.getInternalLinkCount(), result.getExternalLinkCount(), result.getBrokenLinkCount(), 
+                              result.getExternalScriptsCount(), (crawlTime != null ? crawlTime.toMillis() / 1000.0 : 0), 
+                              result.getUrl());
+        }
+        System.out.printf("%-10s %8d %9d %9d %7d\n", "TOTAL", totalPagesFetched, totalInternalLinks, totalExternalLinks, 
+                          totalBrokenLinks);
+        System.out.println("Sites crawled   : " + numSitesOK + " of " + results.size() + " OK");
+        for (CrawldaddyResult result : results) {
+            showSetContents("BROKEN LINKS on " + result.getUrl(), result.getBrokenLinks());
+            showSetContents("DEAD EXTERNAL LINKS on " + result.getUrl(), result.getDeadExternalLinks());
+        }
+        long batchTimeMillis = batchTime.toMillis();
+        System.out.printf("Total crawl time: %s(%.2f pages/sec)\n", formatDuration(batchTime), 
+                          (batchTimeMillis > 0 ? totalPagesFetched * 1000.0 / batchTimeMillis : 0.0));
+        FetchTimingStats fetchTimings = new FetchTimingStats();
+        TransferStats transferStats = new TransferStats();
+        for (CrawldaddyResult result : results) {
+            fetchTimings.add(result.getFetchTimings());
+            transferStats.add(result.getTransferStats());
+        }
+        // A line per site is already more than enough.
+        showFetchTimings(fetchTimings, false);
+        showTransferStats(transferStats, false);
+    }
+    
+    private String formatSiteStatus(CrawldaddyResult result) {
+        if (result.hasPageFetchException()) {
+            return "ERROR";
+        }
+        return (result.isHttpStatusOK() ? "OK" : "HTTP " + result.getHttpStatusCode());
+    }
+    
     private CrawldaddyResult getResultToDisplay(CrawldaddyResultSet results) {
         CrawldaddyResult resultToDisplay = getFirstSuccessfulResult(results);
         if (resultToDisplay == null) {
@@ -80,32 +263,77 @@ public class CrawldaddyApp {
         } else if (!result.isHttpStatusOK()) {
             System.err.println("Crawl attempt resulted in HTTP " + result.getHttpStatusCode());
         } else {
-            Set<String> extLinks = result.getExternalLinks();
-            Set<String> brokenLinks = result.getBrokenLinks();
-            Set<String> extScripts = result.getExternalScripts();
-            
             System.out.println("RESULTS for " + result.getUrl() + ":");
             System.out.println("Total number of unique links : " + result.getTotalLinkCount());
             System.out.println("   Number of internal links  : " + result.getInternalLinkCount());
-            System.out.println("   Number of external links  : " + extLinks.size());
-            System.out.println("   Number of broken links    : " + brokenLinks.size());
-            System.out.println("Number of ext scripts        : " + extScripts.size());
-            if (commandLine.isShowExternalLinksSet()) {
-                showSetContents("EXTERNAL LINKS", extLinks);
+            System.out.println("   Number of external links  : " + result.getExternalLinkCount());
+            System.out.println("   Number of broken links    : " + result.getBrokenLinkCount());
+            if (commandLine.isVerifyExternalLinksSet()) {
+                System.out.println("   Number of dead ext links  : " + result.getDeadExternalLinkCount());
+            }
+            System.out.println("Number of ext scripts        : " + result.getExternalScriptsCount());
+            System.out.println("Fetches saved by url normalization: " + result.getFetchesSavedByNormalization());
+            if (result.getDisallowedLinkCount() > 0) {
+                System.out.println("Links disallowed by robots.txt: " + result.getDisallowedLinkCount());
+            }
+            if (commandLine.isSitemapsSet()) {
+                System.out.println("Links seeded from sitemaps: " + result.getSitemapLinkCount());
             }
-            showSetContents("BROKEN LINKS", brokenLinks);
-            if (commandLine.isShowExternalScriptsSet()) {
-                showSetContents("EXTERNAL SCRIPTS", extScripts);
+            if (result.getFetchesAborted() > 0) {
+                System.out.println("Fetches aborted: " + formatFetchesAborted(result));
+            }
+            if (result.getPagesFromCheckpoint() > 0) {
+                System.out.println("Pages crawled before resuming: " + result.getPagesFromCheckpoint());
+            }
+            if (commandLine.isOutputFileSet()) {
+                // Every link and script was streamed there as it was found.
+                System.out.println("Links and scripts written to " + commandLine.getOutputFile(null));
+            } else {
+                if (commandLine.isShowExternalLinksSet()) {
+                    showSetContents("EXTERNAL LINKS", result.getExternalLinks());
+                }
+                showSetContents("BROKEN LINKS", result.getBrokenLinks());
+                showSetContents("DEAD EXTERNAL LINKS", result.getDeadExternalLinks());
+                if (commandLine.isShowExternalScriptsSet()) {
+                    showSetContents("EXTERNAL SCRIPTS", result.getExternalScripts());
+                }
+            }
+            if (result.getCrawlDiff() != null) {
+                showCrawlDiff(result.getCrawlDiff());
+            }
+        }
+    }
+    
+    private String formatFetchesAborted(CrawldaddyResult result) {
+        StringBuilder sb = new StringBuilder().append(result.getFetchesAborted()).append(" (");
+        String separator = "";
+        for (FetchAbortReason reason : FetchAbortReason.values()) {
+            if (result.getFetchesAborted(reason) > 0) {
+                sb.append(separator).append(reason.getLabel()).append(": ").append(result.getFetchesAborted(reason));
+                separator = ", ";
             }
         }
+        return sb.append(")").toString();
+    }
+    
+    private void showCrawlDiff(CrawlDiff crawlDiff) {
+        System.out.println("Changes since the previous crawl: " + crawlDiff.getNewLinks().size() + " new link(s), " 
+                           + crawlDiff.getRemovedLinks().size() + " removed link(s), " 
+                           + crawlDiff.getNewlyBrokenLinks().size() + " newly broken link(s)");
+        showSetContents("NEW LINKS", crawlDiff.getNewLinks());
+        showSetContents("REMOVED LINKS", crawlDiff.getRemovedLinks());
+        showSetContents("NEWLY BROKEN LINKS", crawlDiff.getNewlyBrokenLinks());
     }
     
     private void showSetContents(String title, Set<String> set) {
         if (set.size() > 0) {
-            System.out.println(title + " (" + set.size() + "): ");
+            // One buffered write rather than a (synchronized, flushing) println per url.
+            PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out), OUTPUT_BUFFER_SIZE));
+            out.println(title + " (" + set.size() + "): ");
             for (String s : set) {
-                System.out.println(s);
+                out.println(s);
             }
+            out.flush();
         }
     }
     
@@ -113,12 +341,87 @@ public class CrawldaddyApp {
         if (results.size() == 1) {
             CrawldaddyResult result = results.getFirstResult();
             System.out.println("Total crawl time: " + formatDuration(result.getCrawlTime()));
+            System.out.println("Pages fetched   : " + result.getPagesFetched() + formatPagesPerSecond(result));
+            if (result.getPagesFromCache() > 0) {
+                System.out.println("Pages unchanged : " + result.getPagesFromCache() + " (taken from the page cache)");
+            }
+            showFetchTimings(result.getFetchTimings(), true);
+            showTransferStats(result.getTransferStats(), true);
+            showConnectionPoolStats(result.getConnectionPoolStats());
         } else {
             showIndividualCrawlTimes(results);
             showAverageCrawlTime(results);
+            FetchTimingStats fetchTimings = new FetchTimingStats();
+            results.forEach(result -> fetchTimings.add(result.getFetchTimings()));
+            showFetchTimings(fetchTimings, true);
+            TransferStats transferStats = new TransferStats();
+            results.forEach(result -> transferStats.add(result.getTransferStats()));
+            showTransferStats(transferStats, true);
+            ConnectionPoolStats poolStats = results.stream().map(CrawldaddyResult::getConnectionPoolStats)
+                                                   .filter(Objects::nonNull).reduce(ConnectionPoolStats::plus).orElse(null);
+            showConnectionPoolStats(poolStats);
+        }
+    }
+    
+    private void showTransferStats(TransferStats transferStats, boolean showHosts) {
+        if ((transferStats.getNumBytesDecoded() == 0) && (transferStats.getNumUnmeasuredFetches() == 0)) {
+            return;
+        }
+        System.out.println("Bytes received  : " 
+                           + formatBytes(transferStats.getNumBytesReceived(), transferStats.getNumBytesDecoded()));
+        if (transferStats.getNumUnmeasuredFetches() > 0) {
+            System.out.println("    not counted: " + transferStats.getNumUnmeasuredFetches() + " fetches of unknown size as received (" 
+                               + transferStats.getNumUnmeasuredBytesDecoded() + " decoded)");
+        }
+        Set<String> hosts = transferStats.getHosts();
+        if (showHosts && (hosts.size() > 1)) {
+            for (String host : hosts) {
+                System.out.printf("    %-20s %s\n", host, 
+                                  formatBytes(transferStats.getNumBytesReceived(host), transferStats.getNumBytesDecoded(host)));
+            }
+        }
+    }
+    
+    private String formatBytes(long numBytesReceived, long numBytesDecoded) {
+        double percentSaved = (numBytesDecoded > 0 ? 100.0 * (numBytesDecoded - numBytesReceived) / numBytesDecoded : 0);
+        return String.format("%d (%d decoded, %.1f%% saved by compression)", numBytesReceived, numBytesDecoded, percentSaved);
+    }
+    
+    private void showConnectionPoolStats(ConnectionPoolStats poolStats) {
+        if (poolStats != null) {
+            System.out.println("Connection pool : " + poolStats);
+        }
+    }
+    
+    private void showFetchTimings(FetchTimingStats fetchTimings, boolean showHosts) {
+        if (fetchTimings.getHistogram(FetchPhase.QUEUE).getCount() == 0) {
+            return;
+        }
+        showFetchTimings("Fetch timings (ms)", phase -> fetchTimings.getHistogram(phase));
+        Set<String> hosts = fetchTimings.getHosts();
+        if (showHosts && (hosts.size() > 1)) {
+            for (String host : hosts) {
+                showFetchTimings("  " + host, phase -> fetchTimings.getHistogram(host, phase));
+            }
+        }
+    }
+    
+    private void showFetchTimings(String title, Function<FetchPhase,LatencyHistogram> histograms) {
+        System.out.printf("%-24s %9s %9s %9s %9s\n", title, "p50", "p90", "p99", "max");
+        for (FetchPhase phase : FetchPhase.values()) {
+            LatencyHistogram histogram = histograms.apply(phase);
+            if (histogram.getCount() > 0) {
+                System.out.printf("    %-20s %9.2f %9.2f %9.2f %9.2f\n", phase.name().toLowerCase(), 
+                                  toMillis(histogram.getValueAtPercentile(50)), toMillis(histogram.getValueAtPercentile(90)), 
+                                  toMillis(histogram.getValueAtPercentile(99)), toMillis(histogram.getMax()));
+            }
         }
     }
     
+    private double toMillis(long nanos) {
+        return nanos / 1e6;
+    }
+    
     private void showIndividualCrawlTimes(CrawldaddyResultSet results) {
         int pass = 1;
         for (CrawldaddyResult result : results) {
@@ -134,11 +437,19 @@ public class CrawldaddyApp {
         } else if (!result.isHttpStatusOK()) {
             resultSummary = "HTTP " + result.getHttpStatusCode();
         } else {
-            resultSummary = formatDuration(result.getCrawlTime());
+            resultSummary = formatDuration(result.getCrawlTime()) + formatPagesPerSecond(result) + formatPagesFromCache(result);
         }
         return resultSummary;
     }
     
+    private String formatPagesPerSecond(CrawldaddyResult result) {
+        return String.format(" (%.2f pages/sec)", result.getPagesPerSecond());
+    }
+    
+    private String formatPagesFromCache(CrawldaddyResult result) {
+        return (result.getPagesFromCache() > 0 ? " (" + result.getPagesFromCache() + " unchanged)" : "");
+    }
+    
     private void showAverageCrawlTime(CrawldaddyResultSet results) {
         Duration avgCrawlTime = results.getAverageCrawlTime();
         if (!avgCrawlTime.isZero()) {
@@ -0,0 +1,166 @@
+package org.lagalag.crawldaddy;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.lagalag.crawldaddy.pages.PageFetchException;
+import org.lagalag.crawldaddy.pages.PageFetchService;
+
+/**
+ * Crawls a batch of sites, each from its own seed url, in a single process: up to a given number of sites are
+ * crawled at once, all of them on the same worker pool and through the same page fetch engine (and connection
+ * pool, politeness limits, page cache...). Each site is crawled once, with the same params, and gets a
+ * CrawldaddyResult of its own. Page fetches are limited per site (getMaxConcurrentFetches()) and over the whole
+ * batch (getMaxTotalFetches()).
+ * Options that name a single file or directory (result file, checkpoints, incremental page graph, internal links
+ * file) don't apply to batch crawls, and are ignored.
+ */
+public class CrawldaddyBatch {
+    private static final Logger log = LogManager.getLogger();
+
+    private static final String COMMENT_PREFIX = "#";
+
+    private final CrawldaddyParams params;
+    private final List<String> seedUrls;
+
+    /**
+     * @param params the params with which to crawl each site (their url is ignored).
+     */
+    public CrawldaddyBatch(CrawldaddyParams params, List<String> seedUrls) {
+        this.params = params;
+        this.seedUrls = new ArrayList<>(seedUrls);
+    }
+
+    /**
+     * Reads the seed urls from the given file: one per line, skipping blank lines, comments (lines starting with #)
+     * and duplicates.
+     */
+    public static List<String> readSeedUrls(File seedFile) throws IOException {
+        Set<String> seedUrls = new LinkedHashSet<>();
+        for (String line : Files.readAllLines(seedFile.toPath(), StandardCharsets.UTF_8)) {
+            String url = line.trim();
+            if (!url.isEmpty() && !url.startsWith(COMMENT_PREFIX)) {
+                seedUrls.add(url);
+            }
+        }
+        return new ArrayList<>(seedUrls);
+    }
+
+    public List<String> getSeedUrls() {
+        return seedUrls;
+    }
+
+    /**
+     * Crawls all the sites; the results are in the same order as the seed urls.
+     */
+    public CompletableFuture<CrawldaddyResultSet> crawl() {
+        return CompletableFuture.supplyAsync(this::doCrawl);
+    }
+
+    private CrawldaddyResultSet doCrawl() {
+        // Owns what the sites share: the connection pool, the page cache and the external link verifier.
+        Crawldaddy crawler = new Crawldaddy(params);
+        ExecutorService executor = CrawlExecutors.create(params);
+        try {
+            PageFetchService pageFetchService = crawler.createPageFetchService(params.getMaxTotalFetches(), true);
+            Semaphore sitePermits = new Semaphore(params.getMaxConcurrentSites());
+            List<CompletableFuture<CrawldaddyResult>> siteCrawls = new ArrayList<>();
+            log.info("Crawling " + seedUrls.size() + " site(s), " + params.getMaxConcurrentSites() + " at a time");
+            for (String seedUrl : seedUrls) {
+                acquireSitePermit(sitePermits);
+                boolean permitHandedOver = false;
+                try {
+                    CompletableFuture<CrawldaddyResult> siteCrawl = crawlSite(seedUrl, crawler, pageFetchService, executor);
+                    siteCrawl.whenComplete((result, e) -> sitePermits.release());
+                    permitHandedOver = true;
+                    siteCrawls.add(siteCrawl);
+                } finally {
+                    if (!permitHandedOver) {
+                        sitePermits.release();
+                    }
+                }
+            }
+            CrawldaddyResultSet results = new CrawldaddyResultSet();
+            for (CompletableFuture<CrawldaddyResult> siteCrawl : siteCrawls) {
+                results.addResult(siteCrawl.join());
+            }
+            return results;
+        } finally {
+            CrawlExecutors.shutdown(executor);
+            crawler.closePooledPageFetchService();
+            crawler.closeExternalLinkVerifier();
+        }
+    }
+
+    private CompletableFuture<CrawldaddyResult> crawlSite(String seedUrl, Crawldaddy crawler, PageFetchService pageFetchService,
+                                                          ExecutorService executor) {
+        CrawldaddySession session;
+        try {
+            session = new CrawldaddySession(params.withUrlAndNoFiles(seedUrl), pageFetchService, crawler.getExternalLinkVerifier(),
+                                            crawler.getRobotsTxtCache(), executor);
+        } catch (RuntimeException e) {
+            return CompletableFuture.completedFuture(createFailedResult(seedUrl, e));
+        }
+        log.info("Site " + seedUrl + " start");
+        Instant startTime = Instant.now();
+        try {
+            session.start();
+        } catch (RuntimeException e) {
+            log.error("Site " + seedUrl + " failed to start: " + e);
+            session.close();
+            return CompletableFuture.completedFuture(createFailedResult(seedUrl, e));
+        }
+        // Not in the thread that finished the crawl, which still holds the session's lock.
+        return session.getResultFuture().thenApplyAsync(result -> {
+            result.setCrawlTime(Duration.between(startTime, Instant.now()));
+            session.close();
+            log.info("Site " + seedUrl + " done");
+            return result;
+        }, executor);
+    }
+
+    private static CrawldaddyResult createFailedResult(String seedUrl, RuntimeException e) {
+        CrawldaddyResult result = new CrawldaddyResult(seedUrl);
+        result.setPageFetchException(new PageFetchException("Unable to crawl " + seedUrl + ": " + e));
+        return result;
+    }
+
+    /*
+     * The batch runs on a pool worker for as long as it lasts, waiting on site crawls: as a managed block, the pool
+     * can compensate while it waits.
+     */
+    private static void acquireSitePermit(Semaphore sitePermits) {
+        try {
+            ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+                @Override
+                public boolean block() throws InterruptedException {
+                    sitePermits.acquire();
+                    return true;
+                }
+
+                @Override
+                public boolean isReleasable() {
+                    return sitePermits.tryAcquire();
+                }
+            });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(e);
+        }
+    }
+}
@@ -1,7 +1,12 @@
 package org.lagalag.crawldaddy;
 
+import java.io.File;
 import java.io.PrintStream;
 import java.io.PrintWriter;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
@@ -10,6 +15,11 @@ import org.apache.commons.cli.HelpFormatter;
 import org.apache.commons.cli.Option;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
+import org.lagalag.crawldaddy.links.DedupMode;
+import org.lagalag.crawldaddy.pages.CacheEvictionPolicy;
+import org.lagalag.crawldaddy.pages.LinkExtractorType;
+import org.lagalag.crawldaddy.pages.PageFetchEngine;
+import org.lagalag.crawldaddy.sinks.ResultSinkFormat;
 
 /**
  * Handles parsing and management of command line arguments and options.
@@ -21,10 +31,88 @@ public class CrawldaddyCommandLine {
     public static final String CL_OPT_MAX_INT_LINKS = "m";
     public static final String CL_OPT_CRAWL_REPEATEDLY = "r";
     public static final String CL_OPT_GENERATE_VERBOSE_OUTPUT = "v";
+    public static final String CL_OPT_PAGE_FETCH_ENGINE = "e";
+    public static final String CL_OPT_LINK_EXTRACTOR = "lx";
+    public static final String CL_OPT_EXECUTOR_TYPE = "x";
+    public static final String CL_OPT_NUM_THREADS = "t";
+    public static final String CL_OPT_MAX_CONCURRENT_FETCHES = "mf";
+    public static final String CL_OPT_MAX_CONNECTIONS_PER_HOST = "hc";
+    public static final String CL_OPT_MAX_REQUESTS_PER_SECOND_PER_HOST = "hr";
+    public static final String CL_OPT_CONNECTION_POOL_SIZE = "ps";
+    public static final String CL_OPT_CONNECTION_IDLE_TIMEOUT = "pi";
+    public static final String CL_OPT_DEDUP_MODE = "d";
+    public static final String CL_OPT_INT_LINKS_FILE = "il";
+    public static final String CL_OPT_NO_URL_NORMALIZATION = "nn";
+    public static final String CL_OPT_SORT_QUERY_PARAMS = "sq";
+    public static final String CL_OPT_STRIP_QUERY_PARAMS = "sp";
+    public static final String CL_OPT_CONTENT_TYPES = "ct";
+    public static final String CL_OPT_MAX_BODY_SIZE = "mb";
+    public static final String CL_OPT_ALLOWED_EXTENSIONS = "ae";
+    public static final String CL_OPT_DENIED_EXTENSIONS = "de";
+    public static final String CL_OPT_PAGE_CACHE_DIR = "c";
+    public static final String CL_OPT_PAGE_CACHE_SIZE = "cs";
+    public static final String CL_OPT_PAGE_CACHE_EVICTION = "ce";
+    public static final String CL_OPT_CHECKPOINT_DIR = "cp";
+    public static final String CL_OPT_RESUME = "rs";
+    public static final String CL_OPT_INCREMENTAL = "inc";
+    public static final String CL_OPT_VERIFY_EXT_LINKS = "vx";
+    public static final String CL_OPT_MAX_CONCURRENT_LINK_CHECKS = "vc";
+    public static final String CL_OPT_IGNORE_ROBOTS_TXT = "nr";
+    public static final String CL_OPT_ROBOTS_TXT_TTL = "rt";
+    public static final String CL_OPT_SITEMAPS = "sm";
+    public static final String CL_OPT_OUTPUT_FILE = "o";
+    public static final String CL_OPT_OUTPUT_FORMAT = "of";
+    public static final String CL_OPT_COUNTS_ONLY = "co";
+    public static final String CL_OPT_BATCH_FILE = "b";
+    public static final String CL_OPT_BATCH_SITES = "bs";
+    public static final String CL_OPT_BATCH_FETCHES = "bf";
+    public static final String CL_OPT_COORDINATOR = "dc";
+    public static final String CL_OPT_NUM_WORKERS = "dn";
+    public static final String CL_OPT_WORKER = "dw";
     public static final String CL_LONGOPT_SHOW_EXT_LINKS = "extLinks";
     public static final String CL_LONGOPT_SHOW_EXT_SCRIPTS = "extScripts";
     public static final String CL_LONGOPT_MAX_INT_LINKS = "maxIntLinks";
     public static final String CL_LONGOPT_CRAWL_REPEATEDLY = "repeat";
+    public static final String CL_LONGOPT_PAGE_FETCH_ENGINE = "engine";
+    public static final String CL_LONGOPT_LINK_EXTRACTOR = "linkExtractor";
+    public static final String CL_LONGOPT_EXECUTOR_TYPE = "executor";
+    public static final String CL_LONGOPT_NUM_THREADS = "threads";
+    public static final String CL_LONGOPT_MAX_CONCURRENT_FETCHES = "maxFetches";
+    public static final String CL_LONGOPT_MAX_CONNECTIONS_PER_HOST = "hostConnections";
+    public static final String CL_LONGOPT_MAX_REQUESTS_PER_SECOND_PER_HOST = "hostRate";
+    public static final String CL_LONGOPT_CONNECTION_POOL_SIZE = "poolSize";
+    public static final String CL_LONGOPT_CONNECTION_IDLE_TIMEOUT = "poolIdleTimeout";
+    public static final String CL_LONGOPT_DEDUP_MODE = "dedup";
+    public static final String CL_LONGOPT_INT_LINKS_FILE = "intLinksFile";
+    public static final String CL_LONGOPT_NO_URL_NORMALIZATION = "noNormalize";
+    public static final String CL_LONGOPT_SORT_QUERY_PARAMS = "sortQuery";
+    public static final String CL_LONGOPT_STRIP_QUERY_PARAMS = "stripParams";
+    public static final String CL_LONGOPT_CONTENT_TYPES = "contentTypes";
+    public static final String CL_LONGOPT_MAX_BODY_SIZE = "maxBodySize";
+    public static final String CL_LONGOPT_ALLOWED_EXTENSIONS = "allowExt";
+    public static final String CL_LONGOPT_DENIED_EXTENSIONS = "denyExt";
+    public static final String CL_LONGOPT_PAGE_CACHE_DIR = "cacheDir";
+    public static final String CL_LONGOPT_PAGE_CACHE_SIZE = "cacheSize";
+    public static final String CL_LONGOPT_PAGE_CACHE_EVICTION = "cacheEviction";
+    public static final String CL_LONGOPT_CHECKPOINT_DIR = "checkpoint";
+    public static final String CL_LONGOPT_RESUME = "resume";
+    public static final String CL_LONGOPT_INCREMENTAL = "incremental";
+    public static final String CL_LONGOPT_VERIFY_EXT_LINKS = "verifyExtLinks";
+    public static final String CL_LONGOPT_MAX_CONCURRENT_LINK_CHECKS = "linkChecks";
+    public static final String CL_LONGOPT_IGNORE_ROBOTS_TXT = "noRobots";
+    public static final String CL_LONGOPT_ROBOTS_TXT_TTL = "robotsTtl";
+    public static final String CL_LONGOPT_SITEMAPS = "sitemaps";
+    public static final String CL_LONGOPT_OUTPUT_FILE = "output";
+    public static final String CL_LONGOPT_OUTPUT_FORMAT = "outputFormat";
+    public static final String CL_LONGOPT_COUNTS_ONLY = "countsOnly";
+    public static final String CL_LONGOPT_BATCH_FILE = "batch";
+    public static final String CL_LONGOPT_BATCH_SITES = "batchSites";
+    public static final String CL_LONGOPT_BATCH_FETCHES = "batchFetches";
+    public static final String CL_LONGOPT_COORDINATOR = "coordinator";
+    public static final String CL_LONGOPT_NUM_WORKERS = "workers";
+    public static final String CL_LONGOPT_WORKER = "worker";
+
+    private static final String CSV_FILE_SUFFIX = ".csv";
 
     private static final Options COMMAND_LINE_OPTIONS;
     static {
@@ -39,6 +127,94 @@ public class CrawldaddyCommandLine {
                                              .desc("Generate verbose output while crawling.").build());
         COMMAND_LINE_OPTIONS.addOption(Option.builder(CL_OPT_CRAWL_REPEATEDLY).longOpt(CL_LONGOPT_CRAWL_REPEATEDLY).hasArg().argName("NUMTIMES")
                                              .desc("Crawl the url NUMTIMES times and compute the average crawl time (used for benchmarking).").build());
+        COMMAND_LINE_OPTIONS.addOption(Option.builder(CL_OPT_PAGE_FETCH_ENGINE).longOpt(CL_LONGOPT_PAGE_FETCH_ENGINE).hasArg().argName("ENGINE")
+                                             .desc("Page fetch engine to use: jsoup (blocking), async (non-blocking) or pooled (blocking, keep-alive pool) (default=" 
+                                                   + CrawldaddyParams.DEFAULT_PAGE_FETCH_ENGINE.name().toLowerCase() + ").").build());
+        COMMAND_LINE_OPTIONS.addOption(Option.builder(CL_OPT_LINK_EXTRACTOR).longOpt(CL_LONGOPT_LINK_EXTRACTOR).hasArg().argName("TYPE")
+                                             .desc("How links are extracted from pages: jsoup (DOM) or streaming (no DOM) (default=" 
+                                                   + CrawldaddyParams.DEFAULT_LINK_EXTRACTOR_TYPE.name().toLowerCase() + ").").build());
+        COMMAND_LINE_OPTIONS.addOption(Option.builder(CL_OPT_EXECUTOR_TYPE).longOpt(CL_LONGOPT_EXECUTOR_TYPE).hasArg().argName("TYPE")
+                                             .desc("Executor to run crawl actions on: forkjoin, fixed or virtual (default=forkjoin).").build());
+        COMMAND_LINE_OPTIONS.addOption(Option.builder(CL_OPT_NUM_THREADS).longOpt(CL_LONGOPT_NUM_THREADS).hasArg().argName("NUM")
+                                             .desc("Number of worker threads for the forkjoin and fixed executors (default=number of cores).").build());
+        COMMAND_LINE_OPTIONS.addOption(Option.builder(CL_OPT_MAX_CONCURRENT_FETCHES).longOpt(CL_LONGOPT_MAX_CONCURRENT_FETCHES).hasArg().argName("MAX")
+                                             .desc("Limit number of page fetches in progress at once for each site crawled (default=" 
+                                                   + CrawldaddyParams.DEFAULT_MAX_CONCURRENT_BLOCKING_FETCHES + ", or " 
+                                                   + CrawldaddyParams.DEFAULT_MAX_CONCURRENT_ASYNC_FETCHES + " with the async engine).").build());
+        COMMAND_LINE_OPTIONS.addOption(Option.builder(CL_OPT_MAX_CONNECTIONS_PER_HOST).longOpt(CL_LONGOPT_MAX_CONNECTIONS_PER_HOST).hasArg().argName("MAX")
+                                             .desc("Limit number of concurrent fetches from any one host (default=" + CrawldaddyParams.DEFAULT_MAX_CONNECTIONS_PER_HOST + ").").build());
+        COMMAND_LINE_OPTIONS.addOption(Option.builder(CL_OPT_MAX_REQUESTS_PER_SECOND_PER_HOST).longOpt(CL_LONGOPT_MAX_REQUESTS_PER_SECOND_PER_HOST).hasArg().argName("RPS")
+                                             .desc("Limit requests per second sent to any one host (default=unlimited).").build());
+        COMMAND_LINE_OPTIONS.addOption(Option.builder(CL_OPT_CONNECTION_POOL_SIZE).longOpt(CL_LONGOPT_CONNECTION_POOL_SIZE).hasArg().argName("MAX")
+                                             .desc("Pooled engine: keep up to MAX connections alive per host (default=same as " 
+                                                   + CL_LONGOPT_MAX_CONNECTIONS_PER_HOST + ").").build());
+        COMMAND_LINE_OPTIONS.addOption(Option.builder(CL_OPT_CONNECTION_IDLE_TIMEOUT).longOpt(CL_LONGOPT_CONNECTION_IDLE_TIMEOUT).hasArg().argName("SECS")
+                                             .desc("Pooled engine: close connections left idle for SECS seconds (default=" 
+                                                   + CrawldaddyParams.DEFAULT_CONNECTION_IDLE_TIMEOUT_SECONDS + ").").build());
+        COMMAND_LINE_OPTIONS.addOption(Option.builder(CL_OPT_DEDUP_MODE).longOpt(CL_LONGOPT_DEDUP_MODE).hasArg().argName("MODE")
+                                             .desc("How visited urls are kept: exact, fingerprint (off-heap) or bloom (probabilistic) (default=exact).").build());
+        COMMAND_LINE_OPTIONS.addOption(Option.builder(CL_OPT_INT_LINKS_FILE).longOpt(CL_LONGOPT_INT_LINKS_FILE).hasArg().argName("FILE")
+                                             .desc("Write all internal links found to FILE while crawling.").build());
+        COMMAND_LINE_OPTIONS.addOption(Option.builder(CL_OPT_NO_URL_NORMALIZATION).longOpt(CL_LONGOPT_NO_URL_NORMALIZATION)
+                                             .desc("Don't normalize links (case, default port, dot segments, percent-encoding) before following them.").build());
+        COMMAND_LINE_OPTIONS.addOption(Option.builder(CL_OPT_SORT_QUERY_PARAMS).longOpt(CL_LONGOPT_SORT_QUERY_PARAMS)
+                                             .desc("Sort query parameters by name when normalizing links.").build());
+        COMMAND_LINE_OPTIONS.addOption(Option.builder(CL_OPT_STRIP_QUERY_PARAMS).longOpt(CL_LONGOPT_STRIP_QUERY_PARAMS).hasArg().argName("PARAMS")
+                                             .desc("Comma-separated query parameters to strip when normalizing links, e.g. utm_*,fbclid.").build());
+        COMMAND_LINE_OPTIONS.addOption(Option.builder(CL_OPT_CONTENT_TYPES).longOpt(CL_LONGOPT_CONTENT_TYPES).hasArg().argName("TYPES")
+                                             .desc("Comma-separated content types of the pages to crawl, e.g. text/html,text/* (default=" 
+                                                   + String.join(",", CrawldaddyParams.DEFAULT_CRAWLED_CONTENT_TYPES) + ").").build());
+        COMMAND_LINE_OPTIONS.addOption(Option.builder(CL_OPT_MAX_BODY_SIZE).longOpt(CL_LONGOPT_MAX_BODY_SIZE).hasArg().argName("KB")
+                                             .desc("Give up on pages larger than KB kilobytes; 0 for no limit (default=" 
+                                                   + CrawldaddyParams.DEFAULT_MAX_BODY_BYTES / 1024 + ").").build());
+        COMMAND_LINE_OPTIONS.addOption(Option.builder(CL_OPT_ALLOWED_EXTENSIONS).longOpt(CL_LONGOPT_ALLOWED_EXTENSIONS).hasArg().argName("EXTS")
+                                             .desc("Comma-separated extensions of the only links to follow, besides links with no extension.").build());
+        COMMAND_LINE_OPTIONS.addOption(Option.builder(CL_OPT_DENIED_EXTENSIONS).longOpt(CL_LONGOPT_DENIED_EXTENSIONS).hasArg().argName("EXTS")
+                                             .desc("Comma-separated extensions of the links not to follow, replacing the default list (" 
+                                                   + String.join(",", CrawldaddyParams.DEFAULT_DENIED_EXTENSIONS) + ").").build());
+        COMMAND_LINE_OPTIONS.addOption(Option.builder(CL_OPT_PAGE_CACHE_DIR).longOpt(CL_LONGOPT_PAGE_CACHE_DIR).hasArg().argName("DIR")
+                                             .desc("Cache fetched pages in DIR and revalidate them with conditional GETs on later crawls.").build());
+        COMMAND_LINE_OPTIONS.addOption(Option.builder(CL_OPT_PAGE_CACHE_SIZE).longOpt(CL_LONGOPT_PAGE_CACHE_SIZE).hasArg().argName("MB")
+                                             .desc("Limit the size of the page cache (default=" + CrawldaddyParams.DEFAULT_PAGE_CACHE_MAX_BYTES / (1024 * 1024) + " MB).").build());
+        COMMAND_LINE_OPTIONS.addOption(Option.builder(CL_OPT_PAGE_CACHE_EVICTION).longOpt(CL_LONGOPT_PAGE_CACHE_EVICTION).hasArg().argName("POLICY")
+                                             .desc("Which pages to evict once the page cache is full: lru or fifo (default=" 
+                                                   + CrawldaddyParams.DEFAULT_PAGE_CACHE_EVICTION_POLICY.name().toLowerCase() + ").").build());
+        COMMAND_LINE_OPTIONS.addOption(Option.builder(CL_OPT_CHECKPOINT_DIR).longOpt(CL_LONGOPT_CHECKPOINT_DIR).hasArg().argName("DIR")
+                                             .desc("Checkpoint the progress of the crawl in DIR, so that it can be resumed if it dies.").build());
+        COMMAND_LINE_OPTIONS.addOption(Option.builder(CL_OPT_RESUME).longOpt(CL_LONGOPT_RESUME)
+                                             .desc("Resume the crawl from its last checkpoint (in the current directory unless --checkpoint is given).").build());
+        COMMAND_LINE_OPTIONS.addOption(Option.builder(CL_OPT_INCREMENTAL).longOpt(CL_LONGOPT_INCREMENTAL).hasArg().argName("FILE")
+                                             .desc("Crawl incrementally: start from the pages found by the previous crawl (kept in FILE) and report what changed.").build());
+        COMMAND_LINE_OPTIONS.addOption(Option.builder(CL_OPT_VERIFY_EXT_LINKS).longOpt(CL_LONGOPT_VERIFY_EXT_LINKS)
+                                             .desc("Check external links (HEAD, falling back to GET) and report the dead ones.").build());
+        COMMAND_LINE_OPTIONS.addOption(Option.builder(CL_OPT_MAX_CONCURRENT_LINK_CHECKS).longOpt(CL_LONGOPT_MAX_CONCURRENT_LINK_CHECKS).hasArg().argName("MAX")
+                                             .desc("Limit number of external links checked at once (default=" + CrawldaddyParams.DEFAULT_MAX_CONCURRENT_LINK_CHECKS + ").").build());
+        COMMAND_LINE_OPTIONS.addOption(Option.builder(CL_OPT_IGNORE_ROBOTS_TXT).longOpt(CL_LONGOPT_IGNORE_ROBOTS_TXT)
+                                             .desc("Ignore robots.txt (obeyed by default): follow disallowed links, and don't honor Crawl-delay.").build());
+        COMMAND_LINE_OPTIONS.addOption(Option.builder(CL_OPT_ROBOTS_TXT_TTL).longOpt(CL_LONGOPT_ROBOTS_TXT_TTL).hasArg().argName("SECS")
+                                             .desc("Fetch the robots.txt of a host again after SECS seconds (default=" + CrawldaddyParams.DEFAULT_ROBOTS_TXT_TTL_SECONDS + ").").build());
+        COMMAND_LINE_OPTIONS.addOption(Option.builder(CL_OPT_SITEMAPS).longOpt(CL_LONGOPT_SITEMAPS)
+                                             .desc("Also queue the pages listed in the site's sitemaps (/sitemap.xml and those in robots.txt) from the start.").build());
+        COMMAND_LINE_OPTIONS.addOption(Option.builder(CL_OPT_OUTPUT_FILE).longOpt(CL_LONGOPT_OUTPUT_FILE).hasArg().argName("FILE")
+                                             .desc("Stream every link and script found to FILE (- for standard output) as the crawl goes.").build());
+        COMMAND_LINE_OPTIONS.addOption(Option.builder(CL_OPT_OUTPUT_FORMAT).longOpt(CL_LONGOPT_OUTPUT_FORMAT).hasArg().argName("FORMAT")
+                                             .desc("Format of the --output file: ndjson or csv (default=csv if FILE ends with .csv, else ndjson).").build());
+        COMMAND_LINE_OPTIONS.addOption(Option.builder(CL_OPT_COUNTS_ONLY).longOpt(CL_LONGOPT_COUNTS_ONLY)
+                                             .desc("Keep only the counts of external links, broken links and scripts in memory, not the urls.").build());
+        COMMAND_LINE_OPTIONS.addOption(Option.builder(CL_OPT_BATCH_FILE).longOpt(CL_LONGOPT_BATCH_FILE).hasArg().argName("FILE")
+                                             .desc("Crawl the site at each seed url in FILE (one per line), several at once, instead of a single url.").build());
+        COMMAND_LINE_OPTIONS.addOption(Option.builder(CL_OPT_BATCH_SITES).longOpt(CL_LONGOPT_BATCH_SITES).hasArg().argName("NUM")
+                                             .desc("Batch mode: crawl NUM sites at once (default=" + CrawldaddyParams.DEFAULT_MAX_CONCURRENT_SITES + ").").build());
+        COMMAND_LINE_OPTIONS.addOption(Option.builder(CL_OPT_BATCH_FETCHES).longOpt(CL_LONGOPT_BATCH_FETCHES).hasArg().argName("MAX")
+                                             .desc("Batch mode: limit number of page fetches in progress at once over all sites (default=" 
+                                                   + CrawldaddyParams.DEFAULT_MAX_CONCURRENT_BLOCKING_FETCHES + ", or " 
+                                                   + CrawldaddyParams.DEFAULT_MAX_CONCURRENT_ASYNC_FETCHES + " with the async engine).").build());
+        COMMAND_LINE_OPTIONS.addOption(Option.builder(CL_OPT_COORDINATOR).longOpt(CL_LONGOPT_COORDINATOR).hasArg().argName("PORT")
+                                             .desc("Distribute the crawl over --workers workers, which connect on PORT (default=" + CrawldaddyCoordinator.DEFAULT_PORT + ").").build());
+        COMMAND_LINE_OPTIONS.addOption(Option.builder(CL_OPT_NUM_WORKERS).longOpt(CL_LONGOPT_NUM_WORKERS).hasArg().argName("NUM")
+                                             .desc("Distributed mode: number of workers to wait for (default=" + CrawldaddyCoordinator.DEFAULT_NUM_WORKERS + ").").build());
+        COMMAND_LINE_OPTIONS.addOption(Option.builder(CL_OPT_WORKER).longOpt(CL_LONGOPT_WORKER).hasArg().argName("HOST:PORT")
+                                             .desc("Crawl a partition of the url for the --coordinator at HOST:PORT.").build());
     }
     
     private CommandLine commandLine;
@@ -50,7 +226,9 @@ public class CrawldaddyCommandLine {
     
     public static void showHelp(PrintWriter out) {
         HelpFormatter help = new HelpFormatter();
-        help.printHelp(out, HelpFormatter.DEFAULT_WIDTH, "crawldaddy [options] url-to-crawl", 
+        help.printHelp(out, HelpFormatter.DEFAULT_WIDTH, "crawldaddy [options] url-to-crawl | crawldaddy [options] --batch FILE"
+                       + "\n       crawldaddy [options] --coordinator PORT --workers NUM url-to-crawl"
+                       + "\n       crawldaddy [options] --worker HOST:PORT url-to-crawl", 
                        "Crawl a website to look for broken links, external script references, etc.",
                        COMMAND_LINE_OPTIONS, HelpFormatter.DEFAULT_LEFT_PAD, HelpFormatter.DEFAULT_DESC_PAD, null);
         out.flush();
@@ -109,6 +287,300 @@ public class CrawldaddyCommandLine {
         return getUnsignedIntValue(commandLine.getOptionValue(CL_OPT_CRAWL_REPEATEDLY), defaultValue);
     }
     
+    public boolean isPageFetchEngineSet() {
+        return this.commandLine.hasOption(CL_OPT_PAGE_FETCH_ENGINE);
+    }
+    
+    public PageFetchEngine getPageFetchEngine(PageFetchEngine defaultValue) {
+        PageFetchEngine engine = PageFetchEngine.fromName(commandLine.getOptionValue(CL_OPT_PAGE_FETCH_ENGINE));
+        return (engine != null ? engine : defaultValue);
+    }
+    
+    public boolean isLinkExtractorTypeSet() {
+        return this.commandLine.hasOption(CL_OPT_LINK_EXTRACTOR);
+    }
+    
+    public LinkExtractorType getLinkExtractorType(LinkExtractorType defaultValue) {
+        LinkExtractorType linkExtractorType = LinkExtractorType.fromName(commandLine.getOptionValue(CL_OPT_LINK_EXTRACTOR));
+        return (linkExtractorType != null ? linkExtractorType : defaultValue);
+    }
+    
+    public boolean isExecutorTypeSet() {
+        return this.commandLine.hasOption(CL_OPT_EXECUTOR_TYPE);
+    }
+    
+    public CrawlExecutorType getExecutorType(CrawlExecutorType defaultValue) {
+        CrawlExecutorType executorType = CrawlExecutorType.fromName(commandLine.getOptionValue(CL_OPT_EXECUTOR_TYPE));
+        return (executorType != null ? executorType : defaultValue);
+    }
+    
+    public boolean isNumThreadsSet() {
+        return this.commandLine.hasOption(CL_OPT_NUM_THREADS);
+    }
+    
+    public int getNumThreads(int defaultValue) {
+        return getUnsignedIntValue(commandLine.getOptionValue(CL_OPT_NUM_THREADS), defaultValue);
+    }
+    
+    public boolean isMaxConcurrentFetchesSet() {
+        return this.commandLine.hasOption(CL_OPT_MAX_CONCURRENT_FETCHES);
+    }
+    
+    public int getMaxConcurrentFetches(int defaultValue) {
+        return getUnsignedIntValue(commandLine.getOptionValue(CL_OPT_MAX_CONCURRENT_FETCHES), defaultValue);
+    }
+    
+    public boolean isMaxConnectionsPerHostSet() {
+        return this.commandLine.hasOption(CL_OPT_MAX_CONNECTIONS_PER_HOST);
+    }
+    
+    public int getMaxConnectionsPerHost(int defaultValue) {
+        return getUnsignedIntValue(commandLine.getOptionValue(CL_OPT_MAX_CONNECTIONS_PER_HOST), defaultValue);
+    }
+    
+    public boolean isMaxRequestsPerSecondPerHostSet() {
+        return this.commandLine.hasOption(CL_OPT_MAX_REQUESTS_PER_SECOND_PER_HOST);
+    }
+    
+    public double getMaxRequestsPerSecondPerHost(double defaultValue) {
+        return getUnsignedDoubleValue(commandLine.getOptionValue(CL_OPT_MAX_REQUESTS_PER_SECOND_PER_HOST), defaultValue);
+    }
+    
+    public boolean isConnectionPoolSizeSet() {
+        return this.commandLine.hasOption(CL_OPT_CONNECTION_POOL_SIZE);
+    }
+    
+    public int getConnectionPoolSize(int defaultValue) {
+        return getUnsignedIntValue(commandLine.getOptionValue(CL_OPT_CONNECTION_POOL_SIZE), defaultValue);
+    }
+    
+    public boolean isConnectionIdleTimeoutSet() {
+        return this.commandLine.hasOption(CL_OPT_CONNECTION_IDLE_TIMEOUT);
+    }
+    
+    public int getConnectionIdleTimeoutSeconds(int defaultValue) {
+        return getUnsignedIntValue(commandLine.getOptionValue(CL_OPT_CONNECTION_IDLE_TIMEOUT), defaultValue);
+    }
+    
+    public boolean isDedupModeSet() {
+        return this.commandLine.hasOption(CL_OPT_DEDUP_MODE);
+    }
+    
+    public DedupMode getDedupMode(DedupMode defaultValue) {
+        DedupMode dedupMode = DedupMode.fromName(commandLine.getOptionValue(CL_OPT_DEDUP_MODE));
+        return (dedupMode != null ? dedupMode : defaultValue);
+    }
+    
+    public File getInternalLinksFile() {
+        String fileName = commandLine.getOptionValue(CL_OPT_INT_LINKS_FILE);
+        return (fileName != null ? new File(fileName) : null);
+    }
+    
+    public boolean isNoUrlNormalizationSet() {
+        return this.commandLine.hasOption(CL_OPT_NO_URL_NORMALIZATION);
+    }
+    
+    public boolean isSortQueryParametersSet() {
+        return this.commandLine.hasOption(CL_OPT_SORT_QUERY_PARAMS);
+    }
+    
+    public List<String> getStrippedQueryParameters() {
+        return getListValue(commandLine.getOptionValue(CL_OPT_STRIP_QUERY_PARAMS));
+    }
+    
+    public boolean isCrawledContentTypesSet() {
+        return this.commandLine.hasOption(CL_OPT_CONTENT_TYPES);
+    }
+    
+    public List<String> getCrawledContentTypes(List<String> defaultValue) {
+        List<String> contentTypes = getListValue(commandLine.getOptionValue(CL_OPT_CONTENT_TYPES));
+        return (!contentTypes.isEmpty() ? contentTypes : defaultValue);
+    }
+    
+    public boolean isMaxBodySizeSet() {
+        return this.commandLine.hasOption(CL_OPT_MAX_BODY_SIZE);
+    }
+    
+    public long getMaxBodyBytes(long defaultValue) {
+        int kilobytes = getUnsignedIntValue(commandLine.getOptionValue(CL_OPT_MAX_BODY_SIZE), -1);
+        return (kilobytes >= 0 ? kilobytes * 1024L : defaultValue);
+    }
+    
+    public List<String> getAllowedExtensions() {
+        return getListValue(commandLine.getOptionValue(CL_OPT_ALLOWED_EXTENSIONS));
+    }
+    
+    public boolean isDeniedExtensionsSet() {
+        return this.commandLine.hasOption(CL_OPT_DENIED_EXTENSIONS);
+    }
+    
+    public List<String> getDeniedExtensions(List<String> defaultValue) {
+        return (isDeniedExtensionsSet() ? getListValue(commandLine.getOptionValue(CL_OPT_DENIED_EXTENSIONS)) : defaultValue);
+    }
+    
+    public File getPageCacheDirectory() {
+        String directoryName = commandLine.getOptionValue(CL_OPT_PAGE_CACHE_DIR);
+        return (directoryName != null ? new File(directoryName) : null);
+    }
+    
+    public boolean isPageCacheMaxBytesSet() {
+        return this.commandLine.hasOption(CL_OPT_PAGE_CACHE_SIZE);
+    }
+    
+    public long getPageCacheMaxBytes(long defaultValue) {
+        int megabytes = getUnsignedIntValue(commandLine.getOptionValue(CL_OPT_PAGE_CACHE_SIZE), 0);
+        return (megabytes > 0 ? megabytes * 1024L * 1024L : defaultValue);
+    }
+    
+    public boolean isPageCacheEvictionPolicySet() {
+        return this.commandLine.hasOption(CL_OPT_PAGE_CACHE_EVICTION);
+    }
+    
+    public CacheEvictionPolicy getPageCacheEvictionPolicy(CacheEvictionPolicy defaultValue) {
+        CacheEvictionPolicy policy = CacheEvictionPolicy.fromName(commandLine.getOptionValue(CL_OPT_PAGE_CACHE_EVICTION));
+        return (policy != null ? policy : defaultValue);
+    }
+    
+    public boolean isResumeSet() {
+        return this.commandLine.hasOption(CL_OPT_RESUME);
+    }
+    
+    public File getCheckpointDirectory() {
+        String directoryName = commandLine.getOptionValue(CL_OPT_CHECKPOINT_DIR);
+        if (directoryName == null) {
+            // Resuming implies checkpointing (in the current directory, by default).
+            return (isResumeSet() ? new File(".") : null);
+        }
+        return new File(directoryName);
+    }
+    
+    public File getPageGraphFile() {
+        String fileName = commandLine.getOptionValue(CL_OPT_INCREMENTAL);
+        return (fileName != null ? new File(fileName) : null);
+    }
+    
+    public boolean isVerifyExternalLinksSet() {
+        return this.commandLine.hasOption(CL_OPT_VERIFY_EXT_LINKS);
+    }
+    
+    public boolean isMaxConcurrentLinkChecksSet() {
+        return this.commandLine.hasOption(CL_OPT_MAX_CONCURRENT_LINK_CHECKS);
+    }
+    
+    public int getMaxConcurrentLinkChecks(int defaultValue) {
+        return getUnsignedIntValue(commandLine.getOptionValue(CL_OPT_MAX_CONCURRENT_LINK_CHECKS), defaultValue);
+    }
+    
+    public boolean isIgnoreRobotsTxtSet() {
+        return this.commandLine.hasOption(CL_OPT_IGNORE_ROBOTS_TXT);
+    }
+    
+    public int getRobotsTxtTtlSeconds(int defaultValue) {
+        return getUnsignedIntValue(commandLine.getOptionValue(CL_OPT_ROBOTS_TXT_TTL), defaultValue);
+    }
+    
+    public boolean isSitemapsSet() {
+        return this.commandLine.hasOption(CL_OPT_SITEMAPS);
+    }
+    
+    public boolean isOutputFileSet() {
+        return this.commandLine.hasOption(CL_OPT_OUTPUT_FILE);
+    }
+    
+    public String getOutputFile(String defaultValue) {
+        return commandLine.getOptionValue(CL_OPT_OUTPUT_FILE, defaultValue);
+    }
+    
+    public boolean isOutputFormatSet() {
+        return this.commandLine.hasOption(CL_OPT_OUTPUT_FORMAT);
+    }
+    
+    public ResultSinkFormat getOutputFormat(ResultSinkFormat defaultValue) {
+        ResultSinkFormat format = ResultSinkFormat.fromName(commandLine.getOptionValue(CL_OPT_OUTPUT_FORMAT));
+        if (format != null) {
+            return format;
+        }
+        String outputFile = getOutputFile("");
+        return (outputFile.toLowerCase().endsWith(CSV_FILE_SUFFIX) ? ResultSinkFormat.CSV : defaultValue);
+    }
+    
+    public boolean isCountsOnlySet() {
+        return this.commandLine.hasOption(CL_OPT_COUNTS_ONLY);
+    }
+    
+    public boolean isBatchFileSet() {
+        return this.commandLine.hasOption(CL_OPT_BATCH_FILE);
+    }
+    
+    public File getBatchFile() {
+        String fileName = commandLine.getOptionValue(CL_OPT_BATCH_FILE);
+        return (fileName != null ? new File(fileName) : null);
+    }
+    
+    public boolean isMaxConcurrentSitesSet() {
+        return this.commandLine.hasOption(CL_OPT_BATCH_SITES);
+    }
+    
+    public int getMaxConcurrentSites(int defaultValue) {
+        return getUnsignedIntValue(commandLine.getOptionValue(CL_OPT_BATCH_SITES), defaultValue);
+    }
+    
+    public boolean isMaxTotalFetchesSet() {
+        return this.commandLine.hasOption(CL_OPT_BATCH_FETCHES);
+    }
+    
+    public int getMaxTotalFetches(int defaultValue) {
+        return getUnsignedIntValue(commandLine.getOptionValue(CL_OPT_BATCH_FETCHES), defaultValue);
+    }
+    
+    public boolean isCoordinatorSet() {
+        return this.commandLine.hasOption(CL_OPT_COORDINATOR);
+    }
+    
+    public int getCoordinatorPort(int defaultValue) {
+        return getUnsignedIntValue(commandLine.getOptionValue(CL_OPT_COORDINATOR), defaultValue);
+    }
+    
+    public int getNumWorkers(int defaultValue) {
+        return getUnsignedIntValue(commandLine.getOptionValue(CL_OPT_NUM_WORKERS), defaultValue);
+    }
+    
+    public boolean isWorkerSet() {
+        return this.commandLine.hasOption(CL_OPT_WORKER);
+    }
+    
+    /**
+     * Returns the address of the coordinator a worker is to connect to (the port defaulting to 
+     * CrawldaddyCoordinator.DEFAULT_PORT), or null if the option isn't set or the host can't be resolved.
+     */
+    public InetSocketAddress getCoordinatorAddress() {
+        String address = commandLine.getOptionValue(CL_OPT_WORKER);
+        if (address == null) {
+            return null;
+        }
+        address = address.trim();
+        int colonIndex = address.lastIndexOf(':');
+        String host = (colonIndex >= 0 ? address.substring(0, colonIndex) : address);
+        int port = (colonIndex >= 0 ? getUnsignedIntValue(address.substring(colonIndex + 1), CrawldaddyCoordinator.DEFAULT_PORT)
+                                    : CrawldaddyCoordinator.DEFAULT_PORT);
+        InetSocketAddress socketAddress = new InetSocketAddress(host, port);
+        return (socketAddress.isUnresolved() ? null : socketAddress);
+    }
+    
+    /* Splits a comma-separated option value, dropping empty items. */
+    private List<String> getListValue(String stringValue) {
+        if (stringValue == null) {
+            return Collections.emptyList();
+        }
+        List<String> items = new ArrayList<>();
+        for (String item : stringValue.split(",")) {
+            if (!item.trim().isEmpty()) {
+                items.add(item.trim());
+            }
+        }
+        return items;
+    }
+    
     private int getUnsignedIntValue(String stringValue, int defaultValue) {
         if (stringValue == null) {
             return defaultValue;
@@ -120,4 +592,16 @@ public class CrawldaddyCommandLine {
             return defaultValue;
         }
     }
+    
+    private double getUnsignedDoubleValue(String stringValue, double defaultValue) {
+        if (stringValue == null) {
+            return defaultValue;
+        }
+        try {
+            double value = Double.parseDouble(stringValue.trim());
+            return ((value >= 0) && !Double.isInfinite(value) ? value : defaultValue);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
 }
@@ -0,0 +1,245 @@
+package org.lagalag.crawldaddy;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.lagalag.crawldaddy.links.ExactVisitedUrlSet;
+
+/**
+ * Coordinates a crawl distributed over several CrawldaddyWorkers (typically each in a process of its own), which
+ * connect to it over TCP. The internal links of the site are split into as many partitions as there are workers
+ * (see CrawlPartitioner); each worker crawls, and keeps track of, the links of its own partition, and sends those
+ * it finds that belong to another partition to the coordinator, which passes them on. The coordinator fetches
+ * nothing itself.
+ * The crawl is done once every worker has reported running out of work after receiving every url sent to it (as
+ * workers report the urls they send before running out of work, no url can still be on its way then). Each worker
+ * then sends its share of the results, which are merged into a single result. Options that name a single file or
+ * directory don't apply to distributed crawls, and are ignored.
+ * The limit on internal links is enforced over the whole crawl: the coordinator leases internal links to the workers 
+ * a share at a time, as they find them, and workers that run out of work hand back those they didn't use. Once none 
+ * are left, the workers asking for more are refused, as soon as no other worker can hand any back.
+ */
+public class CrawldaddyCoordinator implements Closeable {
+    private static final Logger log = LogManager.getLogger();
+
+    public static final int DEFAULT_PORT = 7733;
+    public static final int DEFAULT_NUM_WORKERS = 2;
+
+    private static final int MAX_WAIT_SECS_FOR_WORKERS = 300;
+    /* The number of leases into which each worker's share of the limit on internal links is split. */
+    private static final int LEASES_PER_WORKER = 8;
+
+    private final CrawldaddyParams params;
+    private final ServerSocket serverSocket;
+    private final ClusterChannel[] channels;
+    private final long[] numUrlsSent;
+    private final long[] numUrlsReceivedWhenIdle;
+    private final boolean[] awaitingLease;
+    private final int leaseSize;
+    private int numInternalLinksLeft;
+    private boolean done;
+    private CrawldaddyResult result;
+
+    /**
+     * Starts listening for workers on the given port (0 for any free port).
+     */
+    public CrawldaddyCoordinator(CrawldaddyParams params, int numWorkers, int port) throws IOException {
+        if (numWorkers <= 0) {
+            throw new IllegalArgumentException("Number of workers must be positive: " + numWorkers);
+        }
+        this.params = params;
+        this.serverSocket = new ServerSocket(port);
+        this.channels = new ClusterChannel[numWorkers];
+        this.numUrlsSent = new long[numWorkers];
+        this.numUrlsReceivedWhenIdle = new long[numWorkers];
+        this.awaitingLease = new boolean[numWorkers];
+        this.leaseSize = (int) Math.max(1, params.getMaxInternalLinks() / ((long) numWorkers * LEASES_PER_WORKER));
+        this.numInternalLinksLeft = params.getMaxInternalLinks();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public int getNumWorkers() {
+        return channels.length;
+    }
+
+    /**
+     * Waits for the workers to connect, then crawls the site with them. The coordinator is closed once the crawl
+     * is over.
+     */
+    public CompletableFuture<CrawldaddyResult> crawl() {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return doCrawl();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                close();
+            }
+        });
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            // Nothing more we can do.
+        }
+        for (ClusterChannel channel : channels) {
+            if (channel != null) {
+                channel.close();
+            }
+        }
+    }
+
+    private CrawldaddyResult doCrawl() throws IOException {
+        acceptWorkers();
+        result = new CrawldaddyResult(params.getUrl(), new ExactVisitedUrlSet(), !params.getCountsOnly());
+        Instant startTime = Instant.now();
+        for (int i = 0; i < channels.length; i++) {
+            channels[i].send(ClusterChannel.PARTITION, String.valueOf(i), String.valueOf(channels.length));
+        }
+        // Whichever partition the initial url is in, it isn't an internal link, so any worker can start with it.
+        forwardUrl(0, params.getUrl());
+        ExecutorService receivers = Executors.newFixedThreadPool(channels.length);
+        try {
+            List<CompletableFuture<Void>> workers = new ArrayList<>();
+            for (int i = 0; i < channels.length; i++) {
+                int workerIndex = i;
+                workers.add(CompletableFuture.runAsync(() -> receiveFromWorker(workerIndex), receivers));
+            }
+            CompletableFuture.allOf(workers.toArray(new CompletableFuture<?>[0])).join();
+        } finally {
+            receivers.shutdownNow();
+        }
+        result.setCrawlTime(Duration.between(startTime, Instant.now()));
+        return result;
+    }
+
+    private void acceptWorkers() throws IOException {
+        serverSocket.setSoTimeout((int) TimeUnit.SECONDS.toMillis(MAX_WAIT_SECS_FOR_WORKERS));
+        log.info("Waiting for " + channels.length + " worker(s) on port " + getPort());
+        for (int i = 0; i < channels.length; i++) {
+            Socket socket = serverSocket.accept();
+            ClusterChannel channel = new ClusterChannel(socket, "crawldaddy-coordinator-" + i);
+            synchronized (this) {
+                channels[i] = channel;
+            }
+            String[] hello = channel.receive();
+            if ((hello == null) || !ClusterChannel.HELLO.equals(hello[0]) || (hello.length < 2)) {
+                throw new IOException("Unexpected greeting from worker at " + socket.getRemoteSocketAddress());
+            }
+            if (!params.getUrl().equals(hello[1])) {
+                throw new IOException("Worker at " + socket.getRemoteSocketAddress() + " is crawling " + hello[1]
+                                      + ", not " + params.getUrl());
+            }
+            log.info("Worker " + i + " connected from " + socket.getRemoteSocketAddress());
+        }
+    }
+
+    private void receiveFromWorker(int workerIndex) {
+        try {
+            String[] message;
+            while ((message = channels[workerIndex].receive()) != null) {
+                switch (message[0]) {
+                case ClusterChannel.URL:
+                    forwardUrl(Integer.parseInt(message[1]), message[2]);
+                    break;
+                case ClusterChannel.LEASE_REQUEST:
+                    leaseRequested(workerIndex);
+                    break;
+                case ClusterChannel.IDLE:
+                    workerIdle(workerIndex, Long.parseLong(message[1]), Integer.parseInt(message[2]));
+                    break;
+                case ClusterChannel.END:
+                    log.info("Worker " + workerIndex + " done");
+                    return;
+                default:
+                    if (!ClusterChannel.mergeResult(message, result)) {
+                        log.warn("Unexpected message from worker " + workerIndex + ": " + message[0]);
+                    }
+                    break;
+                }
+            }
+            throw new IOException("Worker " + workerIndex + " closed the connection before the crawl was done");
+        } catch (IOException | RuntimeException e) {
+            // The crawl can't be done without this worker's partition: stop the others too.
+            close();
+            throw (e instanceof IOException ? new UncheckedIOException((IOException) e) : (RuntimeException) e);
+        }
+    }
+
+    private synchronized void forwardUrl(int partitionIndex, String url) {
+        numUrlsSent[partitionIndex]++;
+        channels[partitionIndex].send(ClusterChannel.URL, url);
+    }
+
+    private synchronized void leaseRequested(int workerIndex) {
+        awaitingLease[workerIndex] = true;
+        leaseInternalLinks();
+    }
+
+    private synchronized void workerIdle(int workerIndex, long numUrlsReceived, int numInternalLinksReturned) {
+        numUrlsReceivedWhenIdle[workerIndex] = numUrlsReceived;
+        numInternalLinksLeft += numInternalLinksReturned;
+        leaseInternalLinks();
+        if (done) {
+            return;
+        }
+        for (int i = 0; i < channels.length; i++) {
+            if (numUrlsReceivedWhenIdle[i] != numUrlsSent[i]) {
+                return;
+            }
+        }
+        log.info("All workers idle; collecting the results");
+        done = true;
+        for (ClusterChannel channel : channels) {
+            channel.send(ClusterChannel.DONE);
+        }
+    }
+
+    /* 
+     * Leases internal links to the workers awaiting them, while there are some left. Once there are none, the 
+     * workers still awaiting some are refused, unless another worker is still at work (it may hand some back).
+     */
+    private void leaseInternalLinks() {
+        for (int i = 0; (i < channels.length) && (numInternalLinksLeft > 0); i++) {
+            if (awaitingLease[i]) {
+                int numLinks = Math.min(leaseSize, numInternalLinksLeft);
+                numInternalLinksLeft -= numLinks;
+                awaitingLease[i] = false;
+                channels[i].send(ClusterChannel.LEASE, String.valueOf(numLinks));
+            }
+        }
+        if (numInternalLinksLeft > 0) {
+            return;
+        }
+        for (int i = 0; i < channels.length; i++) {
+            if (!awaitingLease[i] && (numUrlsReceivedWhenIdle[i] != numUrlsSent[i])) {
+                return;
+            }
+        }
+        for (int i = 0; i < channels.length; i++) {
+            if (awaitingLease[i]) {
+                awaitingLease[i] = false;
+                channels[i].send(ClusterChannel.LEASE, "0");
+            }
+        }
+    }
+}
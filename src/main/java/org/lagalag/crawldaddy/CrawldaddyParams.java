@@ -1,22 +1,103 @@
 package org.lagalag.crawldaddy;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.lagalag.crawldaddy.links.DedupMode;
+import org.lagalag.crawldaddy.pages.AsyncPageFetchService;
+import org.lagalag.crawldaddy.pages.CacheEvictionPolicy;
+import org.lagalag.crawldaddy.pages.ContentPolicy;
+import org.lagalag.crawldaddy.pages.ExternalLinkVerifier;
+import org.lagalag.crawldaddy.pages.LinkExtractorType;
+import org.lagalag.crawldaddy.pages.PageFetchEngine;
+import org.lagalag.crawldaddy.pages.PooledPageFetchService;
+import org.lagalag.crawldaddy.pages.RobotsTxtCache;
+import org.lagalag.crawldaddy.sinks.ResultSinkFormat;
+import org.lagalag.crawldaddy.util.ExtensionFilter;
 import org.lagalag.crawldaddy.util.URLUtils;
 
 /**
  * Class that encapsulates parameters used to control the crawler internals.
  *
  */
-public class CrawldaddyParams {
+public class CrawldaddyParams implements Cloneable {
     public static final int DEFAULT_MAX_INTERNAL_LINKS = 3000;
     public static final boolean DEFAULT_SHOW_VISITED_LINK = true;
     public static final int DEFAULT_CRAWL_REPETITIONS = 1;
     public static final int MAX_CRAWL_REPETITIONS = 10;
+    public static final PageFetchEngine DEFAULT_PAGE_FETCH_ENGINE = PageFetchEngine.JSOUP;
+    public static final LinkExtractorType DEFAULT_LINK_EXTRACTOR_TYPE = LinkExtractorType.JSOUP;
+    public static final CrawlExecutorType DEFAULT_EXECUTOR_TYPE = CrawlExecutorType.FORK_JOIN;
+    public static final int DEFAULT_NUM_THREADS = Runtime.getRuntime().availableProcessors();
+    public static final int DEFAULT_MAX_CONCURRENT_BLOCKING_FETCHES = 256;
+    public static final int DEFAULT_MAX_CONCURRENT_ASYNC_FETCHES = AsyncPageFetchService.DEFAULT_MAX_CONNECTIONS;
+    public static final int DEFAULT_MAX_CONCURRENT_SITES = 16;
+    public static final int DEFAULT_FRONTIER_MEMORY_CAPACITY = 10000;
+    public static final DedupMode DEFAULT_DEDUP_MODE = DedupMode.EXACT;
+    public static final long DEFAULT_DEDUP_MEMORY_BUDGET_BYTES = 64L * 1024 * 1024;
+    public static final double DEFAULT_DEDUP_FALSE_POSITIVE_RATE = 0.01;
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 16;
+    public static final double DEFAULT_MAX_REQUESTS_PER_SECOND_PER_HOST = 0.0;
+    public static final int DEFAULT_CONNECTION_IDLE_TIMEOUT_SECONDS = PooledPageFetchService.DEFAULT_IDLE_TIMEOUT_SECONDS;
+    public static final boolean DEFAULT_NORMALIZE_URLS = true;
+    public static final long DEFAULT_PAGE_CACHE_MAX_BYTES = 256L * 1024 * 1024;
+    public static final CacheEvictionPolicy DEFAULT_PAGE_CACHE_EVICTION_POLICY = CacheEvictionPolicy.LRU;
+    public static final int DEFAULT_CHECKPOINT_INTERVAL_SECONDS = 10;
+    public static final int DEFAULT_MAX_CONCURRENT_LINK_CHECKS = ExternalLinkVerifier.DEFAULT_MAX_CONCURRENT_CHECKS;
+    public static final boolean DEFAULT_OBEY_ROBOTS_TXT = true;
+    public static final int DEFAULT_ROBOTS_TXT_TTL_SECONDS = (int) RobotsTxtCache.DEFAULT_TTL_SECONDS;
+    public static final ResultSinkFormat DEFAULT_RESULT_FORMAT = ResultSinkFormat.NDJSON;
+    public static final List<String> DEFAULT_CRAWLED_CONTENT_TYPES = ContentPolicy.DEFAULT_CONTENT_TYPES;
+    public static final long DEFAULT_MAX_BODY_BYTES = ContentPolicy.DEFAULT_MAX_BODY_BYTES;
+    public static final List<String> DEFAULT_DENIED_EXTENSIONS = ExtensionFilter.DEFAULT_DENIED_EXTENSIONS;
     
     private String url;
     private String internalLinksScope;
     private int maxInternalLinks = DEFAULT_MAX_INTERNAL_LINKS;
     private boolean showVisitedLink = DEFAULT_SHOW_VISITED_LINK;
     private int numRepetitions = DEFAULT_CRAWL_REPETITIONS;
+    private PageFetchEngine pageFetchEngine = DEFAULT_PAGE_FETCH_ENGINE;
+    private LinkExtractorType linkExtractorType = DEFAULT_LINK_EXTRACTOR_TYPE;
+    private CrawlExecutorType executorType = DEFAULT_EXECUTOR_TYPE;
+    private int numThreads = DEFAULT_NUM_THREADS;
+    private int maxConcurrentFetches;
+    private int maxTotalFetches;
+    private int maxConcurrentSites = DEFAULT_MAX_CONCURRENT_SITES;
+    private int maxConnectionsPerHost = DEFAULT_MAX_CONNECTIONS_PER_HOST;
+    private double maxRequestsPerSecondPerHost = DEFAULT_MAX_REQUESTS_PER_SECOND_PER_HOST;
+    private int connectionPoolSize;
+    private int connectionIdleTimeoutSeconds = DEFAULT_CONNECTION_IDLE_TIMEOUT_SECONDS;
+    private int frontierMemoryCapacity = DEFAULT_FRONTIER_MEMORY_CAPACITY;
+    private File frontierSpillDirectory;
+    private DedupMode dedupMode = DEFAULT_DEDUP_MODE;
+    private long dedupMemoryBudgetBytes = DEFAULT_DEDUP_MEMORY_BUDGET_BYTES;
+    private double dedupFalsePositiveRate = DEFAULT_DEDUP_FALSE_POSITIVE_RATE;
+    private boolean dedupBloomFront;
+    private File internalLinksFile;
+    private boolean normalizeUrls = DEFAULT_NORMALIZE_URLS;
+    private boolean sortQueryParameters;
+    private List<String> strippedQueryParameters = Collections.emptyList();
+    private List<String> crawledContentTypes = DEFAULT_CRAWLED_CONTENT_TYPES;
+    private long maxBodyBytes = DEFAULT_MAX_BODY_BYTES;
+    private List<String> allowedExtensions = Collections.emptyList();
+    private List<String> deniedExtensions = DEFAULT_DENIED_EXTENSIONS;
+    private File pageCacheDirectory;
+    private long pageCacheMaxBytes = DEFAULT_PAGE_CACHE_MAX_BYTES;
+    private CacheEvictionPolicy pageCacheEvictionPolicy = DEFAULT_PAGE_CACHE_EVICTION_POLICY;
+    private File checkpointDirectory;
+    private int checkpointIntervalSeconds = DEFAULT_CHECKPOINT_INTERVAL_SECONDS;
+    private boolean resume;
+    private File pageGraphFile;
+    private boolean verifyExternalLinks;
+    private int maxConcurrentLinkChecks = DEFAULT_MAX_CONCURRENT_LINK_CHECKS;
+    private boolean obeyRobotsTxt = DEFAULT_OBEY_ROBOTS_TXT;
+    private int robotsTxtTtlSeconds = DEFAULT_ROBOTS_TXT_TTL_SECONDS;
+    private boolean seedFromSitemaps;
+    private String resultFile;
+    private ResultSinkFormat resultFormat = DEFAULT_RESULT_FORMAT;
+    private boolean countsOnly;
     
     public CrawldaddyParams(String url) {
         this.url = url;
@@ -28,6 +109,36 @@ public class CrawldaddyParams {
         return url;
     }
     
+    /**
+     * Returns a copy of these params for crawling the given url instead, with internal links scoped to its host 
+     * (as in a batch crawl, where the same params apply to each site).
+     */
+    public CrawldaddyParams withUrl(String url) {
+        CrawldaddyParams params;
+        try {
+            params = (CrawldaddyParams) clone();
+        } catch (CloneNotSupportedException e) {
+            throw new AssertionError(e);
+        }
+        params.url = url;
+        params.internalLinksScope = URLUtils.getHost(url);
+        return params;
+    }
+    
+    /**
+     * As withUrl(), but without the options that name a single file or directory (result file, checkpoints, 
+     * incremental page graph, internal links file), which would clash between crawls run at the same time.
+     */
+    CrawldaddyParams withUrlAndNoFiles(String url) {
+        CrawldaddyParams params = withUrl(url);
+        params.resultFile = null;
+        params.checkpointDirectory = null;
+        params.resume = false;
+        params.pageGraphFile = null;
+        params.internalLinksFile = null;
+        return params;
+    }
+    
     public String getInternalLinksScope() {
         return internalLinksScope;
     }
@@ -61,4 +172,501 @@ public class CrawldaddyParams {
             this.numRepetitions = numRepetitions;
         }
     }
-}
\ No newline at end of file
+    
+    public PageFetchEngine getPageFetchEngine() {
+        return pageFetchEngine;
+    }
+    
+    public void setPageFetchEngine(PageFetchEngine pageFetchEngine) {
+        if (pageFetchEngine != null) {
+            this.pageFetchEngine = pageFetchEngine;
+        }
+    }
+    
+    /**
+     * Returns how links are extracted from fetched pages: from a Jsoup Document, or by scanning the page as a stream.
+     */
+    public LinkExtractorType getLinkExtractorType() {
+        return linkExtractorType;
+    }
+    
+    public void setLinkExtractorType(LinkExtractorType linkExtractorType) {
+        if (linkExtractorType != null) {
+            this.linkExtractorType = linkExtractorType;
+        }
+    }
+    
+    public CrawlExecutorType getExecutorType() {
+        return executorType;
+    }
+    
+    public void setExecutorType(CrawlExecutorType executorType) {
+        if (executorType != null) {
+            this.executorType = executorType;
+        }
+    }
+    
+    /**
+     * Returns the parallelism of the ForkJoinPool, or the size of the fixed thread pool, that crawl actions are run on.
+     * Not used for virtual threads.
+     */
+    public int getNumThreads() {
+        return numThreads;
+    }
+    
+    public void setNumThreads(int numThreads) {
+        if (numThreads > 0) {
+            this.numThreads = numThreads;
+        }
+    }
+    
+    /**
+     * Returns the maximum number of page fetches that may be in progress (or waiting on a busy host) at any one time.
+     * Unless set explicitly, this depends on whether the page fetch engine blocks or not.
+     */
+    public int getMaxConcurrentFetches() {
+        if (maxConcurrentFetches > 0) {
+            return maxConcurrentFetches;
+        }
+        return (pageFetchEngine == PageFetchEngine.ASYNC ? DEFAULT_MAX_CONCURRENT_ASYNC_FETCHES 
+                                                         : DEFAULT_MAX_CONCURRENT_BLOCKING_FETCHES);
+    }
+    
+    public void setMaxConcurrentFetches(int maxConcurrentFetches) {
+        if (maxConcurrentFetches > 0) {
+            this.maxConcurrentFetches = maxConcurrentFetches;
+        }
+    }
+    
+    /**
+     * Returns the maximum number of page fetches that may be in progress at any one time over all the sites of a 
+     * batch crawl (getMaxConcurrentFetches() being the limit for each site). Unless set explicitly, this defaults to 
+     * the same as getMaxConcurrentFetches() would.
+     */
+    public int getMaxTotalFetches() {
+        if (maxTotalFetches > 0) {
+            return maxTotalFetches;
+        }
+        return (pageFetchEngine == PageFetchEngine.ASYNC ? DEFAULT_MAX_CONCURRENT_ASYNC_FETCHES 
+                                                         : DEFAULT_MAX_CONCURRENT_BLOCKING_FETCHES);
+    }
+    
+    public void setMaxTotalFetches(int maxTotalFetches) {
+        if (maxTotalFetches > 0) {
+            this.maxTotalFetches = maxTotalFetches;
+        }
+    }
+    
+    /**
+     * Returns the maximum number of sites crawled at once in a batch crawl.
+     */
+    public int getMaxConcurrentSites() {
+        return maxConcurrentSites;
+    }
+    
+    public void setMaxConcurrentSites(int maxConcurrentSites) {
+        if (maxConcurrentSites > 0) {
+            this.maxConcurrentSites = maxConcurrentSites;
+        }
+    }
+    
+    public int getMaxConnectionsPerHost() {
+        return maxConnectionsPerHost;
+    }
+    
+    public void setMaxConnectionsPerHost(int maxConnectionsPerHost) {
+        if (maxConnectionsPerHost > 0) {
+            this.maxConnectionsPerHost = maxConnectionsPerHost;
+        }
+    }
+    
+    /**
+     * Returns the maximum rate at which requests are sent to any single host, or 0 if the rate is not limited.
+     */
+    public double getMaxRequestsPerSecondPerHost() {
+        return maxRequestsPerSecondPerHost;
+    }
+    
+    public void setMaxRequestsPerSecondPerHost(double maxRequestsPerSecondPerHost) {
+        if (maxRequestsPerSecondPerHost >= 0) {
+            this.maxRequestsPerSecondPerHost = maxRequestsPerSecondPerHost;
+        }
+    }
+    
+    /**
+     * Returns the maximum number of connections the pooled page fetch engine keeps to any single host. Unless set 
+     * explicitly, this is the maximum number of concurrent fetches from a host, as more could never be used at once.
+     */
+    public int getConnectionPoolSize() {
+        return (connectionPoolSize > 0 ? connectionPoolSize : maxConnectionsPerHost);
+    }
+    
+    public void setConnectionPoolSize(int connectionPoolSize) {
+        if (connectionPoolSize > 0) {
+            this.connectionPoolSize = connectionPoolSize;
+        }
+    }
+    
+    /**
+     * Returns the time after which the pooled page fetch engine closes an idle connection.
+     */
+    public int getConnectionIdleTimeoutSeconds() {
+        return connectionIdleTimeoutSeconds;
+    }
+    
+    public void setConnectionIdleTimeoutSeconds(int connectionIdleTimeoutSeconds) {
+        if (connectionIdleTimeoutSeconds > 0) {
+            this.connectionIdleTimeoutSeconds = connectionIdleTimeoutSeconds;
+        }
+    }
+    
+    /**
+     * Returns the maximum number of urls waiting to be crawled that are kept in memory; the rest are kept on disk.
+     */
+    public int getFrontierMemoryCapacity() {
+        return frontierMemoryCapacity;
+    }
+    
+    public void setFrontierMemoryCapacity(int frontierMemoryCapacity) {
+        if (frontierMemoryCapacity > 0) {
+            this.frontierMemoryCapacity = frontierMemoryCapacity;
+        }
+    }
+    
+    /**
+     * Returns the directory in which urls that don't fit in memory are kept, or null for the default temp directory.
+     */
+    public File getFrontierSpillDirectory() {
+        return frontierSpillDirectory;
+    }
+    
+    public void setFrontierSpillDirectory(File frontierSpillDirectory) {
+        this.frontierSpillDirectory = frontierSpillDirectory;
+    }
+    
+    public DedupMode getDedupMode() {
+        return dedupMode;
+    }
+    
+    public void setDedupMode(DedupMode dedupMode) {
+        if (dedupMode != null) {
+            this.dedupMode = dedupMode;
+        }
+    }
+    
+    /**
+     * Returns the maximum number of bytes used to keep track of visited urls (FINGERPRINT and BLOOM modes only).
+     */
+    public long getDedupMemoryBudgetBytes() {
+        return dedupMemoryBudgetBytes;
+    }
+    
+    public void setDedupMemoryBudgetBytes(long dedupMemoryBudgetBytes) {
+        if (dedupMemoryBudgetBytes > 0) {
+            this.dedupMemoryBudgetBytes = dedupMemoryBudgetBytes;
+        }
+    }
+    
+    /**
+     * Returns the target false-positive rate of the Bloom filter used in BLOOM mode (and, if enabled, of the 
+     * Bloom filter front in FINGERPRINT mode).
+     */
+    public double getDedupFalsePositiveRate() {
+        return dedupFalsePositiveRate;
+    }
+    
+    public void setDedupFalsePositiveRate(double dedupFalsePositiveRate) {
+        if ((dedupFalsePositiveRate > 0) && (dedupFalsePositiveRate < 1)) {
+            this.dedupFalsePositiveRate = dedupFalsePositiveRate;
+        }
+    }
+    
+    public boolean getDedupBloomFront() {
+        return dedupBloomFront;
+    }
+    
+    public void setDedupBloomFront(boolean dedupBloomFront) {
+        this.dedupBloomFront = dedupBloomFront;
+    }
+    
+    /**
+     * Returns the file to which every internal link found is written as the crawl runs, or null for none.
+     */
+    public File getInternalLinksFile() {
+        return internalLinksFile;
+    }
+    
+    public void setInternalLinksFile(File internalLinksFile) {
+        this.internalLinksFile = internalLinksFile;
+    }
+    
+    /**
+     * Returns true if links are normalized (see UrlNormalizer) before checking whether they have been visited.
+     */
+    public boolean getNormalizeUrls() {
+        return normalizeUrls;
+    }
+    
+    public void setNormalizeUrls(boolean normalizeUrls) {
+        this.normalizeUrls = normalizeUrls;
+    }
+    
+    public boolean getSortQueryParameters() {
+        return sortQueryParameters;
+    }
+    
+    public void setSortQueryParameters(boolean sortQueryParameters) {
+        this.sortQueryParameters = sortQueryParameters;
+    }
+    
+    /**
+     * Returns the names of the query parameters (e.g. tracking parameters) removed from links when they are 
+     * normalized; a name ending in '*' matches any name with the same prefix.
+     */
+    public List<String> getStrippedQueryParameters() {
+        return strippedQueryParameters;
+    }
+    
+    public void setStrippedQueryParameters(List<String> strippedQueryParameters) {
+        if (strippedQueryParameters != null) {
+            this.strippedQueryParameters = Collections.unmodifiableList(new ArrayList<>(strippedQueryParameters));
+        }
+    }
+    
+    /**
+     * Returns the (mime) content types of the pages to crawl; responses of any other type are aborted before their 
+     * body is downloaded. A type ending in "/*" stands for all its subtypes.
+     */
+    public List<String> getCrawledContentTypes() {
+        return crawledContentTypes;
+    }
+    
+    public void setCrawledContentTypes(List<String> crawledContentTypes) {
+        if ((crawledContentTypes != null) && !crawledContentTypes.isEmpty()) {
+            this.crawledContentTypes = Collections.unmodifiableList(new ArrayList<>(crawledContentTypes));
+        }
+    }
+    
+    /**
+     * Returns the size of the largest page body to download, or 0 if there is no limit.
+     */
+    public long getMaxBodyBytes() {
+        return maxBodyBytes;
+    }
+    
+    public void setMaxBodyBytes(long maxBodyBytes) {
+        if (maxBodyBytes >= 0) {
+            this.maxBodyBytes = maxBodyBytes;
+        }
+    }
+    
+    /**
+     * Returns the policy that decides, from the response headers and the start of the body, which pages to download.
+     */
+    public ContentPolicy getContentPolicy() {
+        if (crawledContentTypes.equals(DEFAULT_CRAWLED_CONTENT_TYPES) && (maxBodyBytes == DEFAULT_MAX_BODY_BYTES)) {
+            return ContentPolicy.DEFAULT;
+        }
+        return new ContentPolicy(crawledContentTypes, maxBodyBytes);
+    }
+    
+    /**
+     * Returns the only extensions of the links to follow (besides links with no extension); empty to follow links with 
+     * any extension that isn't denied.
+     */
+    public List<String> getAllowedExtensions() {
+        return allowedExtensions;
+    }
+    
+    public void setAllowedExtensions(List<String> allowedExtensions) {
+        if (allowedExtensions != null) {
+            this.allowedExtensions = Collections.unmodifiableList(new ArrayList<>(allowedExtensions));
+        }
+    }
+    
+    /**
+     * Returns the extensions of the links not to follow, unless extensions are allowed explicitly.
+     */
+    public List<String> getDeniedExtensions() {
+        return deniedExtensions;
+    }
+    
+    public void setDeniedExtensions(List<String> deniedExtensions) {
+        if (deniedExtensions != null) {
+            this.deniedExtensions = Collections.unmodifiableList(new ArrayList<>(deniedExtensions));
+        }
+    }
+    
+    /**
+     * Returns the directory in which fetched pages are cached (and revalidated with conditional GETs on later 
+     * crawls), or null for no page cache.
+     */
+    public File getPageCacheDirectory() {
+        return pageCacheDirectory;
+    }
+    
+    public void setPageCacheDirectory(File pageCacheDirectory) {
+        this.pageCacheDirectory = pageCacheDirectory;
+    }
+    
+    public long getPageCacheMaxBytes() {
+        return pageCacheMaxBytes;
+    }
+    
+    public void setPageCacheMaxBytes(long pageCacheMaxBytes) {
+        if (pageCacheMaxBytes > 0) {
+            this.pageCacheMaxBytes = pageCacheMaxBytes;
+        }
+    }
+    
+    public CacheEvictionPolicy getPageCacheEvictionPolicy() {
+        return pageCacheEvictionPolicy;
+    }
+    
+    public void setPageCacheEvictionPolicy(CacheEvictionPolicy pageCacheEvictionPolicy) {
+        if (pageCacheEvictionPolicy != null) {
+            this.pageCacheEvictionPolicy = pageCacheEvictionPolicy;
+        }
+    }
+    
+    /**
+     * Returns the directory in which the progress of the crawl is checkpointed, or null for no checkpoints.
+     */
+    public File getCheckpointDirectory() {
+        return checkpointDirectory;
+    }
+    
+    public void setCheckpointDirectory(File checkpointDirectory) {
+        this.checkpointDirectory = checkpointDirectory;
+    }
+    
+    /**
+     * Returns the maximum number of seconds of progress that can be lost if the crawl dies.
+     */
+    public int getCheckpointIntervalSeconds() {
+        return checkpointIntervalSeconds;
+    }
+    
+    public void setCheckpointIntervalSeconds(int checkpointIntervalSeconds) {
+        if (checkpointIntervalSeconds >= 0) {
+            this.checkpointIntervalSeconds = checkpointIntervalSeconds;
+        }
+    }
+    
+    /**
+     * Returns true if the crawl should resume from the last checkpoint in the checkpoint directory (if any).
+     */
+    public boolean getResume() {
+        return resume;
+    }
+    
+    public void setResume(boolean resume) {
+        this.resume = resume;
+    }
+    
+    /**
+     * Returns the file in which an incremental crawl keeps the pages it found (and from which it loads those found 
+     * by the previous one), or null if the crawl is not incremental.
+     */
+    public File getPageGraphFile() {
+        return pageGraphFile;
+    }
+    
+    public void setPageGraphFile(File pageGraphFile) {
+        this.pageGraphFile = pageGraphFile;
+    }
+    
+    /**
+     * Returns true if external links are checked (in the background, as the crawl goes) to find the dead ones.
+     */
+    public boolean getVerifyExternalLinks() {
+        return verifyExternalLinks;
+    }
+    
+    public void setVerifyExternalLinks(boolean verifyExternalLinks) {
+        this.verifyExternalLinks = verifyExternalLinks;
+    }
+    
+    /**
+     * Returns the maximum number of external links checked at once (on top of the fetches of the crawl itself).
+     */
+    public int getMaxConcurrentLinkChecks() {
+        return maxConcurrentLinkChecks;
+    }
+    
+    public void setMaxConcurrentLinkChecks(int maxConcurrentLinkChecks) {
+        if (maxConcurrentLinkChecks > 0) {
+            this.maxConcurrentLinkChecks = maxConcurrentLinkChecks;
+        }
+    }
+    
+    /**
+     * Returns true if internal links disallowed by the site's robots.txt are skipped, and its Crawl-delay honored
+     * (the default).
+     */
+    public boolean getObeyRobotsTxt() {
+        return obeyRobotsTxt;
+    }
+    
+    public void setObeyRobotsTxt(boolean obeyRobotsTxt) {
+        this.obeyRobotsTxt = obeyRobotsTxt;
+    }
+    
+    /**
+     * Returns how long the robots.txt of a host is kept before being fetched again.
+     */
+    public int getRobotsTxtTtlSeconds() {
+        return robotsTxtTtlSeconds;
+    }
+    
+    public void setRobotsTxtTtlSeconds(int robotsTxtTtlSeconds) {
+        if (robotsTxtTtlSeconds > 0) {
+            this.robotsTxtTtlSeconds = robotsTxtTtlSeconds;
+        }
+    }
+    
+    /**
+     * Returns true if the crawl is seeded with the pages listed in the site's sitemaps, as well as starting at its url.
+     */
+    public boolean getSeedFromSitemaps() {
+        return seedFromSitemaps;
+    }
+    
+    public void setSeedFromSitemaps(boolean seedFromSitemaps) {
+        this.seedFromSitemaps = seedFromSitemaps;
+    }
+    
+    /**
+     * Returns the file to which links and scripts are streamed as they are found ("-" for the standard output), or 
+     * null if they aren't.
+     */
+    public String getResultFile() {
+        return resultFile;
+    }
+    
+    public void setResultFile(String resultFile) {
+        this.resultFile = resultFile;
+    }
+    
+    public ResultSinkFormat getResultFormat() {
+        return resultFormat;
+    }
+    
+    public void setResultFormat(ResultSinkFormat resultFormat) {
+        if (resultFormat != null) {
+            this.resultFormat = resultFormat;
+        }
+    }
+    
+    /**
+     * Returns true if the result of the crawl keeps only the counts of the external links, broken links and scripts 
+     * found, rather than the urls themselves.
+     */
+    public boolean getCountsOnly() {
+        return countsOnly;
+    }
+    
+    public void setCountsOnly(boolean countsOnly) {
+        this.countsOnly = countsOnly;
+    }
+}
@@ -2,13 +2,23 @@ package org.lagalag.crawldaddy;
 
 import java.net.HttpURLConnection;
 import java.time.Duration;
-import java.util.Collections;
 import java.util.List;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
+import org.lagalag.crawldaddy.links.ExactSeenUrlSet;
+import org.lagalag.crawldaddy.links.ExactVisitedUrlSet;
+import org.lagalag.crawldaddy.links.FingerprintSeenUrlSet;
+import org.lagalag.crawldaddy.links.SeenUrlSet;
+import org.lagalag.crawldaddy.links.VisitedUrlSet;
+import org.lagalag.crawldaddy.pages.ConnectionPoolStats;
+import org.lagalag.crawldaddy.pages.FetchAbortReason;
+import org.lagalag.crawldaddy.pages.FetchTimingStats;
 import org.lagalag.crawldaddy.pages.PageFetchException;
+import org.lagalag.crawldaddy.pages.TransferStats;
+import org.lagalag.crawldaddy.sinks.ResultSink;
+import org.lagalag.crawldaddy.sinks.ResultType;
 
 /**
  * Holds the results of the web crawl.
@@ -17,14 +27,90 @@ public class CrawldaddyResult {
     private String url;
     private int httpStatusCode;
     private PageFetchException pageFetchException;
-    private ConcurrentMap<String,Boolean> intLinks = new ConcurrentHashMap<>();
-    private Set<String> extLinks = ConcurrentHashMap.newKeySet();
-    private Set<String> brokenLinks = ConcurrentHashMap.newKeySet();
-    private Set<String> externalScripts = ConcurrentHashMap.newKeySet();
+    private VisitedUrlSet intLinks;
+    private boolean urlsRetained;
+    private SeenUrlSet extLinks;
+    private SeenUrlSet brokenLinks;
+    private SeenUrlSet deadExternalLinks;
+    private SeenUrlSet externalScripts;
+    private SeenUrlSet duplicateUrlVariants;
+    private SeenUrlSet disallowedLinks;
+    private volatile ResultSink resultSink;
+    private AtomicInteger pagesFetched = new AtomicInteger();
+    private AtomicInteger pagesFromCache = new AtomicInteger();
+    private final AtomicIntegerArray fetchesAborted = new AtomicIntegerArray(FetchAbortReason.values().length);
+    private int pagesFromCheckpoint;
+    private final AtomicInteger unretainedInternalLinks = new AtomicInteger();
+    private final AtomicInteger sitemapLinks = new AtomicInteger();
+    private CrawlDiff crawlDiff;
+    private final FetchTimingStats fetchTimings = new FetchTimingStats();
+    private final TransferStats transferStats = new TransferStats();
+    private ConnectionPoolStats connectionPoolStats;
     private Duration crawlTime;
     
     public CrawldaddyResult(String url) {
+        this(url, new ExactVisitedUrlSet());
+    }
+    
+    public CrawldaddyResult(String url, VisitedUrlSet intLinks) {
+        this(url, intLinks, true);
+    }
+    
+    /**
+     * @param urlsRetained false to keep only the counts of the external links, broken links and scripts found (the 
+     *        urls can still be streamed to a ResultSink); the internal links are kept as intLinks does.
+     */
+    public CrawldaddyResult(String url, VisitedUrlSet intLinks, boolean urlsRetained) {
         this.url = url;
+        this.intLinks = intLinks;
+        this.urlsRetained = urlsRetained;
+        this.extLinks = createUrlSet(urlsRetained);
+        this.brokenLinks = createUrlSet(urlsRetained);
+        this.deadExternalLinks = createUrlSet(urlsRetained);
+        this.externalScripts = createUrlSet(urlsRetained);
+        this.duplicateUrlVariants = createUrlSet(urlsRetained);
+        this.disallowedLinks = createUrlSet(urlsRetained);
+    }
+    
+    private static SeenUrlSet createUrlSet(boolean urlsRetained) {
+        return (urlsRetained ? new ExactSeenUrlSet() : new FingerprintSeenUrlSet());
+    }
+    
+    /**
+     * Sets the sink to which each link and script is streamed the first time it is added; null for none.
+     */
+    public void setResultSink(ResultSink resultSink) {
+        this.resultSink = resultSink;
+    }
+    
+    /**
+     * Returns true if the external links, broken links and scripts found are kept, false if only their counts are 
+     * (in which case their getters return empty sets).
+     */
+    public boolean isUrlsRetained() {
+        return urlsRetained;
+    }
+    
+    private boolean addAndEmit(SeenUrlSet urls, ResultType type, String url) {
+        if (!urls.add(url)) {
+            return false;
+        }
+        emit(type, url);
+        return true;
+    }
+    
+    private void emit(ResultType type, String url) {
+        ResultSink sink = resultSink;
+        if (sink != null) {
+            sink.accept(type, url);
+        }
+    }
+    
+    /**
+     * Called once the crawl is over, to release any resources held while crawling.
+     */
+    void crawlFinished() {
+        intLinks.close();
     }
     
     public void setCrawlTime(Duration crawlTime) {
@@ -35,6 +121,119 @@ public class CrawldaddyResult {
         return this.crawlTime;
     }
     
+    public void incrementPagesFetched() {
+        pagesFetched.incrementAndGet();
+    }
+    
+    /**
+     * Adds the pages fetched by a partition of a distributed crawl (likewise for the add methods that follow).
+     */
+    void addPagesFetched(int numPages) {
+        pagesFetched.addAndGet(numPages);
+    }
+    
+    public int getPagesFetched() {
+        return pagesFetched.get();
+    }
+    
+    public void incrementPagesFromCache() {
+        pagesFromCache.incrementAndGet();
+    }
+    
+    void addPagesFromCache(int numPages) {
+        pagesFromCache.addAndGet(numPages);
+    }
+    
+    /**
+     * Returns the number of pages fetched that had not changed since they were cached, and were thus neither 
+     * downloaded nor parsed again.
+     */
+    public int getPagesFromCache() {
+        return pagesFromCache.get();
+    }
+    
+    public void incrementFetchesAborted(FetchAbortReason reason) {
+        fetchesAborted.incrementAndGet(reason.ordinal());
+    }
+    
+    void addFetchesAborted(FetchAbortReason reason, int numFetches) {
+        fetchesAborted.addAndGet(reason.ordinal(), numFetches);
+    }
+    
+    /**
+     * Returns the number of fetches given up on for the given reason, before the body was parsed (or downloaded).
+     * These are not counted as pages fetched.
+     */
+    public int getFetchesAborted(FetchAbortReason reason) {
+        return fetchesAborted.get(reason.ordinal());
+    }
+    
+    public int getFetchesAborted() {
+        int numFetchesAborted = 0;
+        for (FetchAbortReason reason : FetchAbortReason.values()) {
+            numFetchesAborted += getFetchesAborted(reason);
+        }
+        return numFetchesAborted;
+    }
+    
+    public void setPagesFromCheckpoint(int pagesFromCheckpoint) {
+        this.pagesFromCheckpoint = pagesFromCheckpoint;
+    }
+    
+    /**
+     * Returns the number of pages crawled before the crawl was resumed from a checkpoint (they are not included in 
+     * getPagesFetched()).
+     */
+    public int getPagesFromCheckpoint() {
+        return pagesFromCheckpoint;
+    }
+    
+    void setCrawlDiff(CrawlDiff crawlDiff) {
+        this.crawlDiff = crawlDiff;
+    }
+    
+    /**
+     * Returns how the links changed since the previous crawl, or null if this isn't an incremental crawl that 
+     * followed another.
+     */
+    public CrawlDiff getCrawlDiff() {
+        return crawlDiff;
+    }
+    
+    /**
+     * Returns the histograms of the time spent in each phase of the page fetches, per host and overall.
+     */
+    public FetchTimingStats getFetchTimings() {
+        return fetchTimings;
+    }
+    
+    /**
+     * Returns the number of page body bytes received (compressed or not) and decoded, per host and overall.
+     */
+    public TransferStats getTransferStats() {
+        return transferStats;
+    }
+    
+    /**
+     * Returns how well the connection pool kept connections alive during the crawl, or null if the page fetch 
+     * engine doesn't pool connections.
+     */
+    public ConnectionPoolStats getConnectionPoolStats() {
+        return connectionPoolStats;
+    }
+    
+    void setConnectionPoolStats(ConnectionPoolStats connectionPoolStats) {
+        this.connectionPoolStats = connectionPoolStats;
+    }
+    
+    public double getPagesPerSecond() {
+        long crawlTimeMillis = (crawlTime != null ? crawlTime.toMillis() : 0);
+        if (crawlTimeMillis <= 0) {
+            return 0.0;
+        }
+        return pagesFetched.get() * 1000.0 / crawlTimeMillis;
+    }
+    
     public String getUrl() {
         return url;
     }
@@ -67,65 +266,160 @@ public class CrawldaddyResult {
         return getInternalLinkCount() + getExternalLinkCount() + getBrokenLinkCount();
     }
     
+    /**
+     * Returns the internal links found, or an empty set if only their count was retained (see 
+     * isInternalLinksRetained()).
+     */
     public Set<String> getInternalLinks() {
-        return Collections.unmodifiableSet(intLinks.keySet());
+        return intLinks.asSet();
     }
     
     public boolean checkAndAddInternalLink(String url, int maxInternalLinks) {
-        synchronized(intLinks) {
-            if (intLinks.size() < maxInternalLinks) {
-                // Return true only if the given link is not already in the map 
-                return (intLinks.putIfAbsent(url, Boolean.TRUE) == null);
-            }
+        // Return true only if the given link is not already in the set (and the set isn't full).
+        if (!intLinks.addIfAbsent(url, maxInternalLinks)) {
+            return false;
         }
-        return false;
+        emit(ResultType.INTERNAL_LINK, url);
+        return true;
     }
     
     public boolean hasInternalLink(String url) {
-        return intLinks.containsKey(url);
+        return intLinks.contains(url);
+    }
+    
+    public boolean isInternalLinksRetained() {
+        return intLinks.isRetainingUrls() && (unretainedInternalLinks.get() == 0);
+    }
+    
+    /**
+     * Counts internal links found by a partition of a distributed crawl that only kept their count (partitions 
+     * never share internal links, so the counts just add up).
+     */
+    void addUnretainedInternalLinks(int numLinks) {
+        unretainedInternalLinks.addAndGet(numLinks);
     }
     
     public int getInternalLinkCount() {
-        return intLinks.size();
+        return intLinks.size() + unretainedInternalLinks.get();
     }
     
+    /**
+     * Returns the external links found, or an empty set if only their count was retained (see isUrlsRetained()).
+     */
     public Set<String> getExternalLinks() {
-        return Collections.unmodifiableSet(extLinks);
+        return extLinks.asSet();
     }
     
-    public void addExternalLink(String url) {
-        extLinks.add(url);
+    public boolean addExternalLink(String url) {
+        return addAndEmit(extLinks, ResultType.EXTERNAL_LINK, url);
     }
     
     public int getExternalLinkCount() {
         return extLinks.size();
     }
     
+    /**
+     * Returns the broken links found, or an empty set if only their count was retained (see isUrlsRetained()).
+     */
     public Set<String> getBrokenLinks() {
-        return Collections.unmodifiableSet(brokenLinks);
+        return brokenLinks.asSet();
     }
     
-    public void addBrokenLink(String brokenLink) {
-        brokenLinks.add(brokenLink);
+    public boolean addBrokenLink(String brokenLink) {
+        return addAndEmit(brokenLinks, ResultType.BROKEN_LINK, brokenLink);
     }
     
     public int getBrokenLinkCount() {
         return brokenLinks.size();
     }
     
+    /**
+     * Returns the external links found to lead nowhere (only if external links are checked), or an empty set if 
+     * only their count was retained (see isUrlsRetained()).
+     */
+    public Set<String> getDeadExternalLinks() {
+        return deadExternalLinks.asSet();
+    }
+    
+    public int getDeadExternalLinkCount() {
+        return deadExternalLinks.size();
+    }
+    
+    public boolean addDeadExternalLink(String url) {
+        return addAndEmit(deadExternalLinks, ResultType.DEAD_EXTERNAL_LINK, url);
+    }
+    
+    /**
+     * Returns the external scripts found, or an empty set if only their count was retained (see isUrlsRetained()).
+     */
     public Set<String> getExternalScripts() {
-        return Collections.unmodifiableSet(externalScripts);
+        return externalScripts.asSet();
     }
     
-    public void addExternalScript(String scriptUrl) {
-        externalScripts.add(scriptUrl);
+    public boolean addExternalScript(String scriptUrl) {
+        return addAndEmit(externalScripts, ResultType.EXTERNAL_SCRIPT, scriptUrl);
     }
     
     public void addExternalScripts(List<String> scriptUrls) {
-        externalScripts.addAll(scriptUrls);
+        for (String scriptUrl : scriptUrls) {
+            addExternalScript(scriptUrl);
+        }
     }
     
     public int getExternalScriptsCount() {
         return externalScripts.size();
     }
+    
+    /**
+     * Records an internal link that, once normalized, turned out to be a url that was already visited (or queued).
+     */
+    public boolean addDuplicateUrlVariant(String url) {
+        return duplicateUrlVariants.add(url);
+    }
+    
+    /**
+     * Returns the internal links counted by getFetchesSavedByNormalization(), or an empty set if only their count was
+     * retained (see isUrlsRetained()).
+     */
+    Set<String> getDuplicateUrlVariants() {
+        return duplicateUrlVariants.asSet();
+    }
+    
+    /**
+     * Returns the number of distinct internal links that would have been fetched again if links weren't normalized.
+     * This is a lower bound: whichever spelling of a url is found first is never counted, normalized or not.
+     */
+    public int getFetchesSavedByNormalization() {
+        return duplicateUrlVariants.size();
+    }
+    
+    /**
+     * Records an internal link that wasn't followed because the site's robots.txt disallows it.
+     */
+    public boolean addDisallowedLink(String url) {
+        return disallowedLinks.add(url);
+    }
+    
+    /**
+     * Returns the internal links disallowed by robots.txt, or an empty set if only their count was retained (see 
+     * isUrlsRetained()).
+     */
+    public Set<String> getDisallowedLinks() {
+        return disallowedLinks.asSet();
+    }
+    
+    public int getDisallowedLinkCount() {
+        return disallowedLinks.size();
+    }
+    
+    /**
+     * Adds to the number of internal links queued straight from the site's sitemaps (rather than found on a page first).
+     */
+    public void addSitemapLinks(int numLinks) {
+        sitemapLinks.addAndGet(numLinks);
+    }
+    
+    public int getSitemapLinkCount() {
+        return sitemapLinks.get();
+    }
 }
@@ -0,0 +1,635 @@
+package org.lagalag.crawldaddy;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.lagalag.crawldaddy.links.BloomVisitedUrlSet;
+import org.lagalag.crawldaddy.links.ExactVisitedUrlSet;
+import org.lagalag.crawldaddy.links.FingerprintVisitedUrlSet;
+import org.lagalag.crawldaddy.links.SpoolingVisitedUrlSet;
+import org.lagalag.crawldaddy.links.VisitedUrlSet;
+import org.lagalag.crawldaddy.pages.ExternalLinkStatus;
+import org.lagalag.crawldaddy.pages.ExternalLinkVerifier;
+import org.lagalag.crawldaddy.pages.PageFetchService;
+import org.lagalag.crawldaddy.pages.RobotsTxtCache;
+import org.lagalag.crawldaddy.sinks.ResultSink;
+import org.lagalag.crawldaddy.util.ExtensionFilter;
+import org.lagalag.crawldaddy.util.ParsedUrl;
+import org.lagalag.crawldaddy.util.UrlNormalizer;
+
+/**
+ * Holds the state shared by all the CrawldaddyActions of a single crawl. Urls discovered by the actions are queued
+ * in the crawl frontier, from which new actions are started as earlier ones finish, so that no more than a fixed
+ * number of actions are in progress at any one time. The crawl is done once the frontier is empty and the last
+ * action in progress has finished.
+ * In a distributed crawl, the session only crawls its own partition of the site: it is done once every partition
+ * has run out of work, which only the coordinator of the crawl can tell. The limit on internal links is then shared 
+ * by all the partitions: the session leases its share from the coordinator as it goes, and internal links found 
+ * beyond the lease wait for the next one.
+ */
+class CrawldaddySession implements Closeable {
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    private final CrawldaddyParams params;
+    private final CrawldaddyResult result;
+    private final PageFetchService pageFetchService;
+    private final ExternalLinkVerifier externalLinkVerifier;
+    private final RobotsTxtCache robotsTxtCache;
+    private final Executor executor;
+    private final CrawlFrontier frontier;
+    private final CrawlCheckpoint checkpoint;
+    private final ResultSink resultSink;
+    private final PageGraph previousPageGraph;
+    private final PageGraph pageGraph;
+    private boolean resumed;
+    private final UrlNormalizer urlNormalizer;
+    private final ExtensionFilter extensionFilter;
+    private final String normalizedUrl;
+    private final int maxActiveActions;
+    private int numActiveActions;
+    private int numPendingLinkChecks;
+    private volatile CrawlPartition partition;
+    private long numUrlsReceived;
+    private long numUrlsReceivedWhenIdle = -1;
+    private final Object idleReportLock = new Object();
+    private long numUrlsReportedIdle = -1;
+    /* In a distributed crawl, the internal links leased from the coordinator (see checkAndAddInternalLink()). */
+    private volatile int internalLinkLease;
+    private boolean internalLinksRequested;
+    private boolean internalLinksExhausted;
+    private final Set<String> linksAwaitingLease = new LinkedHashSet<>();
+    private int numInternalLinksToReturn;
+    private final CompletableFuture<CrawldaddyResult> completion = new CompletableFuture<>();
+
+    /**
+     * @param externalLinkVerifier verifier with which to check the external links found; null not to check them.
+     * @param robotsTxtCache cache of the robots.txt rules that internal links must be allowed by; null to ignore them.
+     */
+    CrawldaddySession(CrawldaddyParams params, PageFetchService pageFetchService, ExternalLinkVerifier externalLinkVerifier, 
+                      RobotsTxtCache robotsTxtCache, Executor executor) {
+        this.params = params;
+        this.result = new CrawldaddyResult(params.getUrl(), createVisitedUrlSet(params), !params.getCountsOnly());
+        this.resultSink = openResultSink(params);
+        this.result.setResultSink(resultSink);
+        this.pageFetchService = pageFetchService;
+        this.externalLinkVerifier = externalLinkVerifier;
+        this.robotsTxtCache = robotsTxtCache;
+        this.executor = executor;
+        this.frontier = new CrawlFrontier(params.getFrontierMemoryCapacity(), params.getFrontierSpillDirectory());
+        this.checkpoint = new CrawlCheckpoint(params.getCheckpointDirectory(), params.getUrl(), 
+                                              params.getCheckpointIntervalSeconds());
+        this.pageGraph = (params.getPageGraphFile() != null ? new PageGraph(params.getUrl()) : null);
+        this.previousPageGraph = loadPreviousPageGraph(params);
+        this.maxActiveActions = params.getMaxConcurrentFetches();
+        this.urlNormalizer = new UrlNormalizer(params.getSortQueryParameters(), params.getStrippedQueryParameters());
+        this.extensionFilter = new ExtensionFilter(params.getAllowedExtensions(), params.getDeniedExtensions());
+        this.normalizedUrl = normalizeUrl(params.getUrl());
+    }
+
+    CrawldaddyParams getParams() {
+        return params;
+    }
+
+    CrawldaddyResult getResult() {
+        return result;
+    }
+
+    PageFetchService getPageFetchService() {
+        return pageFetchService;
+    }
+
+    Executor getExecutor() {
+        return executor;
+    }
+    
+    CrawlCheckpoint getCheckpoint() {
+        return checkpoint;
+    }
+    
+    /**
+     * Returns true if this is an incremental crawl, i.e. one that keeps track of the pages it found for the next one.
+     */
+    boolean isIncremental() {
+        return (pageGraph != null);
+    }
+    
+    /**
+     * Returns what the previous incremental crawl found at the given url, or null if it didn't fetch that url.
+     */
+    PageGraph.PageRecord getPreviousPage(String url) {
+        return (previousPageGraph != null ? previousPageGraph.get(url) : null);
+    }
+    
+    /**
+     * Records what was found at a page, for the next incremental crawl.
+     */
+    void recordPage(PageGraph.PageRecord page) {
+        if (pageGraph != null) {
+            pageGraph.put(page);
+        }
+    }
+    
+    /**
+     * Returns the given url normalized, unless url normalization is turned off.
+     */
+    String normalizeUrl(String url) {
+        return (params.getNormalizeUrls() ? urlNormalizer.normalize(url) : url);
+    }
+    
+    /**
+     * Returns the filter that decides, from their extension, which links are worth fetching.
+     */
+    ExtensionFilter getExtensionFilter() {
+        return extensionFilter;
+    }
+    
+    /**
+     * Returns the initial url of the crawl, normalized the same way as the links found.
+     */
+    String getNormalizedUrl() {
+        return normalizedUrl;
+    }
+
+    /**
+     * Starts the crawl at the initial url.
+     */
+    void start() {
+        checkpoint.start(params.getUrl());
+        synchronized (this) {
+            numActiveActions++;
+        }
+        // Queued while the initial action is counted as active, so the crawl can't end before they are.
+        enqueueKnownPages();
+        startSitemapSeeding();
+        execute(new CrawldaddyAction(params.getUrl(), this, true));
+    }
+
+    /**
+     * Resumes the crawl from where its last checkpoint left off, without fetching again the pages already done. 
+     * Starts the crawl at the initial url if there is no checkpoint to resume from.
+     */
+    void resume() {
+        CrawlCheckpoint.ResumedCrawl resumedCrawl = checkpoint.resume(params.getUrl(), result, params.getMaxInternalLinks());
+        if (resumedCrawl == null) {
+            start();
+            return;
+        }
+        resumed = true;
+        result.setPagesFromCheckpoint(resumedCrawl.getNumPagesDone());
+        // Already recorded as queued, so they go straight to the frontier.
+        frontier.addAll(resumedCrawl.getPendingUrls());
+        if (!resumedCrawl.isInitialPageDone()) {
+            startInitialAction();
+        } else {
+            startQueuedActions();
+        }
+    }
+
+    /**
+     * Starts crawling the given partition of a distributed crawl, with nothing to do until urls are received from
+     * the coordinator (see acceptUrls()).
+     */
+    void startPartition(CrawlPartition partition) {
+        this.partition = partition;
+        // Reports the partition idle, so the coordinator knows it's up.
+        startQueuedActions();
+    }
+    
+    /**
+     * Queues the given urls, sent by the coordinator of a distributed crawl, for crawling unless already visited. 
+     * The initial url of the crawl starts the initial action.
+     */
+    void acceptUrls(Collection<String> urls) {
+        synchronized (this) {
+            // Keeps the partition from being reported idle before the urls are queued.
+            numActiveActions++;
+            numUrlsReceived += urls.size();
+        }
+        List<String> urlsToCrawl = new ArrayList<>();
+        for (String url : urls) {
+            if (url.equals(params.getUrl())) {
+                checkpoint.start(url);
+                startSitemapSeeding();
+                startInitialAction();
+            } else if (checkAndAddInternalLink(url)) {
+                urlsToCrawl.add(url);
+            }
+        }
+        enqueueUrls(urlsToCrawl);
+        actionEnded();
+    }
+    
+    /**
+     * Adds the given internal link to those found, unless it was already found (or the limit on internal links is
+     * reached), and returns true if it was added, and is to be crawled. In a distributed crawl, a new link beyond 
+     * the internal links leased from the coordinator waits for more to be leased: it is crawled then (or dropped, 
+     * if the limit is reached over all partitions).
+     */
+    boolean checkAndAddInternalLink(String url) {
+        if (partition == null) {
+            return result.checkAndAddInternalLink(url, params.getMaxInternalLinks());
+        }
+        if (result.checkAndAddInternalLink(url, internalLinkLease)) {
+            return true;
+        }
+        if (!result.hasInternalLink(url)) {
+            awaitInternalLinkLease(url);
+        }
+        return false;
+    }
+    
+    /**
+     * Adds the given number of internal links, leased by the coordinator of a distributed crawl, to those this 
+     * partition may find, and crawls the links that were waiting for them. None means that the limit is reached 
+     * over all partitions: no more links will be leased.
+     */
+    void leaseInternalLinks(int numLinks) {
+        List<String> urls;
+        synchronized (this) {
+            internalLinksRequested = false;
+            internalLinkLease += numLinks;
+            internalLinksExhausted = (numLinks == 0);
+            urls = new ArrayList<>(linksAwaitingLease);
+            linksAwaitingLease.clear();
+        }
+        List<String> urlsToCrawl = new ArrayList<>();
+        if (numLinks > 0) {
+            for (String url : urls) {
+                if (checkAndAddInternalLink(url)) {
+                    urlsToCrawl.add(url);
+                }
+            }
+        }
+        enqueueUrls(urlsToCrawl);
+        // Ends the wait for the lease.
+        actionEnded();
+    }
+    
+    private void awaitInternalLinkLease(String url) {
+        synchronized (this) {
+            if (internalLinksExhausted) {
+                return;
+            }
+            linksAwaitingLease.add(url);
+            if (internalLinksRequested) {
+                return;
+            }
+            internalLinksRequested = true;
+            // Counted as an action, so the partition isn't reported idle while it waits for the coordinator.
+            numActiveActions++;
+        }
+        partition.requestInternalLinks();
+    }
+    
+    /**
+     * Returns true if the given internal link is to be crawled by this session, rather than by another partition of 
+     * a distributed crawl.
+     */
+    boolean ownsUrl(ParsedUrl url) {
+        return (partition == null) || partition.owns(url);
+    }
+    
+    /**
+     * Hands the given internal link over to the partition of the distributed crawl that owns it.
+     */
+    void forwardUrl(ParsedUrl url) {
+        partition.forward(url);
+    }
+    
+    /**
+     * Ends this partition of a distributed crawl, once the coordinator has found all the partitions idle.
+     */
+    void partitionDone() {
+        completion.complete(result);
+    }
+    
+    /**
+     * Queues the given (not yet visited) urls for crawling.
+     */
+    void enqueueUrls(Collection<String> urls) {
+        if (!urls.isEmpty()) {
+            checkpoint.recordQueued(urls);
+            frontier.addAll(urls);
+            startQueuedActions();
+        }
+    }
+
+    /**
+     * Returns true unless the site's robots.txt disallows crawling the given url (the first check for a host waits 
+     * for its robots.txt to be fetched).
+     */
+    boolean isAllowedByRobots(ParsedUrl url) {
+        return (robotsTxtCache == null) || robotsTxtCache.isAllowed(url);
+    }
+    
+    /**
+     * Returns the cache of the robots.txt rules that internal links must be allowed by, or null if they are ignored.
+     */
+    RobotsTxtCache getRobotsTxtCache() {
+        return robotsTxtCache;
+    }
+    
+    /* Must be called exactly once by the SitemapSeeder, after it has enqueued all the urls it seeded. */
+    void sitemapSeedingFinished() {
+        actionEnded();
+    }
+    
+    /**
+     * Checks the given (newly found) external link in the background, if external links are to be checked. 
+     * The crawl isn't over until all the checks are.
+     */
+    void verifyExternalLink(String url) {
+        if ((externalLinkVerifier == null) || !(url.startsWith("http://") || url.startsWith("https://"))) {
+            return;
+        }
+        synchronized (this) {
+            numPendingLinkChecks++;
+        }
+        CompletableFuture<ExternalLinkStatus> linkStatusFuture;
+        try {
+            linkStatusFuture = externalLinkVerifier.verify(url);
+        } catch (RuntimeException e) {
+            // Shouldn't happen, as the verifier reports its own failures as errors; but the crawl mustn't hang on it.
+            LOGGER.error("Unable to check external link " + url + ": " + e.getMessage());
+            linkCheckEnded();
+            return;
+        }
+        linkStatusFuture.whenComplete((linkStatus, e) -> {
+            try {
+                if ((linkStatus != null) && !linkStatus.isAlive()) {
+                    LOGGER.error("External link " + linkStatus);
+                    if (result.addDeadExternalLink(url)) {
+                        checkpoint.recordDeadExternalLink(url);
+                    }
+                }
+            } finally {
+                // Whatever happened, the crawl must not wait for this check forever.
+                linkCheckEnded();
+            }
+        });
+    }
+    
+    /* Must be called exactly once by every action, after it has enqueued all the urls it found. */
+    void actionFinished(String url) {
+        checkpoint.recordDone(url);
+        actionEnded();
+    }
+
+    CrawldaddyResult awaitResult() {
+        return completion.join();
+    }
+    
+    /**
+     * Returns a future that completes with the result once the crawl is done (as awaitResult() returns).
+     */
+    CompletableFuture<CrawldaddyResult> getResultFuture() {
+        return completion;
+    }
+    
+    /**
+     * Once an incremental crawl is done, works out how the links changed since the previous incremental crawl, and 
+     * saves the page graph for the next one.
+     */
+    void savePageGraph() {
+        if (pageGraph == null) {
+            return;
+        }
+        if (resumed) {
+            // Pages done before resuming are missing from the graph.
+            LOGGER.warn("Page graph not saved, as the crawl was resumed from a checkpoint");
+            return;
+        }
+        if (previousPageGraph != null) {
+            result.setCrawlDiff(CrawlDiff.between(previousPageGraph, pageGraph));
+        }
+        try {
+            pageGraph.save(params.getPageGraphFile());
+        } catch (IOException e) {
+            LOGGER.error("Unable to save page graph to " + params.getPageGraphFile() + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        frontier.close();
+        checkpoint.close();
+        closeResultSink();
+        result.crawlFinished();
+    }
+    
+    private static ResultSink openResultSink(CrawldaddyParams params) {
+        if (params.getResultFile() == null) {
+            return null;
+        }
+        try {
+            return params.getResultFormat().open(params.getResultFile());
+        } catch (IOException e) {
+            LOGGER.error("Unable to open result file " + params.getResultFile() + ": " + e.getMessage());
+            return null;
+        }
+    }
+    
+    private void closeResultSink() {
+        if (resultSink == null) {
+            return;
+        }
+        result.setResultSink(null);
+        try {
+            resultSink.close();
+        } catch (IOException e) {
+            LOGGER.error("Unable to write result file " + params.getResultFile() + ": " + e.getMessage());
+        }
+    }
+
+    private static VisitedUrlSet createVisitedUrlSet(CrawldaddyParams params) {
+        VisitedUrlSet visitedUrlSet;
+        switch (params.getDedupMode()) {
+        case FINGERPRINT:
+            double bloomFrontFalsePositiveRate = (params.getDedupBloomFront() ? params.getDedupFalsePositiveRate() : 0);
+            visitedUrlSet = new FingerprintVisitedUrlSet(params.getMaxInternalLinks(), params.getDedupMemoryBudgetBytes(), 
+                                                         bloomFrontFalsePositiveRate);
+            break;
+        case BLOOM:
+            visitedUrlSet = new BloomVisitedUrlSet(params.getMaxInternalLinks(), params.getDedupFalsePositiveRate(), 
+                                                   params.getDedupMemoryBudgetBytes());
+            break;
+        case EXACT:
+        default:
+            visitedUrlSet = new ExactVisitedUrlSet();
+            break;
+        }
+        if (params.getInternalLinksFile() != null) {
+            visitedUrlSet = new SpoolingVisitedUrlSet(visitedUrlSet, params.getInternalLinksFile());
+        }
+        return visitedUrlSet;
+    }
+    
+    private static PageGraph loadPreviousPageGraph(CrawldaddyParams params) {
+        if (params.getPageGraphFile() == null) {
+            return null;
+        }
+        try {
+            PageGraph previousPageGraph = PageGraph.load(params.getPageGraphFile());
+            if ((previousPageGraph != null) && !previousPageGraph.getUrl().equals(params.getUrl())) {
+                LOGGER.warn("Page graph " + params.getPageGraphFile() + " is not for " + params.getUrl() + "; ignoring it");
+                return null;
+            }
+            return previousPageGraph;
+        } catch (IOException e) {
+            LOGGER.error("Unable to load page graph from " + params.getPageGraphFile() + ": " + e.getMessage());
+            return null;
+        }
+    }
+    
+    /* Queues the pages the previous incremental crawl could reach, so they needn't be discovered again. */
+    private void enqueueKnownPages() {
+        if (previousPageGraph == null) {
+            return;
+        }
+        List<String> urls = new ArrayList<>();
+        for (String url : previousPageGraph.getUrlsByPriority()) {
+            if (checkAndAddInternalLink(url)) {
+                urls.add(url);
+            }
+        }
+        enqueueUrls(urls);
+    }
+    
+    /* 
+     * Seeding counts as an action, so the crawl can't end before it is done. It gets a thread of its own, as it 
+     * blocks on the sitemap downloads for as long as they stream in, and must not hold up the crawl meanwhile.
+     */
+    private void startSitemapSeeding() {
+        if (!params.getSeedFromSitemaps()) {
+            return;
+        }
+        synchronized (this) {
+            numActiveActions++;
+        }
+        Thread seedingThread = new Thread(new SitemapSeeder(this), "sitemap-seeder");
+        seedingThread.setDaemon(true);
+        seedingThread.start();
+    }
+    
+    private void startInitialAction() {
+        synchronized (this) {
+            numActiveActions++;
+        }
+        execute(new CrawldaddyAction(params.getUrl(), this, true));
+    }
+    
+    private void linkCheckEnded() {
+        synchronized (this) {
+            numPendingLinkChecks--;
+        }
+        // In case this was the last thing the crawl was waiting for.
+        startQueuedActions();
+    }
+    
+    private void actionEnded() {
+        synchronized (this) {
+            numActiveActions--;
+        }
+        startQueuedActions();
+    }
+    
+    /* 
+     * The slots for new actions are taken under the session lock, but the urls are polled outside of it, as the 
+     * frontier may have to read them back from disk: finishing actions mustn't wait on that I/O.
+     */
+    private void startQueuedActions() {
+        boolean morePending;
+        do {
+            int numSlots = reserveActionSlots();
+            List<CrawldaddyAction> actions = new ArrayList<>();
+            while (actions.size() < numSlots) {
+                String url = frontier.poll();
+                if (url == null) {
+                    break;
+                }
+                actions.add(new CrawldaddyAction(url, this, false));
+            }
+            morePending = releaseActionSlots(numSlots - actions.size());
+            for (CrawldaddyAction action : actions) {
+                execute(action);
+            }
+        } while (morePending);
+        long numUrlsReceivedNowIdle = checkIfDone();
+        if (numUrlsReceivedNowIdle >= 0) {
+            reportIdle(numUrlsReceivedNowIdle);
+        }
+    }
+
+    private synchronized int reserveActionSlots() {
+        int numSlots = Math.max(0, maxActiveActions - numActiveActions);
+        numActiveActions += numSlots;
+        return numSlots;
+    }
+
+    /* Returns true if urls were queued while polling came up short, and there are slots for them. */
+    private synchronized boolean releaseActionSlots(int numUnusedSlots) {
+        numActiveActions -= numUnusedSlots;
+        return !frontier.isEmpty() && (numUnusedSlots > 0) && (numActiveActions < maxActiveActions);
+    }
+
+    /* 
+     * Completes the crawl if nothing is in progress and nothing is left to crawl. In a distributed crawl, returns 
+     * the number of urls received if the partition has newly run out of work and is to be reported idle; else -1.
+     */
+    private synchronized long checkIfDone() {
+        if (!frontier.isEmpty() || (numActiveActions > 0) || (numPendingLinkChecks > 0)) {
+            return -1;
+        }
+        if (partition == null) {
+            completion.complete(result);
+            return -1;
+        }
+        // The links leased but not found go back to the coordinator, for the partitions that still find some.
+        int numUnusedLinks = Math.max(0, internalLinkLease - result.getInternalLinkCount());
+        internalLinkLease -= numUnusedLinks;
+        numInternalLinksToReturn += numUnusedLinks;
+        if ((numUrlsReceived != numUrlsReceivedWhenIdle) || (numUnusedLinks > 0)) {
+            numUrlsReceivedWhenIdle = numUrlsReceived;
+            return numUrlsReceived;
+        }
+        return -1;
+    }
+
+    /* 
+     * Outside of the session lock, as the partition may block to send the report. Reports may race one another 
+     * here, so a stale one (fewer urls received than already reported) is dropped, unless it has links to return: 
+     * the coordinator would take it for the latest. Whichever report goes first returns the links of both.
+     */
+    private void reportIdle(long numUrlsReceived) {
+        synchronized (idleReportLock) {
+            int numLinksReturned;
+            synchronized (this) {
+                numLinksReturned = numInternalLinksToReturn;
+                numInternalLinksToReturn = 0;
+            }
+            if ((numUrlsReceived > numUrlsReportedIdle) || (numLinksReturned > 0)) {
+                numUrlsReportedIdle = Math.max(numUrlsReportedIdle, numUrlsReceived);
+                partition.idle(numUrlsReportedIdle, numLinksReturned);
+            }
+        }
+    }
+
+    private void execute(CrawldaddyAction action) {
+        try {
+            executor.execute(action);
+        } catch (RejectedExecutionException e) {
+            LOGGER.error("Unable to start crawl action: " + e.getMessage());
+            actionEnded();
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package org.lagalag.crawldaddy;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.lagalag.crawldaddy.util.ParsedUrl;
+
+/**
+ * Crawls one partition of a distributed crawl, for the CrawldaddyCoordinator it connects to: the worker only
+ * fetches (and deduplicates) the internal links of its own partition, and sends the others to the coordinator,
+ * which passes them on to the workers that own them. Once the coordinator finds all the workers out of work, each
+ * sends its share of the results back to it. The worker must be given the same url (and should be given the same
+ * params) as the coordinator; the limit on internal links is the coordinator's, which leases internal links to the
+ * workers as they find them, and options that name a single file or directory are ignored.
+ */
+public class CrawldaddyWorker implements CrawlPartition {
+    private static final Logger log = LogManager.getLogger();
+
+    private final CrawldaddyParams params;
+    private final InetSocketAddress coordinatorAddress;
+    private ClusterChannel channel;
+    private CrawlPartitioner partitioner;
+    private int partitionIndex;
+
+    public CrawldaddyWorker(CrawldaddyParams params, InetSocketAddress coordinatorAddress) {
+        this.params = params;
+        this.coordinatorAddress = coordinatorAddress;
+    }
+
+    /**
+     * Returns the index of the partition crawled by this worker (once the coordinator has assigned it).
+     */
+    public int getPartitionIndex() {
+        return partitionIndex;
+    }
+
+    /**
+     * Returns the number of partitions of the crawl, or 0 until the coordinator has assigned them.
+     */
+    public int getNumPartitions() {
+        return (partitioner != null ? partitioner.getNumPartitions() : 0);
+    }
+
+    /**
+     * Crawls the partition assigned by the coordinator; the result (also sent to the coordinator) is only for the
+     * pages of that partition.
+     */
+    public CompletableFuture<CrawldaddyResult> crawl() {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return doCrawl();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    @Override
+    public boolean owns(ParsedUrl url) {
+        return (partitioner.partitionOf(url) == partitionIndex);
+    }
+
+    @Override
+    public void forward(ParsedUrl url) {
+        channel.send(ClusterChannel.URL, String.valueOf(partitioner.partitionOf(url)), url.getUrl());
+    }
+
+    @Override
+    public void requestInternalLinks() {
+        channel.send(ClusterChannel.LEASE_REQUEST);
+    }
+
+    @Override
+    public void idle(long numUrlsReceived, int numInternalLinksReturned) {
+        channel.send(ClusterChannel.IDLE, String.valueOf(numUrlsReceived), String.valueOf(numInternalLinksReturned));
+    }
+
+    private CrawldaddyResult doCrawl() throws IOException {
+        Socket socket = new Socket(coordinatorAddress.getAddress(), coordinatorAddress.getPort());
+        Crawldaddy crawler = new Crawldaddy(params);
+        ExecutorService executor = CrawlExecutors.create(params);
+        CrawldaddySession session = null;
+        try (ClusterChannel channel = new ClusterChannel(socket, "crawldaddy-worker")) {
+            this.channel = channel;
+            channel.send(ClusterChannel.HELLO, params.getUrl());
+            Instant startTime = Instant.now();
+            String[] message;
+            while ((message = channel.receive()) != null) {
+                switch (message[0]) {
+                case ClusterChannel.PARTITION:
+                    partitionIndex = Integer.parseInt(message[1]);
+                    partitioner = new CrawlPartitioner(Integer.parseInt(message[2]), true);
+                    log.info("Crawling partition " + partitionIndex + " of " + partitioner.getNumPartitions());
+                    session = new CrawldaddySession(createPartitionParams(),
+                                                    crawler.createPageFetchService(params.getMaxConcurrentFetches(), false),
+                                                    crawler.getExternalLinkVerifier(), crawler.getRobotsTxtCache(), executor);
+                    startTime = Instant.now();
+                    session.startPartition(this);
+                    break;
+                case ClusterChannel.URL:
+                    session.acceptUrls(Collections.singletonList(message[1]));
+                    break;
+                case ClusterChannel.LEASE:
+                    session.leaseInternalLinks(Integer.parseInt(message[1]));
+                    break;
+                case ClusterChannel.DONE:
+                    session.partitionDone();
+                    CrawldaddyResult result = session.awaitResult();
+                    result.setCrawlTime(Duration.between(startTime, Instant.now()));
+                    channel.sendResult(result);
+                    return result;
+                default:
+                    log.warn("Unexpected message from coordinator: " + message[0]);
+                    break;
+                }
+            }
+            throw new IOException("Coordinator at " + coordinatorAddress + " closed the connection before the crawl was done");
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+            CrawlExecutors.shutdown(executor);
+            crawler.closePooledPageFetchService();
+            crawler.closeExternalLinkVerifier();
+        }
+    }
+
+    private CrawldaddyParams createPartitionParams() {
+        CrawldaddyParams partitionParams = params.withUrlAndNoFiles(params.getUrl());
+        // The coordinator needs the urls to merge the results.
+        partitionParams.setCountsOnly(false);
+        return partitionParams;
+    }
+}
@@ -0,0 +1,309 @@
+package org.lagalag.crawldaddy;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+
+import org.lagalag.crawldaddy.pages.PageFetchResults;
+import org.lagalag.crawldaddy.util.Fingerprints;
+
+/**
+ * The pages found by a crawl, each with the (normalized) links and scripts found on it and a fingerprint of its 
+ * content. An incremental crawl saves the graph of its pages when it's done, and the next incremental crawl loads 
+ * it: to know which pages to fetch (and in what order) up front, to tell which pages changed, and to report how the 
+ * links of the site changed. Thread-safe.
+ */
+class PageGraph {
+    private static final int FORMAT_VERSION = 1;
+
+    private final String url;
+    private final ConcurrentMap<String,PageRecord> pages = new ConcurrentHashMap<>();
+
+    /**
+     * @param url the initial url of the crawl.
+     */
+    PageGraph(String url) {
+        this.url = url;
+    }
+
+    /**
+     * Returns the fingerprint of the content of a page, as far as the crawl is concerned: its links and scripts. A 
+     * page is "unchanged" if its links and scripts are the same, whatever else changed in it (its text, say).
+     */
+    static long fingerprintOf(PageFetchResults results) {
+        long fingerprint = results.getLinkUrls().size();
+        for (String linkUrl : results.getLinkUrls()) {
+            fingerprint = fingerprint * 31 + Fingerprints.of(linkUrl);
+        }
+        for (String scriptUrl : results.getScriptUrls()) {
+            fingerprint = fingerprint * 31 + Fingerprints.of(scriptUrl);
+        }
+        return fingerprint;
+    }
+
+    String getUrl() {
+        return url;
+    }
+
+    PageRecord get(String pageUrl) {
+        return pages.get(pageUrl);
+    }
+
+    void put(PageRecord page) {
+        pages.put(page.getUrl(), page);
+    }
+
+    int size() {
+        return pages.size();
+    }
+
+    /**
+     * Returns the urls of the pages but the initial one that can be reached from the initial url, and were fetched
+     * fine, those most likely to have changed first: pages that changed most often in earlier crawls, then pages 
+     * with the most internal links. Pages nothing links to any more (or that were missing) are left for the crawl to 
+     * find again, if they are still linked to.
+     */
+    List<String> getUrlsByPriority() {
+        Set<String> reachableUrls = getReachablePageUrls();
+        return pages.values().stream()
+                    .filter(page -> !page.getUrl().equals(url) && page.isHttpStatusOK() 
+                                    && reachableUrls.contains(page.getUrl()))
+                    .sorted(Comparator.comparingInt(PageRecord::getNumChanges)
+                                      .thenComparingInt(page -> page.getInternalLinks().size())
+                                      .reversed())
+                    .map(PageRecord::getUrl)
+                    .collect(Collectors.toList());
+    }
+
+    /**
+     * Returns the links of the site: the internal links that can (still) be reached from the initial url, and the 
+     * external links found on the pages reached.
+     */
+    Set<String> getLinks() {
+        Set<String> links = new HashSet<>();
+        for (String pageUrl : getReachablePageUrls()) {
+            if (!pageUrl.equals(url)) {
+                links.add(pageUrl);
+            }
+            PageRecord page = pages.get(pageUrl);
+            if (page != null) {
+                links.addAll(page.getExternalLinks());
+            }
+        }
+        return links;
+    }
+
+    /**
+     * Returns the internal links that can be reached from the initial url, but that lead to a missing page.
+     */
+    Set<String> getBrokenLinks() {
+        Set<String> brokenLinks = new HashSet<>();
+        for (String pageUrl : getReachablePageUrls()) {
+            PageRecord page = pages.get(pageUrl);
+            if ((page != null) && page.isBroken()) {
+                brokenLinks.add(pageUrl);
+            }
+        }
+        return brokenLinks;
+    }
+
+    private Set<String> getReachablePageUrls() {
+        Set<String> reachedUrls = new HashSet<>();
+        Deque<String> urlsToVisit = new ArrayDeque<>();
+        reachedUrls.add(url);
+        urlsToVisit.add(url);
+        while (!urlsToVisit.isEmpty()) {
+            PageRecord page = pages.get(urlsToVisit.poll());
+            if (page == null) {
+                continue;
+            }
+            for (String linkUrl : page.getInternalLinks()) {
+                if (reachedUrls.add(linkUrl)) {
+                    urlsToVisit.add(linkUrl);
+                }
+            }
+        }
+        return reachedUrls;
+    }
+
+    /**
+     * Loads the graph saved in the given file, or returns null if there is no such file.
+     */
+    static PageGraph load(File file) throws IOException {
+        if (!file.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != FORMAT_VERSION) {
+                throw new IOException("Unknown page graph format");
+            }
+            PageGraph graph = new PageGraph(readString(in));
+            int numPages = in.readInt();
+            for (int i = 0; i < numPages; i++) {
+                String pageUrl = readString(in);
+                int httpStatusCode = in.readInt();
+                long contentFingerprint = in.readLong();
+                int numChanges = in.readInt();
+                graph.put(new PageRecord(pageUrl, httpStatusCode, contentFingerprint, numChanges, 
+                                         readStrings(in), readStrings(in), readStrings(in)));
+            }
+            return graph;
+        }
+    }
+
+    /**
+     * Saves the graph to the given file, replacing the previous graph (if any) only once it is fully written. Only 
+     * the pages that can be reached from the initial url are saved, and of those that weren't fetched fine, only 
+     * the missing ones (for the next crawl to tell newly broken links from those already broken).
+     */
+    void save(File file) throws IOException {
+        File tempFile = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+            out.writeInt(FORMAT_VERSION);
+            writeString(out, url);
+            Set<String> reachableUrls = getReachablePageUrls();
+            List<PageRecord> pagesToSave = pages.values().stream()
+                                                .filter(page -> reachableUrls.contains(page.getUrl()) 
+                                                                && (page.isHttpStatusOK() || page.isBroken()))
+                                                .collect(Collectors.toList());
+            out.writeInt(pagesToSave.size());
+            for (PageRecord page : pagesToSave) {
+                writeString(out, page.getUrl());
+                out.writeInt(page.getHttpStatusCode());
+                out.writeLong(page.getContentFingerprint());
+                out.writeInt(page.getNumChanges());
+                writeStrings(out, page.getInternalLinks());
+                writeStrings(out, page.getExternalLinks());
+                writeStrings(out, page.getScripts());
+            }
+        }
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static void writeStrings(DataOutputStream out, Collection<String> strings) throws IOException {
+        out.writeInt(strings.size());
+        for (String s : strings) {
+            writeString(out, s);
+        }
+    }
+
+    private static List<String> readStrings(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        if (count < 0) {
+            throw new IOException("Damaged page graph");
+        }
+        List<String> strings = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            strings.add(readString(in));
+        }
+        return strings;
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Damaged page graph");
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A page of the graph. Immutable.
+     */
+    static class PageRecord {
+        private final String url;
+        private final int httpStatusCode;
+        private final long contentFingerprint;
+        private final int numChanges;
+        private final List<String> internalLinks;
+        private final List<String> externalLinks;
+        private final List<String> scripts;
+
+        PageRecord(String url, int httpStatusCode, long contentFingerprint, int numChanges, 
+                   List<String> internalLinks, List<String> externalLinks, List<String> scripts) {
+            this.url = url;
+            this.httpStatusCode = httpStatusCode;
+            this.contentFingerprint = contentFingerprint;
+            this.numChanges = numChanges;
+            this.internalLinks = Collections.unmodifiableList(internalLinks);
+            this.externalLinks = Collections.unmodifiableList(externalLinks);
+            this.scripts = Collections.unmodifiableList(scripts);
+        }
+
+        /**
+         * Returns the record of a page that could not be parsed (e.g. a missing page).
+         */
+        static PageRecord onHttpNotOK(String url, int httpStatusCode) {
+            return new PageRecord(url, httpStatusCode, 0, 0, Collections.emptyList(), Collections.emptyList(), 
+                                  Collections.emptyList());
+        }
+
+        String getUrl() {
+            return url;
+        }
+
+        int getHttpStatusCode() {
+            return httpStatusCode;
+        }
+
+        boolean isHttpStatusOK() {
+            return (httpStatusCode == HttpURLConnection.HTTP_OK);
+        }
+
+        boolean isBroken() {
+            return (httpStatusCode == HttpURLConnection.HTTP_NOT_FOUND);
+        }
+
+        long getContentFingerprint() {
+            return contentFingerprint;
+        }
+
+        /**
+         * Returns the number of crawls in which the page was found to have changed since the previous one.
+         */
+        int getNumChanges() {
+            return numChanges;
+        }
+
+        List<String> getInternalLinks() {
+            return internalLinks;
+        }
+
+        List<String> getExternalLinks() {
+            return externalLinks;
+        }
+
+        List<String> getScripts() {
+            return scripts;
+        }
+    }
+}
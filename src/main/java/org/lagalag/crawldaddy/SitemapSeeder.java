@@ -0,0 +1,101 @@
+package org.lagalag.crawldaddy;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.lagalag.crawldaddy.pages.RobotsTxtCache;
+import org.lagalag.crawldaddy.pages.SitemapReader;
+import org.lagalag.crawldaddy.util.ParsedUrl;
+import org.lagalag.crawldaddy.util.URLUtils;
+
+/**
+ * Seeds the frontier of a crawl with the pages listed in the site's sitemaps (/sitemap.xml, and those listed in its
+ * robots.txt), so that the crawl can go wide right away instead of discovering deep pages one level at a time.
+ * Sitemap urls go through the same checks as the links found on pages (scope, extension, robots.txt, normalization)
+ * and are deduplicated along with them; they are queued in batches as the sitemaps stream in. Counted as an action
+ * of the session, so the crawl isn't over until seeding is.
+ */
+class SitemapSeeder implements Runnable {
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    private static final int BATCH_SIZE = 500;
+    private static final String DEFAULT_SITEMAP_PATH = "/sitemap.xml";
+
+    private final CrawldaddySession session;
+    private final CrawldaddyParams params;
+    private final CrawldaddyResult result;
+    private final ParsedUrl parsedUrl = new ParsedUrl();
+    private List<String> urlsToCrawl = new ArrayList<>();
+    private int numUrlsSeeded;
+
+    SitemapSeeder(CrawldaddySession session) {
+        this.session = session;
+        this.params = session.getParams();
+        this.result = session.getResult();
+    }
+
+    @Override
+    public void run() {
+        try {
+            SitemapReader sitemapReader = new SitemapReader();
+            long numUrlsRead = sitemapReader.read(findSitemapUrls(), this::seed);
+            enqueueUrlsToCrawl();
+            result.addSitemapLinks(numUrlsSeeded);
+            LOGGER.info("Seeded " + numUrlsSeeded + " of the " + numUrlsRead + " url(s) in "
+                        + sitemapReader.getNumSitemapsRead() + " sitemap(s)");
+        } catch (RuntimeException e) {
+            LOGGER.error("Unable to seed the crawl from sitemaps: " + e);
+        } finally {
+            session.sitemapSeedingFinished();
+        }
+    }
+
+    private Set<String> findSitemapUrls() {
+        ParsedUrl initialUrl = new ParsedUrl(params.getUrl());
+        Set<String> sitemapUrls = new LinkedHashSet<>();
+        sitemapUrls.add(initialUrl.getOrigin() + DEFAULT_SITEMAP_PATH);
+        // Even if robots.txt is otherwise ignored, it's where sitemaps are listed.
+        RobotsTxtCache robotsTxtCache = session.getRobotsTxtCache();
+        if (robotsTxtCache == null) {
+            robotsTxtCache = new RobotsTxtCache();
+        }
+        sitemapUrls.addAll(robotsTxtCache.getRules(initialUrl).getSitemapUrls());
+        return sitemapUrls;
+    }
+
+    /* Returns false once the limit on internal links is reached, to stop reading. */
+    private boolean seed(String sitemapLinkUrl) {
+        String linkUrl = session.normalizeUrl(URLUtils.stripAnchor(sitemapLinkUrl));
+        parsedUrl.parse(linkUrl);
+        if (!parsedUrl.isValid() || !parsedUrl.hasHost(params.getInternalLinksScope())
+            || !session.getExtensionFilter().accepts(parsedUrl)) {
+            return true;
+        }
+        if (params.getUrl().equalsIgnoreCase(linkUrl) || session.getNormalizedUrl().equals(linkUrl)) {
+            return true;
+        }
+        if (!session.isAllowedByRobots(parsedUrl)) {
+            result.addDisallowedLink(linkUrl);
+            return true;
+        }
+        if (!session.ownsUrl(parsedUrl)) {
+            session.forwardUrl(parsedUrl);
+        } else if (session.checkAndAddInternalLink(linkUrl)) {
+            numUrlsSeeded++;
+            urlsToCrawl.add(linkUrl);
+            if (urlsToCrawl.size() >= BATCH_SIZE) {
+                enqueueUrlsToCrawl();
+            }
+        }
+        return (result.getInternalLinkCount() < params.getMaxInternalLinks());
+    }
+
+    private void enqueueUrlsToCrawl() {
+        session.enqueueUrls(urlsToCrawl);
+        urlsToCrawl = new ArrayList<>();
+    }
+}
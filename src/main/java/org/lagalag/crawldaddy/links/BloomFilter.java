@@ -0,0 +1,70 @@
+package org.lagalag.crawldaddy.links;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free Bloom filter over 64-bit fingerprints, sized for a given number of entries and false-positive rate 
+ * (but never bigger than a given number of bytes). Bit positions are derived from the fingerprint by double hashing.
+ */
+class BloomFilter {
+    private final AtomicLongArray words;
+    private final long numBits;
+    private final int numHashes;
+    
+    BloomFilter(long expectedSize, double falsePositiveRate, long maxBytes) {
+        double ln2 = Math.log(2);
+        long optimalBits = (long) Math.ceil(-Math.max(1, expectedSize) * Math.log(falsePositiveRate) / (ln2 * ln2));
+        long maxBits = Math.max(Long.SIZE, maxBytes * Byte.SIZE);
+        int numWords = (int) Math.min(Integer.MAX_VALUE - 8, (Math.min(optimalBits, maxBits) + Long.SIZE - 1) / Long.SIZE);
+        this.words = new AtomicLongArray(numWords);
+        this.numBits = (long) numWords * Long.SIZE;
+        this.numHashes = (int) Math.max(1, Math.round((double) numBits / Math.max(1, expectedSize) * ln2));
+    }
+    
+    /**
+     * Adds the given fingerprint.
+     * @return true if the fingerprint was definitely not in the filter before.
+     */
+    boolean put(long fingerprint) {
+        boolean changed = false;
+        long hash1 = fingerprint;
+        long hash2 = Long.rotateLeft(fingerprint, 32) | 1;
+        for (int i = 0; i < numHashes; i++) {
+            long bitIdx = Math.floorMod(hash1 + i * hash2, numBits);
+            changed |= setBit(bitIdx);
+        }
+        return changed;
+    }
+    
+    /**
+     * @return false if the fingerprint is definitely not in the filter.
+     */
+    boolean mightContain(long fingerprint) {
+        long hash1 = fingerprint;
+        long hash2 = Long.rotateLeft(fingerprint, 32) | 1;
+        for (int i = 0; i < numHashes; i++) {
+            long bitIdx = Math.floorMod(hash1 + i * hash2, numBits);
+            if ((words.get((int) (bitIdx >>> 6)) & (1L << bitIdx)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    long getSizeBytes() {
+        return numBits / Byte.SIZE;
+    }
+    
+    private boolean setBit(long bitIdx) {
+        int wordIdx = (int) (bitIdx >>> 6);
+        long mask = 1L << bitIdx;
+        long word;
+        do {
+            word = words.get(wordIdx);
+            if ((word & mask) != 0) {
+                return false;
+            }
+        } while (!words.compareAndSet(wordIdx, word, word | mask));
+        return true;
+    }
+}
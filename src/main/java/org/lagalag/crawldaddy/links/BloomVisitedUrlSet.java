@@ -0,0 +1,59 @@
+package org.lagalag.crawldaddy.links;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.lagalag.crawldaddy.util.Fingerprints;
+
+/**
+ * Probabilistic VisitedUrlSet that keeps nothing but a Bloom filter of url fingerprints: a few bits per url, at the
+ * cost of a (configurable) fraction of never-seen urls being mistaken for visited ones and skipped. 
+ * The number of urls actually added is still counted exactly.
+ */
+public class BloomVisitedUrlSet implements VisitedUrlSet {
+    private final BloomFilter bloomFilter;
+    private final SlotReservations slots = new SlotReservations();
+    private final AtomicInteger size = new AtomicInteger();
+    
+    public BloomVisitedUrlSet(int expectedSize, double falsePositiveRate, long memoryBudgetBytes) {
+        this.bloomFilter = new BloomFilter(expectedSize, falsePositiveRate, memoryBudgetBytes);
+    }
+    
+    @Override
+    public boolean addIfAbsent(String url, int maxSize) {
+        if (slots.isFull(maxSize)) {
+            return false;
+        }
+        long fingerprint = Fingerprints.of(url);
+        if (bloomFilter.mightContain(fingerprint) || !slots.reserve(maxSize)) {
+            return false;
+        }
+        if (bloomFilter.put(fingerprint)) {
+            size.incrementAndGet();
+            return true;
+        }
+        slots.release();
+        return false;
+    }
+    
+    @Override
+    public boolean contains(String url) {
+        return bloomFilter.mightContain(Fingerprints.of(url));
+    }
+    
+    @Override
+    public int size() {
+        return size.get();
+    }
+    
+    @Override
+    public Set<String> asSet() {
+        return Collections.emptySet();
+    }
+    
+    @Override
+    public boolean isRetainingUrls() {
+        return false;
+    }
+}
@@ -0,0 +1,310 @@
+package org.lagalag.crawldaddy.links;
+
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.lagalag.crawldaddy.util.Fingerprints;
+
+/**
+ * Concurrent set of urls that takes a fraction of the heap of a set of Strings. Each url is split into its directory 
+ * prefix, which is interned in a UrlPrefixTrie (so a host name, or a directory, is stored once however many urls 
+ * share it), and the rest of the url (last path segment, query and fragment), which is appended as UTF-8 bytes to a 
+ * byte array. A url thus costs a few bytes plus the length of its last segment, rather than the ~100 bytes of 
+ * object overhead plus the full length of a String in a ConcurrentHashMap.
+ * Urls are only turned back into Strings as they are iterated over; iterators are weakly consistent, as for the 
+ * concurrent collections. Like OffHeapFingerprintTable, the set is split into independently locked stripes.
+ * Removal is not supported.
+ */
+public class CompactUrlSet extends AbstractSet<String> {
+    private static final int STRIPE_BITS = 6;
+    private static final int NUM_STRIPES = 1 << STRIPE_BITS;
+    private static final String SCHEME_SEPARATOR = "://";
+    
+    private final UrlPrefixTrie prefixes = new UrlPrefixTrie();
+    private final Stripe[] stripes = new Stripe[NUM_STRIPES];
+    
+    public CompactUrlSet() {
+        for (int i = 0; i < NUM_STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+    
+    @Override
+    public boolean add(String url) {
+        int prefixId = addPrefix(url);
+        byte[] leaf = getLeaf(url).getBytes(StandardCharsets.UTF_8);
+        long hash = hash(prefixId, leaf);
+        return getStripe(hash).add(prefixId, leaf, (int) hash);
+    }
+    
+    @Override
+    public boolean contains(Object o) {
+        if (!(o instanceof String)) {
+            return false;
+        }
+        String url = (String) o;
+        int prefixId = findPrefix(url);
+        if (prefixId == UrlPrefixTrie.NO_PREFIX) {
+            return false;
+        }
+        byte[] leaf = getLeaf(url).getBytes(StandardCharsets.UTF_8);
+        long hash = hash(prefixId, leaf);
+        return getStripe(hash).contains(prefixId, leaf, (int) hash);
+    }
+    
+    @Override
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            size += stripe.size();
+        }
+        return size;
+    }
+    
+    @Override
+    public Iterator<String> iterator() {
+        return new UrlIterator();
+    }
+    
+    /*
+     * A url is split as <authority> (<directory> '/')* <leaf>, e.g. "https://host" "" "docs" "page.html?q=a/b": 
+     * only the path (up to any query or fragment) is split into directories. Anything without an authority 
+     * (e.g. "mailto:...") goes under the root "", with an empty path.
+     */
+    private int addPrefix(String url) {
+        int authorityEnd = getAuthorityEnd(url);
+        int pathEnd = getPathEnd(url, authorityEnd);
+        int prefixId = prefixes.getOrAddRoot(url.substring(0, authorityEnd));
+        int segmentStart = authorityEnd;
+        int slash;
+        while (((slash = url.indexOf('/', segmentStart)) >= 0) && (slash < pathEnd)) {
+            prefixId = prefixes.getOrAddChild(prefixId, url.substring(segmentStart, slash));
+            segmentStart = slash + 1;
+        }
+        return prefixId;
+    }
+    
+    private int findPrefix(String url) {
+        int authorityEnd = getAuthorityEnd(url);
+        int pathEnd = getPathEnd(url, authorityEnd);
+        int prefixId = prefixes.find(UrlPrefixTrie.NO_PREFIX, url.substring(0, authorityEnd));
+        int segmentStart = authorityEnd;
+        int slash;
+        while ((prefixId != UrlPrefixTrie.NO_PREFIX) && ((slash = url.indexOf('/', segmentStart)) >= 0) && (slash < pathEnd)) {
+            prefixId = prefixes.find(prefixId, url.substring(segmentStart, slash));
+            segmentStart = slash + 1;
+        }
+        return prefixId;
+    }
+    
+    private static String getLeaf(String url) {
+        int authorityEnd = getAuthorityEnd(url);
+        int pathEnd = getPathEnd(url, authorityEnd);
+        int lastSlash = url.lastIndexOf('/', pathEnd - 1);
+        return url.substring(Math.max(authorityEnd, lastSlash + 1));
+    }
+    
+    private static int getAuthorityEnd(String url) {
+        int schemeEnd = url.indexOf(SCHEME_SEPARATOR);
+        if (schemeEnd < 0) {
+            return 0;
+        }
+        int authorityStart = schemeEnd + SCHEME_SEPARATOR.length();
+        for (int i = authorityStart; i < url.length(); i++) {
+            char c = url.charAt(i);
+            if ((c == '/') || (c == '?') || (c == '#')) {
+                return i;
+            }
+        }
+        return url.length();
+    }
+    
+    private static int getPathEnd(String url, int authorityEnd) {
+        if (authorityEnd == 0) {
+            return 0;
+        }
+        for (int i = authorityEnd; i < url.length(); i++) {
+            char c = url.charAt(i);
+            if ((c == '?') || (c == '#')) {
+                return i;
+            }
+        }
+        return url.length();
+    }
+    
+    private static long hash(int prefixId, byte[] leaf) {
+        return hash(prefixId, leaf, 0, leaf.length);
+    }
+    
+    private static long hash(int prefixId, byte[] bytes, int offset, int length) {
+        return Fingerprints.of(bytes, offset, length) ^ (prefixId * 0x9e3779b97f4a7c15L);
+    }
+    
+    private Stripe getStripe(long hash) {
+        return stripes[(int) (hash >>> (Long.SIZE - STRIPE_BITS))];
+    }
+    
+    private static int writeVarInt(byte[] bytes, int pos, int value) {
+        while ((value & ~0x7f) != 0) {
+            bytes[pos++] = (byte) ((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        bytes[pos++] = (byte) value;
+        return pos;
+    }
+    
+    /* Reads the varint at pos[0], and advances pos[0] past it. */
+    private static int readVarInt(byte[] bytes, int[] pos) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = bytes[pos[0]++];
+            value |= (b & 0x7f) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+    
+    /*
+     * Records are appended to a single byte array per stripe as <prefix id> <leaf length> <leaf bytes> (ids and 
+     * lengths as varints), and indexed by an open-addressing (linear probing) table of record offsets. Records are 
+     * never moved or overwritten, so a snapshot of the array and its length can be read without the lock.
+     */
+    private static class Stripe {
+        private static final int INITIAL_CAPACITY = 16;
+        private static final int INITIAL_RECORDS_SIZE = 256;
+        private static final double MAX_LOAD_FACTOR = 0.75;
+        
+        private int[] slots = new int[INITIAL_CAPACITY];  // record offset + 1; 0 marks an empty slot
+        private byte[] records = new byte[INITIAL_RECORDS_SIZE];
+        private int recordsLength;
+        private int size;
+        
+        synchronized boolean add(int prefixId, byte[] leaf, int hash) {
+            int idx = findSlot(prefixId, leaf, hash);
+            if (slots[idx] != 0) {
+                return false;
+            }
+            slots[idx] = appendRecord(prefixId, leaf) + 1;
+            if (++size > slots.length * MAX_LOAD_FACTOR) {
+                rehash();
+            }
+            return true;
+        }
+        
+        synchronized boolean contains(int prefixId, byte[] leaf, int hash) {
+            return slots[findSlot(prefixId, leaf, hash)] != 0;
+        }
+        
+        synchronized int size() {
+            return size;
+        }
+        
+        synchronized Snapshot snapshot() {
+            return new Snapshot(records, recordsLength);
+        }
+        
+        /* Returns the slot holding the given record, or the empty slot where it belongs. */
+        private int findSlot(int prefixId, byte[] leaf, int hash) {
+            int mask = slots.length - 1;
+            int idx = hash & mask;
+            while ((slots[idx] != 0) && !recordEquals(slots[idx] - 1, prefixId, leaf)) {
+                idx = (idx + 1) & mask;
+            }
+            return idx;
+        }
+        
+        private boolean recordEquals(int offset, int prefixId, byte[] leaf) {
+            int[] pos = { offset };
+            if ((readVarInt(records, pos) != prefixId) || (readVarInt(records, pos) != leaf.length)) {
+                return false;
+            }
+            for (int i = 0; i < leaf.length; i++) {
+                if (records[pos[0] + i] != leaf[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        private int appendRecord(int prefixId, byte[] leaf) {
+            int maxRecordLength = 2 * 5 + leaf.length;
+            if (recordsLength + maxRecordLength > records.length) {
+                int newLength = Math.max(recordsLength + maxRecordLength, records.length + (records.length >> 1));
+                // Readers may still hold the old array, so it's replaced rather than modified.
+                records = Arrays.copyOf(records, newLength);
+            }
+            int offset = recordsLength;
+            recordsLength = writeVarInt(records, recordsLength, prefixId);
+            recordsLength = writeVarInt(records, recordsLength, leaf.length);
+            System.arraycopy(leaf, 0, records, recordsLength, leaf.length);
+            recordsLength += leaf.length;
+            return offset;
+        }
+        
+        private void rehash() {
+            int[] newSlots = new int[slots.length * 2];
+            int mask = newSlots.length - 1;
+            for (int slot : slots) {
+                if (slot != 0) {
+                    int[] pos = { slot - 1 };
+                    int prefixId = readVarInt(records, pos);
+                    int leafLength = readVarInt(records, pos);
+                    int idx = (int) hash(prefixId, records, pos[0], leafLength) & mask;
+                    while (newSlots[idx] != 0) {
+                        idx = (idx + 1) & mask;
+                    }
+                    newSlots[idx] = slot;
+                }
+            }
+            slots = newSlots;
+        }
+    }
+    
+    private static class Snapshot {
+        final byte[] records;
+        final int length;
+        
+        Snapshot(byte[] records, int length) {
+            this.records = records;
+            this.length = length;
+        }
+    }
+    
+    /* Walks the records of each stripe in turn, decoding each url only as it is asked for. */
+    private class UrlIterator implements Iterator<String> {
+        private int stripeIndex = -1;
+        private Snapshot snapshot;
+        private final int[] pos = { 0 };
+        
+        @Override
+        public boolean hasNext() {
+            while ((snapshot == null) || (pos[0] >= snapshot.length)) {
+                if (++stripeIndex >= NUM_STRIPES) {
+                    return false;
+                }
+                snapshot = stripes[stripeIndex].snapshot();
+                pos[0] = 0;
+            }
+            return true;
+        }
+        
+        @Override
+        public String next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            int prefixId = readVarInt(snapshot.records, pos);
+            int leafLength = readVarInt(snapshot.records, pos);
+            StringBuilder sb = new StringBuilder();
+            prefixes.appendPrefix(prefixId, sb);
+            sb.append(new String(snapshot.records, pos[0], leafLength, StandardCharsets.UTF_8));
+            pos[0] += leafLength;
+            return sb.toString();
+        }
+    }
+}
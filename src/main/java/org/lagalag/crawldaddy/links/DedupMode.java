@@ -0,0 +1,29 @@
+package org.lagalag.crawldaddy.links;
+
+/**
+ * Identifies the ways in which the set of visited urls can be kept.
+ *
+ */
+public enum DedupMode {
+    /** Urls are kept as strings on the heap; exact, but costs hundreds of bytes per url. */
+    EXACT,
+    /** 64-bit url fingerprints are kept in an off-heap hash table; exact barring (very unlikely) hash collisions. */
+    FINGERPRINT,
+    /** Only a Bloom filter is kept; a small, configurable fraction of new urls will be mistaken for visited ones. */
+    BLOOM;
+    
+    /**
+     * Returns the mode with the given (case-insensitive) name, or null if there is no such mode.
+     */
+    public static DedupMode fromName(String name) {
+        if (name == null) {
+            return null;
+        }
+        for (DedupMode mode : values()) {
+            if (mode.name().equalsIgnoreCase(name.trim())) {
+                return mode;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,36 @@
+package org.lagalag.crawldaddy.links;
+
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * SeenUrlSet that keeps the urls themselves, in a (striped, compact) CompactUrlSet.
+ */
+public class ExactSeenUrlSet implements SeenUrlSet {
+    private final Set<String> urls = new CompactUrlSet();
+    
+    @Override
+    public boolean add(String url) {
+        return urls.add(url);
+    }
+    
+    @Override
+    public boolean contains(String url) {
+        return urls.contains(url);
+    }
+    
+    @Override
+    public int size() {
+        return urls.size();
+    }
+    
+    @Override
+    public Set<String> asSet() {
+        return Collections.unmodifiableSet(urls);
+    }
+    
+    @Override
+    public String toString() {
+        return urls.toString();
+    }
+}
@@ -0,0 +1,50 @@
+package org.lagalag.crawldaddy.links;
+
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * VisitedUrlSet that keeps the urls themselves in a (striped, compact) CompactUrlSet, and enforces its maximum size 
+ * without a global lock (see SlotReservations). It is not lock-free: lookups and additions take the lock of one of 
+ * the set's stripes, so threads only contend when their urls hash to the same stripe.
+ * Since duplicates are by far the most common case while crawling, urls already in the set are turned away by a 
+ * plain lookup before any slot is reserved, and once the set is full every url is turned away by a single read of 
+ * the counter.
+ */
+public class ExactVisitedUrlSet implements VisitedUrlSet {
+    private final Set<String> urls = new CompactUrlSet();
+    private final SlotReservations slots = new SlotReservations();
+    
+    /**
+     * Note that while another thread is briefly holding a slot for a duplicate url, a url that would have just fit 
+     * may be turned away.
+     */
+    @Override
+    public boolean addIfAbsent(String url, int maxSize) {
+        // Once the set is full there is nothing more to do, whether or not the url is in it.
+        if (slots.isFull(maxSize) || urls.contains(url) || !slots.reserve(maxSize)) {
+            return false;
+        }
+        if (urls.add(url)) {
+            return true;
+        }
+        // Lost a race with another thread adding the same url.
+        slots.release();
+        return false;
+    }
+    
+    @Override
+    public boolean contains(String url) {
+        return urls.contains(url);
+    }
+    
+    @Override
+    public int size() {
+        return urls.size();
+    }
+    
+    @Override
+    public Set<String> asSet() {
+        return Collections.unmodifiableSet(urls);
+    }
+}
@@ -0,0 +1,123 @@
+package org.lagalag.crawldaddy.links;
+
+import java.util.Collections;
+import java.util.Set;
+
+import org.lagalag.crawldaddy.util.Fingerprints;
+
+/**
+ * SeenUrlSet that keeps only 64-bit fingerprints of its urls, on the heap, in growable open-addressing tables 
+ * (16 bytes or so per url, whatever its length). It can tell whether a url was added before, and how many distinct 
+ * urls were, but not what they were. As with FingerprintVisitedUrlSet, two urls with the same fingerprint would be 
+ * taken as one. Like CompactUrlSet, the set is split into independently locked stripes.
+ */
+public class FingerprintSeenUrlSet implements SeenUrlSet {
+    private static final int STRIPE_BITS = 4;
+    private static final int NUM_STRIPES = 1 << STRIPE_BITS;
+    
+    private final Stripe[] stripes = new Stripe[NUM_STRIPES];
+    
+    public FingerprintSeenUrlSet() {
+        for (int i = 0; i < NUM_STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+    
+    @Override
+    public boolean add(String url) {
+        long fingerprint = fingerprintOf(url);
+        return getStripe(fingerprint).add(fingerprint);
+    }
+    
+    @Override
+    public boolean contains(String url) {
+        long fingerprint = fingerprintOf(url);
+        return getStripe(fingerprint).contains(fingerprint);
+    }
+    
+    @Override
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            size += stripe.size();
+        }
+        return size;
+    }
+    
+    /**
+     * Returns an empty set: the urls themselves aren't kept.
+     */
+    @Override
+    public Set<String> asSet() {
+        return Collections.emptySet();
+    }
+    
+    @Override
+    public boolean isRetainingUrls() {
+        return false;
+    }
+    
+    @Override
+    public String toString() {
+        return "[" + size() + " url fingerprints]";
+    }
+    
+    /* 0 marks an empty slot, so it's never used as a fingerprint. */
+    private static long fingerprintOf(String url) {
+        long fingerprint = Fingerprints.of(url);
+        return (fingerprint != 0 ? fingerprint : 1);
+    }
+    
+    private Stripe getStripe(long fingerprint) {
+        return stripes[(int) (fingerprint >>> (Long.SIZE - STRIPE_BITS))];
+    }
+    
+    /* Linear probing table of fingerprints, indexed by their low bits (the high bits pick the stripe). */
+    private static class Stripe {
+        private static final int INITIAL_CAPACITY = 16;
+        private static final double MAX_LOAD_FACTOR = 0.5;
+        
+        private long[] slots = new long[INITIAL_CAPACITY];
+        private int size;
+        
+        synchronized boolean add(long fingerprint) {
+            int idx = findSlot(slots, fingerprint);
+            if (slots[idx] != 0) {
+                return false;
+            }
+            slots[idx] = fingerprint;
+            if (++size > slots.length * MAX_LOAD_FACTOR) {
+                rehash();
+            }
+            return true;
+        }
+        
+        synchronized boolean contains(long fingerprint) {
+            return slots[findSlot(slots, fingerprint)] != 0;
+        }
+        
+        synchronized int size() {
+            return size;
+        }
+        
+        private void rehash() {
+            long[] newSlots = new long[slots.length * 2];
+            for (long fingerprint : slots) {
+                if (fingerprint != 0) {
+                    newSlots[findSlot(newSlots, fingerprint)] = fingerprint;
+                }
+            }
+            slots = newSlots;
+        }
+        
+        /* Returns the slot holding the given fingerprint, or the empty slot where it belongs. */
+        private static int findSlot(long[] slots, long fingerprint) {
+            int mask = slots.length - 1;
+            int idx = (int) fingerprint & mask;
+            while ((slots[idx] != 0) && (slots[idx] != fingerprint)) {
+                idx = (idx + 1) & mask;
+            }
+            return idx;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package org.lagalag.crawldaddy.links;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.lagalag.crawldaddy.util.Fingerprints;
+
+/**
+ * VisitedUrlSet that keeps only 64-bit fingerprints of the urls, in an off-heap hash table (8 bytes per slot instead
+ * of the hundreds of bytes taken by a url string and its hash map entry). Optionally, a Bloom filter in front of the
+ * table answers most lookups of never-seen urls without probing the (much larger) table.
+ * Two distinct urls with the same fingerprint would be taken as duplicates, but with 64-bit fingerprints the odds
+ * of that happening are negligible even for tens of millions of urls.
+ */
+public class FingerprintVisitedUrlSet implements VisitedUrlSet {
+    private static final Logger LOGGER = LogManager.getLogger();
+    
+    /* Fraction of the memory budget that the Bloom filter front (if any) may use. */
+    private static final int BLOOM_FRONT_BUDGET_DIVISOR = 4;
+    
+    private final OffHeapFingerprintTable table;
+    private final BloomFilter bloomFront;
+    private final SlotReservations slots = new SlotReservations();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicBoolean tableFullReported = new AtomicBoolean();
+    
+    /**
+     * @param expectedSize number of urls the set should be able to hold.
+     * @param memoryBudgetBytes maximum number of bytes to use (the table stops accepting urls when it is full).
+     * @param bloomFrontFalsePositiveRate false-positive rate of the Bloom filter front; 0 for no Bloom filter front.
+     */
+    public FingerprintVisitedUrlSet(int expectedSize, long memoryBudgetBytes, double bloomFrontFalsePositiveRate) {
+        long tableBudgetBytes = memoryBudgetBytes;
+        if (bloomFrontFalsePositiveRate > 0) {
+            this.bloomFront = new BloomFilter(expectedSize, bloomFrontFalsePositiveRate, memoryBudgetBytes / BLOOM_FRONT_BUDGET_DIVISOR);
+            tableBudgetBytes -= bloomFront.getSizeBytes();
+        } else {
+            this.bloomFront = null;
+        }
+        this.table = new OffHeapFingerprintTable(expectedSize, tableBudgetBytes);
+        LOGGER.debug("Fingerprint table: " + table.getCapacityBytes() + " bytes off-heap" 
+                     + (bloomFront != null ? ", Bloom filter front: " + bloomFront.getSizeBytes() + " bytes" : ""));
+    }
+    
+    @Override
+    public boolean addIfAbsent(String url, int maxSize) {
+        if (slots.isFull(maxSize)) {
+            return false;
+        }
+        long fingerprint = Fingerprints.of(url);
+        if (containsFingerprint(fingerprint) || !slots.reserve(maxSize)) {
+            return false;
+        }
+        switch (table.add(fingerprint)) {
+        case ADDED:
+            if (bloomFront != null) {
+                bloomFront.put(fingerprint);
+            }
+            size.incrementAndGet();
+            return true;
+        case TABLE_FULL:
+            if (tableFullReported.compareAndSet(false, true)) {
+                LOGGER.warn("Visited url fingerprint table is full; increase the dedup memory budget to visit more urls");
+            }
+            slots.release();
+            return false;
+        case ALREADY_PRESENT:
+        default:
+            slots.release();
+            return false;
+        }
+    }
+    
+    @Override
+    public boolean contains(String url) {
+        return containsFingerprint(Fingerprints.of(url));
+    }
+    
+    @Override
+    public int size() {
+        return size.get();
+    }
+    
+    @Override
+    public Set<String> asSet() {
+        return Collections.emptySet();
+    }
+    
+    @Override
+    public boolean isRetainingUrls() {
+        return false;
+    }
+    
+    private boolean containsFingerprint(long fingerprint) {
+        if ((bloomFront != null) && !bloomFront.mightContain(fingerprint)) {
+            return false;
+        }
+        return table.contains(fingerprint);
+    }
+}
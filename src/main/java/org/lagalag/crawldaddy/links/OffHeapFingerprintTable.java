@@ -0,0 +1,114 @@
+package org.lagalag.crawldaddy.links;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+
+/**
+ * Open-addressing (linear probing) hash set of non-zero 64-bit fingerprints, kept in direct (off-heap) memory at 
+ * 8 bytes per slot. The table is split into independently locked stripes, selected by the top bits of the 
+ * fingerprint, so concurrent adds rarely contend. The table does not grow: once a stripe reaches its maximum load, 
+ * further fingerprints that map to it are rejected.
+ */
+class OffHeapFingerprintTable {
+    enum AddResult { ADDED, ALREADY_PRESENT, TABLE_FULL }
+    
+    static final int SLOT_SIZE_BYTES = Long.BYTES;
+    
+    private static final int STRIPE_BITS = 6;
+    private static final int NUM_STRIPES = 1 << STRIPE_BITS;
+    private static final int MIN_SLOTS_PER_STRIPE = 16;
+    private static final double MAX_LOAD_FACTOR = 0.75;
+    
+    private final Stripe[] stripes = new Stripe[NUM_STRIPES];
+    
+    /**
+     * Creates a table big enough for the given number of fingerprints, but using no more than (roughly) the given 
+     * number of bytes.
+     */
+    OffHeapFingerprintTable(long expectedSize, long maxBytes) {
+        long slotsPerStripe = (long) Math.ceil(expectedSize / MAX_LOAD_FACTOR / NUM_STRIPES);
+        long maxSlotsPerStripe = Math.max(MIN_SLOTS_PER_STRIPE, maxBytes / SLOT_SIZE_BYTES / NUM_STRIPES);
+        int numSlotsPerStripe = (int) Math.max(MIN_SLOTS_PER_STRIPE, 
+                                               Math.min(roundDownToPowerOfTwo(maxSlotsPerStripe), 
+                                                        roundUpToPowerOfTwo(slotsPerStripe)));
+        for (int i = 0; i < NUM_STRIPES; i++) {
+            stripes[i] = new Stripe(numSlotsPerStripe);
+        }
+    }
+    
+    AddResult add(long fingerprint) {
+        fingerprint = nonZero(fingerprint);
+        return getStripe(fingerprint).add(fingerprint);
+    }
+    
+    boolean contains(long fingerprint) {
+        fingerprint = nonZero(fingerprint);
+        return getStripe(fingerprint).contains(fingerprint);
+    }
+    
+    long getCapacityBytes() {
+        return (long) stripes[0].capacity * SLOT_SIZE_BYTES * NUM_STRIPES;
+    }
+    
+    private Stripe getStripe(long fingerprint) {
+        return stripes[(int) (fingerprint >>> (Long.SIZE - STRIPE_BITS))];
+    }
+    
+    /* Zero marks an empty slot. */
+    private static long nonZero(long fingerprint) {
+        return (fingerprint == 0 ? 1 : fingerprint);
+    }
+    
+    private static long roundUpToPowerOfTwo(long n) {
+        return (n <= 1 ? 1 : Long.highestOneBit(n - 1) << 1);
+    }
+    
+    private static long roundDownToPowerOfTwo(long n) {
+        return Long.highestOneBit(Math.max(1, n));
+    }
+    
+    private static class Stripe {
+        private final LongBuffer slots;
+        private final int capacity;
+        private final int mask;
+        private final int maxSize;
+        private int size;
+        
+        Stripe(int capacity) {
+            this.slots = ByteBuffer.allocateDirect(capacity * SLOT_SIZE_BYTES).order(ByteOrder.nativeOrder()).asLongBuffer();
+            this.capacity = capacity;
+            this.mask = capacity - 1;
+            this.maxSize = (int) (capacity * MAX_LOAD_FACTOR);
+        }
+        
+        synchronized AddResult add(long fingerprint) {
+            int idx = (int) fingerprint & mask;
+            long slot;
+            while ((slot = slots.get(idx)) != 0) {
+                if (slot == fingerprint) {
+                    return AddResult.ALREADY_PRESENT;
+                }
+                idx = (idx + 1) & mask;
+            }
+            if (size >= maxSize) {
+                return AddResult.TABLE_FULL;
+            }
+            slots.put(idx, fingerprint);
+            size++;
+            return AddResult.ADDED;
+        }
+        
+        synchronized boolean contains(long fingerprint) {
+            int idx = (int) fingerprint & mask;
+            long slot;
+            while ((slot = slots.get(idx)) != 0) {
+                if (slot == fingerprint) {
+                    return true;
+                }
+                idx = (idx + 1) & mask;
+            }
+            return false;
+        }
+    }
+}
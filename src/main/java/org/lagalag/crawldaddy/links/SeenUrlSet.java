@@ -0,0 +1,33 @@
+package org.lagalag.crawldaddy.links;
+
+import java.util.Set;
+
+/**
+ * Concurrent set of the urls seen during a crawl (external links, broken links, scripts...), which may only keep 
+ * enough to tell whether a url was seen before and how many distinct urls were. Unlike VisitedUrlSet, it has no 
+ * upper bound. Removal is not supported.
+ */
+public interface SeenUrlSet {
+    /**
+     * Adds the given url if it is not already in the set.
+     * @return true if the url was added.
+     */
+    boolean add(String url);
+    
+    boolean contains(String url);
+    
+    /**
+     * Returns the number of distinct urls added to the set.
+     */
+    int size();
+    
+    /**
+     * Returns an unmodifiable view of the urls in the set, or an empty set if the implementation does not retain 
+     * the urls themselves (see isRetainingUrls()).
+     */
+    Set<String> asSet();
+    
+    default boolean isRetainingUrls() {
+        return true;
+    }
+}
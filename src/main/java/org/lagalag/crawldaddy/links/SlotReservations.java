@@ -0,0 +1,34 @@
+package org.lagalag.crawldaddy.links;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps a bounded VisitedUrlSet within its maximum size without a global lock: a new url first reserves a slot by 
+ * atomically bumping a counter, and gives the slot back if it turns out to be a duplicate.
+ */
+class SlotReservations {
+    private final AtomicInteger numReservedSlots = new AtomicInteger();
+    
+    boolean isFull(int maxSize) {
+        return (numReservedSlots.get() >= maxSize);
+    }
+    
+    boolean reserve(int maxSize) {
+        int numSlots;
+        do {
+            numSlots = numReservedSlots.get();
+            if (numSlots >= maxSize) {
+                return false;
+            }
+        } while (!numReservedSlots.compareAndSet(numSlots, numSlots + 1));
+        return true;
+    }
+    
+    void release() {
+        numReservedSlots.decrementAndGet();
+    }
+    
+    int get() {
+        return numReservedSlots.get();
+    }
+}
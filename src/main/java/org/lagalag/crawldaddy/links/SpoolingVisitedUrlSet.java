@@ -0,0 +1,88 @@
+package org.lagalag.crawldaddy.links;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Set;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Decorates a VisitedUrlSet so that every url added to it is also written (one per line) to a file, which gives 
+ * the full list of urls even when the underlying set only keeps fingerprints.
+ */
+public class SpoolingVisitedUrlSet implements VisitedUrlSet {
+    private static final Logger LOGGER = LogManager.getLogger();
+    
+    private final VisitedUrlSet delegate;
+    private final File file;
+    private final Writer writer;
+    private boolean writeFailed;
+    
+    public SpoolingVisitedUrlSet(VisitedUrlSet delegate, File file) {
+        this.delegate = delegate;
+        this.file = file;
+        try {
+            this.writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to create url list file " + file, e);
+        }
+    }
+    
+    @Override
+    public boolean addIfAbsent(String url, int maxSize) {
+        if (!delegate.addIfAbsent(url, maxSize)) {
+            return false;
+        }
+        writeUrl(url);
+        return true;
+    }
+    
+    @Override
+    public boolean contains(String url) {
+        return delegate.contains(url);
+    }
+    
+    @Override
+    public int size() {
+        return delegate.size();
+    }
+    
+    @Override
+    public Set<String> asSet() {
+        return delegate.asSet();
+    }
+    
+    @Override
+    public boolean isRetainingUrls() {
+        return delegate.isRetainingUrls();
+    }
+    
+    @Override
+    public synchronized void close() {
+        try {
+            writer.close();
+        } catch (IOException e) {
+            LOGGER.error("Unable to close url list file " + file + ": " + e.getMessage());
+        }
+        delegate.close();
+    }
+    
+    private synchronized void writeUrl(String url) {
+        if (writeFailed) {
+            return;
+        }
+        try {
+            writer.write(url);
+            writer.write('\n');
+        } catch (IOException e) {
+            // Don't let a full disk (or similar) bring down the crawl; just stop writing.
+            writeFailed = true;
+            LOGGER.error("Unable to write to url list file " + file + "; no more urls will be written: " + e.getMessage());
+        }
+    }
+}
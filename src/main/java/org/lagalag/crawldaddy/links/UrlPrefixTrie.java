@@ -0,0 +1,94 @@
+package org.lagalag.crawldaddy.links;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Dictionary of the url prefixes shared by the urls in a CompactUrlSet, each identified by a small int id. The roots 
+ * of the trie are the scheme and authority of each host seen (e.g. "https://www.example.org"), and every other node 
+ * adds one path directory to the prefix of its parent, so all the urls in the same directory of the same host share 
+ * a single node. Nodes are never removed. Thread-safe; lookups of existing nodes take no lock.
+ */
+class UrlPrefixTrie {
+    static final int NO_PREFIX = -1;
+    
+    private static final char PATH_SEPARATOR = '/';
+    
+    private final ConcurrentMap<Node,Integer> ids = new ConcurrentHashMap<>();
+    private final List<Node> nodes = new ArrayList<>();
+    
+    int getOrAddRoot(String authority) {
+        return getOrAddChild(NO_PREFIX, authority);
+    }
+    
+    int getOrAddChild(int parentId, String segment) {
+        Node node = new Node(parentId, segment);
+        Integer id = ids.get(node);
+        if (id == null) {
+            synchronized (this) {
+                id = ids.get(node);
+                if (id == null) {
+                    id = nodes.size();
+                    nodes.add(node);
+                    ids.put(node, id);
+                }
+            }
+        }
+        return id;
+    }
+    
+    /**
+     * Returns the id of the given root or child, or NO_PREFIX if it isn't in the trie.
+     */
+    int find(int parentId, String segment) {
+        Integer id = ids.get(new Node(parentId, segment));
+        return (id != null ? id : NO_PREFIX);
+    }
+    
+    int size() {
+        return ids.size();
+    }
+    
+    /**
+     * Appends the full prefix with the given id (including the trailing '/' of a directory) to the given builder.
+     */
+    void appendPrefix(int id, StringBuilder sb) {
+        Node node = getNode(id);
+        if (node.parentId == NO_PREFIX) {
+            sb.append(node.segment);
+        } else {
+            appendPrefix(node.parentId, sb);
+            sb.append(node.segment).append(PATH_SEPARATOR);
+        }
+    }
+    
+    private synchronized Node getNode(int id) {
+        return nodes.get(id);
+    }
+    
+    private static class Node {
+        final int parentId;
+        final String segment;
+        
+        Node(int parentId, String segment) {
+            this.parentId = parentId;
+            this.segment = segment;
+        }
+        
+        @Override
+        public int hashCode() {
+            return 31 * parentId + segment.hashCode();
+        }
+        
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Node)) {
+                return false;
+            }
+            Node other = (Node) obj;
+            return (parentId == other.parentId) && segment.equals(other.segment);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package org.lagalag.crawldaddy.links;
+
+import java.util.Set;
+
+/**
+ * Concurrent set of visited (or to-be-visited) urls with an upper bound on its size.
+ *
+ */
+public interface VisitedUrlSet extends AutoCloseable {
+    /**
+     * Adds the given url if it is not already in the set and the set holds fewer than maxSize urls.
+     * @return true if the url was added.
+     */
+    boolean addIfAbsent(String url, int maxSize);
+    
+    boolean contains(String url);
+    
+    /**
+     * Returns the (exact) number of urls added to the set.
+     */
+    int size();
+    
+    /**
+     * Returns an unmodifiable view of the urls in the set, or an empty set if the implementation does not retain 
+     * the urls themselves (see isRetainingUrls()).
+     */
+    Set<String> asSet();
+    
+    default boolean isRetainingUrls() {
+        return true;
+    }
+    
+    /**
+     * Releases any resources (files, off-heap memory) held by the set. The set may still be queried afterwards.
+     */
+    @Override
+    default void close() {
+    }
+}
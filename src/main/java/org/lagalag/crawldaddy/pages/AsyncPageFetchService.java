@@ -0,0 +1,416 @@
+package org.lagalag.crawldaddy.pages;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.CookieSpecs;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.client.utils.URIUtils;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.entity.BasicHttpEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.nio.ContentDecoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.protocol.AbstractAsyncResponseConsumer;
+import org.apache.http.nio.protocol.BasicAsyncRequestProducer;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * PageFetchService that uses non-blocking I/O (Apache HttpAsyncClient) to fetch pages, so that a large number of
+ * requests can be in flight at once on a handful of I/O threads. Compressed bodies are decoded on the I/O threads as 
+ * they arrive, but pages are parsed (by the LinkExtractor) on the executor given to fetchAsync(), never on the I/O 
+ * threads themselves.
+ */
+public class AsyncPageFetchService implements PageFetchService {
+    public static final int DEFAULT_MAX_CONNECTIONS = 1000;
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 30000;
+    private static final int SOCKET_TIMEOUT_MILLIS = 30000;
+    private static final int DEFAULT_BUFFER_SIZE = 4096;
+    private static final String CONTENT_TYPE_HEADER = "Content-Type";
+    private static final String ETAG_HEADER = "ETag";
+    private static final String LAST_MODIFIED_HEADER = "Last-Modified";
+
+    private final CloseableHttpAsyncClient httpClient;
+    private final LinkExtractor linkExtractor;
+    private final ContentPolicy contentPolicy;
+
+    public AsyncPageFetchService() {
+        this(DEFAULT_MAX_CONNECTIONS, new JsoupLinkExtractor());
+    }
+
+    public AsyncPageFetchService(int maxConnections, LinkExtractor linkExtractor) {
+        RequestConfig requestConfig = RequestConfig.custom()
+                                                   .setConnectTimeout(CONNECT_TIMEOUT_MILLIS)
+                                                   .setSocketTimeout(SOCKET_TIMEOUT_MILLIS)
+                                                   .setCookieSpec(CookieSpecs.STANDARD)
+                                                   .build();
+        this.httpClient = HttpAsyncClients.custom()
+                                          .setMaxConnTotal(maxConnections)
+                                          .setMaxConnPerRoute(maxConnections)
+                                          .setDefaultRequestConfig(requestConfig)
+                                          .setThreadFactory(createDaemonThreadFactory())
+                                          .build();
+        this.httpClient.start();
+        this.linkExtractor = linkExtractor;
+        this.contentPolicy = ContentPolicy.DEFAULT;
+    }
+    
+    private AsyncPageFetchService(CloseableHttpAsyncClient httpClient, LinkExtractor linkExtractor, ContentPolicy contentPolicy) {
+        this.httpClient = httpClient;
+        this.linkExtractor = linkExtractor;
+        this.contentPolicy = contentPolicy;
+    }
+    
+    /**
+     * Returns a service that shares this service's connections (and I/O threads), but extracts links with the 
+     * given LinkExtractor.
+     */
+    public AsyncPageFetchService withLinkExtractor(LinkExtractor linkExtractor) {
+        return new AsyncPageFetchService(httpClient, linkExtractor, contentPolicy);
+    }
+    
+    /**
+     * Returns a service that shares this service's connections (and I/O threads), but decides what to download 
+     * with the given ContentPolicy.
+     */
+    public AsyncPageFetchService withContentPolicy(ContentPolicy contentPolicy) {
+        return new AsyncPageFetchService(httpClient, linkExtractor, contentPolicy);
+    }
+
+    @Override
+    public void fetch(String url, PageFetchConsumer resultsConsumer) throws PageFetchException {
+        try {
+            fetchAsync(url, resultsConsumer, Runnable::run).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof PageFetchException) {
+                throw (PageFetchException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> fetchAsync(String url, PageFetchConsumer resultsConsumer, Executor executor) {
+        return fetchAsync(url, Collections.emptyMap(), resultsConsumer, executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> fetchAsync(String url, Map<String,String> requestHeaders, 
+                                              PageFetchConsumer resultsConsumer, Executor executor) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        HttpGet request;
+        try {
+            request = new HttpGet(toRequestUri(url));
+        } catch (PageFetchException e) {
+            future.completeExceptionally(e);
+            return future;
+        }
+        request.addHeader(ContentEncodings.ACCEPT_ENCODING_HEADER, ContentEncodings.ACCEPTED_ENCODINGS);
+        requestHeaders.forEach(request::addHeader);
+        HttpClientContext context = HttpClientContext.create();
+        // The client looks hosts up as it leases connections, on whichever thread gets there: DNS isn't measured.
+        PageFetchTimings timings = new PageFetchTimings();
+        TimedRequestProducer requestProducer = new TimedRequestProducer(request, timings);
+        TimedResponseConsumer responseConsumer = new TimedResponseConsumer(requestProducer, contentPolicy);
+        httpClient.execute(requestProducer, responseConsumer, context, new FutureCallback<HttpResponse>() {
+            @Override
+            public void completed(HttpResponse response) {
+                try {
+                    long numBytesReceived = responseConsumer.numBytesReceived;
+                    executor.execute(() -> handleResponse(url, response, numBytesReceived, context, timings, 
+                                                          resultsConsumer, future));
+                } catch (RejectedExecutionException e) {
+                    future.completeExceptionally(new PageFetchException("Unable to process response from " + url, e));
+                }
+            }
+
+            @Override
+            public void failed(Exception e) {
+                if (responseConsumer.abortReason != null) {
+                    // Not a failure: we hung up on purpose.
+                    PageFetchResults results = PageFetchResults.onFetchAborted(url, responseConsumer.abortReason);
+                    try {
+                        executor.execute(() -> deliverResults(results.withTimings(timings), resultsConsumer, future));
+                    } catch (RejectedExecutionException ree) {
+                        future.completeExceptionally(new PageFetchException("Unable to process response from " + url, ree));
+                    }
+                    return;
+                }
+                future.completeExceptionally(new PageFetchException("Unable to GET " + url + ": " + e.getMessage(), e));
+            }
+
+            @Override
+            public void cancelled() {
+                future.completeExceptionally(new PageFetchException("GET " + url + " was cancelled"));
+            }
+        });
+        return future;
+    }
+
+    @Override
+    public boolean isBlocking() {
+        return false;
+    }
+
+    private void handleResponse(String url, HttpResponse response, long numBytesReceived, HttpClientContext context, 
+                                PageFetchTimings timings, PageFetchConsumer resultsConsumer, CompletableFuture<Void> future) {
+        PageFetchResults results;
+        try {
+            int httpStatusCode = response.getStatusLine().getStatusCode();
+            if ((httpStatusCode < 200) || (httpStatusCode >= 400)) {
+                results = PageFetchResults.onHttpNotOK(url, httpStatusCode);
+            } else if (httpStatusCode == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                results = PageFetchResults.onHttpNotModified(url);
+            } else {
+                long parseStartNanos = System.nanoTime();
+                results = parseResponse(url, response, numBytesReceived, getFinalUrl(url, context))
+                          .withValidators(getHeaderValue(response, ETAG_HEADER), getHeaderValue(response, LAST_MODIFIED_HEADER));
+                timings.setPhaseNanos(FetchPhase.PARSE, System.nanoTime() - parseStartNanos);
+            }
+        } catch (PageFetchException | RuntimeException e) {
+            future.completeExceptionally(e);
+            return;
+        }
+        deliverResults(results.withTimings(timings), resultsConsumer, future);
+    }
+    
+    private void deliverResults(PageFetchResults results, PageFetchConsumer resultsConsumer, CompletableFuture<Void> future) {
+        try {
+            resultsConsumer.handlePageFetchResults(results);
+            future.complete(null);
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+    }
+
+    private PageFetchResults parseResponse(String url, HttpResponse response, long numBytesReceived, String baseUrl) 
+            throws PageFetchException {
+        HttpEntity entity = response.getEntity();
+        if (entity == null) {
+            return PageFetchResults.onHttpOK(url, Collections.emptyList(), Collections.emptyList());
+        }
+        ContentType contentType = getContentType(entity);
+        Charset charset = (contentType != null ? contentType.getCharset() : null);
+        // The body was decoded as it was received.
+        try (InputStream decodedBody = entity.getContent()) {
+            // The content type and size were checked as the response came in; only sniffing is left to do.
+            PageFetchResults results = contentPolicy.extract(url, decodedBody, getHeaderValue(response, CONTENT_TYPE_HEADER), 
+                                                             (charset != null ? charset.name() : null), baseUrl, linkExtractor);
+            // All of the body was received and decoded, whether or not all of it was read.
+            return results.withBodySizes(numBytesReceived, entity.getContentLength());
+        } catch (IOException e) {
+            throw new PageFetchException("Unable to GET " + url + ": " + e.getMessage(), e);
+        }
+    }
+
+    private String getHeaderValue(HttpResponse response, String name) {
+        Header header = response.getFirstHeader(name);
+        return (header != null ? header.getValue() : null);
+    }
+
+    private ContentType getContentType(HttpEntity entity) {
+        try {
+            return ContentType.get(entity);
+        } catch (RuntimeException e) {
+            // Unparseable header or unknown charset -- let the parser figure it out.
+            return null;
+        }
+    }
+
+    /* Relative links have to be resolved against the location we were redirected to (if any). */
+    private String getFinalUrl(String url, HttpClientContext context) {
+        List<URI> redirectLocations = context.getRedirectLocations();
+        if ((redirectLocations == null) || redirectLocations.isEmpty()) {
+            return url;
+        }
+        return redirectLocations.get(redirectLocations.size() - 1).toString();
+    }
+
+    /* Shared with PooledPageFetchService. */
+    static URI toRequestUri(String url) throws PageFetchException {
+        if (url == null) {
+            throw new PageFetchException("Detected malformed url: " + url);
+        }
+        URI uri;
+        try {
+            uri = new URI(url.trim());
+        } catch (URISyntaxException e) {
+            uri = encodeUri(url);
+        }
+        String scheme = uri.getScheme();
+        if (!uri.isAbsolute() || (uri.getHost() == null)
+            || !("http".equalsIgnoreCase(scheme) || "https".equalsIgnoreCase(scheme))) {
+            throw new PageFetchException("Detected malformed url: " + url);
+        }
+        return uri;
+    }
+
+    /* Handles urls that contain characters that are illegal in a URI (e.g. unencoded spaces). */
+    private static URI encodeUri(String url) throws PageFetchException {
+        try {
+            URL u = new URL(url.trim());
+            return new URI(u.getProtocol(), u.getUserInfo(), u.getHost(), u.getPort(), u.getPath(), u.getQuery(), null);
+        } catch (MalformedURLException | URISyntaxException e) {
+            throw new PageFetchException("Detected malformed url: " + url);
+        }
+    }
+
+    /*
+     * Times the CONNECT phase (until the client asks for the request, which it does once it has a connection) and 
+     * notes when the request was sent, for the TTFB phase. Called on the I/O threads. On redirects, the phases of 
+     * the first request are timed, and the TTFB phase covers the redirects.
+     */
+    private static class TimedRequestProducer extends BasicAsyncRequestProducer {
+        private final PageFetchTimings timings;
+        private final long connectStartNanos = System.nanoTime();
+        private long requestSentNanos;
+
+        TimedRequestProducer(HttpUriRequest request, PageFetchTimings timings) {
+            super(URIUtils.extractHost(request.getURI()), request);
+            this.timings = timings;
+        }
+
+        @Override
+        public HttpRequest generateRequest() {
+            if (!timings.isMeasured(FetchPhase.CONNECT)) {
+                timings.setPhaseNanos(FetchPhase.CONNECT, System.nanoTime() - connectStartNanos);
+            }
+            return super.generateRequest();
+        }
+
+        @Override
+        public void requestCompleted(HttpContext context) {
+            if (requestSentNanos == 0) {
+                requestSentNanos = System.nanoTime();
+            }
+            super.requestCompleted(context);
+        }
+    }
+
+    /*
+     * Buffers the response (as BasicAsyncResponseConsumer does), decoding the body as it arrives, and times the TTFB 
+     * and DOWNLOAD phases. The result's entity is the decoded body (its Content-Encoding header is dropped), and 
+     * numBytesReceived the size of the body as received. Hangs up as soon as the headers, or the amount of body 
+     * decoded, show that the content policy rules the page out (which fails the request, with the reason noted in 
+     * abortReason). Called on the I/O threads.
+     */
+    private static class TimedResponseConsumer extends AbstractAsyncResponseConsumer<HttpResponse> {
+        private final TimedRequestProducer requestProducer;
+        private final ContentPolicy contentPolicy;
+        private final ByteBuffer readBuffer = ByteBuffer.allocate(DEFAULT_BUFFER_SIZE);
+        private volatile HttpResponse response;
+        private volatile IncrementalDecoder decoder;
+        private volatile FetchAbortReason abortReason;
+        private volatile long numBytesReceived;
+        private long responseReceivedNanos;
+
+        TimedResponseConsumer(TimedRequestProducer requestProducer, ContentPolicy contentPolicy) {
+            this.requestProducer = requestProducer;
+            this.contentPolicy = contentPolicy;
+        }
+
+        @Override
+        protected void onResponseReceived(HttpResponse response) throws IOException {
+            responseReceivedNanos = System.nanoTime();
+            if (requestProducer.requestSentNanos != 0) {
+                requestProducer.timings.setPhaseNanos(FetchPhase.TTFB, responseReceivedNanos - requestProducer.requestSentNanos);
+            }
+            this.response = response;
+            int httpStatusCode = response.getStatusLine().getStatusCode();
+            if ((httpStatusCode >= 200) && (httpStatusCode < 300) && (response.getEntity() != null)) {
+                Header contentType = response.getFirstHeader(CONTENT_TYPE_HEADER);
+                abort(contentPolicy.checkHeaders((contentType != null ? contentType.getValue() : null), 
+                                                 response.getEntity().getContentLength()));
+            }
+        }
+
+        @Override
+        protected void onEntityEnclosed(HttpEntity entity, ContentType contentType) throws IOException {
+            long contentLength = entity.getContentLength();
+            int bufferSize = ((contentLength >= 0) && (contentLength <= Integer.MAX_VALUE) ? (int) contentLength 
+                                                                                          : DEFAULT_BUFFER_SIZE);
+            Header contentEncoding = response.getFirstHeader(ContentEncodings.CONTENT_ENCODING_HEADER);
+            decoder = new IncrementalDecoder((contentEncoding != null ? contentEncoding.getValue() : null), bufferSize);
+        }
+
+        @Override
+        protected void onContentReceived(ContentDecoder contentDecoder, IOControl ioControl) throws IOException {
+            readBuffer.clear();
+            for (int numRead = contentDecoder.read(readBuffer); numRead > 0; numRead = contentDecoder.read(readBuffer)) {
+                decoder.decode(readBuffer.array(), 0, numRead);
+                readBuffer.clear();
+                // Checked on the decoded size, so that a small compressed body can't decode into a huge one.
+                if ((contentPolicy.getMaxBodyBytes() > 0) && (decoder.getNumBytesDecoded() > contentPolicy.getMaxBodyBytes())) {
+                    abort(FetchAbortReason.BODY_TOO_LARGE);
+                }
+            }
+        }
+
+        @Override
+        protected HttpResponse buildResult(HttpContext context) throws IOException {
+            requestProducer.timings.setPhaseNanos(FetchPhase.DOWNLOAD, System.nanoTime() - responseReceivedNanos);
+            if (decoder != null) {
+                decoder.finish();
+                BasicHttpEntity decodedEntity = new BasicHttpEntity();
+                decodedEntity.setContent(decoder.getDecodedBody());
+                decodedEntity.setContentLength(decoder.getNumBytesDecoded());
+                decodedEntity.setContentType(response.getEntity().getContentType());
+                response.setEntity(decodedEntity);
+                response.removeHeaders(ContentEncodings.CONTENT_ENCODING_HEADER);
+                numBytesReceived = decoder.getNumBytesReceived();
+            }
+            return response;
+        }
+
+        @Override
+        protected void releaseResources() {
+            if (decoder != null) {
+                decoder.close();
+            }
+            response = null;
+            decoder = null;
+        }
+
+        private void abort(FetchAbortReason abortReason) throws IOException {
+            if (abortReason != null) {
+                this.abortReason = abortReason;
+                throw new IOException("Fetch aborted: " + abortReason.getLabel());
+            }
+        }
+    }
+
+    private static ThreadFactory createDaemonThreadFactory() {
+        AtomicInteger threadCount = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "async-fetch-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
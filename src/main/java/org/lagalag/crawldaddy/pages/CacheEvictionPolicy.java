@@ -0,0 +1,27 @@
+package org.lagalag.crawldaddy.pages;
+
+/**
+ * Identifies the ways in which entries are chosen for eviction once the page cache is full.
+ *
+ */
+public enum CacheEvictionPolicy {
+    /** The page used (stored or revalidated) least recently is evicted first. */
+    LRU,
+    /** The page stored earliest is evicted first, no matter how often it has been revalidated since. */
+    FIFO;
+    
+    /**
+     * Returns the policy with the given (case-insensitive) name, or null if there is no such policy.
+     */
+    public static CacheEvictionPolicy fromName(String name) {
+        if (name == null) {
+            return null;
+        }
+        for (CacheEvictionPolicy policy : values()) {
+            if (policy.name().equalsIgnoreCase(name.trim())) {
+                return policy;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,80 @@
+package org.lagalag.crawldaddy.pages;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Decorates a PageFetchService with a PageCache: pages found in the cache are fetched with a conditional GET 
+ * (If-None-Match / If-Modified-Since), and if the server replies that the page has not changed (HTTP 304), the 
+ * cached results are handed to the consumer instead, without downloading or parsing the page again. 
+ * The results of every other successful fetch are (re)stored in the cache.
+ * Must sit directly on top of the page fetch engine, since the decorators above it don't pass request headers on.
+ */
+public class CachingPageFetchService implements PageFetchService {
+    private static final String IF_NONE_MATCH_HEADER = "If-None-Match";
+    private static final String IF_MODIFIED_SINCE_HEADER = "If-Modified-Since";
+
+    private final PageFetchService delegate;
+    private final PageCache pageCache;
+
+    public CachingPageFetchService(PageFetchService delegate, PageCache pageCache) {
+        this.delegate = delegate;
+        this.pageCache = pageCache;
+    }
+
+    @Override
+    public void fetch(String url, PageFetchConsumer resultsConsumer) throws PageFetchException {
+        try {
+            fetchAsync(url, resultsConsumer, Runnable::run).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof PageFetchException) {
+                throw (PageFetchException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> fetchAsync(String url, PageFetchConsumer resultsConsumer, Executor executor) {
+        PageFetchResults cachedResults = pageCache.get(url);
+        return delegate.fetchAsync(url, getConditionalHeaders(cachedResults), 
+                                   results -> resultsConsumer.handlePageFetchResults(revalidate(url, cachedResults, results)), 
+                                   executor);
+    }
+
+    @Override
+    public boolean isBlocking() {
+        return delegate.isBlocking();
+    }
+
+    private Map<String,String> getConditionalHeaders(PageFetchResults cachedResults) {
+        if (cachedResults == null) {
+            return Collections.emptyMap();
+        }
+        Map<String,String> headers = new HashMap<>();
+        if (cachedResults.getEtag() != null) {
+            headers.put(IF_NONE_MATCH_HEADER, cachedResults.getEtag());
+        }
+        if (cachedResults.getLastModified() != null) {
+            headers.put(IF_MODIFIED_SINCE_HEADER, cachedResults.getLastModified());
+        }
+        return headers;
+    }
+
+    private PageFetchResults revalidate(String url, PageFetchResults cachedResults, PageFetchResults results) {
+        if (results.isHttpNotModified() && (cachedResults != null)) {
+            return cachedResults.asCached().withTimings(results.getTimings());
+        }
+        if (results.isHttpStatusOK() && !results.isFetchAborted()) {
+            pageCache.put(results);
+        } else if (cachedResults != null) {
+            // Gone, broken or moved: the cached results are of no more use.
+            pageCache.remove(url);
+        }
+        return results;
+    }
+}
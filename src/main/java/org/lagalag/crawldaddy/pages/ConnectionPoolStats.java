@@ -0,0 +1,59 @@
+package org.lagalag.crawldaddy.pages;
+
+/**
+ * Snapshot of how well a connection pool kept connections alive for reuse. A hit is a request sent on a pooled 
+ * connection, a miss one that needed a new connection, and an eviction a connection the pool closed (idle too long, 
+ * past its keep-alive, stale or closed by the server) rather than reuse. Immutable.
+ */
+public class ConnectionPoolStats {
+    public static final ConnectionPoolStats EMPTY = new ConnectionPoolStats(0, 0, 0);
+
+    private final long numHits;
+    private final long numMisses;
+    private final long numEvictions;
+
+    public ConnectionPoolStats(long numHits, long numMisses, long numEvictions) {
+        this.numHits = numHits;
+        this.numMisses = numMisses;
+        this.numEvictions = numEvictions;
+    }
+
+    public long getNumHits() {
+        return numHits;
+    }
+
+    public long getNumMisses() {
+        return numMisses;
+    }
+
+    public long getNumEvictions() {
+        return numEvictions;
+    }
+
+    /**
+     * Returns the fraction of requests sent on a pooled connection; 0 if there were none.
+     */
+    public double getHitRatio() {
+        long numRequests = numHits + numMisses;
+        return (numRequests > 0 ? (double) numHits / numRequests : 0);
+    }
+
+    /**
+     * Returns what happened between the given (earlier) snapshot and this one.
+     */
+    public ConnectionPoolStats since(ConnectionPoolStats earlier) {
+        return new ConnectionPoolStats(numHits - earlier.numHits, numMisses - earlier.numMisses, 
+                                       numEvictions - earlier.numEvictions);
+    }
+
+    public ConnectionPoolStats plus(ConnectionPoolStats other) {
+        return new ConnectionPoolStats(numHits + other.numHits, numMisses + other.numMisses, 
+                                       numEvictions + other.numEvictions);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d hit(s), %d miss(es) (%.1f%% reused), %d eviction(s)", numHits, numMisses, 
+                             getHitRatio() * 100, numEvictions);
+    }
+}
@@ -0,0 +1,94 @@
+package org.lagalag.crawldaddy.pages;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * The content encodings (compression schemes) the page fetch engines ask servers for, and the decoding of response 
+ * bodies that use one of them. Bodies are decoded as they are read, so a decoded page is never held in memory as a 
+ * whole.
+ */
+final class ContentEncodings {
+    static final String ACCEPT_ENCODING_HEADER = "Accept-Encoding";
+    static final String CONTENT_ENCODING_HEADER = "Content-Encoding";
+    static final String ACCEPTED_ENCODINGS = "gzip, deflate";
+    
+    private static final int BUFFER_SIZE = 8192;
+    
+    private ContentEncodings() {
+    }
+    
+    /**
+     * Returns true if the given Content-Encoding header (null if none) means the body is compressed.
+     */
+    static boolean isEncoded(String contentEncoding) {
+        String encoding = normalize(contentEncoding);
+        return !encoding.isEmpty() && !encoding.equals("identity");
+    }
+    
+    static boolean isGzip(String contentEncoding) {
+        String encoding = normalize(contentEncoding);
+        return encoding.equals("gzip") || encoding.equals("x-gzip");
+    }
+    
+    static boolean isDeflate(String contentEncoding) {
+        return normalize(contentEncoding).equals("deflate");
+    }
+    
+    /**
+     * Returns a stream that decodes the given body, according to the given Content-Encoding header (null if none), 
+     * as it is read. Closing it closes the body.
+     * @throws IOException if the encoding isn't one of ours (or the body doesn't start the way the encoding says).
+     */
+    static InputStream decode(InputStream body, String contentEncoding) throws IOException {
+        String encoding = normalize(contentEncoding);
+        if (encoding.isEmpty() || encoding.equals("identity")) {
+            return body;
+        }
+        if (!isGzip(encoding) && !isDeflate(encoding)) {
+            throw new IOException("Unsupported content encoding: " + contentEncoding);
+        }
+        BufferedInputStream in = new BufferedInputStream(body, BUFFER_SIZE);
+        in.mark(2);
+        int firstByte = in.read();
+        int secondByte = in.read();
+        in.reset();
+        if (firstByte < 0) {
+            // Empty body (which some servers still label as compressed): nothing to decode.
+            return in;
+        }
+        if (isDeflate(encoding)) {
+            return inflate(in, isZlibHeader(firstByte, secondByte));
+        }
+        return new GZIPInputStream(in, BUFFER_SIZE);
+    }
+    
+    private static String normalize(String contentEncoding) {
+        return (contentEncoding != null ? contentEncoding.trim().toLowerCase(Locale.ROOT) : "");
+    }
+    
+    /* "deflate" is meant to be zlib-wrapped, but some servers send raw deflate data: the zlib header tells them apart. */
+    static boolean isZlibHeader(int firstByte, int secondByte) {
+        return (secondByte >= 0) && ((firstByte & 0x0f) == 8) && ((((firstByte << 8) | secondByte) % 31) == 0);
+    }
+    
+    private static InputStream inflate(InputStream in, boolean zlibWrapped) {
+        Inflater inflater = new Inflater(!zlibWrapped);
+        return new InflaterInputStream(in, inflater, BUFFER_SIZE) {
+            @Override
+            public void close() throws IOException {
+                // InflaterInputStream only releases the inflaters it creates itself.
+                try {
+                    super.close();
+                } finally {
+                    inflater.end();
+                }
+            }
+        };
+    }
+}
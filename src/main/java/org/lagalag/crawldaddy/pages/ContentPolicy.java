@@ -0,0 +1,207 @@
+package org.lagalag.crawldaddy.pages;
+
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Decides, from the headers of a response and then from the first bytes of its body, whether the body is worth 
+ * parsing for links, so that the page fetch engines can give up on images, archives and other downloads as soon as 
+ * possible rather than download them in full:
+ * <ul>
+ * <li>responses whose Content-Type isn't one of the crawled content types are aborted before the body is read (a 
+ * crawled type ending in "/*" matches all subtypes, e.g. "text/*");</li>
+ * <li>responses whose Content-Length exceeds the maximum body size are aborted likewise, and those without one as 
+ * soon as the maximum body size has been read;</li>
+ * <li>responses with no Content-Type, or a generic one (application/octet-stream), have the start of their body 
+ * sniffed, and are aborted unless it looks like markup.</li>
+ * </ul>
+ * Immutable.
+ */
+public class ContentPolicy {
+    public static final List<String> DEFAULT_CONTENT_TYPES = Collections.unmodifiableList(Arrays.asList("text/html", 
+                                                                                                         "application/xhtml+xml"));
+    public static final long DEFAULT_MAX_BODY_BYTES = 10L * 1024 * 1024;
+    public static final ContentPolicy DEFAULT = new ContentPolicy(DEFAULT_CONTENT_TYPES, DEFAULT_MAX_BODY_BYTES);
+    
+    private static final String WILDCARD_SUBTYPE = "/*";
+    private static final List<String> GENERIC_CONTENT_TYPES = Arrays.asList("application/octet-stream", "binary/octet-stream", 
+                                                                            "application/unknown", "unknown/unknown");
+    private static final int SNIFF_LENGTH = 512;
+    
+    private final List<String> contentTypes;
+    private final long maxBodyBytes;
+    
+    /**
+     * @param contentTypes the (mime) content types to crawl.
+     * @param maxBodyBytes largest body to download; 0 for no limit.
+     */
+    public ContentPolicy(Collection<String> contentTypes, long maxBodyBytes) {
+        this.contentTypes = new ArrayList<>();
+        for (String contentType : contentTypes) {
+            this.contentTypes.add(contentType.trim().toLowerCase(Locale.ROOT));
+        }
+        this.maxBodyBytes = maxBodyBytes;
+    }
+    
+    public long getMaxBodyBytes() {
+        return maxBodyBytes;
+    }
+    
+    /**
+     * Returns why a (successful) response with the given headers should be aborted without reading its body, or null 
+     * if the body should be read.
+     * @param contentType value of the Content-Type header (parameters, e.g. the charset, are ignored); null if none.
+     * @param contentLength value of the Content-Length header; negative if none.
+     */
+    public FetchAbortReason checkHeaders(String contentType, long contentLength) {
+        if ((maxBodyBytes > 0) && (contentLength > maxBodyBytes)) {
+            return FetchAbortReason.BODY_TOO_LARGE;
+        }
+        String mimeType = getMimeType(contentType);
+        if ((mimeType != null) && !isGenericType(mimeType) && !isCrawledType(mimeType)) {
+            return FetchAbortReason.CONTENT_TYPE;
+        }
+        return null;
+    }
+    
+    /**
+     * Extracts the links from the body of a response that passed checkHeaders(), unless the body turns out to be too 
+     * large, or (for a response with no specific Content-Type) doesn't look like markup, in which case the fetch is 
+     * aborted there and then. The body is not closed.
+     */
+    public PageFetchResults extract(String url, InputStream body, String contentType, String charsetName, String baseUrl, 
+                                    LinkExtractor linkExtractor) throws IOException {
+        InputStream in = (maxBodyBytes > 0 ? new BoundedInputStream(body, maxBodyBytes) : body);
+        try {
+            String mimeType = getMimeType(contentType);
+            if ((mimeType == null) || isGenericType(mimeType)) {
+                BufferedInputStream bufferedIn = new BufferedInputStream(in);
+                if (!looksLikeMarkup(bufferedIn)) {
+                    return PageFetchResults.onFetchAborted(url, FetchAbortReason.SNIFFED_CONTENT);
+                }
+                in = bufferedIn;
+            }
+            return linkExtractor.extract(url, in, charsetName, baseUrl);
+        } catch (BodyTooLargeException e) {
+            return PageFetchResults.onFetchAborted(url, FetchAbortReason.BODY_TOO_LARGE);
+        }
+    }
+    
+    private boolean isCrawledType(String mimeType) {
+        for (String contentType : contentTypes) {
+            if (contentType.endsWith(WILDCARD_SUBTYPE) 
+                ? mimeType.startsWith(contentType.substring(0, contentType.length() - 1)) 
+                : mimeType.equals(contentType)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private static boolean isGenericType(String mimeType) {
+        return GENERIC_CONTENT_TYPES.contains(mimeType);
+    }
+    
+    /* Returns the content type without its parameters, in lower case; null if there is none. */
+    private static String getMimeType(String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        int parametersStart = contentType.indexOf(';');
+        String mimeType = (parametersStart >= 0 ? contentType.substring(0, parametersStart) : contentType).trim();
+        return (mimeType.isEmpty() ? null : mimeType.toLowerCase(Locale.ROOT));
+    }
+    
+    /* Markup has a '<' near the start, and (unlike images, archives etc.) no NUL bytes. Leaves the stream unread. */
+    static boolean looksLikeMarkup(BufferedInputStream in) throws IOException {
+        in.mark(SNIFF_LENGTH);
+        try {
+            boolean hasTag = false;
+            for (int i = 0; i < SNIFF_LENGTH; i++) {
+                int b = in.read();
+                if (b < 0) {
+                    break;
+                } else if (b == 0) {
+                    return false;
+                } else if (b == '<') {
+                    hasTag = true;
+                }
+            }
+            return hasTag;
+        } finally {
+            in.reset();
+        }
+    }
+    
+    private static class BodyTooLargeException extends IOException {
+        private static final long serialVersionUID = 1L;
+        
+        BodyTooLargeException(long maxBodyBytes) {
+            super("Body larger than " + maxBodyBytes + " bytes");
+        }
+    }
+    
+    /* Fails reads once more than the maximum number of bytes have been read. */
+    private static class BoundedInputStream extends FilterInputStream {
+        private final long maxBytes;
+        private long numBytesRead;
+        private long markedNumBytesRead;
+        
+        BoundedInputStream(InputStream in, long maxBytes) {
+            super(in);
+            this.maxBytes = maxBytes;
+        }
+        
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count(1);
+            }
+            return b;
+        }
+        
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int numRead = super.read(b, off, len);
+            if (numRead > 0) {
+                count(numRead);
+            }
+            return numRead;
+        }
+        
+        @Override
+        public long skip(long n) throws IOException {
+            long numSkipped = super.skip(n);
+            count(numSkipped);
+            return numSkipped;
+        }
+        
+        @Override
+        public synchronized void mark(int readLimit) {
+            super.mark(readLimit);
+            markedNumBytesRead = numBytesRead;
+        }
+        
+        @Override
+        public synchronized void reset() throws IOException {
+            super.reset();
+            numBytesRead = markedNumBytesRead;
+        }
+        
+        private void count(long n) throws BodyTooLargeException {
+            numBytesRead += n;
+            if (numBytesRead > maxBytes) {
+                throw new BodyTooLargeException(maxBytes);
+            }
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package org.lagalag.crawldaddy.pages;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * InputStream that keeps track of the number of bytes read (or skipped) through it, so that the size of a page body 
+ * can be measured both as received and once decoded without buffering it.
+ */
+class CountingInputStream extends FilterInputStream {
+    private long numBytesRead;
+    
+    CountingInputStream(InputStream in) {
+        super(in);
+    }
+    
+    long getNumBytesRead() {
+        return numBytesRead;
+    }
+    
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b >= 0) {
+            numBytesRead++;
+        }
+        return b;
+    }
+    
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int numRead = super.read(b, off, len);
+        if (numRead > 0) {
+            numBytesRead += numRead;
+        }
+        return numRead;
+    }
+    
+    @Override
+    public long skip(long n) throws IOException {
+        long numSkipped = super.skip(n);
+        numBytesRead += numSkipped;
+        return numSkipped;
+    }
+    
+    /* Counts would go wrong if bytes were read twice. */
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+}
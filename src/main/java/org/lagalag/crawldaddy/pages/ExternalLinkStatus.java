@@ -0,0 +1,62 @@
+package org.lagalag.crawldaddy.pages;
+
+/**
+ * The outcome of checking an external link. Immutable.
+ *
+ */
+public class ExternalLinkStatus {
+    private static final int NO_HTTP_STATUS = 0;
+    private static final int HTTP_RANGE_NOT_SATISFIABLE = 416;
+
+    private final String url;
+    private final int httpStatusCode;
+    private final String errorMessage;
+
+    public static ExternalLinkStatus onHttpResponse(String url, int httpStatusCode) {
+        return new ExternalLinkStatus(url, httpStatusCode, null);
+    }
+
+    /**
+     * Returns the status of a link that could not be checked at all (malformed url, unknown host, no connection...).
+     */
+    public static ExternalLinkStatus onError(String url, String errorMessage) {
+        return new ExternalLinkStatus(url, NO_HTTP_STATUS, errorMessage);
+    }
+
+    private ExternalLinkStatus(String url, int httpStatusCode, String errorMessage) {
+        this.url = url;
+        this.httpStatusCode = httpStatusCode;
+        this.errorMessage = errorMessage;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * Returns the HTTP status code the link resolved to (after redirects), or 0 if there was no response.
+     */
+    public int getHttpStatusCode() {
+        return httpStatusCode;
+    }
+
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    /**
+     * Returns true if the link leads somewhere: a response that is neither a client nor a server error.
+     */
+    public boolean isAlive() {
+        if (httpStatusCode == HTTP_RANGE_NOT_SATISFIABLE) {
+            // Answer to a ranged GET for an empty resource: it's there.
+            return true;
+        }
+        return (httpStatusCode != NO_HTTP_STATUS) && (httpStatusCode < 400);
+    }
+
+    @Override
+    public String toString() {
+        return url + " --> " + (errorMessage != null ? errorMessage : String.valueOf(httpStatusCode));
+    }
+}
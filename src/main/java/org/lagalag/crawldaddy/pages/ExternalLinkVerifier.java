@@ -0,0 +1,226 @@
+package org.lagalag.crawldaddy.pages;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.CookieSpecs;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpHead;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.nio.ContentDecoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.client.methods.HttpAsyncMethods;
+import org.apache.http.nio.protocol.AbstractAsyncResponseConsumer;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * Checks whether external links lead anywhere, using non-blocking I/O (Apache HttpAsyncClient) with its own 
+ * connection pool, so that link checks never take connections away from the crawl itself. Each link is checked 
+ * with a HEAD request; servers that reject HEAD (or fail it) get a GET instead, for the first byte only (the rest 
+ * is discarded), which is retried once if it fails.
+ * Outcomes are cached for the life of the verifier, so a link found on any number of pages (and in any number of 
+ * crawl passes) is only checked once. Thread-safe.
+ * Must be closed once no more links are to be checked, to release its connections and I/O threads.
+ */
+public class ExternalLinkVerifier implements Closeable {
+    public static final int DEFAULT_MAX_CONCURRENT_CHECKS = 64;
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 10000;
+    private static final int SOCKET_TIMEOUT_MILLIS = 10000;
+    private static final int MAX_GET_ATTEMPTS = 2;
+
+    private final CloseableHttpAsyncClient httpClient;
+    private final ConcurrentMap<String,CompletableFuture<ExternalLinkStatus>> linkStatuses = new ConcurrentHashMap<>();
+
+    /**
+     * @param maxConcurrentChecks maximum number of links checked at once; further checks wait for a connection.
+     * @param maxConcurrentChecksPerHost maximum number of links to the same host checked at once.
+     */
+    public ExternalLinkVerifier(int maxConcurrentChecks, int maxConcurrentChecksPerHost) {
+        RequestConfig requestConfig = RequestConfig.custom()
+                                                   .setConnectTimeout(CONNECT_TIMEOUT_MILLIS)
+                                                   .setSocketTimeout(SOCKET_TIMEOUT_MILLIS)
+                                                   .setCookieSpec(CookieSpecs.STANDARD)
+                                                   .build();
+        this.httpClient = HttpAsyncClients.custom()
+                                          .setMaxConnTotal(maxConcurrentChecks)
+                                          .setMaxConnPerRoute(Math.min(maxConcurrentChecks, maxConcurrentChecksPerHost))
+                                          .setDefaultRequestConfig(requestConfig)
+                                          .setThreadFactory(createDaemonThreadFactory())
+                                          .build();
+        this.httpClient.start();
+    }
+
+    /**
+     * Returns the status of the given (http or https) link, checking it unless it has been checked already.
+     * The returned future never completes exceptionally.
+     */
+    public CompletableFuture<ExternalLinkStatus> verify(String url) {
+        CompletableFuture<ExternalLinkStatus> linkStatus = linkStatuses.get(url);
+        if (linkStatus != null) {
+            return linkStatus;
+        }
+        CompletableFuture<ExternalLinkStatus> newLinkStatus = new CompletableFuture<>();
+        linkStatus = linkStatuses.putIfAbsent(url, newLinkStatus);
+        if (linkStatus != null) {
+            return linkStatus;
+        }
+        try {
+            check(url, newLinkStatus);
+        } catch (RuntimeException e) {
+            // E.g. the verifier is already closed. Not cached, so that the link isn't taken as checked.
+            linkStatuses.remove(url, newLinkStatus);
+            newLinkStatus.complete(ExternalLinkStatus.onError(url, "Unable to check: " + e.getMessage()));
+        }
+        return newLinkStatus;
+    }
+
+    /**
+     * Returns the number of distinct links checked (or being checked) so far.
+     */
+    public int getNumLinksChecked() {
+        return linkStatuses.size();
+    }
+
+    /**
+     * Closes the connections and stops the I/O threads. Checks still under way complete as errors.
+     */
+    @Override
+    public void close() throws IOException {
+        httpClient.close();
+    }
+
+    private void check(String url, CompletableFuture<ExternalLinkStatus> linkStatus) {
+        URI uri;
+        try {
+            uri = new URI(url.trim());
+        } catch (URISyntaxException e) {
+            linkStatus.complete(ExternalLinkStatus.onError(url, "Malformed url"));
+            return;
+        }
+        if (!uri.isAbsolute() || (uri.getHost() == null)) {
+            linkStatus.complete(ExternalLinkStatus.onError(url, "Malformed url"));
+            return;
+        }
+        httpClient.execute(new HttpHead(uri), new FutureCallback<HttpResponse>() {
+            @Override
+            public void completed(HttpResponse response) {
+                int httpStatusCode = response.getStatusLine().getStatusCode();
+                if (isHeadRejected(httpStatusCode)) {
+                    checkWithGetOrFail(url, uri, linkStatus, MAX_GET_ATTEMPTS);
+                } else {
+                    linkStatus.complete(ExternalLinkStatus.onHttpResponse(url, httpStatusCode));
+                }
+            }
+
+            @Override
+            public void failed(Exception e) {
+                // Some servers just drop HEAD requests.
+                checkWithGetOrFail(url, uri, linkStatus, MAX_GET_ATTEMPTS);
+            }
+
+            @Override
+            public void cancelled() {
+                linkStatus.complete(ExternalLinkStatus.onError(url, "Check cancelled"));
+            }
+        });
+    }
+
+    /* Called back on an I/O thread, where nothing may be thrown: the check must complete one way or another. */
+    private void checkWithGetOrFail(String url, URI uri, CompletableFuture<ExternalLinkStatus> linkStatus, int attemptsLeft) {
+        try {
+            checkWithGet(url, uri, linkStatus, attemptsLeft);
+        } catch (RuntimeException e) {
+            linkStatus.complete(ExternalLinkStatus.onError(url, "Unable to check: " + e.getMessage()));
+        }
+    }
+
+    private void checkWithGet(String url, URI uri, CompletableFuture<ExternalLinkStatus> linkStatus, int attemptsLeft) {
+        HttpGet request = new HttpGet(uri);
+        // Only the status matters: ask for as little of the body as possible.
+        request.addHeader("Range", "bytes=0-0");
+        httpClient.execute(HttpAsyncMethods.create(request), new DiscardingResponseConsumer(), new FutureCallback<HttpResponse>() {
+            @Override
+            public void completed(HttpResponse response) {
+                linkStatus.complete(ExternalLinkStatus.onHttpResponse(url, response.getStatusLine().getStatusCode()));
+            }
+
+            @Override
+            public void failed(Exception e) {
+                if (attemptsLeft > 1) {
+                    // E.g. a kept-alive connection closed by the server just as we reused it.
+                    checkWithGetOrFail(url, uri, linkStatus, attemptsLeft - 1);
+                    return;
+                }
+                linkStatus.complete(ExternalLinkStatus.onError(url, e.getClass().getSimpleName() + ": " + e.getMessage()));
+            }
+
+            @Override
+            public void cancelled() {
+                linkStatus.complete(ExternalLinkStatus.onError(url, "Check cancelled"));
+            }
+        });
+    }
+
+    /* A missing page is missing whatever the method; any other error may just be the server's take on HEAD. */
+    private static boolean isHeadRejected(int httpStatusCode) {
+        return (httpStatusCode >= 400) && (httpStatusCode != HttpURLConnection.HTTP_NOT_FOUND) 
+               && (httpStatusCode != HttpURLConnection.HTTP_GONE);
+    }
+
+    private static ThreadFactory createDaemonThreadFactory() {
+        AtomicInteger threadCount = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "link-check-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /* Keeps the response status and headers, but drops the body as it arrives. */
+    private static class DiscardingResponseConsumer extends AbstractAsyncResponseConsumer<HttpResponse> {
+        private final ByteBuffer discardBuffer = ByteBuffer.allocate(4096);
+        private HttpResponse response;
+
+        @Override
+        protected void onResponseReceived(HttpResponse response) {
+            this.response = response;
+        }
+
+        @Override
+        protected void onEntityEnclosed(HttpEntity entity, ContentType contentType) {
+        }
+
+        @Override
+        protected void onContentReceived(ContentDecoder decoder, IOControl ioControl) throws IOException {
+            do {
+                discardBuffer.clear();
+            } while (decoder.read(discardBuffer) > 0);
+        }
+
+        @Override
+        protected HttpResponse buildResult(HttpContext context) {
+            return response;
+        }
+
+        @Override
+        protected void releaseResources() {
+            response = null;
+        }
+    }
+}
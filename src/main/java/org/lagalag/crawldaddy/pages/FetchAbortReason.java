@@ -0,0 +1,26 @@
+package org.lagalag.crawldaddy.pages;
+
+/**
+ * Identifies why a page fetch was given up on before its body was parsed (see ContentPolicy).
+ *
+ */
+public enum FetchAbortReason {
+    /** The Content-Type header named a type that isn't crawled (e.g. image/png). */
+    CONTENT_TYPE("content type"),
+    /** There was no (or only a generic) Content-Type header, and the start of the body didn't look like HTML. */
+    SNIFFED_CONTENT("sniffed content"),
+    /** The body was (or was declared to be) larger than the maximum body size. */
+    BODY_TOO_LARGE("body too large"),
+    /** The page fetch service returned without handing over any results. */
+    NO_RESULTS("no results");
+    
+    private final String label;
+    
+    private FetchAbortReason(String label) {
+        this.label = label;
+    }
+    
+    public String getLabel() {
+        return label;
+    }
+}
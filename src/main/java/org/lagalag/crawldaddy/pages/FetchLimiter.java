@@ -0,0 +1,119 @@
+package org.lagalag.crawldaddy.pages;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Decorates a PageFetchService so that at most a given number of fetches are in progress at once, however many 
+ * crawls share it (a single crawl limits its own fetches). Fetches beyond that are queued, in order, without 
+ * blocking a thread, and started as earlier ones finish.
+ */
+public class FetchLimiter implements PageFetchService {
+    private final PageFetchService delegate;
+    private final int maxConcurrentFetches;
+    private final Queue<PendingFetch> pendingFetches = new ArrayDeque<>();
+    private int numActiveFetches;
+    
+    public FetchLimiter(PageFetchService delegate, int maxConcurrentFetches) {
+        this.delegate = delegate;
+        this.maxConcurrentFetches = maxConcurrentFetches;
+    }
+    
+    @Override
+    public void fetch(String url, PageFetchConsumer resultsConsumer) throws PageFetchException {
+        try {
+            // Queued fetches are started by whichever fetch finishes first, so they can't simply be run in the calling thread.
+            fetchAsync(url, resultsConsumer, ForkJoinPool.commonPool()).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof PageFetchException) {
+                throw (PageFetchException) e.getCause();
+            }
+            throw e;
+        }
+    }
+    
+    @Override
+    public CompletableFuture<Void> fetchAsync(String url, PageFetchConsumer resultsConsumer, Executor executor) {
+        PendingFetch pendingFetch = new PendingFetch(url, resultsConsumer, executor);
+        synchronized (this) {
+            if (numActiveFetches >= maxConcurrentFetches) {
+                pendingFetches.add(pendingFetch);
+                return pendingFetch.future;
+            }
+            numActiveFetches++;
+        }
+        start(pendingFetch);
+        return pendingFetch.future;
+    }
+    
+    @Override
+    public boolean isBlocking() {
+        return delegate.isBlocking();
+    }
+    
+    /**
+     * Returns the number of fetches waiting for one of those in progress to finish.
+     */
+    public synchronized int getNumPendingFetches() {
+        return pendingFetches.size();
+    }
+    
+    private void start(PendingFetch pendingFetch) {
+        CompletableFuture<Void> fetchFuture;
+        try {
+            fetchFuture = delegate.fetchAsync(pendingFetch.url, pendingFetch.resultsConsumer, pendingFetch.executor);
+        } catch (RuntimeException e) {
+            fetchFuture = new CompletableFuture<>();
+            fetchFuture.completeExceptionally(e);
+        }
+        fetchFuture.whenComplete((none, e) -> {
+            // Hand the slot over (if anyone is waiting for it) before reporting back, as the crawl may end as soon as we do.
+            startNext(fetchFinished());
+            if (e != null) {
+                pendingFetch.future.completeExceptionally((e instanceof CompletionException) ? e.getCause() : e);
+            } else {
+                pendingFetch.future.complete(null);
+            }
+        });
+    }
+    
+    private void startNext(PendingFetch nextFetch) {
+        if (nextFetch == null) {
+            return;
+        }
+        try {
+            nextFetch.executor.execute(() -> start(nextFetch));
+        } catch (RejectedExecutionException e) {
+            PendingFetch fetchAfterNext = fetchFinished();
+            nextFetch.future.completeExceptionally(new PageFetchException("Unable to start fetch of " + nextFetch.url, e));
+            startNext(fetchAfterNext);
+        }
+    }
+    
+    /* Returns the fetch to start in the finished fetch's place, if any (in which case the slot stays taken). */
+    private synchronized PendingFetch fetchFinished() {
+        PendingFetch nextFetch = pendingFetches.poll();
+        if (nextFetch == null) {
+            numActiveFetches--;
+        }
+        return nextFetch;
+    }
+    
+    private static class PendingFetch {
+        final String url;
+        final PageFetchConsumer resultsConsumer;
+        final Executor executor;
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+        
+        PendingFetch(String url, PageFetchConsumer resultsConsumer, Executor executor) {
+            this.url = url;
+            this.resultsConsumer = resultsConsumer;
+            this.executor = executor;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package org.lagalag.crawldaddy.pages;
+
+/**
+ * Identifies the phases of a page fetch that are timed.
+ *
+ */
+public enum FetchPhase {
+    /** Looking up the address of the host, when a new connection is made (pooled engine only). */
+    DNS,
+    /** Getting a connection to the host: connecting, or waiting for a pooled connection (async engine only). */
+    CONNECT,
+    /** From sending the request to receiving the response headers (with the jsoup engine, includes connecting). */
+    TTFB,
+    /** Reading the body of the response. */
+    DOWNLOAD,
+    /** Extracting the links and scripts from the page. */
+    PARSE,
+    /** Waiting to start: for a worker thread, a connection permit, or the host's politeness limits. */
+    QUEUE;
+}
@@ -0,0 +1,88 @@
+package org.lagalag.crawldaddy.pages;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.lagalag.crawldaddy.util.LatencyHistogram;
+
+/**
+ * Histograms of the time spent in each phase of the page fetches of a crawl (in nanoseconds), per host and overall.
+ * Thread-safe.
+ */
+public class FetchTimingStats {
+    private final Map<FetchPhase,LatencyHistogram> overallHistograms = createHistograms();
+    private final ConcurrentMap<String,Map<FetchPhase,LatencyHistogram>> hostHistograms = new ConcurrentHashMap<>();
+
+    /**
+     * Records the timings of a fetch from the given host (phases that weren't measured are skipped).
+     */
+    public void record(String host, PageFetchTimings timings) {
+        Map<FetchPhase,LatencyHistogram> histograms = hostHistograms.computeIfAbsent(host.toLowerCase(), h -> createHistograms());
+        for (FetchPhase phase : FetchPhase.values()) {
+            if (timings.isMeasured(phase)) {
+                long nanos = timings.getPhaseNanos(phase);
+                histograms.get(phase).record(nanos);
+                overallHistograms.get(phase).record(nanos);
+            }
+        }
+    }
+
+    /**
+     * Adds all the timings recorded by the given stats (e.g. those of another pass) to these.
+     */
+    public void add(FetchTimingStats other) {
+        for (FetchPhase phase : FetchPhase.values()) {
+            overallHistograms.get(phase).add(other.getHistogram(phase));
+        }
+        other.hostHistograms.forEach((host, otherHistograms) -> {
+            Map<FetchPhase,LatencyHistogram> histograms = hostHistograms.computeIfAbsent(host, h -> createHistograms());
+            for (FetchPhase phase : FetchPhase.values()) {
+                histograms.get(phase).add(otherHistograms.get(phase));
+            }
+        });
+    }
+    
+    /**
+     * Adds the timings of the given phase of fetches from the given host (e.g. recorded by a worker of a 
+     * distributed crawl) to these.
+     */
+    public void add(String host, FetchPhase phase, LatencyHistogram histogram) {
+        hostHistograms.computeIfAbsent(host.toLowerCase(), h -> createHistograms()).get(phase).add(histogram);
+        overallHistograms.get(phase).add(histogram);
+    }
+
+    /**
+     * Returns the histogram of the given phase over all hosts.
+     */
+    public LatencyHistogram getHistogram(FetchPhase phase) {
+        return overallHistograms.get(phase);
+    }
+
+    /**
+     * Returns the histogram of the given phase for the given host, or null if nothing was fetched from the host.
+     */
+    public LatencyHistogram getHistogram(String host, FetchPhase phase) {
+        Map<FetchPhase,LatencyHistogram> histograms = hostHistograms.get(host.toLowerCase());
+        return (histograms != null ? histograms.get(phase) : null);
+    }
+
+    /**
+     * Returns the hosts fetched from, in alphabetical order.
+     */
+    public Set<String> getHosts() {
+        return new TreeSet<>(hostHistograms.keySet());
+    }
+
+    /* Filled in up front (and never modified afterwards), so it can be read without locking. */
+    private static Map<FetchPhase,LatencyHistogram> createHistograms() {
+        Map<FetchPhase,LatencyHistogram> histograms = new EnumMap<>(FetchPhase.class);
+        for (FetchPhase phase : FetchPhase.values()) {
+            histograms.put(phase, new LatencyHistogram());
+        }
+        return histograms;
+    }
+}
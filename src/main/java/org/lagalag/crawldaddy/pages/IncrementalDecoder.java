@@ -0,0 +1,282 @@
+package org.lagalag.crawldaddy.pages;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Decodes a response body as it arrives, chunk by chunk, for engines that are handed the body in chunks (on
+ * non-blocking I/O threads) rather than as a stream they can wrap: the decoded bytes are appended to a buffer, so the
+ * compressed body is never held as a whole, and the decoded size is known as it grows. Handles the same encodings as
+ * ContentEncodings.decode(), multi-member gzip bodies included. Not thread-safe; must be closed, to release the
+ * inflater.
+ */
+class IncrementalDecoder implements Closeable {
+    private static final int GZIP_MAGIC = 0x8b1f;
+    private static final int GZIP_MIN_HEADER_LENGTH = 10;
+    private static final int GZIP_TRAILER_LENGTH = 8;
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+    private static final int DEFLATE_HEADER_LENGTH = 2;
+    private static final int BUFFER_SIZE = 8192;
+
+    private enum State { IDENTITY, DEFLATE_HEADER, GZIP_HEADER, DATA, GZIP_TRAILER, MEMBER_END, DONE }
+
+    private final boolean gzip;
+    private final DecodedBody decodedBody;
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private final byte[] inflateBuffer = new byte[BUFFER_SIZE];
+    private final CRC32 crc = new CRC32();
+    private State state;
+    private Inflater inflater;
+    private long numBytesReceived;
+
+    /**
+     * @param contentEncoding the Content-Encoding header of the response; null if none.
+     * @param initialSize initial size of the buffer for the decoded body.
+     * @throws IOException if the encoding isn't one of ours.
+     */
+    IncrementalDecoder(String contentEncoding, int initialSize) throws IOException {
+        this.decodedBody = new DecodedBody(initialSize);
+        if (!ContentEncodings.isEncoded(contentEncoding)) {
+            this.gzip = false;
+            this.state = State.IDENTITY;
+        } else if (ContentEncodings.isGzip(contentEncoding)) {
+            this.gzip = true;
+            this.state = State.GZIP_HEADER;
+        } else if (ContentEncodings.isDeflate(contentEncoding)) {
+            this.gzip = false;
+            this.state = State.DEFLATE_HEADER;
+        } else {
+            throw new IOException("Unsupported content encoding: " + contentEncoding);
+        }
+    }
+
+    /**
+     * Decodes the given chunk of the body, as received.
+     */
+    void decode(byte[] chunk, int offset, int length) throws IOException {
+        numBytesReceived += length;
+        int end = offset + length;
+        while (offset < end) {
+            switch (state) {
+            case IDENTITY:
+                decodedBody.write(chunk, offset, end - offset);
+                return;
+            case DEFLATE_HEADER:
+                offset = decodeDeflateHeader(chunk, offset, end);
+                break;
+            case GZIP_HEADER:
+            case MEMBER_END:
+                offset = decodeGzipHeader(chunk, offset, end);
+                break;
+            case DATA:
+                offset = inflate(chunk, offset, end);
+                break;
+            case GZIP_TRAILER:
+                offset = decodeGzipTrailer(chunk, offset, end);
+                break;
+            case DONE:
+            default:
+                // Whatever follows the compressed data is ignored, as GZIPInputStream does.
+                return;
+            }
+        }
+    }
+
+    /**
+     * Called once all of the body has been received.
+     * @throws EOFException if the body was cut short.
+     */
+    void finish() throws IOException {
+        boolean isComplete = (state == State.IDENTITY) || (state == State.MEMBER_END) || (state == State.DONE)
+                             // Empty body (which some servers still label as compressed): nothing to decode.
+                             || (numBytesReceived == 0);
+        if (!isComplete) {
+            throw new EOFException("Unexpected end of compressed body");
+        }
+    }
+
+    /**
+     * Returns the number of bytes received so far, as sent over the wire (compressed).
+     */
+    long getNumBytesReceived() {
+        return numBytesReceived;
+    }
+
+    /**
+     * Returns the number of bytes decoded so far.
+     */
+    long getNumBytesDecoded() {
+        return decodedBody.size();
+    }
+
+    /**
+     * Returns the body decoded so far.
+     */
+    InputStream getDecodedBody() {
+        return decodedBody.toInputStream();
+    }
+
+    @Override
+    public void close() {
+        if (inflater != null) {
+            inflater.end();
+        }
+    }
+
+    /* "deflate" is meant to be zlib-wrapped, but some servers send raw deflate data: the zlib header tells them apart. */
+    private int decodeDeflateHeader(byte[] chunk, int offset, int end) throws IOException {
+        int numBytes = Math.min(DEFLATE_HEADER_LENGTH - pending.size(), end - offset);
+        pending.write(chunk, offset, numBytes);
+        if (pending.size() < DEFLATE_HEADER_LENGTH) {
+            return end;
+        }
+        byte[] header = takePending();
+        inflater = new Inflater(!ContentEncodings.isZlibHeader(header[0] & 0xff, header[1] & 0xff));
+        state = State.DATA;
+        // The header is part of the zlib data.
+        inflate(header, 0, header.length);
+        return offset + numBytes;
+    }
+
+    /* The header is kept until all of it has arrived, which is almost always in the first chunk. */
+    private int decodeGzipHeader(byte[] chunk, int offset, int end) throws IOException {
+        while (offset < end) {
+            pending.write(chunk[offset++]);
+            int headerLength = getGzipHeaderLength(pending.toByteArray());
+            if (headerLength == 0) {
+                if (state == State.MEMBER_END) {
+                    // Not another member: trailing garbage.
+                    pending.reset();
+                    state = State.DONE;
+                    return end;
+                }
+                throw new ZipException("Not in GZIP format");
+            }
+            if (headerLength > 0) {
+                pending.reset();
+                if (inflater == null) {
+                    inflater = new Inflater(true);
+                } else {
+                    inflater.reset();
+                }
+                crc.reset();
+                state = State.DATA;
+                return offset;
+            }
+        }
+        return end;
+    }
+
+    /* Returns the length of the gzip header the given bytes start with; -1 if incomplete, 0 if they aren't one. */
+    private static int getGzipHeaderLength(byte[] header) {
+        if ((header.length >= 1) && ((header[0] & 0xff) != (GZIP_MAGIC & 0xff))) {
+            return 0;
+        }
+        if ((header.length >= 2) && ((header[1] & 0xff) != (GZIP_MAGIC >> 8))) {
+            return 0;
+        }
+        if ((header.length >= 3) && (header[2] != 8)) {
+            return 0;
+        }
+        if (header.length < GZIP_MIN_HEADER_LENGTH) {
+            return -1;
+        }
+        int flags = header[3] & 0xff;
+        int length = GZIP_MIN_HEADER_LENGTH;
+        if ((flags & FEXTRA) != 0) {
+            if (header.length < length + 2) {
+                return -1;
+            }
+            length += 2 + ((header[length] & 0xff) | ((header[length + 1] & 0xff) << 8));
+        }
+        if ((flags & FNAME) != 0) {
+            length = skipZeroTerminated(header, length);
+        }
+        if (((flags & FCOMMENT) != 0) && (length >= 0)) {
+            length = skipZeroTerminated(header, length);
+        }
+        if (((flags & FHCRC) != 0) && (length >= 0)) {
+            length += 2;
+        }
+        return ((length >= 0) && (header.length >= length) ? length : -1);
+    }
+
+    private static int skipZeroTerminated(byte[] header, int offset) {
+        for (int i = offset; i < header.length; i++) {
+            if (header[i] == 0) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    private int inflate(byte[] chunk, int offset, int end) throws IOException {
+        inflater.setInput(chunk, offset, end - offset);
+        try {
+            while (!inflater.finished() && !inflater.needsInput()) {
+                int numDecoded = inflater.inflate(inflateBuffer);
+                if ((numDecoded == 0) && inflater.needsDictionary()) {
+                    throw new ZipException("Compressed body needs a preset dictionary");
+                }
+                decodedBody.write(inflateBuffer, 0, numDecoded);
+                if (gzip) {
+                    crc.update(inflateBuffer, 0, numDecoded);
+                }
+            }
+        } catch (DataFormatException e) {
+            throw new ZipException(e.getMessage() != null ? e.getMessage() : "Invalid compressed body");
+        }
+        if (!inflater.finished()) {
+            return end;
+        }
+        state = (gzip ? State.GZIP_TRAILER : State.DONE);
+        return end - inflater.getRemaining();
+    }
+
+    private int decodeGzipTrailer(byte[] chunk, int offset, int end) throws IOException {
+        int numBytes = Math.min(GZIP_TRAILER_LENGTH - pending.size(), end - offset);
+        pending.write(chunk, offset, numBytes);
+        if (pending.size() < GZIP_TRAILER_LENGTH) {
+            return end;
+        }
+        byte[] trailer = takePending();
+        if ((readInt(trailer, 0) != crc.getValue()) || (readInt(trailer, 4) != (inflater.getBytesWritten() & 0xffffffffL))) {
+            throw new ZipException("Corrupt GZIP trailer");
+        }
+        state = State.MEMBER_END;
+        return offset + numBytes;
+    }
+
+    private static long readInt(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xffL) | ((bytes[offset + 1] & 0xffL) << 8) | ((bytes[offset + 2] & 0xffL) << 16)
+               | ((bytes[offset + 3] & 0xffL) << 24);
+    }
+
+    private byte[] takePending() {
+        byte[] bytes = pending.toByteArray();
+        pending.reset();
+        return bytes;
+    }
+
+    /* Hands out the decoded bytes as they are, without the copy toByteArray() would make. */
+    private static class DecodedBody extends ByteArrayOutputStream {
+        DecodedBody(int initialSize) {
+            super(Math.max(initialSize, 1));
+        }
+
+        InputStream toInputStream() {
+            return new ByteArrayInputStream(buf, 0, count);
+        }
+    }
+}
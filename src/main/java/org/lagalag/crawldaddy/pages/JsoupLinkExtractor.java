@@ -0,0 +1,43 @@
+package org.lagalag.crawldaddy.pages;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Elements;
+
+/**
+ * LinkExtractor that parses the page into a Jsoup Document, and selects links (a[href]) and scripts (script[src]) 
+ * from it.
+ */
+public class JsoupLinkExtractor implements LinkExtractor {
+    private static final String LINK_ELEMENT_SELECTOR = "a[href]";
+    private static final String SCRIPT_ELEMENT_SELECTOR = "script[src]";
+    private static final String ABSOLUTE_HREF_ATTRIBUTE = "abs:href";
+    private static final String ABSOLUTE_SRC_ATTRIBUTE = "abs:src";
+    
+    @Override
+    public PageFetchResults extract(String url, InputStream body, String charsetName, String baseUrl) throws IOException {
+        return extract(url, Jsoup.parse(body, charsetName, baseUrl));
+    }
+    
+    static PageFetchResults extract(String url, Document doc) {
+        Elements linkElements = doc.select(LINK_ELEMENT_SELECTOR);
+        List<String> links = extractAttributeValues(linkElements, ABSOLUTE_HREF_ATTRIBUTE);
+        Elements scriptElements = doc.select(SCRIPT_ELEMENT_SELECTOR);
+        List<String> scripts = extractAttributeValues(scriptElements, ABSOLUTE_SRC_ATTRIBUTE);
+        return PageFetchResults.onHttpOK(url, links, scripts);
+    }
+    
+    private static List<String> extractAttributeValues(Elements elements, String attrName) {
+        List<String> attrs = new ArrayList<>(elements.size());
+        for (Element e : elements) {
+            attrs.add(e.attr(attrName));
+        }
+        return attrs;
+    }
+}
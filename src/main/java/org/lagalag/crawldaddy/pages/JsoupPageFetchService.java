@@ -1,31 +1,65 @@
 package org.lagalag.crawldaddy.pages;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
+import java.net.HttpURLConnection;
+import java.util.Collections;
+import java.util.Map;
 
+import org.jsoup.Connection;
 import org.jsoup.HttpStatusException;
 import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
 
 public class JsoupPageFetchService implements PageFetchService {
-    private static final String LINK_ELEMENT_SELECTOR = "a[href]";
-    private static final String SCRIPT_ELEMENT_SELECTOR = "script[src]";
-    private static final String ABSOLUTE_HREF_ATTRIBUTE = "abs:href";
-    private static final String ABSOLUTE_SRC_ATTRIBUTE = "abs:src";
+    private static final String ETAG_HEADER = "ETag";
+    private static final String LAST_MODIFIED_HEADER = "Last-Modified";
+    private static final String CONTENT_LENGTH_HEADER = "Content-Length";
+    // Jsoup decodes bodies itself, and its deflate decoder only handles raw deflate data (not the zlib-wrapped kind).
+    private static final String ACCEPTED_ENCODINGS = "gzip";
+    
+    private final LinkExtractor linkExtractor;
+    private final ContentPolicy contentPolicy;
+    
+    public JsoupPageFetchService() {
+        this(new JsoupLinkExtractor());
+    }
+    
+    public JsoupPageFetchService(LinkExtractor linkExtractor) {
+        this(linkExtractor, ContentPolicy.DEFAULT);
+    }
+    
+    public JsoupPageFetchService(LinkExtractor linkExtractor, ContentPolicy contentPolicy) {
+        this.linkExtractor = linkExtractor;
+        this.contentPolicy = contentPolicy;
+    }
 
     @Override
     public void fetch(String url, PageFetchConsumer resultsConsumer) throws PageFetchException {
+        fetch(url, Collections.emptyMap(), resultsConsumer);
+    }
+
+    @Override
+    public void fetch(String url, Map<String,String> requestHeaders, PageFetchConsumer resultsConsumer) 
+            throws PageFetchException {
         PageFetchResults results = null;
+        PageFetchTimings timings = new PageFetchTimings();
         try {
-            Document doc = Jsoup.connect(url).get();
-            Elements linkElements = doc.select(LINK_ELEMENT_SELECTOR);
-            List<String> links = extractAttributeValues(linkElements, ABSOLUTE_HREF_ATTRIBUTE);
-            Elements scriptElements = doc.select(SCRIPT_ELEMENT_SELECTOR);
-            List<String> scripts = extractAttributeValues(scriptElements, ABSOLUTE_SRC_ATTRIBUTE);
-            results = PageFetchResults.onHttpOK(url, links, scripts);
+            // The content policy decides what to download, and how much of it, rather than Jsoup.
+            Connection connection = Jsoup.connect(url).ignoreContentType(true).maxBodySize(0)
+                                         .header(ContentEncodings.ACCEPT_ENCODING_HEADER, ACCEPTED_ENCODINGS);
+            requestHeaders.forEach(connection::header);
+            long requestStartNanos = System.nanoTime();
+            Connection.Response response = connection.execute();
+            timings.setPhaseNanos(FetchPhase.TTFB, System.nanoTime() - requestStartNanos);
+            FetchAbortReason abortReason = contentPolicy.checkHeaders(response.contentType(), getContentLength(response));
+            if (response.statusCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                results = PageFetchResults.onHttpNotModified(url);
+            } else if (abortReason != null) {
+                results = PageFetchResults.onFetchAborted(url, abortReason);
+                response.bodyStream().close();
+            } else {
+                results = extract(url, response, timings)
+                          .withValidators(response.header(ETAG_HEADER), response.header(LAST_MODIFIED_HEADER));
+            }
         } catch (IllegalArgumentException e) {
             throw new PageFetchException("Detected malformed url: " + url);
         } catch (HttpStatusException e) {
@@ -33,14 +67,39 @@ public class JsoupPageFetchService implements PageFetchService {
         } catch (IOException e) {
             throw new PageFetchException("Unable to GET " + url + ": " + e.getMessage());
         }
-        resultsConsumer.handlePageFetchResults(results);
+        resultsConsumer.handlePageFetchResults(results.withTimings(timings));
+    }
+    
+    /* The body is parsed as it's downloaded, so the time spent waiting on reads is all that tells the two apart. */
+    private PageFetchResults extract(String url, Connection.Response response, PageFetchTimings timings) throws IOException {
+        CountingInputStream decodedBody = new CountingInputStream(response.bodyStream());
+        TimedInputStream body = new TimedInputStream(decodedBody);
+        long extractStartNanos = System.nanoTime();
+        PageFetchResults results = contentPolicy.extract(url, body, response.contentType(), response.charset(), 
+                                                         response.url().toExternalForm(), linkExtractor);
+        timings.setPhaseNanos(FetchPhase.DOWNLOAD, body.getReadNanos());
+        timings.setPhaseNanos(FetchPhase.PARSE, System.nanoTime() - extractStartNanos - body.getReadNanos());
+        return results.withBodySizes(getNumBytesReceived(response, decodedBody.getNumBytesRead()), 
+                                     decodedBody.getNumBytesRead());
+    }
+    
+    /* 
+     * Jsoup decodes compressed bodies itself, out of reach of a counting stream: the size of one as received is only 
+     * known if the server sent it, and is reported as unknown (-1) otherwise.
+     */
+    private long getNumBytesReceived(Connection.Response response, long numBytesDecoded) {
+        if (!ContentEncodings.isEncoded(response.header(ContentEncodings.CONTENT_ENCODING_HEADER))) {
+            return numBytesDecoded;
+        }
+        return getContentLength(response);
     }
     
-    private List<String> extractAttributeValues(Elements elements, String attrName) {
-        List<String> attrs = new ArrayList<>(elements.size());
-        for (Element e : elements) {
-            attrs.add(e.attr(attrName));
+    private long getContentLength(Connection.Response response) {
+        try {
+            String contentLength = response.header(CONTENT_LENGTH_HEADER);
+            return (contentLength != null ? Long.parseLong(contentLength.trim()) : -1);
+        } catch (NumberFormatException e) {
+            return -1;
         }
-        return attrs;
     }
 }
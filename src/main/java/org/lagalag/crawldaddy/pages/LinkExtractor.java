@@ -0,0 +1,17 @@
+package org.lagalag.crawldaddy.pages;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Extracts the (absolute) link and external script urls from the body of a fetched page.
+ *
+ */
+public interface LinkExtractor {
+    /**
+     * @param charsetName charset of the body, as declared by the server; null if unknown.
+     * @param baseUrl url that relative links are resolved against (the final url of the page, after any redirects), 
+     *                unless the page declares its own base url.
+     */
+    PageFetchResults extract(String url, InputStream body, String charsetName, String baseUrl) throws IOException;
+}
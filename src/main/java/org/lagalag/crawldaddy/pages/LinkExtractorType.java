@@ -0,0 +1,27 @@
+package org.lagalag.crawldaddy.pages;
+
+/**
+ * Identifies the available LinkExtractor implementations.
+ *
+ */
+public enum LinkExtractorType {
+    /** Builds a Jsoup Document for the page and selects the links from it. */
+    JSOUP,
+    /** Scans the page as a stream of tags, without building a tree (see StreamingLinkExtractor). */
+    STREAMING;
+    
+    /**
+     * Returns the extractor type with the given (case-insensitive) name, or null if there is no such type.
+     */
+    public static LinkExtractorType fromName(String name) {
+        if (name == null) {
+            return null;
+        }
+        for (LinkExtractorType type : values()) {
+            if (type.name().equalsIgnoreCase(name.trim())) {
+                return type;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,76 @@
+package org.lagalag.crawldaddy.pages;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Decorates a blocking PageFetchService so that it plays nicely with ForkJoinPools: a fetch performed by a pool
+ * worker is run as a ForkJoinPool.ManagedBlocker, which lets the pool activate a spare thread while the worker waits 
+ * on the network. The number of fetches blocked at any one time is capped, which in turn caps the number of spare 
+ * threads the pool can create.
+ */
+public class ManagedBlockingPageFetchService implements PageFetchService {
+    private final PageFetchService delegate;
+    private final Semaphore fetchPermits;
+    
+    public ManagedBlockingPageFetchService(PageFetchService delegate, int maxConcurrentFetches) {
+        this.delegate = delegate;
+        this.fetchPermits = new Semaphore(maxConcurrentFetches);
+    }
+
+    @Override
+    public void fetch(String url, PageFetchConsumer resultsConsumer) throws PageFetchException {
+        PageFetchBlocker blocker = new PageFetchBlocker(url);
+        // Wait for a permit *outside* of the managed block, so that the pool does not compensate for it.
+        fetchPermits.acquireUninterruptibly();
+        try {
+            ForkJoinPool.managedBlock(blocker);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PageFetchException("Interrupted while fetching " + url);
+        } finally {
+            fetchPermits.release();
+        }
+        resultsConsumer.handlePageFetchResults(blocker.getResults());
+    }
+    
+    @Override
+    public boolean isBlocking() {
+        return true;
+    }
+    
+    private class PageFetchBlocker implements ForkJoinPool.ManagedBlocker {
+        private final String url;
+        private PageFetchResults results;
+        private PageFetchException exception;
+        private boolean done;
+        
+        PageFetchBlocker(String url) {
+            this.url = url;
+        }
+        
+        @Override
+        public boolean block() {
+            try {
+                delegate.fetch(url, fetchedResults -> results = fetchedResults);
+            } catch (PageFetchException e) {
+                exception = e;
+            }
+            done = true;
+            return true;
+        }
+
+        @Override
+        public boolean isReleasable() {
+            return done;
+        }
+        
+        PageFetchResults getResults() throws PageFetchException {
+            if (exception != null) {
+                throw exception;
+            }
+            // A delegate that returns without calling back must not leave the consumer with nothing to handle.
+            return (results != null ? results : PageFetchResults.onFetchAborted(url, FetchAbortReason.NO_RESULTS));
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package org.lagalag.crawldaddy.pages;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.lagalag.crawldaddy.util.Fingerprints;
+
+/**
+ * Persistent, size-bounded cache of page fetch results, kept on local disk so that it survives from one crawl (and 
+ * one run) to the next. Only the results of successful fetches that came with validators (ETag and/or Last-Modified)
+ * are kept, along with those validators, so the page can later be revalidated with a conditional GET.
+ * Each page is stored in its own file, named after the fingerprint of its url; once the files add up to more than
+ * the maximum size, entries are evicted according to the CacheEvictionPolicy. Thread-safe.
+ */
+public class PageCache {
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    private static final String ENTRY_FILE_SUFFIX = ".page";
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+    private static final int ENTRY_FORMAT_VERSION = 1;
+
+    private final File directory;
+    private final long maxBytes;
+    private final CacheEvictionPolicy evictionPolicy;
+    /* Size of each entry file, by file name, in eviction order. Guarded by this. */
+    private final LinkedHashMap<String,Long> entrySizes;
+    private long totalBytes;
+
+    /**
+     * Opens the cache kept in the given directory (which is created if need be), picking up any entries left there 
+     * by previous runs.
+     */
+    public PageCache(File directory, long maxBytes, CacheEvictionPolicy evictionPolicy) throws IOException {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.evictionPolicy = evictionPolicy;
+        this.entrySizes = new LinkedHashMap<>(16, 0.75f, (evictionPolicy == CacheEvictionPolicy.LRU));
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create page cache directory " + directory);
+        }
+        loadEntries();
+    }
+
+    /**
+     * Returns the cached results for the given url, or null if the url is not in the cache.
+     */
+    public PageFetchResults get(String url) {
+        String entryName = getEntryName(url);
+        synchronized (this) {
+            if (entrySizes.get(entryName) == null) {
+                return null;
+            }
+        }
+        File entryFile = new File(directory, entryName);
+        PageFetchResults results;
+        try {
+            results = readEntry(entryFile);
+        } catch (IOException e) {
+            // Evicted meanwhile, or damaged: either way, it's a miss.
+            LOGGER.debug("Unable to read page cache entry " + entryFile + ": " + e.getMessage());
+            removeEntry(entryName);
+            return null;
+        }
+        if (!url.equals(results.getUrl())) {
+            // Fingerprint collision.
+            return null;
+        }
+        if (evictionPolicy == CacheEvictionPolicy.LRU) {
+            // So that the order of use survives a restart.
+            entryFile.setLastModified(System.currentTimeMillis());
+        }
+        return results;
+    }
+
+    /**
+     * Stores the given results, replacing any earlier results for the same url. Results that cannot be revalidated
+     * (not HTTP 200, or without validators) aren't kept.
+     */
+    public void put(PageFetchResults results) {
+        String entryName = getEntryName(results.getUrl());
+        if (!results.isHttpStatusOK() || !results.hasValidators()) {
+            removeEntry(entryName);
+            return;
+        }
+        File entryFile = new File(directory, entryName);
+        long entrySize;
+        try {
+            // Write to a temp file first, so that readers never see a partial entry.
+            File tempFile = File.createTempFile(entryName, TEMP_FILE_SUFFIX, directory);
+            try {
+                writeEntry(tempFile, results);
+                entrySize = tempFile.length();
+                Files.move(tempFile.toPath(), entryFile.toPath(), StandardCopyOption.REPLACE_EXISTING, 
+                           StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                tempFile.delete();
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Unable to write page cache entry for " + results.getUrl() + ": " + e.getMessage());
+            return;
+        }
+        synchronized (this) {
+            Long previousSize = entrySizes.remove(entryName);
+            if (previousSize != null) {
+                totalBytes -= previousSize;
+            }
+            entrySizes.put(entryName, entrySize);
+            totalBytes += entrySize;
+            evictEntries();
+        }
+    }
+
+    public void remove(String url) {
+        removeEntry(getEntryName(url));
+    }
+
+    public synchronized int size() {
+        return entrySizes.size();
+    }
+
+    /**
+     * Returns the total size of the cache entries on disk.
+     */
+    public synchronized long getSizeBytes() {
+        return totalBytes;
+    }
+
+    private void removeEntry(String entryName) {
+        synchronized (this) {
+            Long size = entrySizes.remove(entryName);
+            if (size == null) {
+                return;
+            }
+            totalBytes -= size;
+        }
+        new File(directory, entryName).delete();
+    }
+
+    /* Must be called with the monitor held. */
+    private void evictEntries() {
+        Iterator<Map.Entry<String,Long>> entries = entrySizes.entrySet().iterator();
+        while ((totalBytes > maxBytes) && entries.hasNext()) {
+            Map.Entry<String,Long> entry = entries.next();
+            totalBytes -= entry.getValue();
+            entries.remove();
+            new File(directory, entry.getKey()).delete();
+        }
+    }
+
+    private void loadEntries() {
+        File[] entryFiles = directory.listFiles((dir, name) -> name.endsWith(ENTRY_FILE_SUFFIX));
+        if (entryFiles == null) {
+            return;
+        }
+        // The modification time is when an entry was stored (or, with LRU, last used).
+        List<File> sortedEntryFiles = new ArrayList<>(Arrays.asList(entryFiles));
+        sortedEntryFiles.sort(Comparator.comparingLong(File::lastModified));
+        synchronized (this) {
+            for (File entryFile : sortedEntryFiles) {
+                entrySizes.put(entryFile.getName(), entryFile.length());
+                totalBytes += entryFile.length();
+            }
+            evictEntries();
+        }
+        LOGGER.debug("Page cache " + directory + " holds " + entrySizes.size() + " page(s)");
+    }
+
+    private static String getEntryName(String url) {
+        return String.format("%016x", Fingerprints.of(url)) + ENTRY_FILE_SUFFIX;
+    }
+
+    private static void writeEntry(File file, PageFetchResults results) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(ENTRY_FORMAT_VERSION);
+            writeString(out, results.getUrl());
+            writeString(out, results.getEtag());
+            writeString(out, results.getLastModified());
+            writeStrings(out, results.getLinkUrls());
+            writeStrings(out, results.getScriptUrls());
+        }
+    }
+
+    private static PageFetchResults readEntry(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != ENTRY_FORMAT_VERSION) {
+                throw new IOException("Unknown page cache entry format");
+            }
+            String url = readString(in);
+            String etag = readString(in);
+            String lastModified = readString(in);
+            List<String> links = readStrings(in);
+            List<String> scripts = readStrings(in);
+            return PageFetchResults.onHttpOK(url, links, scripts).withValidators(etag, lastModified);
+        }
+    }
+
+    private static void writeStrings(DataOutputStream out, List<String> strings) throws IOException {
+        out.writeInt(strings.size());
+        for (String s : strings) {
+            writeString(out, s);
+        }
+    }
+
+    private static List<String> readStrings(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        if (count < 0) {
+            throw new IOException("Damaged page cache entry");
+        }
+        List<String> strings = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            strings.add(readString(in));
+        }
+        return strings;
+    }
+
+    /* Strings are written as their UTF-8 length (-1 for null) followed by their UTF-8 bytes. */
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
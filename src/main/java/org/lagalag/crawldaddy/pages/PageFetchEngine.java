@@ -0,0 +1,29 @@
+package org.lagalag.crawldaddy.pages;
+
+/**
+ * Identifies the available PageFetchService implementations.
+ *
+ */
+public enum PageFetchEngine {
+    /** Blocking fetch (one thread per in-flight request) using Jsoup's built-in HTTP connection. */
+    JSOUP,
+    /** Non-blocking fetch using Apache HttpAsyncClient; many requests can be in flight on a few I/O threads. */
+    ASYNC,
+    /** Blocking fetch using Apache HttpClient, with a per-host pool of keep-alive connections. */
+    POOLED;
+    
+    /**
+     * Returns the engine with the given (case-insensitive) name, or null if there is no such engine.
+     */
+    public static PageFetchEngine fromName(String name) {
+        if (name == null) {
+            return null;
+        }
+        for (PageFetchEngine engine : values()) {
+            if (engine.name().equalsIgnoreCase(name.trim())) {
+                return engine;
+            }
+        }
+        return null;
+    }
+}
@@ -14,20 +14,87 @@ public class PageFetchResults {
     private final int httpStatusCode;
     private final List<String> linkUrls;
     private final List<String> scriptUrls;
+    private final String etag;
+    private final String lastModified;
+    private final boolean fromCache;
+    private final PageFetchTimings timings;
+    private final FetchAbortReason abortReason;
+    private final long numBytesReceived;
+    private final long numBytesDecoded;
 
     public static PageFetchResults onHttpOK(String url, List<String> links, List<String> scripts) {
-        return new PageFetchResults(url, HttpURLConnection.HTTP_OK, links, scripts);
+        return new PageFetchResults(url, HttpURLConnection.HTTP_OK, links, scripts, null, null, false, null, null, -1, -1);
     }
     
     public static PageFetchResults onHttpNotOK(String url, int httpStatusCode) {
-        return new PageFetchResults(url, httpStatusCode, Collections.emptyList(), Collections.emptyList());
+        return new PageFetchResults(url, httpStatusCode, Collections.emptyList(), Collections.emptyList(), null, null, false, null, 
+                                    null, -1, -1);
     }
     
-    private PageFetchResults(String url, int httpStatusCode, List<String> linkUrls, List<String> scriptUrls) {
+    /**
+     * Returns the results of a fetch that was given up on (for the given reason) before the body was parsed.
+     */
+    public static PageFetchResults onFetchAborted(String url, FetchAbortReason abortReason) {
+        return new PageFetchResults(url, HttpURLConnection.HTTP_OK, Collections.emptyList(), Collections.emptyList(), null, null, 
+                                    false, null, abortReason, -1, -1);
+    }
+    
+    /**
+     * Returns the results of a conditional fetch to which the server replied that the page has not changed.
+     */
+    public static PageFetchResults onHttpNotModified(String url) {
+        return onHttpNotOK(url, HttpURLConnection.HTTP_NOT_MODIFIED);
+    }
+    
+    private PageFetchResults(String url, int httpStatusCode, List<String> linkUrls, List<String> scriptUrls,
+                             String etag, String lastModified, boolean fromCache, PageFetchTimings timings, 
+                             FetchAbortReason abortReason, long numBytesReceived, long numBytesDecoded) {
         this.url = url;
         this.httpStatusCode = httpStatusCode;
         this.linkUrls = new ArrayList<>(linkUrls);
         this.scriptUrls = new ArrayList<>(scriptUrls);
+        this.etag = etag;
+        this.lastModified = lastModified;
+        this.fromCache = fromCache;
+        this.timings = timings;
+        this.abortReason = abortReason;
+        this.numBytesReceived = numBytesReceived;
+        this.numBytesDecoded = numBytesDecoded;
+    }
+    
+    /**
+     * Returns a copy of these results that carries the given response validators (the ETag and Last-Modified 
+     * headers, either of which may be null).
+     */
+    public PageFetchResults withValidators(String etag, String lastModified) {
+        return new PageFetchResults(url, httpStatusCode, linkUrls, scriptUrls, etag, lastModified, fromCache, timings, abortReason, 
+                                    numBytesReceived, numBytesDecoded);
+    }
+    
+    /**
+     * Returns a copy of these results that carries the given timings of the fetch.
+     */
+    public PageFetchResults withTimings(PageFetchTimings timings) {
+        return new PageFetchResults(url, httpStatusCode, linkUrls, scriptUrls, etag, lastModified, fromCache, timings, abortReason, 
+                                    numBytesReceived, numBytesDecoded);
+    }
+    
+    /**
+     * Returns a copy of these results that carries the size of the body: as received (still compressed, if it was) 
+     * and once decoded; -1 for a size that wasn't measured.
+     */
+    public PageFetchResults withBodySizes(long numBytesReceived, long numBytesDecoded) {
+        return new PageFetchResults(url, httpStatusCode, linkUrls, scriptUrls, etag, lastModified, fromCache, timings, abortReason, 
+                                    numBytesReceived, numBytesDecoded);
+    }
+    
+    /**
+     * Returns a copy of these results marked as having been served from a cache (after revalidation). No body was 
+     * downloaded, so the copy carries no body sizes.
+     */
+    public PageFetchResults asCached() {
+        return new PageFetchResults(url, httpStatusCode, linkUrls, scriptUrls, etag, lastModified, true, timings, abortReason, 
+                                    -1, -1);
     }
     
     public String getUrl() {
@@ -41,6 +108,10 @@ public class PageFetchResults {
     public boolean isHttpStatusOK() {
         return (httpStatusCode == HttpURLConnection.HTTP_OK);
     }
+    
+    public boolean isHttpNotModified() {
+        return (httpStatusCode == HttpURLConnection.HTTP_NOT_MODIFIED);
+    }
 
     public List<String> getLinkUrls() {
         return Collections.unmodifiableList(linkUrls);
@@ -49,4 +120,64 @@ public class PageFetchResults {
     public List<String> getScriptUrls() {
         return Collections.unmodifiableList(scriptUrls);
     }
+    
+    /**
+     * Returns the ETag header of the response, or null if there was none.
+     */
+    public String getEtag() {
+        return etag;
+    }
+    
+    /**
+     * Returns the Last-Modified header of the response, or null if there was none.
+     */
+    public String getLastModified() {
+        return lastModified;
+    }
+    
+    public boolean hasValidators() {
+        return (etag != null) || (lastModified != null);
+    }
+    
+    /**
+     * Returns true if the page was found unchanged and these results were taken from the page cache.
+     */
+    public boolean isFromCache() {
+        return fromCache;
+    }
+    
+    /**
+     * Returns true if the fetch was given up on before the body was parsed, in which case there are no links.
+     */
+    public boolean isFetchAborted() {
+        return (abortReason != null);
+    }
+    
+    /**
+     * Returns why the fetch was given up on, or null if it wasn't.
+     */
+    public FetchAbortReason getAbortReason() {
+        return abortReason;
+    }
+    
+    /**
+     * Returns the number of bytes of body received (compressed, if the server compressed it), or -1 if not measured.
+     */
+    public long getNumBytesReceived() {
+        return numBytesReceived;
+    }
+    
+    /**
+     * Returns the number of bytes of body read once decoded, or -1 if not measured.
+     */
+    public long getNumBytesDecoded() {
+        return numBytesDecoded;
+    }
+    
+    /**
+     * Returns how long each phase of the fetch took, or null if the fetch wasn't timed.
+     */
+    public PageFetchTimings getTimings() {
+        return timings;
+    }
 }
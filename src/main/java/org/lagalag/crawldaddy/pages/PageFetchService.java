@@ -1,9 +1,58 @@
 package org.lagalag.crawldaddy.pages;
 
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
 /**
  * Identifies a provider of a service that fetches and parses a web page given its URL.
  *
  */
 public interface PageFetchService {
     void fetch(String url, PageFetchConsumer resultsConsumer) throws PageFetchException;
+    
+    /**
+     * Same as fetch(url, resultsConsumer), but sends the given extra request headers (e.g. the validators of a 
+     * conditional GET). The default implementation ignores the headers.
+     */
+    default void fetch(String url, Map<String,String> requestHeaders, PageFetchConsumer resultsConsumer) 
+            throws PageFetchException {
+        fetch(url, resultsConsumer);
+    }
+    
+    /**
+     * Fetches and parses the page at the given URL, handing the results to the given consumer once available.
+     * Implementations backed by non-blocking I/O return immediately and run the parse and the consumer callback 
+     * on the given executor. The returned future completes once the consumer has been invoked, or exceptionally 
+     * (with a PageFetchException) if the page could not be fetched.
+     * The default implementation performs a blocking fetch in the calling thread.
+     */
+    default CompletableFuture<Void> fetchAsync(String url, PageFetchConsumer resultsConsumer, Executor executor) {
+        return fetchAsync(url, Collections.emptyMap(), resultsConsumer, executor);
+    }
+    
+    /**
+     * Same as fetchAsync(url, resultsConsumer, executor), but sends the given extra request headers. 
+     * The default implementation performs a blocking fetch (with the headers) in the calling thread.
+     */
+    default CompletableFuture<Void> fetchAsync(String url, Map<String,String> requestHeaders, 
+                                               PageFetchConsumer resultsConsumer, Executor executor) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        try {
+            fetch(url, requestHeaders, resultsConsumer);
+            future.complete(null);
+        } catch (PageFetchException | RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+    
+    /**
+     * Returns true if fetches performed by this service block the calling thread until the page has been 
+     * downloaded and parsed (even when invoked through fetchAsync()).
+     */
+    default boolean isBlocking() {
+        return true;
+    }
 }
@@ -1,10 +1,66 @@
 package org.lagalag.crawldaddy.pages;
 
 public class PageFetchServiceLocator {
-    private static final PageFetchService pageFetchService = new JsoupPageFetchService();
+    private static final PageFetchService jsoupPageFetchService = new JsoupPageFetchService();
+    private static final PageFetchService streamingJsoupPageFetchService = new JsoupPageFetchService(new StreamingLinkExtractor());
     
     public static PageFetchService getService() {
-        return pageFetchService;
+        return jsoupPageFetchService;
+    }
+    
+    public static PageFetchService getService(PageFetchEngine engine) {
+        return getService(engine, LinkExtractorType.JSOUP);
+    }
+    
+    public static PageFetchService getService(PageFetchEngine engine, LinkExtractorType linkExtractorType) {
+        boolean isStreaming = (linkExtractorType == LinkExtractorType.STREAMING);
+        if (engine == PageFetchEngine.ASYNC) {
+            return (isStreaming ? AsyncServiceHolder.STREAMING_SERVICE : AsyncServiceHolder.SERVICE);
+        }
+        if (engine == PageFetchEngine.POOLED) {
+            return (isStreaming ? PooledServiceHolder.STREAMING_SERVICE : PooledServiceHolder.SERVICE);
+        }
+        return (isStreaming ? streamingJsoupPageFetchService : jsoupPageFetchService);
+    }
+    
+    /**
+     * Same as getService(engine, linkExtractorType), except that the service decides what to download with the 
+     * given ContentPolicy. Services of the same engine share their connections.
+     */
+    public static PageFetchService getService(PageFetchEngine engine, LinkExtractorType linkExtractorType, 
+                                              ContentPolicy contentPolicy) {
+        PageFetchService service = getService(engine, linkExtractorType);
+        if (contentPolicy == ContentPolicy.DEFAULT) {
+            return service;
+        }
+        switch (engine) {
+        case ASYNC:
+            return ((AsyncPageFetchService) service).withContentPolicy(contentPolicy);
+        case POOLED:
+            return ((PooledPageFetchService) service).withContentPolicy(contentPolicy);
+        case JSOUP:
+        default:
+            return new JsoupPageFetchService(createLinkExtractor(linkExtractorType), contentPolicy);
+        }
+    }
+    
+    public static LinkExtractor createLinkExtractor(LinkExtractorType linkExtractorType) {
+        return (linkExtractorType == LinkExtractorType.STREAMING ? new StreamingLinkExtractor() : new JsoupLinkExtractor());
+    }
+    
+    /* Lazily creates the async service (and its I/O threads) only if it is actually used. */
+    private static class AsyncServiceHolder {
+        private static final AsyncPageFetchService SERVICE = new AsyncPageFetchService();
+        private static final AsyncPageFetchService STREAMING_SERVICE = SERVICE.withLinkExtractor(new StreamingLinkExtractor());
+    }
+    
+    /* Likewise for the pooled service (and its connection pools). */
+    private static class PooledServiceHolder {
+        private static final PooledPageFetchService SERVICE = new PooledPageFetchService();
+        private static final PooledPageFetchService STREAMING_SERVICE = 
+                new PooledPageFetchService(PooledPageFetchService.DEFAULT_MAX_CONNECTIONS_PER_HOST, 
+                                           PooledPageFetchService.DEFAULT_IDLE_TIMEOUT_SECONDS, new StreamingLinkExtractor(), 
+                                           ContentPolicy.DEFAULT);
     }
     
     private PageFetchServiceLocator() {
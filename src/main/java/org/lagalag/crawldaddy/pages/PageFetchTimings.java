@@ -0,0 +1,47 @@
+package org.lagalag.crawldaddy.pages;
+
+import java.util.Arrays;
+
+/**
+ * Time spent in each phase of a single page fetch. Filled in by the page fetch engine as the fetch goes (phases it
+ * cannot tell apart are left unmeasured), then only read. Not thread-safe.
+ */
+public class PageFetchTimings {
+    public static final long NOT_MEASURED = -1;
+
+    private final long startNanos = System.nanoTime();
+    private final long[] phaseNanos = new long[FetchPhase.values().length];
+
+    public PageFetchTimings() {
+        Arrays.fill(phaseNanos, NOT_MEASURED);
+    }
+
+    /**
+     * Returns the System.nanoTime() at which the fetch started.
+     */
+    public long getStartNanos() {
+        return startNanos;
+    }
+
+    public void setPhaseNanos(FetchPhase phase, long nanos) {
+        phaseNanos[phase.ordinal()] = Math.max(0, nanos);
+    }
+
+    /**
+     * Returns the time spent in the given phase, in nanoseconds, or NOT_MEASURED.
+     */
+    public long getPhaseNanos(FetchPhase phase) {
+        return phaseNanos[phase.ordinal()];
+    }
+
+    /**
+     * Adds to the time spent in the given phase, for phases that may happen more than once (e.g. on redirects).
+     */
+    public void addPhaseNanos(FetchPhase phase, long nanos) {
+        setPhaseNanos(phase, (isMeasured(phase) ? getPhaseNanos(phase) : 0) + nanos);
+    }
+
+    public boolean isMeasured(FetchPhase phase) {
+        return (phaseNanos[phase.ordinal()] != NOT_MEASURED);
+    }
+}
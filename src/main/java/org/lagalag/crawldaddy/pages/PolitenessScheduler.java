@@ -0,0 +1,276 @@
+package org.lagalag.crawldaddy.pages;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.lagalag.crawldaddy.util.URLUtils;
+
+/**
+ * Decorates a PageFetchService so that fetches are spread politely across hosts: for each host, at most a given
+ * number of fetches are in progress at once, and fetches are started no faster than a given number of requests per
+ * second (token bucket, allowing bursts of up to one second's worth of requests).
+ * Fetches that cannot be started right away are queued per host, so a throttled host never holds up fetches to
+ * other hosts, and no thread is blocked while waiting: queued fetches are started on the executor given to
+ * fetchAsync() as soon as the host allows it. The bookkeeping of a host is dropped once it has nothing left to fetch
+ * (and its token bucket is full again), so a long crawl or a batch doesn't keep one for every host it ever saw.
+ * If given a RobotsTxtCache, hosts whose robots.txt has a Crawl-delay are fetched no faster than it allows (on top
+ * of the rate limit, if any).
+ */
+public class PolitenessScheduler implements PageFetchService {
+    private static final ScheduledExecutorService WAKEUP_TIMER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "politeness-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final PageFetchService delegate;
+    private final int maxConnectionsPerHost;
+    private final double maxRequestsPerSecondPerHost;
+    private final RobotsTxtCache robotsTxtCache;
+    private final ConcurrentMap<String,HostQueue> hostQueues = new ConcurrentHashMap<>();
+
+    /**
+     * @param maxRequestsPerSecondPerHost maximum rate at which fetches to a single host are started; 0 for no limit.
+     */
+    public PolitenessScheduler(PageFetchService delegate, int maxConnectionsPerHost, double maxRequestsPerSecondPerHost) {
+        this(delegate, maxConnectionsPerHost, maxRequestsPerSecondPerHost, null);
+    }
+
+    /**
+     * @param robotsTxtCache where to look up the Crawl-delay of each host; null to ignore Crawl-delay.
+     */
+    public PolitenessScheduler(PageFetchService delegate, int maxConnectionsPerHost, double maxRequestsPerSecondPerHost,
+                               RobotsTxtCache robotsTxtCache) {
+        this.delegate = delegate;
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+        this.maxRequestsPerSecondPerHost = maxRequestsPerSecondPerHost;
+        this.robotsTxtCache = robotsTxtCache;
+    }
+
+    @Override
+    public void fetch(String url, PageFetchConsumer resultsConsumer) throws PageFetchException {
+        try {
+            // Queued fetches are started from the timer thread, so they can't simply be run in the calling thread.
+            fetchAsync(url, resultsConsumer, ForkJoinPool.commonPool()).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof PageFetchException) {
+                throw (PageFetchException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> fetchAsync(String url, PageFetchConsumer resultsConsumer, Executor executor) {
+        PendingFetch pendingFetch = new PendingFetch(url, resultsConsumer, executor);
+        HostQueue hostQueue;
+        do {
+            hostQueue = getHostQueue(url);
+        } while (!hostQueue.add(pendingFetch));
+        hostQueue.startReadyFetches();
+        return pendingFetch.future;
+    }
+
+    @Override
+    public boolean isBlocking() {
+        return false;
+    }
+
+    /**
+     * Returns the number of hosts with fetches queued or in progress (or whose token bucket is still refilling).
+     */
+    public int getNumHosts() {
+        return hostQueues.size();
+    }
+
+    private HostQueue getHostQueue(String url) {
+        String host = URLUtils.getHost(url).toLowerCase(Locale.ROOT);
+        return hostQueues.computeIfAbsent(host, HostQueue::new);
+    }
+
+    private static class PendingFetch {
+        final String url;
+        final PageFetchConsumer resultsConsumer;
+        final Executor executor;
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        PendingFetch(String url, PageFetchConsumer resultsConsumer, Executor executor) {
+            this.url = url;
+            this.resultsConsumer = resultsConsumer;
+            this.executor = executor;
+        }
+    }
+
+    /* Pending fetches and rate/connection bookkeeping for a single host. Guarded by its own monitor. */
+    private class HostQueue {
+        private final String host;
+        private final Queue<PendingFetch> pendingFetches = new ArrayDeque<>();
+        private int numActiveFetches;
+        private double tokens;
+        private long lastRefillNanos = System.nanoTime();
+        private boolean wakeupScheduled;
+        private boolean retirementScheduled;
+        /* Set once removed from hostQueues; fetches then go to a new queue for the host. */
+        private boolean retired;
+
+        HostQueue(String host) {
+            this.host = host;
+            this.tokens = getBucketCapacity(getRequestsPerSecond());
+        }
+
+        /* Returns false if the queue has been retired, in which case the fetch must go to the host's new queue. */
+        synchronized boolean add(PendingFetch pendingFetch) {
+            if (retired) {
+                return false;
+            }
+            pendingFetches.add(pendingFetch);
+            return true;
+        }
+
+        void startReadyFetches() {
+            for (PendingFetch pendingFetch : takeReadyFetches()) {
+                try {
+                    pendingFetch.executor.execute(() -> start(pendingFetch));
+                } catch (RejectedExecutionException e) {
+                    fetchFinished();
+                    retireIfIdle();
+                    pendingFetch.future.completeExceptionally(new PageFetchException("Unable to start fetch of " + pendingFetch.url, e));
+                }
+            }
+        }
+
+        private synchronized List<PendingFetch> takeReadyFetches() {
+            List<PendingFetch> readyFetches = new ArrayList<>();
+            while (!pendingFetches.isEmpty() && (numActiveFetches < maxConnectionsPerHost)) {
+                long nanosUntilToken = takeToken();
+                if (nanosUntilToken > 0) {
+                    scheduleWakeup(nanosUntilToken);
+                    break;
+                }
+                numActiveFetches++;
+                readyFetches.add(pendingFetches.remove());
+            }
+            return readyFetches;
+        }
+
+        private void start(PendingFetch pendingFetch) {
+            CompletableFuture<Void> fetchFuture;
+            try {
+                fetchFuture = delegate.fetchAsync(pendingFetch.url, pendingFetch.resultsConsumer, pendingFetch.executor);
+            } catch (RuntimeException e) {
+                fetchFuture = new CompletableFuture<>();
+                fetchFuture.completeExceptionally(e);
+            }
+            fetchFuture.whenComplete((none, e) -> {
+                // Free up the slot (and start the next fetch) before reporting back, as the crawl may end as soon as we do.
+                fetchFinished();
+                startReadyFetches();
+                retireIfIdle();
+                if (e != null) {
+                    pendingFetch.future.completeExceptionally((e instanceof CompletionException) ? e.getCause() : e);
+                } else {
+                    pendingFetch.future.complete(null);
+                }
+            });
+        }
+
+        private synchronized void fetchFinished() {
+            numActiveFetches--;
+        }
+
+        /*
+         * Removes the queue from hostQueues if nothing is pending or in progress. Not before its token bucket is full
+         * again, though: a new queue starts with a full bucket, which would let a host be fetched faster than allowed.
+         */
+        private synchronized void retireIfIdle() {
+            if (retired || wakeupScheduled || !pendingFetches.isEmpty() || (numActiveFetches > 0)) {
+                return;
+            }
+            double requestsPerSecond = getRequestsPerSecond();
+            if (requestsPerSecond > 0) {
+                refill(requestsPerSecond);
+                double missingTokens = getBucketCapacity(requestsPerSecond) - tokens;
+                if (missingTokens > 0) {
+                    scheduleRetirement(Math.max(1, (long) (missingTokens * 1e9 / requestsPerSecond)));
+                    return;
+                }
+            }
+            retired = true;
+            hostQueues.remove(host, this);
+        }
+
+        /* Returns 0 if a token was taken, otherwise the number of nanoseconds until one becomes available. */
+        private long takeToken() {
+            double requestsPerSecond = getRequestsPerSecond();
+            if (requestsPerSecond <= 0) {
+                return 0;
+            }
+            refill(requestsPerSecond);
+            if (tokens >= 1.0) {
+                tokens -= 1.0;
+                return 0;
+            }
+            return Math.max(1, (long) ((1.0 - tokens) * 1e9 / requestsPerSecond));
+        }
+
+        private void refill(double requestsPerSecond) {
+            long now = System.nanoTime();
+            tokens = Math.min(getBucketCapacity(requestsPerSecond), tokens + (now - lastRefillNanos) * requestsPerSecond / 1e9);
+            lastRefillNanos = now;
+        }
+
+        /* Looked up on every fetch, as the Crawl-delay only becomes known once robots.txt has been fetched. */
+        private double getRequestsPerSecond() {
+            double crawlDelaySeconds = (robotsTxtCache != null ? robotsTxtCache.getCrawlDelaySeconds(host) : 0);
+            if (crawlDelaySeconds <= 0) {
+                return maxRequestsPerSecondPerHost;
+            }
+            double crawlDelayRequestsPerSecond = 1.0 / crawlDelaySeconds;
+            return (maxRequestsPerSecondPerHost > 0 ? Math.min(maxRequestsPerSecondPerHost, crawlDelayRequestsPerSecond)
+                                                    : crawlDelayRequestsPerSecond);
+        }
+
+        private void scheduleWakeup(long delayNanos) {
+            if (wakeupScheduled) {
+                return;
+            }
+            wakeupScheduled = true;
+            WAKEUP_TIMER.schedule(() -> {
+                synchronized (this) {
+                    wakeupScheduled = false;
+                }
+                startReadyFetches();
+            }, delayNanos, TimeUnit.NANOSECONDS);
+        }
+
+        private void scheduleRetirement(long delayNanos) {
+            if (retirementScheduled) {
+                return;
+            }
+            retirementScheduled = true;
+            WAKEUP_TIMER.schedule(() -> {
+                synchronized (this) {
+                    retirementScheduled = false;
+                }
+                retireIfIdle();
+            }, delayNanos, TimeUnit.NANOSECONDS);
+        }
+
+        private double getBucketCapacity(double requestsPerSecond) {
+            return Math.max(1.0, requestsPerSecond);
+        }
+    }
+}
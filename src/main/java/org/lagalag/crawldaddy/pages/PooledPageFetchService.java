@@ -0,0 +1,312 @@
+package org.lagalag.crawldaddy.pages;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.Header;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpException;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.ClientProtocolException;
+import org.apache.http.client.config.CookieSpecs;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.DnsResolver;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.SystemDefaultDnsResolver;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpRequestExecutor;
+import org.apache.http.ssl.SSLContexts;
+import org.apache.http.util.EntityUtils;
+
+/**
+ * Blocking PageFetchService (Apache HttpClient) that keeps connections alive in a pool of its own, with up to a 
+ * given number of idle connections per host, so that pages from the same host don't each pay for a TCP (and TLS) 
+ * handshake. Connections left idle for longer than the idle timeout (or than the server's keep-alive, if shorter) 
+ * are closed. All https connections are made with the same SSLContext, whose session cache lets new connections 
+ * to a host resume an earlier TLS session rather than do a full handshake.
+ * Must be closed once no longer needed, to close the pooled connections.
+ */
+public class PooledPageFetchService implements PageFetchService, Closeable {
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 16;
+    public static final int DEFAULT_IDLE_TIMEOUT_SECONDS = 30;
+
+    private static final int MAX_CONNECTIONS = 1000;
+    private static final int CONNECT_TIMEOUT_MILLIS = 30000;
+    private static final int SOCKET_TIMEOUT_MILLIS = 30000;
+    // Pooled connections idle for longer than this are checked before reuse, in case the server closed them.
+    private static final int VALIDATE_AFTER_INACTIVITY_MILLIS = 2000;
+    private static final String CONTENT_TYPE_HEADER = "Content-Type";
+    private static final String ETAG_HEADER = "ETag";
+    private static final String LAST_MODIFIED_HEADER = "Last-Modified";
+
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final TimingDnsResolver dnsResolver;
+    private final CloseableHttpClient httpClient;
+    private final LinkExtractor linkExtractor;
+    private final ContentPolicy contentPolicy;
+    private final AtomicLong numHits;
+    private final AtomicLong numMisses;
+
+    public PooledPageFetchService() {
+        this(DEFAULT_MAX_CONNECTIONS_PER_HOST, DEFAULT_IDLE_TIMEOUT_SECONDS, new JsoupLinkExtractor(), ContentPolicy.DEFAULT);
+    }
+
+    /**
+     * @param maxConnectionsPerHost maximum number of connections (in use or idle) kept to any one host.
+     * @param idleTimeoutSeconds time after which an idle connection is closed.
+     */
+    public PooledPageFetchService(int maxConnectionsPerHost, int idleTimeoutSeconds, LinkExtractor linkExtractor, 
+                                  ContentPolicy contentPolicy) {
+        Registry<ConnectionSocketFactory> socketFactories = RegistryBuilder.<ConnectionSocketFactory>create()
+                .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                .register("https", new SSLConnectionSocketFactory(SSLContexts.createSystemDefault()))
+                .build();
+        this.numHits = new AtomicLong();
+        this.numMisses = new AtomicLong();
+        this.dnsResolver = new TimingDnsResolver();
+        this.connectionManager = new PoolingHttpClientConnectionManager(socketFactories, dnsResolver);
+        this.connectionManager.setDefaultMaxPerRoute(maxConnectionsPerHost);
+        this.connectionManager.setMaxTotal(Math.max(MAX_CONNECTIONS, maxConnectionsPerHost));
+        this.connectionManager.setValidateAfterInactivity(VALIDATE_AFTER_INACTIVITY_MILLIS);
+        RequestConfig requestConfig = RequestConfig.custom()
+                                                   .setConnectTimeout(CONNECT_TIMEOUT_MILLIS)
+                                                   .setSocketTimeout(SOCKET_TIMEOUT_MILLIS)
+                                                   .setCookieSpec(CookieSpecs.STANDARD)
+                                                   .build();
+        long idleTimeoutMillis = TimeUnit.SECONDS.toMillis(idleTimeoutSeconds);
+        this.httpClient = HttpClients.custom()
+                                     .setConnectionManager(connectionManager)
+                                     .setDefaultRequestConfig(requestConfig)
+                                     .setRequestExecutor(new CountingRequestExecutor(numHits, numMisses))
+                                     // Bodies are decoded here instead, so their compressed size can be measured.
+                                     .disableContentCompression()
+                                     .setKeepAliveStrategy((response, context) -> {
+                                         long keepAliveMillis = DefaultConnectionKeepAliveStrategy.INSTANCE
+                                                                .getKeepAliveDuration(response, context);
+                                         return (keepAliveMillis > 0 ? Math.min(keepAliveMillis, idleTimeoutMillis) 
+                                                                     : idleTimeoutMillis);
+                                     })
+                                     .evictIdleConnections(idleTimeoutSeconds, TimeUnit.SECONDS)
+                                     .evictExpiredConnections()
+                                     .build();
+        this.linkExtractor = linkExtractor;
+        this.contentPolicy = contentPolicy;
+    }
+    
+    private PooledPageFetchService(PooledPageFetchService service, ContentPolicy contentPolicy) {
+        this.connectionManager = service.connectionManager;
+        this.dnsResolver = service.dnsResolver;
+        this.httpClient = service.httpClient;
+        this.linkExtractor = service.linkExtractor;
+        this.numHits = service.numHits;
+        this.numMisses = service.numMisses;
+        this.contentPolicy = contentPolicy;
+    }
+    
+    /**
+     * Returns a service that shares this service's connection pool (and stats), but decides what to download with 
+     * the given ContentPolicy. Closing either service closes the pool.
+     */
+    public PooledPageFetchService withContentPolicy(ContentPolicy contentPolicy) {
+        return new PooledPageFetchService(this, contentPolicy);
+    }
+
+    @Override
+    public void fetch(String url, PageFetchConsumer resultsConsumer) throws PageFetchException {
+        fetch(url, Collections.emptyMap(), resultsConsumer);
+    }
+
+    @Override
+    public void fetch(String url, Map<String,String> requestHeaders, PageFetchConsumer resultsConsumer) 
+            throws PageFetchException {
+        HttpGet request = new HttpGet(AsyncPageFetchService.toRequestUri(url));
+        request.addHeader(ContentEncodings.ACCEPT_ENCODING_HEADER, ContentEncodings.ACCEPTED_ENCODINGS);
+        requestHeaders.forEach(request::addHeader);
+        HttpClientContext context = HttpClientContext.create();
+        PageFetchTimings timings = new PageFetchTimings();
+        PageFetchResults results;
+        long requestStartNanos = System.nanoTime();
+        try (CloseableHttpResponse response = execute(request, context, timings)) {
+            // The lookups made while connecting are timed apart (see TimingDnsResolver).
+            long dnsNanos = (timings.isMeasured(FetchPhase.DNS) ? timings.getPhaseNanos(FetchPhase.DNS) : 0);
+            timings.setPhaseNanos(FetchPhase.TTFB, System.nanoTime() - requestStartNanos - dnsNanos);
+            results = handleResponse(url, response, context, timings);
+            if (!results.isFetchAborted()) {
+                // Reads whatever is left of the body, so the connection goes back to the pool rather than being closed.
+                // Aborted fetches (and failed ones) are hung up on instead, by closing the response.
+                EntityUtils.consume(response.getEntity());
+            }
+        } catch (ClientProtocolException e) {
+            throw new PageFetchException("Detected malformed url: " + url);
+        } catch (IOException e) {
+            throw new PageFetchException("Unable to GET " + url + ": " + e.getMessage());
+        }
+        resultsConsumer.handlePageFetchResults(results.withTimings(timings));
+    }
+
+    /**
+     * Returns the pool's hits, misses and evictions since this service was created.
+     */
+    public ConnectionPoolStats getPoolStats() {
+        PoolStats poolStats = connectionManager.getTotalStats();
+        long numMissesSoFar = numMisses.get();
+        // Every connection ever opened (one per miss) is either still open or has been closed by the pool.
+        long numEvictions = Math.max(0, numMissesSoFar - poolStats.getLeased() - poolStats.getAvailable());
+        return new ConnectionPoolStats(numHits.get(), numMissesSoFar, numEvictions);
+    }
+
+    @Override
+    public void close() throws IOException {
+        httpClient.close();
+    }
+
+    private CloseableHttpResponse execute(HttpGet request, HttpClientContext context, PageFetchTimings timings) 
+            throws IOException {
+        dnsResolver.timeLookupsFor(timings);
+        try {
+            return httpClient.execute(request, context);
+        } finally {
+            dnsResolver.timeLookupsFor(null);
+        }
+    }
+
+    private PageFetchResults handleResponse(String url, HttpResponse response, HttpClientContext context, 
+                                            PageFetchTimings timings) throws IOException {
+        int httpStatusCode = response.getStatusLine().getStatusCode();
+        if ((httpStatusCode < 200) || (httpStatusCode >= 400)) {
+            return PageFetchResults.onHttpNotOK(url, httpStatusCode);
+        }
+        if (httpStatusCode == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            return PageFetchResults.onHttpNotModified(url);
+        }
+        HttpEntity entity = response.getEntity();
+        if (entity == null) {
+            return PageFetchResults.onHttpOK(url, Collections.emptyList(), Collections.emptyList());
+        }
+        String contentTypeHeader = getHeaderValue(response, CONTENT_TYPE_HEADER);
+        FetchAbortReason abortReason = contentPolicy.checkHeaders(contentTypeHeader, entity.getContentLength());
+        if (abortReason != null) {
+            return PageFetchResults.onFetchAborted(url, abortReason);
+        }
+        ContentType contentType = getContentType(entity);
+        Charset charset = (contentType != null ? contentType.getCharset() : null);
+        // The body is parsed as it's downloaded, so the time spent waiting on reads is all that tells the two apart.
+        TimedInputStream receivedBody = new TimedInputStream(entity.getContent());
+        CountingInputStream encodedBody = new CountingInputStream(receivedBody);
+        long extractStartNanos = System.nanoTime();
+        CountingInputStream decodedBody = new CountingInputStream(
+                ContentEncodings.decode(encodedBody, getHeaderValue(response, ContentEncodings.CONTENT_ENCODING_HEADER)));
+        PageFetchResults results = contentPolicy.extract(url, decodedBody, contentTypeHeader, 
+                                                         (charset != null ? charset.name() : null), getFinalUrl(url, context), 
+                                                         linkExtractor)
+                                   .withBodySizes(encodedBody.getNumBytesRead(), decodedBody.getNumBytesRead());
+        timings.setPhaseNanos(FetchPhase.DOWNLOAD, receivedBody.getReadNanos());
+        timings.setPhaseNanos(FetchPhase.PARSE, System.nanoTime() - extractStartNanos - receivedBody.getReadNanos());
+        if (results.isFetchAborted()) {
+            // Closing the body would read the rest of it: it's left for the caller to hang up on instead.
+            return results;
+        }
+        decodedBody.close();
+        return results.withValidators(getHeaderValue(response, ETAG_HEADER), getHeaderValue(response, LAST_MODIFIED_HEADER));
+    }
+
+    private String getHeaderValue(HttpResponse response, String name) {
+        Header header = response.getFirstHeader(name);
+        return (header != null ? header.getValue() : null);
+    }
+
+    private ContentType getContentType(HttpEntity entity) {
+        try {
+            return ContentType.get(entity);
+        } catch (RuntimeException e) {
+            // Unparseable header or unknown charset -- let the parser figure it out.
+            return null;
+        }
+    }
+
+    /* Relative links have to be resolved against the location we were redirected to (if any). */
+    private String getFinalUrl(String url, HttpClientContext context) {
+        List<URI> redirectLocations = context.getRedirectLocations();
+        if ((redirectLocations == null) || redirectLocations.isEmpty()) {
+            return url;
+        }
+        return redirectLocations.get(redirectLocations.size() - 1).toString();
+    }
+
+    /* 
+     * Times the lookups the client makes as it opens new connections (none for a pooled one), as the DNS phase of 
+     * the fetch in progress: the client connects on the thread that executes the request, so the fetch is known.
+     */
+    private static class TimingDnsResolver implements DnsResolver {
+        private final ThreadLocal<PageFetchTimings> currentTimings = new ThreadLocal<>();
+        
+        void timeLookupsFor(PageFetchTimings timings) {
+            if (timings != null) {
+                currentTimings.set(timings);
+            } else {
+                currentTimings.remove();
+            }
+        }
+        
+        @Override
+        public InetAddress[] resolve(String host) throws UnknownHostException {
+            long lookupStartNanos = System.nanoTime();
+            try {
+                return SystemDefaultDnsResolver.INSTANCE.resolve(host);
+            } finally {
+                PageFetchTimings timings = currentTimings.get();
+                if (timings != null) {
+                    timings.addPhaseNanos(FetchPhase.DNS, System.nanoTime() - lookupStartNanos);
+                }
+            }
+        }
+    }
+
+    /* Counts each request (redirects included) as a hit or a miss, depending on whether its connection is new. */
+    private static class CountingRequestExecutor extends HttpRequestExecutor {
+        private final AtomicLong numHits;
+        private final AtomicLong numMisses;
+        
+        CountingRequestExecutor(AtomicLong numHits, AtomicLong numMisses) {
+            this.numHits = numHits;
+            this.numMisses = numMisses;
+        }
+        
+        @Override
+        public HttpResponse execute(HttpRequest request, HttpClientConnection connection, HttpContext context) 
+                throws IOException, HttpException {
+            if (connection.getMetrics().getRequestCount() > 0) {
+                numHits.incrementAndGet();
+            } else {
+                numMisses.incrementAndGet();
+            }
+            return super.execute(request, connection, context);
+        }
+    }
+}
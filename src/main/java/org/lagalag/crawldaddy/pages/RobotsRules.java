@@ -0,0 +1,204 @@
+package org.lagalag.crawldaddy.pages;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The rules of a robots.txt file (RFC 9309) that apply to crawldaddy: those of the groups naming crawldaddy as user
+ * agent if there are any, else those of the groups for all user agents ("*"). Rules are compiled once, and sorted
+ * from the most specific (longest) to the least, so the first one to match a path decides (allow winning ties, as
+ * it sorts first): plain prefixes are a single regionMatches(), and wildcards ("*", and "$" at the end) a few
+ * indexOf() calls. Immutable.
+ */
+public final class RobotsRules {
+    /** The user agent crawldaddy looks for in robots.txt files. */
+    public static final String USER_AGENT_TOKEN = "crawldaddy";
+
+    public static final RobotsRules ALLOW_ALL = new RobotsRules(Collections.emptyList(), 0, Collections.emptyList());
+    public static final RobotsRules DISALLOW_ALL = new RobotsRules(Collections.singletonList(new Rule("/", false)), 0,
+                                                                   Collections.emptyList());
+
+    private static final String ROBOTS_TXT_PATH = "/robots.txt";
+    private static final String ANY_USER_AGENT = "*";
+
+    private final List<Rule> rules;
+    private final double crawlDelaySeconds;
+    private final List<String> sitemapUrls;
+
+    private RobotsRules(List<Rule> rules, double crawlDelaySeconds, List<String> sitemapUrls) {
+        this.rules = rules;
+        this.crawlDelaySeconds = crawlDelaySeconds;
+        this.sitemapUrls = sitemapUrls;
+    }
+
+    public static RobotsRules parse(String robotsTxt) {
+        return parse(robotsTxt, USER_AGENT_TOKEN);
+    }
+
+    /**
+     * Parses the given robots.txt, keeping the rules that apply to the given user agent. Lines that can't be made
+     * sense of are skipped.
+     */
+    public static RobotsRules parse(String robotsTxt, String userAgentToken) {
+        Group ownGroup = new Group();
+        Group anyAgentGroup = new Group();
+        List<String> sitemapUrls = new ArrayList<>();
+        // The groups that the lines being read belong to (several groups may share their rules).
+        List<Group> currentGroups = new ArrayList<>();
+        boolean inUserAgentLines = false;
+        for (String line : robotsTxt.split("\r\n|\r|\n")) {
+            int commentStart = line.indexOf('#');
+            if (commentStart >= 0) {
+                line = line.substring(0, commentStart);
+            }
+            int colon = line.indexOf(':');
+            if (colon < 0) {
+                continue;
+            }
+            String key = line.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+            String value = line.substring(colon + 1).trim();
+            switch (key) {
+            case "user-agent":
+                if (!inUserAgentLines) {
+                    currentGroups.clear();
+                    inUserAgentLines = true;
+                }
+                if (value.equals(ANY_USER_AGENT)) {
+                    currentGroups.add(anyAgentGroup);
+                } else if (isUserAgent(value, userAgentToken)) {
+                    ownGroup.named = true;
+                    currentGroups.add(ownGroup);
+                }
+                break;
+            case "allow":
+            case "disallow":
+                inUserAgentLines = false;
+                // An empty Disallow disallows nothing.
+                if (!value.isEmpty()) {
+                    for (Group group : currentGroups) {
+                        group.rules.add(new Rule(value, key.equals("allow")));
+                    }
+                }
+                break;
+            case "crawl-delay":
+                inUserAgentLines = false;
+                for (Group group : currentGroups) {
+                    group.crawlDelaySeconds = parseCrawlDelay(value, group.crawlDelaySeconds);
+                }
+                break;
+            case "sitemap":
+                // Not part of any group.
+                if (!value.isEmpty()) {
+                    sitemapUrls.add(value);
+                }
+                break;
+            default:
+                break;
+            }
+        }
+        // Named at all, the own group applies, even with no rules (e.g. an empty Disallow, to allow everything).
+        Group group = (ownGroup.named ? ownGroup : anyAgentGroup);
+        List<Rule> rules = new ArrayList<>(group.rules);
+        rules.sort(Comparator.comparingInt((Rule rule) -> rule.pattern.length()).reversed()
+                             .thenComparing(rule -> !rule.allow));
+        return new RobotsRules(rules, group.crawlDelaySeconds, sitemapUrls);
+    }
+
+    /**
+     * Returns true if the given path (with its query, as from ParsedUrl.getPathAndQuery()) may be crawled.
+     */
+    public boolean isAllowed(String pathAndQuery) {
+        if (pathAndQuery.equals(ROBOTS_TXT_PATH)) {
+            return true;
+        }
+        for (Rule rule : rules) {
+            if (rule.matches(pathAndQuery)) {
+                return rule.allow;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of seconds to wait between requests, or 0 if robots.txt doesn't say.
+     */
+    public double getCrawlDelaySeconds() {
+        return crawlDelaySeconds;
+    }
+
+    /**
+     * Returns the urls of the sitemaps listed (whatever the user agent).
+     */
+    public List<String> getSitemapUrls() {
+        return Collections.unmodifiableList(sitemapUrls);
+    }
+
+    public int getNumRules() {
+        return rules.size();
+    }
+
+    /* Matches product tokens case-insensitively, ignoring any version (e.g. "Crawldaddy/1.0"). */
+    private static boolean isUserAgent(String userAgent, String userAgentToken) {
+        int slash = userAgent.indexOf('/');
+        String productToken = (slash >= 0 ? userAgent.substring(0, slash) : userAgent).trim();
+        return productToken.equalsIgnoreCase(userAgentToken);
+    }
+
+    private static double parseCrawlDelay(String value, double defaultValue) {
+        try {
+            double crawlDelaySeconds = Double.parseDouble(value);
+            return ((crawlDelaySeconds >= 0) && !Double.isInfinite(crawlDelaySeconds) ? crawlDelaySeconds : defaultValue);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    private static class Group {
+        final List<Rule> rules = new ArrayList<>();
+        double crawlDelaySeconds;
+        /* True once a User-agent line has named the group. */
+        boolean named;
+    }
+
+    /* An Allow or Disallow line, its pattern split at each '*' into the literal parts that must appear in order. */
+    private static class Rule {
+        final String pattern;
+        final boolean allow;
+        final String[] parts;
+        final boolean anchored;
+
+        Rule(String pattern, boolean allow) {
+            this.pattern = pattern;
+            this.allow = allow;
+            this.anchored = pattern.endsWith("$");
+            String literalPattern = (anchored ? pattern.substring(0, pattern.length() - 1) : pattern);
+            this.parts = literalPattern.split("\\*", -1);
+        }
+
+        boolean matches(String path) {
+            String first = parts[0];
+            if (!path.startsWith(first)) {
+                return false;
+            }
+            if (parts.length == 1) {
+                return !anchored || (path.length() == first.length());
+            }
+            int pos = first.length();
+            for (int i = 1; i < parts.length - 1; i++) {
+                int index = path.indexOf(parts[i], pos);
+                if (index < 0) {
+                    return false;
+                }
+                pos = index + parts[i].length();
+            }
+            String last = parts[parts.length - 1];
+            if (anchored) {
+                return path.endsWith(last) && (path.length() - last.length() >= pos);
+            }
+            return (path.indexOf(last, pos) >= 0);
+        }
+    }
+}
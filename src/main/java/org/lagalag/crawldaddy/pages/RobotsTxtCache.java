@@ -0,0 +1,220 @@
+package org.lagalag.crawldaddy.pages;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.lagalag.crawldaddy.util.ParsedUrl;
+
+/**
+ * Fetches the robots.txt of each host (strictly, of each scheme, host and port) the first time a url of it is
+ * checked, and keeps its compiled rules for a while, so that checking a url is only a map lookup and a few string
+ * comparisons. As RFC 9309 asks, up to five redirects are followed, a missing robots.txt (4xx, or a redirect that 
+ * can't be followed) allows everything, and one that can't be fetched (5xx, network error) disallows everything; 
+ * the latter is only kept for a minute before trying again. Thread-safe.
+ */
+public class RobotsTxtCache {
+    private static final Logger log = LogManager.getLogger();
+
+    public static final long DEFAULT_TTL_SECONDS = TimeUnit.DAYS.toSeconds(1);
+
+    private static final long UNREACHABLE_TTL_SECONDS = 60;
+    private static final int CONNECT_TIMEOUT_MILLIS = 10000;
+    private static final int READ_TIMEOUT_MILLIS = 10000;
+    /* As RFC 9309 asks (at least five). */
+    private static final int MAX_REDIRECTS = 5;
+    /* RFC 9309 asks crawlers to read at least 500 KiB; anything past that is ignored. */
+    private static final int MAX_ROBOTS_TXT_BYTES = 500 * 1024;
+
+    private final long ttlNanos;
+    private final ConcurrentMap<String,Entry> entries = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String,Double> crawlDelaysByHost = new ConcurrentHashMap<>();
+
+    public RobotsTxtCache() {
+        this(DEFAULT_TTL_SECONDS);
+    }
+
+    /**
+     * @param ttlSeconds how long the rules of a host are kept before fetching its robots.txt again.
+     */
+    public RobotsTxtCache(long ttlSeconds) {
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+    }
+
+    /**
+     * Returns true if robots.txt allows crawling the given url. The first check for a host waits for its robots.txt
+     * to be fetched (concurrent checks for the same host wait for the same fetch); urls that aren't valid are allowed.
+     */
+    public boolean isAllowed(ParsedUrl url) {
+        String pathAndQuery = url.getPathAndQuery();
+        return (pathAndQuery == null) || getRules(url).isAllowed(pathAndQuery);
+    }
+
+    /**
+     * Returns the rules for the host of the given url, fetching its robots.txt if it isn't cached (or has expired).
+     */
+    public RobotsRules getRules(ParsedUrl url) {
+        String origin = url.getOrigin().toLowerCase(Locale.ROOT);
+        Entry entry = entries.get(origin);
+        if ((entry == null) || entry.isExpired()) {
+            Entry newEntry = new Entry();
+            boolean inserted = (entry == null ? (entries.putIfAbsent(origin, newEntry) == null)
+                                              : entries.replace(origin, entry, newEntry));
+            if (inserted) {
+                // Whatever happens, the entry is completed, or the checks waiting on it would wait forever.
+                RobotsRules rules = RobotsRules.DISALLOW_ALL;
+                try {
+                    rules = fetchAsManagedBlock(origin);
+                } finally {
+                    long ttl = ((rules == RobotsRules.DISALLOW_ALL) ? TimeUnit.SECONDS.toNanos(UNREACHABLE_TTL_SECONDS) : ttlNanos);
+                    newEntry.expiryNanos = System.nanoTime() + ttl;
+                    crawlDelaysByHost.put(url.getHost().toLowerCase(Locale.ROOT), rules.getCrawlDelaySeconds());
+                    newEntry.rules.complete(rules);
+                }
+            }
+            entry = entries.get(origin);
+        }
+        return entry.rules.join();
+    }
+
+    /**
+     * Returns the Crawl-delay that robots.txt gives for the given host, or 0 if there is none (or its robots.txt
+     * hasn't been fetched yet). Never blocks.
+     */
+    public double getCrawlDelaySeconds(String host) {
+        Double crawlDelaySeconds = crawlDelaysByHost.get(host.toLowerCase(Locale.ROOT));
+        return (crawlDelaySeconds != null ? crawlDelaySeconds : 0);
+    }
+
+    /**
+     * Returns the number of hosts whose robots.txt is cached.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /* 
+     * Checks are made by the crawl's workers: as a ForkJoinPool.ManagedBlocker, the fetch lets the pool activate a 
+     * spare thread while the worker waits on the network (as ManagedBlockingPageFetchService does for page fetches).
+     */
+    private static RobotsRules fetchAsManagedBlock(String origin) {
+        RobotsTxtFetch robotsTxtFetch = new RobotsTxtFetch(origin);
+        try {
+            ForkJoinPool.managedBlock(robotsTxtFetch);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Interrupted while fetching the robots.txt of " + origin + "; not crawling the host for now");
+            return RobotsRules.DISALLOW_ALL;
+        }
+        return robotsTxtFetch.rules;
+    }
+
+    private static RobotsRules fetch(String origin) {
+        String robotsTxtUrl = origin + "/robots.txt";
+        try {
+            URL url = new URL(robotsTxtUrl);
+            // Redirects are followed here, as HttpURLConnection won't follow one to another protocol (http -> https).
+            for (int numRedirects = 0; ; numRedirects++) {
+                HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+                connection.setInstanceFollowRedirects(false);
+                connection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+                connection.setReadTimeout(READ_TIMEOUT_MILLIS);
+                connection.setRequestProperty("User-Agent", RobotsRules.USER_AGENT_TOKEN);
+                try {
+                    int httpStatusCode = connection.getResponseCode();
+                    if ((httpStatusCode >= 200) && (httpStatusCode < 300)) {
+                        try (InputStream in = connection.getInputStream()) {
+                            return RobotsRules.parse(read(in));
+                        }
+                    }
+                    if ((httpStatusCode >= 300) && (httpStatusCode < 400)) {
+                        url = getRedirectUrl(url, connection.getHeaderField("Location"), numRedirects);
+                        if (url == null) {
+                            // As RFC 9309 asks, a redirect that can't be followed makes robots.txt unavailable.
+                            log.info("GET " + robotsTxtUrl + " --> " + httpStatusCode + "; can't follow the redirect, "
+                                     + "so crawling the host without robots.txt");
+                            return RobotsRules.ALLOW_ALL;
+                        }
+                        continue;
+                    }
+                    if ((httpStatusCode >= 400) && (httpStatusCode < 500)) {
+                        return RobotsRules.ALLOW_ALL;
+                    }
+                    log.warn("GET " + robotsTxtUrl + " --> " + httpStatusCode + "; not crawling the host for now");
+                    return RobotsRules.DISALLOW_ALL;
+                } finally {
+                    connection.disconnect();
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Unable to fetch " + robotsTxtUrl + "; not crawling the host for now: " + e.getMessage());
+            return RobotsRules.DISALLOW_ALL;
+        }
+    }
+
+    /* Returns null if the redirect can't be followed: too many of them, or no (usable) location. */
+    private static URL getRedirectUrl(URL url, String location, int numRedirects) {
+        if ((location == null) || (numRedirects >= MAX_REDIRECTS)) {
+            return null;
+        }
+        try {
+            URL redirectUrl = new URL(url, location);
+            String protocol = redirectUrl.getProtocol();
+            return (protocol.equals("http") || protocol.equals("https") ? redirectUrl : null);
+        } catch (MalformedURLException e) {
+            return null;
+        }
+    }
+
+    private static String read(InputStream in) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int numBytesRead;
+        while ((bytes.size() < MAX_ROBOTS_TXT_BYTES) && ((numBytesRead = in.read(buffer)) > 0)) {
+            bytes.write(buffer, 0, Math.min(numBytesRead, MAX_ROBOTS_TXT_BYTES - bytes.size()));
+        }
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static class RobotsTxtFetch implements ForkJoinPool.ManagedBlocker {
+        private final String origin;
+        private RobotsRules rules;
+
+        RobotsTxtFetch(String origin) {
+            this.origin = origin;
+        }
+
+        @Override
+        public boolean block() {
+            rules = fetch(origin);
+            return true;
+        }
+
+        @Override
+        public boolean isReleasable() {
+            return (rules != null);
+        }
+    }
+
+    private static class Entry {
+        final CompletableFuture<RobotsRules> rules = new CompletableFuture<>();
+        /* Set before the rules are completed; only read once they are. */
+        volatile long expiryNanos;
+
+        boolean isExpired() {
+            return rules.isDone() && (System.nanoTime() - expiryNanos > 0);
+        }
+    }
+}
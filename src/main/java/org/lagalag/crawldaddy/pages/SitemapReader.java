@@ -0,0 +1,262 @@
+package org.lagalag.crawldaddy.pages;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.zip.GZIPInputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Reads the page urls listed in sitemaps (sitemaps.org): XML url sets, sitemap indexes (whose sitemaps are read in
+ * turn), and plain text lists, gzipped or not. Sitemaps are parsed as they stream in (StAX), and each url is handed
+ * over as soon as it is read, so that even a sitemap of 50,000 urls is never held in memory.
+ */
+public class SitemapReader {
+    private static final Logger log = LogManager.getLogger();
+
+    public static final int DEFAULT_MAX_SITEMAPS = 100;
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 10000;
+    private static final int READ_TIMEOUT_MILLIS = 30000;
+    /* The sitemaps.org limit (uncompressed); also what keeps a gzip bomb from running on forever. */
+    private static final long MAX_SITEMAP_BYTES = 50L * 1024 * 1024;
+    private static final int GZIP_MAGIC_1 = 0x1f;
+    private static final int GZIP_MAGIC_2 = 0x8b;
+
+    private static final XMLInputFactory XML_INPUT_FACTORY = createXmlInputFactory();
+
+    private final int maxSitemaps;
+    private int numSitemapsRead;
+
+    public SitemapReader() {
+        this(DEFAULT_MAX_SITEMAPS);
+    }
+
+    /**
+     * @param maxSitemaps maximum number of sitemaps (indexes included) fetched.
+     */
+    public SitemapReader(int maxSitemaps) {
+        this.maxSitemaps = maxSitemaps;
+    }
+
+    /**
+     * Reads the given sitemaps, and those listed in any sitemap index among them, passing each page url found to
+     * pageUrlConsumer, which returns false to stop reading. Sitemaps that can't be fetched or parsed are skipped
+     * (the urls read from them until then are kept).
+     * @return the number of page urls read.
+     */
+    public long read(Collection<String> sitemapUrls, Predicate<String> pageUrlConsumer) {
+        Queue<String> sitemapsToRead = new ArrayDeque<>(sitemapUrls);
+        Set<String> sitemapsSeen = new HashSet<>(sitemapUrls);
+        long numPageUrls = 0;
+        String sitemapUrl;
+        while (((sitemapUrl = sitemapsToRead.poll()) != null) && (numSitemapsRead < maxSitemaps)) {
+            numSitemapsRead++;
+            SitemapContents contents = new SitemapContents(pageUrlConsumer, sitemapsToRead, sitemapsSeen);
+            try {
+                fetch(sitemapUrl, contents);
+            } catch (IOException | XMLStreamException | RuntimeException e) {
+                log.warn("Unable to read sitemap " + sitemapUrl + ": " + e.getMessage());
+            }
+            numPageUrls += contents.numPageUrls;
+            if (contents.stopped) {
+                break;
+            }
+        }
+        return numPageUrls;
+    }
+
+    /**
+     * Returns the number of sitemaps fetched so far.
+     */
+    public int getNumSitemapsRead() {
+        return numSitemapsRead;
+    }
+
+    private void fetch(String sitemapUrl, SitemapContents contents) throws IOException, XMLStreamException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(sitemapUrl).openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+        connection.setReadTimeout(READ_TIMEOUT_MILLIS);
+        connection.setRequestProperty("User-Agent", RobotsRules.USER_AGENT_TOKEN);
+        try {
+            int httpStatusCode = connection.getResponseCode();
+            if (httpStatusCode != HttpURLConnection.HTTP_OK) {
+                // A missing /sitemap.xml is nothing to warn about.
+                log.info("GET " + sitemapUrl + " --> " + httpStatusCode + "; skipping sitemap");
+                return;
+            }
+            boolean isText = isTextSitemap(sitemapUrl, connection.getContentType());
+            try (InputStream in = openBody(connection.getInputStream())) {
+                if (isText) {
+                    readText(in, contents);
+                } else {
+                    readXml(in, contents);
+                }
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    /* Gunzips the body if it is gzipped (a .xml.gz file, whatever its Content-Type), and caps its size. */
+    private static InputStream openBody(InputStream body) throws IOException {
+        BufferedInputStream in = new BufferedInputStream(body);
+        in.mark(2);
+        boolean gzipped = (in.read() == GZIP_MAGIC_1) && (in.read() == GZIP_MAGIC_2);
+        in.reset();
+        return new SizeLimitedInputStream(gzipped ? new BufferedInputStream(new GZIPInputStream(in)) : in, MAX_SITEMAP_BYTES);
+    }
+
+    private static boolean isTextSitemap(String sitemapUrl, String contentType) {
+        String path = sitemapUrl.toLowerCase();
+        return path.endsWith(".txt") || path.endsWith(".txt.gz")
+               || ((contentType != null) && contentType.toLowerCase().startsWith("text/plain"));
+    }
+
+    /* <urlset><url><loc>...</loc></url>...</urlset>, or <sitemapindex><sitemap><loc>...</loc></sitemap>...</sitemapindex> */
+    private static void readXml(InputStream in, SitemapContents contents) throws XMLStreamException {
+        XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(in);
+        try {
+            boolean inSitemap = false;
+            boolean inUrl = false;
+            // Extensions have <loc>s of their own (<image:loc>), which aren't pages.
+            String namespace = null;
+            while (reader.hasNext() && !contents.stopped) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    String name = reader.getLocalName();
+                    if (name.equals("url")) {
+                        inUrl = true;
+                        namespace = reader.getNamespaceURI();
+                    } else if (name.equals("sitemap")) {
+                        inSitemap = true;
+                        namespace = reader.getNamespaceURI();
+                    } else if (name.equals("loc") && (inUrl || inSitemap) && Objects.equals(namespace, reader.getNamespaceURI())) {
+                        String loc = reader.getElementText().trim();
+                        if (inUrl) {
+                            contents.addPageUrl(loc);
+                        } else {
+                            contents.addSitemapUrl(loc);
+                        }
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    String name = reader.getLocalName();
+                    if (name.equals("url")) {
+                        inUrl = false;
+                    } else if (name.equals("sitemap")) {
+                        inSitemap = false;
+                    }
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    /* One url per line. */
+    private static void readText(InputStream in, SitemapContents contents) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        String line;
+        while (((line = reader.readLine()) != null) && !contents.stopped) {
+            contents.addPageUrl(line.trim());
+        }
+    }
+
+    /* DTDs (and so external entities) are never needed, and would be an XXE hole. */
+    private static XMLInputFactory createXmlInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return factory;
+    }
+
+    /* Where the urls read from one sitemap go. */
+    private static class SitemapContents {
+        final Predicate<String> pageUrlConsumer;
+        final Queue<String> sitemapsToRead;
+        final Set<String> sitemapsSeen;
+        long numPageUrls;
+        boolean stopped;
+
+        SitemapContents(Predicate<String> pageUrlConsumer, Queue<String> sitemapsToRead, Set<String> sitemapsSeen) {
+            this.pageUrlConsumer = pageUrlConsumer;
+            this.sitemapsToRead = sitemapsToRead;
+            this.sitemapsSeen = sitemapsSeen;
+        }
+
+        void addPageUrl(String url) {
+            if (!url.isEmpty()) {
+                numPageUrls++;
+                stopped = !pageUrlConsumer.test(url);
+            }
+        }
+
+        void addSitemapUrl(String url) {
+            if (!url.isEmpty() && sitemapsSeen.add(url)) {
+                sitemapsToRead.add(url);
+            }
+        }
+    }
+
+    /* Fails the read once more than the given number of bytes have come through. */
+    private static class SizeLimitedInputStream extends FilterInputStream {
+        private final long maxBytes;
+        private long numBytesRead;
+
+        SizeLimitedInputStream(InputStream in, long maxBytes) {
+            super(in);
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int numRead = super.read(b, off, len);
+            if (numRead > 0) {
+                count(numRead);
+            }
+            return numRead;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        private void count(int numBytes) throws IOException {
+            numBytesRead += numBytes;
+            if (numBytesRead > maxBytes) {
+                throw new IOException("Sitemap larger than " + maxBytes + " bytes");
+            }
+        }
+    }
+}
@@ -0,0 +1,407 @@
+package org.lagalag.crawldaddy.pages;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jsoup.helper.StringUtil;
+
+/**
+ * LinkExtractor that scans the page as a stream of tags, picking up the href of a (and base) tags and the src of
+ * script tags, without ever building a document tree. Comments, doctypes and end tags are skipped, as is the content
+ * of the elements whose content is not markup (script, style, textarea, etc.), so that e.g. "&lt;a href" in a
+ * script is not taken for a link. Character references in attribute values are decoded, and urls are resolved
+ * (like Jsoup's abs: attributes) against the first &lt;base href&gt; of the page, if any, or else the page's url.
+ * Only the attribute values of interest are turned into strings; the rest of the page is scanned in place.
+ * Stateless, and so thread-safe.
+ */
+public class StreamingLinkExtractor implements LinkExtractor {
+    private static final int BUFFER_SIZE = 8192;
+    private static final String[] RAW_TEXT_ELEMENTS = { "script", "style", "textarea", "title", "xmp", "iframe",
+                                                        "noembed", "noframes" };
+    private static final String[][] NAMED_REFERENCES = {
+        { "amp", "&" }, { "lt", "<" }, { "gt", ">" }, { "quot", "\"" }, { "apos", "'" }, { "nbsp", "\u00a0" }
+    };
+    
+    @Override
+    public PageFetchResults extract(String url, InputStream body, String charsetName, String baseUrl) throws IOException {
+        Charset charset = getCharset(charsetName);
+        Scanner scanner = new Scanner(new InputStreamReader(body, charset));
+        scanner.scan();
+        // Links are resolved once the whole page has been seen, as Jsoup does.
+        String documentBaseUrl = baseUrl;
+        if (scanner.baseHref != null) {
+            String resolvedBaseHref = StringUtil.resolve(baseUrl, scanner.baseHref);
+            if (!resolvedBaseHref.isEmpty()) {
+                documentBaseUrl = resolvedBaseHref;
+            }
+        }
+        return PageFetchResults.onHttpOK(url, resolve(documentBaseUrl, scanner.links), resolve(documentBaseUrl, scanner.scripts));
+    }
+    
+    /* Same as StringUtil.resolve(baseUrl, url) for each url, but parses the base url only once. */
+    private static List<String> resolve(String baseUrl, List<String> urls) {
+        List<String> resolvedUrls = new ArrayList<>(urls.size());
+        URL base = toURL(baseUrl);
+        for (String url : urls) {
+            resolvedUrls.add(base != null ? resolve(base, url) : StringUtil.resolve(baseUrl, url));
+        }
+        return resolvedUrls;
+    }
+    
+    private static String resolve(URL base, String url) {
+        try {
+            return StringUtil.resolve(base, url).toExternalForm();
+        } catch (MalformedURLException e) {
+            return "";
+        }
+    }
+    
+    private static URL toURL(String url) {
+        try {
+            return new URL(url);
+        } catch (MalformedURLException e) {
+            return null;
+        }
+    }
+    
+    private static Charset getCharset(String charsetName) {
+        try {
+            return (charsetName != null ? Charset.forName(charsetName) : StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            return StandardCharsets.UTF_8;
+        }
+    }
+    
+    /* Scans a single page; tag and attribute names are collected (lower-cased) in reused builders. */
+    private static class Scanner {
+        private final Reader reader;
+        private final char[] buffer = new char[BUFFER_SIZE];
+        private int pos;
+        private int limit;
+        private final StringBuilder name = new StringBuilder();
+        private final StringBuilder value = new StringBuilder();
+        final List<String> links = new ArrayList<>();
+        final List<String> scripts = new ArrayList<>();
+        String baseHref;
+        
+        Scanner(Reader reader) {
+            this.reader = reader;
+        }
+        
+        void scan() throws IOException {
+            int c;
+            while ((c = read()) != -1) {
+                if (c != '<') {
+                    continue;
+                }
+                c = peek();
+                if (c == '!') {
+                    read();
+                    if (skipIfNext('-') && skipIfNext('-')) {
+                        skipPast("-->");
+                    } else {
+                        skipPast(">");
+                    }
+                } else if ((c == '?') || (c == '/')) {
+                    skipPast(">");
+                } else if (isAsciiLetter(c)) {
+                    scanStartTag();
+                }
+                // Anything else is just a '<' in the text.
+            }
+        }
+        
+        private void scanStartTag() throws IOException {
+            readName(name, false);
+            String wantedAttribute = null;
+            List<String> values = null;
+            if (nameEquals("a")) {
+                wantedAttribute = "href";
+                values = links;
+            } else if (nameEquals("script")) {
+                wantedAttribute = "src";
+                values = scripts;
+            } else if (nameEquals("base") && (baseHref == null)) {
+                wantedAttribute = "href";
+            }
+            boolean isRawText = isRawTextElement();
+            String rawTextElement = (isRawText ? name.toString() : null);
+            
+            String wantedValue = scanAttributes(wantedAttribute);
+            if (wantedValue != null) {
+                if (values != null) {
+                    values.add(wantedValue);
+                } else {
+                    baseHref = wantedValue;
+                }
+            }
+            if (isRawText) {
+                skipRawText(rawTextElement);
+            }
+        }
+        
+        /* Returns the value of the (first) given attribute, or null if the tag doesn't have it. */
+        private String scanAttributes(String wantedAttribute) throws IOException {
+            String wantedValue = null;
+            while (true) {
+                int c;
+                while (((c = peek()) != -1) && (isWhitespace(c) || (c == '/'))) {
+                    read();
+                }
+                if ((c == -1) || (c == '>')) {
+                    read();
+                    return wantedValue;
+                }
+                readName(name, true);
+                boolean isWanted = (wantedValue == null) && (wantedAttribute != null) && nameEquals(wantedAttribute);
+                skipWhitespace();
+                if (peek() == '=') {
+                    read();
+                    skipWhitespace();
+                    readValue(isWanted);
+                    if (isWanted) {
+                        wantedValue = decodeCharacterReferences(value);
+                    }
+                } else if (isWanted) {
+                    wantedValue = "";
+                }
+            }
+        }
+        
+        /* Reads a tag or attribute name (lower-cased) into the given builder. */
+        private void readName(StringBuilder sb, boolean isAttribute) throws IOException {
+            sb.setLength(0);
+            int c;
+            while (((c = peek()) != -1) && !isWhitespace(c) && (c != '/') && (c != '>')
+                   && (!isAttribute || (c != '=') || (sb.length() == 0))) {
+                sb.append(Character.toLowerCase((char) read()));
+            }
+        }
+        
+        private void readValue(boolean keep) throws IOException {
+            value.setLength(0);
+            int quote = peek();
+            if ((quote == '"') || (quote == '\'')) {
+                read();
+                int c;
+                while (((c = read()) != -1) && (c != quote)) {
+                    if (keep) {
+                        value.append((char) c);
+                    }
+                }
+            } else {
+                int c;
+                while (((c = peek()) != -1) && !isWhitespace(c) && (c != '>')) {
+                    read();
+                    if (keep) {
+                        value.append((char) c);
+                    }
+                }
+            }
+        }
+        
+        /* Skips the content of a script, style, etc. element, up to and including its end tag. */
+        private void skipRawText(String elementName) throws IOException {
+            int c;
+            while ((c = read()) != -1) {
+                if ((c == '<') && skipIfNext('/') && skipIfNextIgnoreCase(elementName)) {
+                    c = peek();
+                    if ((c == -1) || isWhitespace(c) || (c == '/') || (c == '>')) {
+                        skipPast(">");
+                        return;
+                    }
+                }
+            }
+        }
+        
+        private void skipPast(String terminator) throws IOException {
+            int matched = 0;
+            int c;
+            while ((matched < terminator.length()) && ((c = read()) != -1)) {
+                if (c == terminator.charAt(matched)) {
+                    matched++;
+                } else {
+                    matched = (c == terminator.charAt(0) ? 1 : 0);
+                }
+            }
+        }
+        
+        private boolean skipIfNext(char expected) throws IOException {
+            if (peek() == expected) {
+                read();
+                return true;
+            }
+            return false;
+        }
+        
+        private boolean skipIfNextIgnoreCase(String expected) throws IOException {
+            for (int i = 0; i < expected.length(); i++) {
+                int c = peek();
+                if ((c == -1) || (Character.toLowerCase((char) c) != expected.charAt(i))) {
+                    return false;
+                }
+                read();
+            }
+            return true;
+        }
+        
+        private void skipWhitespace() throws IOException {
+            while (isWhitespace(peek())) {
+                read();
+            }
+        }
+        
+        private boolean nameEquals(String s) {
+            if (name.length() != s.length()) {
+                return false;
+            }
+            for (int i = 0; i < s.length(); i++) {
+                if (name.charAt(i) != s.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        private boolean isRawTextElement() {
+            for (String element : RAW_TEXT_ELEMENTS) {
+                if (nameEquals(element)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        
+        private int read() throws IOException {
+            if ((pos == limit) && !fill()) {
+                return -1;
+            }
+            return buffer[pos++];
+        }
+        
+        private int peek() throws IOException {
+            if ((pos == limit) && !fill()) {
+                return -1;
+            }
+            return buffer[pos];
+        }
+        
+        private boolean fill() throws IOException {
+            int n;
+            while ((n = reader.read(buffer, 0, buffer.length)) == 0) {
+                // Keep trying until there is data or end of stream.
+            }
+            if (n < 0) {
+                return false;
+            }
+            pos = 0;
+            limit = n;
+            return true;
+        }
+    }
+    
+    /* Decodes numeric character references and the common named ones (which covers what shows up in urls). */
+    static String decodeCharacterReferences(CharSequence s) {
+        int ampersand = indexOf(s, '&');
+        if (ampersand < 0) {
+            return s.toString();
+        }
+        StringBuilder sb = new StringBuilder(s.length());
+        sb.append(s, 0, ampersand);
+        int i = ampersand;
+        while (i < s.length()) {
+            char c = s.charAt(i);
+            if (c != '&') {
+                sb.append(c);
+                i++;
+                continue;
+            }
+            int end = decodeCharacterReference(s, i, sb);
+            if (end < 0) {
+                sb.append(c);
+                i++;
+            } else {
+                i = end;
+            }
+        }
+        return sb.toString();
+    }
+    
+    /* Appends the character referenced at s[start] (an '&') and returns the index following the reference, or -1. */
+    private static int decodeCharacterReference(CharSequence s, int start, StringBuilder sb) {
+        int i = start + 1;
+        if ((i < s.length()) && (s.charAt(i) == '#')) {
+            i++;
+            int radix = 10;
+            if ((i < s.length()) && ((s.charAt(i) == 'x') || (s.charAt(i) == 'X'))) {
+                radix = 16;
+                i++;
+            }
+            int digitsStart = i;
+            int codePoint = 0;
+            while ((i < s.length()) && (Character.digit(s.charAt(i), radix) >= 0) && (codePoint <= Character.MAX_CODE_POINT)) {
+                codePoint = codePoint * radix + Character.digit(s.charAt(i), radix);
+                i++;
+            }
+            if ((i == digitsStart) || !Character.isValidCodePoint(codePoint)) {
+                return -1;
+            }
+            sb.appendCodePoint(codePoint);
+            return ((i < s.length()) && (s.charAt(i) == ';') ? i + 1 : i);
+        }
+        for (String[] reference : NAMED_REFERENCES) {
+            String referenceName = reference[0];
+            if (regionMatches(s, i, referenceName)) {
+                int end = i + referenceName.length();
+                if ((end < s.length()) && (s.charAt(end) == ';')) {
+                    sb.append(reference[1]);
+                    return end + 1;
+                }
+                // Legacy references without ';' -- but not where they look like the start of a query parameter.
+                if ((end >= s.length()) || !(Character.isLetterOrDigit(s.charAt(end)) || (s.charAt(end) == '='))) {
+                    sb.append(reference[1]);
+                    return end;
+                }
+                return -1;
+            }
+        }
+        return -1;
+    }
+    
+    private static boolean regionMatches(CharSequence s, int start, String region) {
+        if (start + region.length() > s.length()) {
+            return false;
+        }
+        for (int i = 0; i < region.length(); i++) {
+            if (s.charAt(start + i) != region.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private static int indexOf(CharSequence s, char c) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    private static boolean isAsciiLetter(int c) {
+        return ((c >= 'a') && (c <= 'z')) || ((c >= 'A') && (c <= 'Z'));
+    }
+    
+    private static boolean isWhitespace(int c) {
+        return (c == ' ') || (c == '\t') || (c == '\n') || (c == '\r') || (c == '\f');
+    }
+}
@@ -0,0 +1,51 @@
+package org.lagalag.crawldaddy.pages;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * InputStream that keeps track of the time spent in reads, so that downloading a page body can be told apart from 
+ * parsing it when the parser reads straight from the network.
+ */
+class TimedInputStream extends FilterInputStream {
+    private long readNanos;
+
+    TimedInputStream(InputStream in) {
+        super(in);
+    }
+
+    long getReadNanos() {
+        return readNanos;
+    }
+
+    @Override
+    public int read() throws IOException {
+        long startNanos = System.nanoTime();
+        try {
+            return super.read();
+        } finally {
+            readNanos += System.nanoTime() - startNanos;
+        }
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        long startNanos = System.nanoTime();
+        try {
+            return super.read(b, off, len);
+        } finally {
+            readNanos += System.nanoTime() - startNanos;
+        }
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long startNanos = System.nanoTime();
+        try {
+            return super.skip(n);
+        } finally {
+            readNanos += System.nanoTime() - startNanos;
+        }
+    }
+}
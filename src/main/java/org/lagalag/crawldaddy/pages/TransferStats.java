@@ -0,0 +1,135 @@
+package org.lagalag.crawldaddy.pages;
+
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Number of page body bytes transferred during a crawl, per host and overall: as received over the wire (compressed, 
+ * where the server compressed them) and once decoded, which shows how much bandwidth compression saved. Fetches 
+ * whose size as received is unknown are counted apart (with their decoded size), so that they neither skew the 
+ * savings nor go unreported. Thread-safe.
+ */
+public class TransferStats {
+    private final ByteCounts overallCounts = new ByteCounts();
+    private final ConcurrentMap<String,ByteCounts> hostCounts = new ConcurrentHashMap<>();
+    
+    /**
+     * Records the body sizes of a fetch from the given host. A fetch whose size as received is unknown (negative), 
+     * e.g. a compressed body sent without a Content-Length to the Jsoup engine, which decodes bodies out of sight, 
+     * is recorded as unmeasured. Fetches whose decoded size is unknown are skipped.
+     */
+    public void record(String host, long numBytesReceived, long numBytesDecoded) {
+        if (numBytesDecoded < 0) {
+            return;
+        }
+        if (numBytesReceived < 0) {
+            recordUnmeasured(host, 1, numBytesDecoded);
+            return;
+        }
+        hostCounts.computeIfAbsent(host.toLowerCase(), h -> new ByteCounts()).add(numBytesReceived, numBytesDecoded);
+        overallCounts.add(numBytesReceived, numBytesDecoded);
+    }
+    
+    /**
+     * Records the given number of fetches from the given host whose size as received is unknown, and their total 
+     * decoded size.
+     */
+    public void recordUnmeasured(String host, long numFetches, long numBytesDecoded) {
+        hostCounts.computeIfAbsent(host.toLowerCase(), h -> new ByteCounts()).addUnmeasured(numFetches, numBytesDecoded);
+        overallCounts.addUnmeasured(numFetches, numBytesDecoded);
+    }
+    
+    /**
+     * Adds all the byte counts recorded by the given stats (e.g. those of another pass) to these.
+     */
+    public void add(TransferStats other) {
+        overallCounts.add(other.overallCounts);
+        other.hostCounts.forEach((host, counts) -> hostCounts.computeIfAbsent(host, h -> new ByteCounts()).add(counts));
+    }
+    
+    public long getNumBytesReceived() {
+        return overallCounts.numBytesReceived.sum();
+    }
+    
+    public long getNumBytesDecoded() {
+        return overallCounts.numBytesDecoded.sum();
+    }
+    
+    /**
+     * Returns the number of fetches whose size as received is unknown, which the byte counts leave out.
+     */
+    public long getNumUnmeasuredFetches() {
+        return overallCounts.numUnmeasuredFetches.sum();
+    }
+    
+    /**
+     * Returns the decoded size of the fetches whose size as received is unknown.
+     */
+    public long getNumUnmeasuredBytesDecoded() {
+        return overallCounts.numUnmeasuredBytesDecoded.sum();
+    }
+    
+    /**
+     * Returns the number of bytes received from the given host; 0 if nothing was fetched from the host.
+     */
+    public long getNumBytesReceived(String host) {
+        ByteCounts counts = hostCounts.get(host.toLowerCase());
+        return (counts != null ? counts.numBytesReceived.sum() : 0);
+    }
+    
+    /**
+     * Returns the number of bytes from the given host once decoded; 0 if nothing was fetched from the host.
+     */
+    public long getNumBytesDecoded(String host) {
+        ByteCounts counts = hostCounts.get(host.toLowerCase());
+        return (counts != null ? counts.numBytesDecoded.sum() : 0);
+    }
+    
+    /**
+     * Returns the number of fetches from the given host whose size as received is unknown.
+     */
+    public long getNumUnmeasuredFetches(String host) {
+        ByteCounts counts = hostCounts.get(host.toLowerCase());
+        return (counts != null ? counts.numUnmeasuredFetches.sum() : 0);
+    }
+    
+    /**
+     * Returns the decoded size of the fetches from the given host whose size as received is unknown.
+     */
+    public long getNumUnmeasuredBytesDecoded(String host) {
+        ByteCounts counts = hostCounts.get(host.toLowerCase());
+        return (counts != null ? counts.numUnmeasuredBytesDecoded.sum() : 0);
+    }
+    
+    /**
+     * Returns the hosts fetched from, in alphabetical order.
+     */
+    public Set<String> getHosts() {
+        return new TreeSet<>(hostCounts.keySet());
+    }
+    
+    private static class ByteCounts {
+        final LongAdder numBytesReceived = new LongAdder();
+        final LongAdder numBytesDecoded = new LongAdder();
+        final LongAdder numUnmeasuredFetches = new LongAdder();
+        final LongAdder numUnmeasuredBytesDecoded = new LongAdder();
+        
+        void add(long received, long decoded) {
+            numBytesReceived.add(received);
+            numBytesDecoded.add(decoded);
+        }
+        
+        void addUnmeasured(long numFetches, long decoded) {
+            numUnmeasuredFetches.add(numFetches);
+            numUnmeasuredBytesDecoded.add(decoded);
+        }
+        
+        void add(ByteCounts other) {
+            add(other.numBytesReceived.sum(), other.numBytesDecoded.sum());
+            addUnmeasured(other.numUnmeasuredFetches.sum(), other.numUnmeasuredBytesDecoded.sum());
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package org.lagalag.crawldaddy.sinks;
+
+import java.io.Writer;
+
+/**
+ * ResultSink that writes results as CSV (RFC 4180): a "type,url" header, then one line per result.
+ */
+public class CsvResultSink extends WriterResultSink {
+    private static final String HEADER = "type,url";
+
+    public CsvResultSink(Writer writer) {
+        super(writer);
+        synchronized (this) {
+            write(HEADER);
+        }
+    }
+
+    @Override
+    protected void formatLine(ResultType type, String url, StringBuilder line) {
+        line.append(type.getLabel()).append(',');
+        if (needsQuoting(url)) {
+            line.append('"').append(url.replace("\"", "\"\"")).append('"');
+        } else {
+            line.append(url);
+        }
+    }
+
+    private static boolean needsQuoting(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if ((c == ',') || (c == '"') || (c == '\n') || (c == '\r')) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
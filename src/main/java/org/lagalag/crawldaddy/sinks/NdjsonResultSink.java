@@ -0,0 +1,34 @@
+package org.lagalag.crawldaddy.sinks;
+
+import java.io.Writer;
+
+/**
+ * ResultSink that writes results as newline-delimited JSON: {"type":"external_link","url":"..."}.
+ */
+public class NdjsonResultSink extends WriterResultSink {
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    public NdjsonResultSink(Writer writer) {
+        super(writer);
+    }
+
+    @Override
+    protected void formatLine(ResultType type, String url, StringBuilder line) {
+        line.append("{\"type\":\"").append(type.getLabel()).append("\",\"url\":\"");
+        appendEscaped(url, line);
+        line.append("\"}");
+    }
+
+    private static void appendEscaped(String s, StringBuilder line) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if ((c == '"') || (c == '\\')) {
+                line.append('\\').append(c);
+            } else if (c < 0x20) {
+                line.append("\\u00").append(HEX_DIGITS[c >> 4]).append(HEX_DIGITS[c & 0xf]);
+            } else {
+                line.append(c);
+            }
+        }
+    }
+}
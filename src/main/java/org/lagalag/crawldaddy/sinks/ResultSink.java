@@ -0,0 +1,21 @@
+package org.lagalag.crawldaddy.sinks;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Receives the results of a crawl (links, broken links, scripts...) one at a time, as they are found. 
+ * Implementations must be thread-safe.
+ */
+public interface ResultSink extends Closeable {
+    /**
+     * Called once for each distinct url of each type found by the crawl.
+     */
+    void accept(ResultType type, String url);
+    
+    /**
+     * Writes out whatever the sink has buffered and releases its resources.
+     */
+    @Override
+    void close() throws IOException;
+}
@@ -0,0 +1,58 @@
+package org.lagalag.crawldaddy.sinks;
+
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * Identifies the formats in which crawl results can be streamed to a file.
+ *
+ */
+public enum ResultSinkFormat {
+    /** One JSON object per line: {"type":"external_link","url":"..."}. */
+    NDJSON,
+    /** A "type,url" header line, then one line per result. */
+    CSV;
+    
+    /** File name that stands for the standard output. */
+    public static final String STANDARD_OUTPUT = "-";
+    
+    /**
+     * Returns the format with the given (case-insensitive) name, or null if there is no such format.
+     */
+    public static ResultSinkFormat fromName(String name) {
+        if (name == null) {
+            return null;
+        }
+        for (ResultSinkFormat format : values()) {
+            if (format.name().equalsIgnoreCase(name.trim())) {
+                return format;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Opens a sink that writes results in this format to the file with the given name (replacing the file if it 
+     * exists), or to the standard output if the name is STANDARD_OUTPUT.
+     */
+    public ResultSink open(String fileName) throws IOException {
+        Writer writer;
+        if (STANDARD_OUTPUT.equals(fileName)) {
+            writer = new FilterWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8)) {
+                @Override
+                public void close() throws IOException {
+                    // The standard output isn't ours to close.
+                    flush();
+                }
+            };
+        } else {
+            writer = Files.newBufferedWriter(Paths.get(fileName), StandardCharsets.UTF_8);
+        }
+        return (this == CSV ? new CsvResultSink(writer) : new NdjsonResultSink(writer));
+    }
+}
@@ -0,0 +1,22 @@
+package org.lagalag.crawldaddy.sinks;
+
+/**
+ * Identifies the kinds of results streamed to a ResultSink.
+ *
+ */
+public enum ResultType {
+    INTERNAL_LINK,
+    EXTERNAL_LINK,
+    BROKEN_LINK,
+    DEAD_EXTERNAL_LINK,
+    EXTERNAL_SCRIPT;
+    
+    private final String label = name().toLowerCase();
+    
+    /**
+     * Returns the name of the type as written out by sinks, e.g. "broken_link".
+     */
+    public String getLabel() {
+        return label;
+    }
+}
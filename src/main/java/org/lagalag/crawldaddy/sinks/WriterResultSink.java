@@ -0,0 +1,57 @@
+package org.lagalag.crawldaddy.sinks;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Base class of the sinks that write each result as a line of text, through a buffered writer. A write error is
+ * logged once, after which results are dropped, so that a full disk doesn't bring the crawl down.
+ */
+abstract class WriterResultSink implements ResultSink {
+    private static final Logger LOGGER = LogManager.getLogger();
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final BufferedWriter writer;
+    /* Reused for every line, under the sink's lock. */
+    private final StringBuilder line = new StringBuilder();
+    private boolean failed;
+
+    WriterResultSink(Writer writer) {
+        this.writer = new BufferedWriter(writer, BUFFER_SIZE);
+    }
+
+    @Override
+    public synchronized void accept(ResultType type, String url) {
+        line.setLength(0);
+        formatLine(type, url, line);
+        write(line);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+
+    /**
+     * Appends the line (without line terminator) for the given result to the given builder.
+     */
+    protected abstract void formatLine(ResultType type, String url, StringBuilder line);
+
+    /* For headers and the like. Must be called with the monitor held. */
+    protected void write(CharSequence text) {
+        if (failed) {
+            return;
+        }
+        try {
+            writer.append(text);
+            writer.newLine();
+        } catch (IOException e) {
+            LOGGER.error("Unable to write crawl results; no more will be written: " + e.getMessage());
+            failed = true;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package org.lagalag.crawldaddy.util;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Decides from the extension of its path whether a url is worth fetching at all, so that links to images, archives 
+ * and the like are skipped without a request. If any extensions are allowed, only urls with one of them (or with no 
+ * extension, as most pages have none) are accepted; otherwise all urls but those with a denied extension are.
+ * Urls that get past the filter may still be given up on once the response headers are in (see ContentPolicy).
+ * Thread-safe.
+ */
+public class ExtensionFilter {
+    public static final List<String> DEFAULT_DENIED_EXTENSIONS = Collections.unmodifiableList(Arrays.asList(
+            "jpg", "jpeg", "png", "gif", "svg", "ico", "webp", "pdf", "zip", "tar", "jar", "gz", "bz2", "7z", "rar", 
+            "ppt", "pptx", "doc", "docx", "xls", "xlsx", "mp3", "mp4", "avi", "mov", "exe", "dmg"));
+    
+    private final String[] allowedExtensions;
+    private final String[] deniedExtensions;
+    
+    public ExtensionFilter() {
+        this(Collections.emptyList(), DEFAULT_DENIED_EXTENSIONS);
+    }
+    
+    /**
+     * @param allowedExtensions the only extensions to accept; empty to accept all but the denied ones.
+     * @param deniedExtensions extensions to reject (ignored if any extensions are allowed).
+     */
+    public ExtensionFilter(Collection<String> allowedExtensions, Collection<String> deniedExtensions) {
+        this.allowedExtensions = toExtensionArray(allowedExtensions);
+        this.deniedExtensions = toExtensionArray(deniedExtensions);
+    }
+    
+    public boolean accepts(ParsedUrl url) {
+        if (!url.hasPath() || !url.hasExtension()) {
+            // Assume it's an HTML doc.
+            return true;
+        }
+        if (allowedExtensions.length > 0) {
+            return hasAnyExtension(url, allowedExtensions);
+        }
+        return !hasAnyExtension(url, deniedExtensions);
+    }
+    
+    private static boolean hasAnyExtension(ParsedUrl url, String[] extensions) {
+        for (String extension : extensions) {
+            if (url.hasExtension(extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /* Extensions may be given with or without the leading '.'. */
+    private static String[] toExtensionArray(Collection<String> extensions) {
+        return extensions.stream()
+                         .map(extension -> extension.trim().toLowerCase(Locale.ROOT))
+                         .map(extension -> (extension.startsWith(".") ? extension.substring(1) : extension))
+                         .filter(extension -> !extension.isEmpty())
+                         .toArray(String[]::new);
+    }
+}
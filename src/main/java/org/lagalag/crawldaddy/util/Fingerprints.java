@@ -0,0 +1,42 @@
+package org.lagalag.crawldaddy.util;
+
+/**
+ * Utility methods for computing 64-bit fingerprints (non-cryptographic hashes) of strings and byte sequences.
+ *
+ */
+public class Fingerprints {
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    
+    public static long of(CharSequence s) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < s.length(); i++) {
+            hash ^= s.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        return mix(hash);
+    }
+    
+    public static long of(byte[] bytes, int offset, int length) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = offset; i < offset + length; i++) {
+            hash ^= (bytes[i] & 0xff);
+            hash *= FNV_PRIME;
+        }
+        return mix(hash);
+    }
+    
+    /* MurmurHash3 finalizer: spreads FNV's weak high bits across the whole word. */
+    private static long mix(long hash) {
+        hash ^= (hash >>> 33);
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= (hash >>> 33);
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= (hash >>> 33);
+        return hash;
+    }
+    
+    private Fingerprints() {
+        // Prevents instantiation.
+    }
+}
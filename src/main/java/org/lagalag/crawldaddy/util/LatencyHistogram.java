@@ -0,0 +1,135 @@
+package org.lagalag.crawldaddy.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Concurrent histogram of durations (or any non-negative longs), with fixed log-linear buckets in the manner of 
+ * HdrHistogram: values below 32 get a bucket each, and each power of two above that is split into 32 buckets, so 
+ * percentiles are accurate to within about 3%. Recording a value is a couple of atomic increments, with no 
+ * allocation. Values above 2^41 (about 36 minutes, in nanoseconds) are counted as 2^41.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 40;
+    private static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+    private static final int NUM_BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKET_COUNT;
+    private static final String ENCODING_SEPARATOR = ",";
+    private static final char ENCODING_COUNT_SEPARATOR = ':';
+
+    private final AtomicLongArray counts = new AtomicLongArray(NUM_BUCKETS);
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong maxValue = new AtomicLong();
+
+    public void record(long value) {
+        value = Math.max(0, Math.min(value, MAX_VALUE));
+        counts.incrementAndGet(bucketOf(value));
+        totalCount.incrementAndGet();
+        long max;
+        while (value > (max = maxValue.get())) {
+            if (maxValue.compareAndSet(max, value)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Adds all the values recorded by the given histogram to this one.
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            long count = other.counts.get(i);
+            if (count > 0) {
+                counts.addAndGet(i, count);
+                totalCount.addAndGet(count);
+            }
+        }
+        maxValue.accumulateAndGet(other.getMax(), Math::max);
+    }
+
+    /**
+     * Returns the values recorded, as a string (see decode()): the max, then the count of each bucket used.
+     */
+    public String encode() {
+        StringBuilder encoded = new StringBuilder().append(getMax());
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            long count = counts.get(i);
+            if (count > 0) {
+                encoded.append(ENCODING_SEPARATOR).append(i).append(ENCODING_COUNT_SEPARATOR).append(count);
+            }
+        }
+        return encoded.toString();
+    }
+
+    /**
+     * Returns a histogram of the values recorded by the one encoded in the given string (see encode()).
+     * @throws IllegalArgumentException if the string isn't an encoded histogram.
+     */
+    public static LatencyHistogram decode(String encoded) {
+        LatencyHistogram histogram = new LatencyHistogram();
+        String[] fields = encoded.split(ENCODING_SEPARATOR);
+        try {
+            for (int i = 1; i < fields.length; i++) {
+                int countSeparator = fields[i].indexOf(ENCODING_COUNT_SEPARATOR);
+                int bucket = Integer.parseInt(fields[i].substring(0, countSeparator));
+                long count = Long.parseLong(fields[i].substring(countSeparator + 1));
+                histogram.counts.addAndGet(bucket, count);
+                histogram.totalCount.addAndGet(count);
+            }
+            histogram.maxValue.set(Long.parseLong(fields[0]));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Not an encoded histogram: " + encoded, e);
+        }
+        return histogram;
+    }
+
+    public long getCount() {
+        return totalCount.get();
+    }
+
+    /**
+     * Returns the largest value recorded (exactly), or 0 if none was.
+     */
+    public long getMax() {
+        return maxValue.get();
+    }
+
+    /**
+     * Returns the value below which the given percentage (0 to 100) of the values recorded fall, to within the 
+     * precision of the buckets, or 0 if no value was recorded.
+     */
+    public long getValueAtPercentile(double percentile) {
+        long count = getCount();
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(Math.min(percentile, 100.0) / 100.0 * count));
+        long cumulativeCount = 0;
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            cumulativeCount += counts.get(i);
+            if (cumulativeCount >= rank) {
+                return Math.min(highestValueOf(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /* Values below SUB_BUCKET_COUNT map to themselves; above, the top SUB_BUCKET_BITS + 1 bits pick the bucket. */
+    private static int bucketOf(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int shift = (Long.SIZE - 1 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+        return ((shift + 1) << SUB_BUCKET_BITS) + (int) ((value >>> shift) & (SUB_BUCKET_COUNT - 1));
+    }
+
+    private static long highestValueOf(int bucket) {
+        if (bucket < SUB_BUCKET_COUNT) {
+            return bucket;
+        }
+        int shift = (bucket >>> SUB_BUCKET_BITS) - 1;
+        long lowestValue = (long) (SUB_BUCKET_COUNT + (bucket & (SUB_BUCKET_COUNT - 1))) << shift;
+        return lowestValue + (1L << shift) - 1;
+    }
+}
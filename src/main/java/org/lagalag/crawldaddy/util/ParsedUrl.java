@@ -0,0 +1,248 @@
+package org.lagalag.crawldaddy.util;
+
+/**
+ * A url split into its parts in a single pass, without allocating: parts are kept as offsets into the url string, 
+ * and only turned into strings when asked for. Instances are meant to be reused, by calling parse() for each url 
+ * (e.g. for each link on a page); not thread-safe.
+ * Parsing follows java.net.URL for the schemes handled here (http, https, ftp, file and mailto): a url that URL 
+ * would reject as malformed -- no scheme, an unknown scheme or a bad port -- is invalid, and has an empty host and 
+ * a null path.
+ */
+public final class ParsedUrl {
+    private static final String[] SUPPORTED_SCHEMES = { "http", "https", "ftp", "file", "mailto" };
+    
+    private String url;
+    private boolean valid;
+    private int schemeStart;
+    private int schemeEnd;
+    private int hostStart;
+    private int hostEnd;
+    private int pathStart;
+    private int pathEnd;
+    private int extensionStart;
+    
+    public ParsedUrl() {
+    }
+    
+    public ParsedUrl(String url) {
+        parse(url);
+    }
+    
+    /**
+     * Parses the given url, replacing whatever was parsed before.
+     * @return true if the url is valid.
+     */
+    public boolean parse(String url) {
+        this.url = url;
+        valid = false;
+        schemeStart = schemeEnd = hostStart = hostEnd = pathStart = pathEnd = 0;
+        extensionStart = -1;
+        if (url == null) {
+            return false;
+        }
+        // Like URL, ignore leading and trailing whitespace.
+        int start = 0;
+        int end = url.length();
+        while ((start < end) && (url.charAt(start) <= ' ')) {
+            start++;
+        }
+        while ((end > start) && (url.charAt(end - 1) <= ' ')) {
+            end--;
+        }
+        
+        int colon = findSchemeEnd(url, start, end);
+        if ((colon < 0) || !isSupportedScheme(url, start, colon)) {
+            return false;
+        }
+        schemeStart = start;
+        schemeEnd = colon;
+        int pos = colon + 1;
+        hostStart = hostEnd = pos;
+        if (url.startsWith("//", pos)) {
+            int authorityEnd = indexOfAny(url, pos + 2, end, "/?#");
+            if (!parseAuthority(pos + 2, authorityEnd)) {
+                hostStart = hostEnd = 0;
+                return false;
+            }
+            pos = authorityEnd;
+        }
+        
+        pathStart = pos;
+        pathEnd = indexOfAny(url, pos, end, "?#");
+        while ((pathStart < pathEnd) && (url.charAt(pathStart) <= ' ')) {
+            pathStart++;
+        }
+        while ((pathEnd > pathStart) && (url.charAt(pathEnd - 1) <= ' ')) {
+            pathEnd--;
+        }
+        int dot = url.lastIndexOf('.', pathEnd - 1);
+        if (dot >= pathStart) {
+            extensionStart = dot + 1;
+            while ((extensionStart < pathEnd) && (url.charAt(extensionStart) <= ' ')) {
+                extensionStart++;
+            }
+        }
+        valid = true;
+        return true;
+    }
+    
+    public String getUrl() {
+        return url;
+    }
+    
+    public boolean isValid() {
+        return valid;
+    }
+    
+    /**
+     * Returns the (lower case) scheme, or null if the url is not valid.
+     */
+    public String getScheme() {
+        return (valid ? url.substring(schemeStart, schemeEnd).toLowerCase() : null);
+    }
+    
+    /**
+     * Returns the host, or "" if the url has none or is not valid.
+     */
+    public String getHost() {
+        return (valid ? url.substring(hostStart, hostEnd) : "");
+    }
+    
+    /**
+     * Same as getHost().equalsIgnoreCase(host) (host names are case-insensitive), without the substring.
+     */
+    public boolean hasHost(String host) {
+        int hostLength = hostEnd - hostStart;
+        return (host.length() == hostLength) && url.regionMatches(true, hostStart, host, 0, hostLength);
+    }
+    
+    /**
+     * Returns the (trimmed) path, which may be empty, or null if the url is not valid.
+     */
+    public String getPath() {
+        return (valid ? url.substring(pathStart, pathEnd) : null);
+    }
+    
+    public boolean hasPath() {
+        return (pathEnd > pathStart);
+    }
+    
+    /**
+     * Returns the path and query, without the fragment, as robots.txt rules are matched against: "/" for an empty 
+     * path. Returns null if the url is not valid.
+     */
+    public String getPathAndQuery() {
+        if (!valid) {
+            return null;
+        }
+        int end = url.indexOf('#', pathEnd);
+        if (end < 0) {
+            end = url.length();
+        }
+        while ((end > pathEnd) && (url.charAt(end - 1) <= ' ')) {
+            end--;
+        }
+        return (hasPath() ? "" : "/") + url.substring(pathStart, end);
+    }
+    
+    /**
+     * Returns scheme://authority (with the port, if any) for the url, or "" if the url is not valid.
+     */
+    public String getOrigin() {
+        return (valid ? url.substring(schemeStart, pathStart) : "");
+    }
+    
+    /**
+     * Returns whatever follows the last '.' in the path (as for URLUtils.getExtension()) in lower case, or null if 
+     * there is no '.' in the path.
+     */
+    public String getExtension() {
+        return (hasExtension() ? url.substring(extensionStart, pathEnd).toLowerCase() : null);
+    }
+    
+    public boolean hasExtension() {
+        return (extensionStart >= 0);
+    }
+    
+    /**
+     * Same as ext.equalsIgnoreCase(getExtension()), without the substring.
+     */
+    public boolean hasExtension(String ext) {
+        int extensionLength = pathEnd - extensionStart;
+        return hasExtension() && (ext.length() == extensionLength) 
+               && url.regionMatches(true, extensionStart, ext, 0, extensionLength);
+    }
+    
+    /**
+     * Returns scheme://host/ for the url, or "" if the url is not valid.
+     */
+    public String getBaseUrl() {
+        return (valid ? getScheme() + "://" + getHost() + "/" : "");
+    }
+    
+    @Override
+    public String toString() {
+        return url;
+    }
+    
+    /* Returns the index of the ':' ending the scheme, or -1 if the url doesn't start with one. */
+    private static int findSchemeEnd(String url, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = url.charAt(i);
+            if (c == ':') {
+                return (i > start ? i : -1);
+            }
+            boolean isSchemeChar = ((c >= 'a') && (c <= 'z')) || ((c >= 'A') && (c <= 'Z'))
+                                   || ((i > start) && (((c >= '0') && (c <= '9')) || (c == '+') || (c == '-') || (c == '.')));
+            if (!isSchemeChar) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+    
+    private static boolean isSupportedScheme(String url, int start, int end) {
+        for (String scheme : SUPPORTED_SCHEMES) {
+            if ((scheme.length() == end - start) && url.regionMatches(true, start, scheme, 0, scheme.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /* Sets the host bounds from the authority ([userinfo@]host[:port]); returns false if it's malformed. */
+    private boolean parseAuthority(int start, int end) {
+        int at = url.lastIndexOf('@', end - 1);
+        hostStart = (at >= start ? at + 1 : start);
+        if ((hostStart < end) && (url.charAt(hostStart) == '[')) {
+            // IPv6 literal
+            int closingBracket = url.indexOf(']', hostStart);
+            if ((closingBracket < 0) || (closingBracket >= end)) {
+                return false;
+            }
+            hostEnd = closingBracket + 1;
+            if ((hostEnd < end) && (url.charAt(hostEnd) != ':')) {
+                return false;
+            }
+        } else {
+            hostEnd = indexOfAny(url, hostStart, end, ":");
+        }
+        for (int i = hostEnd + 1; i < end; i++) {
+            char c = url.charAt(i);
+            if ((c < '0') || (c > '9')) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /* Returns the index of the first of the given chars in url[start, end), or end if there is none. */
+    private static int indexOfAny(String url, int start, int end, String chars) {
+        for (int i = start; i < end; i++) {
+            if (chars.indexOf(url.charAt(i)) >= 0) {
+                return i;
+            }
+        }
+        return end;
+    }
+}
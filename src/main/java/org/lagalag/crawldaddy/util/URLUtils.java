@@ -1,21 +1,13 @@
 package org.lagalag.crawldaddy.util;
 
-import java.net.MalformedURLException;
-import java.net.URL;
-
 /**
- * Utility methods for dealing with various URL string processing needs.
+ * Utility methods for dealing with various URL string processing needs. Callers that need several parts of the same 
+ * url should parse it once with ParsedUrl instead.
  *
  */
 public class URLUtils {
     public static String getPath(String url) {
-        try {
-            URL urlObj = new URL(url);
-            String path = urlObj.getPath();
-            return path.trim();
-        } catch (MalformedURLException e) {
-            return null;
-        }
+        return new ParsedUrl(url).getPath();
     }
     
     public static String getExtension(String urlPath) {
@@ -31,13 +23,7 @@ public class URLUtils {
         if ((url == null) || (url.trim().length() == 0)) {
             return "";
         }
-        
-        try {
-            URL urlObj = new URL(url);
-            return urlObj.getHost();
-        } catch (MalformedURLException e) {
-            return "";
-        }
+        return new ParsedUrl(url).getHost();
     }
     
     public static String canonicalize(String inUrl, String baseUrl) {
@@ -58,12 +44,7 @@ public class URLUtils {
     }
     
     public static String getBaseUrl(String url) {
-        try {
-            URL u = new URL(url);
-            return u.getProtocol() + "://" + u.getHost() + "/";
-        } catch (MalformedURLException e) {
-        }
-        return "";
+        return new ParsedUrl(url).getBaseUrl();
     }
 
     private URLUtils() {
@@ -0,0 +1,237 @@
+package org.lagalag.crawldaddy.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Normalizes http(s) urls (RFC 3986, section 6) so that different spellings of the same url are crawled only once:
+ * <ul>
+ * <li>the scheme and host are lower-cased, and the default port (and an empty port) is dropped;</li>
+ * <li>percent-encoded unreserved characters are decoded, and the hex digits of all other escapes upper-cased;</li>
+ * <li>"." and ".." segments are removed from the path, and an empty path becomes "/";</li>
+ * <li>an empty query, and the fragment, are dropped.</li>
+ * </ul>
+ * Optionally, query parameters can also be sorted by name (keeping the order of parameters with the same name), and 
+ * parameters that don't affect the page (e.g. tracking parameters) can be stripped: a stripped parameter name ending 
+ * in '*' matches all names that start with what precedes it (e.g. "utm_*").
+ * Other urls are returned unchanged. Thread-safe.
+ */
+public class UrlNormalizer {
+    private static final String HTTP = "http";
+    private static final String HTTPS = "https";
+    private static final String SCHEME_SEPARATOR = "://";
+    private static final String HTTP_DEFAULT_PORT = "80";
+    private static final String HTTPS_DEFAULT_PORT = "443";
+    private static final String WILDCARD = "*";
+    private static final Comparator<String> BY_PARAMETER_NAME = Comparator.comparing(UrlNormalizer::getParameterName);
+    
+    private final boolean sortQueryParameters;
+    private final List<String> strippedQueryParameters;
+    
+    public UrlNormalizer() {
+        this(false, Collections.emptyList());
+    }
+    
+    public UrlNormalizer(boolean sortQueryParameters, Collection<String> strippedQueryParameters) {
+        this.sortQueryParameters = sortQueryParameters;
+        this.strippedQueryParameters = new ArrayList<>(strippedQueryParameters);
+    }
+    
+    public String normalize(String url) {
+        if (url == null) {
+            return null;
+        }
+        String trimmedUrl = url.trim();
+        String scheme = getScheme(trimmedUrl);
+        if (scheme == null) {
+            return url;
+        }
+        int authorityStart = scheme.length() + SCHEME_SEPARATOR.length();
+        int authorityEnd = indexOfAny(trimmedUrl, authorityStart, "/?#");
+        int fragmentStart = indexOfAny(trimmedUrl, authorityEnd, "#");
+        int queryStart = indexOfAny(trimmedUrl, authorityEnd, "?");
+        int pathEnd = Math.min(queryStart, fragmentStart);
+        
+        StringBuilder sb = new StringBuilder(trimmedUrl.length());
+        sb.append(scheme).append(SCHEME_SEPARATOR);
+        appendAuthority(sb, scheme, trimmedUrl.substring(authorityStart, authorityEnd));
+        String path = removeDotSegments(normalizePercentEncoding(trimmedUrl.substring(authorityEnd, pathEnd)));
+        sb.append(path.isEmpty() ? "/" : path);
+        if (queryStart < fragmentStart) {
+            String query = normalizeQuery(trimmedUrl.substring(queryStart + 1, fragmentStart));
+            if (!query.isEmpty()) {
+                sb.append('?').append(query);
+            }
+        }
+        String normalizedUrl = sb.toString();
+        return (normalizedUrl.equals(url) ? url : normalizedUrl);
+    }
+    
+    /* Returns the lower-case scheme if the url is an http(s) url with an authority, otherwise null. */
+    private static String getScheme(String url) {
+        if (url.regionMatches(true, 0, HTTP + SCHEME_SEPARATOR, 0, HTTP.length() + SCHEME_SEPARATOR.length())) {
+            return HTTP;
+        }
+        if (url.regionMatches(true, 0, HTTPS + SCHEME_SEPARATOR, 0, HTTPS.length() + SCHEME_SEPARATOR.length())) {
+            return HTTPS;
+        }
+        return null;
+    }
+    
+    private static void appendAuthority(StringBuilder sb, String scheme, String authority) {
+        int hostStart = authority.lastIndexOf('@') + 1;
+        int portSeparator = authority.lastIndexOf(':');
+        if ((portSeparator < hostStart) || (authority.indexOf(']', portSeparator) >= 0)) {
+            // No port (the last ':' is in the user info or an IPv6 address)
+            portSeparator = authority.length();
+        }
+        sb.append(authority, 0, hostStart);
+        sb.append(authority.substring(hostStart, portSeparator).toLowerCase(Locale.ROOT));
+        String port = stripLeadingZeros(authority.substring(Math.min(portSeparator + 1, authority.length())));
+        String defaultPort = (HTTPS.equals(scheme) ? HTTPS_DEFAULT_PORT : HTTP_DEFAULT_PORT);
+        if (!port.isEmpty() && !port.equals(defaultPort)) {
+            sb.append(':').append(port);
+        }
+    }
+    
+    private String normalizeQuery(String query) {
+        query = normalizePercentEncoding(query);
+        if (!sortQueryParameters && strippedQueryParameters.isEmpty()) {
+            return query;
+        }
+        List<String> parameters = new ArrayList<>();
+        for (String parameter : query.split("&")) {
+            if (!parameter.isEmpty() && !isStripped(getParameterName(parameter))) {
+                parameters.add(parameter);
+            }
+        }
+        if (sortQueryParameters) {
+            // Stable, so parameters with the same name stay in order.
+            parameters.sort(BY_PARAMETER_NAME);
+        }
+        return String.join("&", parameters);
+    }
+    
+    private boolean isStripped(String parameterName) {
+        for (String strippedParameter : strippedQueryParameters) {
+            if (strippedParameter.endsWith(WILDCARD)) {
+                if (parameterName.startsWith(strippedParameter.substring(0, strippedParameter.length() - 1))) {
+                    return true;
+                }
+            } else if (parameterName.equals(strippedParameter)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private static String getParameterName(String parameter) {
+        int equalsIdx = parameter.indexOf('=');
+        return (equalsIdx >= 0 ? parameter.substring(0, equalsIdx) : parameter);
+    }
+    
+    /* Decodes escaped unreserved characters, and upper-cases the hex digits of all other escapes (RFC 3986, 6.2.2.2). */
+    static String normalizePercentEncoding(String s) {
+        if (s.indexOf('%') < 0) {
+            return s;
+        }
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            int value = ((c == '%') && (i + 2 < s.length()) ? hexValue(s.charAt(i + 1), s.charAt(i + 2)) : -1);
+            if (value < 0) {
+                sb.append(c);
+            } else if (isUnreserved((char) value)) {
+                sb.append((char) value);
+                i += 2;
+            } else {
+                sb.append('%').append(Character.toUpperCase(s.charAt(i + 1))).append(Character.toUpperCase(s.charAt(i + 2)));
+                i += 2;
+            }
+        }
+        return sb.toString();
+    }
+    
+    /* RFC 3986, 5.2.4. */
+    static String removeDotSegments(String path) {
+        if (path.indexOf('.') < 0) {
+            return path;
+        }
+        StringBuilder output = new StringBuilder(path.length());
+        String input = path;
+        while (!input.isEmpty()) {
+            if (input.startsWith("../")) {
+                input = input.substring(3);
+            } else if (input.startsWith("./") || input.startsWith("/./")) {
+                input = input.substring(2);
+            } else if (input.equals("/.")) {
+                input = "/";
+            } else if (input.startsWith("/../")) {
+                input = input.substring(3);
+                removeLastSegment(output);
+            } else if (input.equals("/..")) {
+                input = "/";
+                removeLastSegment(output);
+            } else if (input.equals(".") || input.equals("..")) {
+                input = "";
+            } else {
+                int segmentEnd = input.indexOf('/', 1);
+                if (segmentEnd < 0) {
+                    segmentEnd = input.length();
+                }
+                output.append(input, 0, segmentEnd);
+                input = input.substring(segmentEnd);
+            }
+        }
+        return output.toString();
+    }
+    
+    private static void removeLastSegment(StringBuilder output) {
+        output.setLength(Math.max(0, output.lastIndexOf("/")));
+    }
+    
+    private static boolean isUnreserved(char c) {
+        return ((c >= 'a') && (c <= 'z')) || ((c >= 'A') && (c <= 'Z')) || ((c >= '0') && (c <= '9')) 
+               || (c == '-') || (c == '.') || (c == '_') || (c == '~');
+    }
+    
+    private static int hexValue(char high, char low) {
+        int h = hexDigitValue(high);
+        int l = hexDigitValue(low);
+        return ((h < 0) || (l < 0) ? -1 : (h << 4) | l);
+    }
+    
+    private static int hexDigitValue(char c) {
+        if ((c >= '0') && (c <= '9')) {
+            return c - '0';
+        }
+        if ((c >= 'a') && (c <= 'f')) {
+            return c - 'a' + 10;
+        }
+        if ((c >= 'A') && (c <= 'F')) {
+            return c - 'A' + 10;
+        }
+        return -1;
+    }
+    
+    private static String stripLeadingZeros(String port) {
+        int i = 0;
+        while ((i < port.length() - 1) && (port.charAt(i) == '0')) {
+            i++;
+        }
+        return port.substring(i);
+    }
+    
+    private static int indexOfAny(String s, int start, String chars) {
+        for (int i = start; i < s.length(); i++) {
+            if (chars.indexOf(s.charAt(i)) >= 0) {
+                return i;
+            }
+        }
+        return s.length();
+    }
+}
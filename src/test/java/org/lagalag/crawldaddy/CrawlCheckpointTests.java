@@ -0,0 +1,105 @@
+package org.lagalag.crawldaddy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Junit tests for crawl checkpoints (no network access needed).
+ */
+public class CrawlCheckpointTests {
+    private static final String URL = "http://example.org/";
+    
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+    
+    @Test
+    public void testResume() throws Exception {
+        File directory = tempFolder.newFolder();
+        try (CrawlCheckpoint checkpoint = new CrawlCheckpoint(directory, URL, 0)) {
+            checkpoint.start(URL);
+            checkpoint.recordInitialStatus(200);
+            checkpoint.recordQueued(Arrays.asList(URL + "a", URL + "b", URL + "c"));
+            checkpoint.recordExternalLink("http://other.example.com/");
+            checkpoint.recordExternalScript("http://cdn.example.com/x.js");
+            checkpoint.recordDone(URL);
+            checkpoint.recordQueued(Collections.singletonList(URL + "d"));
+            checkpoint.recordBrokenLink(URL + "missing");
+            checkpoint.recordDone(URL + "b");
+        }
+        
+        CrawldaddyResult result = new CrawldaddyResult(URL);
+        try (CrawlCheckpoint checkpoint = new CrawlCheckpoint(directory, URL, 0)) {
+            CrawlCheckpoint.ResumedCrawl resumedCrawl = checkpoint.resume(URL, result, 100);
+            assertTrue("Initial page not done", resumedCrawl.isInitialPageDone());
+            assertEquals(2, resumedCrawl.getNumPagesDone());
+            assertEquals(Arrays.asList(URL + "a", URL + "c", URL + "d"), resumedCrawl.getPendingUrls());
+            // Recording goes on where the checkpoint left off.
+            checkpoint.recordDone(URL + "a");
+        }
+        assertTrue(result.isHttpStatusOK());
+        assertEquals(4, result.getInternalLinkCount());
+        assertEquals(Collections.singleton("http://other.example.com/"), result.getExternalLinks());
+        assertEquals(Collections.singleton("http://cdn.example.com/x.js"), result.getExternalScripts());
+        assertEquals(Collections.singleton(URL + "missing"), result.getBrokenLinks());
+        
+        try (CrawlCheckpoint checkpoint = new CrawlCheckpoint(directory, URL, 0)) {
+            CrawlCheckpoint.ResumedCrawl resumedCrawl = checkpoint.resume(URL, new CrawldaddyResult(URL), 100);
+            assertEquals(Arrays.asList(URL + "c", URL + "d"), resumedCrawl.getPendingUrls());
+        }
+    }
+    
+    @Test
+    public void testTornRecordIgnored() throws Exception {
+        File directory = tempFolder.newFolder();
+        try (CrawlCheckpoint checkpoint = new CrawlCheckpoint(directory, URL, 0)) {
+            checkpoint.start(URL);
+            checkpoint.recordInitialStatus(200);
+            checkpoint.recordQueued(Arrays.asList(URL + "a", URL + "b"));
+            checkpoint.recordDone(URL + "a");
+        }
+        // Chop off the end of the last record, as if the crawl died while writing it.
+        File checkpointFile = directory.listFiles()[0];
+        try (RandomAccessFile file = new RandomAccessFile(checkpointFile, "rw")) {
+            file.setLength(file.length() - 3);
+        }
+        
+        try (CrawlCheckpoint checkpoint = new CrawlCheckpoint(directory, URL, 0)) {
+            CrawlCheckpoint.ResumedCrawl resumedCrawl = checkpoint.resume(URL, new CrawldaddyResult(URL), 100);
+            // Its status made it to disk, but it wasn't recorded as done: some of its links may be missing.
+            assertFalse("Initial page done", resumedCrawl.isInitialPageDone());
+            assertEquals(Arrays.asList(URL + "a", URL + "b"), resumedCrawl.getPendingUrls());
+            checkpoint.recordDone(URL + "b");
+        }
+        try (CrawlCheckpoint checkpoint = new CrawlCheckpoint(directory, URL, 0)) {
+            CrawlCheckpoint.ResumedCrawl resumedCrawl = checkpoint.resume(URL, new CrawldaddyResult(URL), 100);
+            assertEquals(Collections.singletonList(URL + "a"), resumedCrawl.getPendingUrls());
+        }
+    }
+    
+    @Test
+    public void testNothingToResume() throws Exception {
+        File directory = tempFolder.newFolder();
+        try (CrawlCheckpoint checkpoint = new CrawlCheckpoint(directory, URL, 0)) {
+            assertNull("Resumed without a checkpoint", checkpoint.resume(URL, new CrawldaddyResult(URL), 100));
+        }
+        try (CrawlCheckpoint checkpoint = new CrawlCheckpoint(directory, URL, 0)) {
+            checkpoint.start(URL);
+        }
+        try (CrawlCheckpoint checkpoint = new CrawlCheckpoint(directory, "http://example.com/", 0)) {
+            assertNull("Resumed another crawl's checkpoint", 
+                       checkpoint.resume("http://example.com/", new CrawldaddyResult("http://example.com/"), 100));
+        }
+        assertFalse(new CrawlCheckpoint(null, URL, 0).isEnabled());
+    }
+}
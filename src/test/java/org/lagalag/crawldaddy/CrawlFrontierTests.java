@@ -0,0 +1,86 @@
+package org.lagalag.crawldaddy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Junit tests for the disk-spilling crawl frontier.
+ */
+public class CrawlFrontierTests {
+    @Test
+    public void testInMemoryOnly() {
+        try (CrawlFrontier frontier = new CrawlFrontier(10, null)) {
+            frontier.add("http://example.org/a");
+            frontier.add("http://example.org/b");
+            assertEquals("Unexpected frontier size", 2, frontier.size());
+            assertEquals("http://example.org/a", frontier.poll());
+            assertEquals("http://example.org/b", frontier.poll());
+            assertNull("Empty frontier returned a url", frontier.poll());
+            assertTrue("Frontier not empty", frontier.isEmpty());
+            assertEquals("Urls spilled to disk unnecessarily", 0, frontier.getNumUrlsEverSpilled());
+        }
+    }
+    
+    @Test
+    public void testSpillPreservesOrder() {
+        final int memoryCapacity = 5;
+        final int numUrls = 1000;
+        try (CrawlFrontier frontier = new CrawlFrontier(memoryCapacity, null)) {
+            List<String> polledUrls = new ArrayList<>();
+            for (int i = 0; i < numUrls; i++) {
+                frontier.add("http://example.org/page" + i);
+                // Interleave polls with adds, as a crawl would.
+                if (i % 3 == 0) {
+                    polledUrls.add(frontier.poll());
+                }
+            }
+            assertTrue("No urls were spilled to disk", frontier.getNumUrlsEverSpilled() > 0);
+            String url;
+            while ((url = frontier.poll()) != null) {
+                polledUrls.add(url);
+            }
+            assertEquals("Urls lost or duplicated", numUrls, polledUrls.size());
+            for (int i = 0; i < numUrls; i++) {
+                assertEquals("Urls out of order", "http://example.org/page" + i, polledUrls.get(i));
+            }
+            assertTrue("Frontier not empty", frontier.isEmpty());
+        }
+    }
+    
+    @Test
+    public void testReuseAfterDrain() {
+        try (CrawlFrontier frontier = new CrawlFrontier(1, null)) {
+            for (int round = 0; round < 3; round++) {
+                frontier.add("http://example.org/x" + round);
+                frontier.add("http://example.org/y" + round);
+                frontier.add("http://example.org/z" + round);
+                assertEquals("http://example.org/x" + round, frontier.poll());
+                assertEquals("http://example.org/y" + round, frontier.poll());
+                assertEquals("http://example.org/z" + round, frontier.poll());
+                assertNull("Empty frontier returned a url", frontier.poll());
+            }
+        }
+    }
+    
+    @Test
+    public void testSpillFailureKeepsOrder() {
+        File missingDirectory = new File(System.getProperty("java.io.tmpdir"), "crawldaddy-no-such-dir-" + System.nanoTime());
+        try (CrawlFrontier frontier = new CrawlFrontier(2, missingDirectory)) {
+            for (int i = 0; i < 10; i++) {
+                frontier.add("http://example.org/page" + i);
+            }
+            assertEquals("Urls lost", 10, frontier.size());
+            for (int i = 0; i < 10; i++) {
+                assertEquals("Urls out of order", "http://example.org/page" + i, frontier.poll());
+            }
+            assertTrue("Frontier not empty", frontier.isEmpty());
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package org.lagalag.crawldaddy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.lagalag.crawldaddy.util.ParsedUrl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH benchmarks of the per-link work CrawldaddyAction does on each page fetched: the type check and skip check of 
+ * a single (already parsed) link, and the whole of processLinkUrls over the links of a typical page. As in a real 
+ * crawl, most links processed have been seen before. Times are per page (all the links of the page). Not a unit 
+ * test; run with the benchmarks profile (see README), or:
+ * 
+ *     mvn test-compile
+ *     java -cp target/classes:target/test-classes:<test classpath> org.lagalag.crawldaddy.CrawldaddyActionBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CrawldaddyActionBenchmark {
+    private static final String SITE_URL = "https://www.example.org/";
+    private static final String PAGE_URL = "https://www.example.org/blog/2018/10/crawling-the-web.html";
+    
+    private final List<String> links = new ArrayList<>();
+    private ParsedUrl[] parsedLinks;
+    private CrawldaddySession session;
+    private CrawldaddyAction action;
+    
+    @Setup
+    public void createPage() {
+        // Navigation, article links (relative and absolute, some with anchors), assets, and off-site links.
+        for (String path : new String[] { "/", "/about", "/blog/", "/contact", "/privacy" }) {
+            links.add(SITE_URL + path.substring(1));
+        }
+        for (int i = 0; i < 20; i++) {
+            links.add("/blog/2018/" + (i % 12 + 1) + "/post-" + i + ".html");
+            links.add("https://www.example.org/tags/tag-" + (i % 5) + "#comments");
+        }
+        links.add("https://www.example.org/downloads/report-2018.pdf");
+        links.add("https://www.example.org/images/banner.png");
+        links.add("https://twitter.com/example");
+        links.add("https://github.com/example/crawldaddy/issues?q=is%3Aopen");
+        links.add("https://cdn.example.net/static/app.js");
+        links.add("mailto:info@example.org");
+        links.add("javascript:void(0)");
+        links.add(PAGE_URL);
+        links.add("");
+        
+        parsedLinks = new ParsedUrl[links.size()];
+        for (int i = 0; i < parsedLinks.length; i++) {
+            parsedLinks[i] = new ParsedUrl(links.get(i));
+        }
+        session = new CrawldaddySession(new CrawldaddyParams(SITE_URL), null, null, null, Runnable::run);
+        action = new CrawldaddyAction(PAGE_URL, session, false);
+    }
+    
+    @TearDown
+    public void closeSession() {
+        session.close();
+    }
+    
+    @Benchmark
+    public void isSupportedType(Blackhole blackhole) {
+        for (ParsedUrl link : parsedLinks) {
+            blackhole.consume(action.isSupportedType(link));
+        }
+    }
+    
+    @Benchmark
+    public void skipProcessing(Blackhole blackhole) {
+        for (ParsedUrl link : parsedLinks) {
+            blackhole.consume(action.skipProcessing(link));
+        }
+    }
+    
+    @Benchmark
+    public Object processLinkUrls() {
+        return action.processLinkUrls(links, null, null);
+    }
+    
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(CrawldaddyActionBenchmark.class.getSimpleName())
+                                       .addProfiler("gc")
+                                       .build()).run();
+    }
+}
@@ -0,0 +1,87 @@
+package org.lagalag.crawldaddy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.lagalag.crawldaddy.pages.PageFetchEngine;
+
+/**
+ * Junit tests for batch crawls of several SyntheticSites, served on localhost.
+ */
+public class CrawldaddyBatchTests {
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+    
+    @Test
+    public void testReadSeedUrls() throws Exception {
+        File seedFile = tempFolder.newFile("seeds.txt");
+        Files.write(seedFile.toPath(), Arrays.asList("# sites to audit", "http://a.example.com/", "", 
+                                                     "  http://b.example.com/  ", "http://a.example.com/"), 
+                    StandardCharsets.UTF_8);
+        assertEquals(Arrays.asList("http://a.example.com/", "http://b.example.com/"), CrawldaddyBatch.readSeedUrls(seedFile));
+    }
+    
+    @Test
+    public void testCrawlBatch() throws Exception {
+        doCrawlBatch(PageFetchEngine.JSOUP);
+    }
+    
+    @Test
+    public void testCrawlBatchAsyncEngine() throws Exception {
+        doCrawlBatch(PageFetchEngine.ASYNC);
+    }
+    
+    private void doCrawlBatch(PageFetchEngine engine) throws Exception {
+        List<SyntheticSite> sites = Arrays.asList(new SyntheticSite(200, 4), new SyntheticSite(50, 3), new SyntheticSite(120, 5));
+        List<SyntheticSiteServer> servers = new ArrayList<>();
+        try {
+            List<String> seedUrls = new ArrayList<>();
+            for (SyntheticSite site : sites) {
+                site.setNotFoundRatio(0.02);
+                SyntheticSiteServer server = new SyntheticSiteServer(site);
+                servers.add(server);
+                seedUrls.add(server.getUrl());
+            }
+            // A seed that leads nowhere mustn't hold up (or break) the others.
+            seedUrls.add(servers.get(0).getUrl() + "no-such-page");
+            CrawldaddyParams params = new CrawldaddyParams(null);
+            params.setPageFetchEngine(engine);
+            params.setMaxConcurrentSites(2);
+            params.setMaxConcurrentFetches(8);
+            params.setMaxTotalFetches(10);
+            CrawldaddyResultSet results = new CrawldaddyBatch(params, seedUrls).crawl().get();
+            
+            assertEquals(seedUrls.size(), results.size());
+            int i = 0;
+            for (CrawldaddyResult result : results) {
+                assertEquals(seedUrls.get(i), result.getUrl());
+                if (i < sites.size()) {
+                    SyntheticSite.Crawl expected = sites.get(i).crawl();
+                    assertTrue("Root page not fetched", result.isHttpStatusOK());
+                    assertEquals(expected.getNumPagesFetched(), result.getPagesFetched());
+                    assertEquals(expected.getNumBrokenLinks(), result.getBrokenLinkCount());
+                    assertEquals(expected.getNumExternalLinks(), result.getExternalLinkCount());
+                } else {
+                    assertFalse(result.isHttpStatusOK());
+                    assertEquals(404, result.getHttpStatusCode());
+                }
+                i++;
+            }
+        } finally {
+            for (SyntheticSiteServer server : servers) {
+                server.close();
+            }
+        }
+    }
+}
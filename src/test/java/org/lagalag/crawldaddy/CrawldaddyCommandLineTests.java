@@ -8,8 +8,10 @@ import static org.junit.Assert.fail;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.util.Arrays;
 
 import org.junit.Test;
+import org.lagalag.crawldaddy.pages.PageFetchEngine;
 
 /**
  * Junit tests for command line args.
@@ -39,13 +41,17 @@ public class CrawldaddyCommandLineTests {
     public void testSetAllShortOptions() {
         final int maxIntLinks = 1000;
         final int numRepetitions = 7;
+        final int numThreads = 16;
         final boolean useShortOptions = true;
         String[] args = createCommandLineArgs(useShortOptions, 
                                               CrawldaddyCommandLine.CL_OPT_SHOW_EXT_LINKS,
                                               CrawldaddyCommandLine.CL_OPT_SHOW_EXT_SCRIPTS,
                                               CrawldaddyCommandLine.CL_OPT_GENERATE_VERBOSE_OUTPUT,
                                               CrawldaddyCommandLine.CL_OPT_MAX_INT_LINKS + " " + maxIntLinks,
-                                              CrawldaddyCommandLine.CL_LONGOPT_CRAWL_REPEATEDLY + " " + numRepetitions);
+                                              CrawldaddyCommandLine.CL_LONGOPT_CRAWL_REPEATEDLY + " " + numRepetitions,
+                                              CrawldaddyCommandLine.CL_OPT_PAGE_FETCH_ENGINE + " async",
+                                              CrawldaddyCommandLine.CL_OPT_EXECUTOR_TYPE + " fixed",
+                                              CrawldaddyCommandLine.CL_OPT_NUM_THREADS + " " + numThreads);
         try {
             CrawldaddyCommandLine cl = parseAndAssertNonNullCommandLine(args);
             assertTrue("Show external links option not set", cl.isShowExternalLinksSet());
@@ -53,6 +59,9 @@ public class CrawldaddyCommandLineTests {
             assertTrue("Generate verbose output option not set", cl.isGenerateVerboseOutputSet());
             assertEquals("Max internal links not set", maxIntLinks, cl.getMaxInternalLinks(0));
             assertEquals("Num repetitions not set", numRepetitions, cl.getNumRepetitions(0));
+            assertEquals("Page fetch engine not set", PageFetchEngine.ASYNC, cl.getPageFetchEngine(PageFetchEngine.JSOUP));
+            assertEquals("Executor type not set", CrawlExecutorType.FIXED, cl.getExecutorType(CrawlExecutorType.VIRTUAL));
+            assertEquals("Num threads not set", numThreads, cl.getNumThreads(0));
         } catch (RuntimeException e) {
             fail("Exception on running application with illegal value for option " + CrawldaddyCommandLine.CL_OPT_MAX_INT_LINKS + ": " + e.getMessage());
         }
@@ -62,18 +71,25 @@ public class CrawldaddyCommandLineTests {
     public void testSetAllLongOptions() {
         final int maxIntLinks = 14344;
         final int numRepetitions = 8;
+        final int numThreads = 3;
         final boolean useShortOptions = false;
         String[] args = createCommandLineArgs(useShortOptions,
                                               CrawldaddyCommandLine.CL_LONGOPT_SHOW_EXT_LINKS,
                                               CrawldaddyCommandLine.CL_LONGOPT_SHOW_EXT_SCRIPTS,
                                               CrawldaddyCommandLine.CL_LONGOPT_MAX_INT_LINKS + "=" + maxIntLinks,
-                                              CrawldaddyCommandLine.CL_LONGOPT_CRAWL_REPEATEDLY + "=" + numRepetitions);
+                                              CrawldaddyCommandLine.CL_LONGOPT_CRAWL_REPEATEDLY + "=" + numRepetitions,
+                                              CrawldaddyCommandLine.CL_LONGOPT_PAGE_FETCH_ENGINE + "=ASYNC",
+                                              CrawldaddyCommandLine.CL_LONGOPT_EXECUTOR_TYPE + "=fork-join",
+                                              CrawldaddyCommandLine.CL_LONGOPT_NUM_THREADS + "=" + numThreads);
         try {
             CrawldaddyCommandLine cl = parseAndAssertNonNullCommandLine(args);
             assertTrue("Show external links option not set", cl.isShowExternalLinksSet());
             assertTrue("Show external scripts option not set", cl.isShowExternalScriptsSet());
             assertEquals("Max internal links not set", maxIntLinks, cl.getMaxInternalLinks(0));
             assertEquals("Num repetitions not set", numRepetitions, cl.getNumRepetitions(0));
+            assertEquals("Page fetch engine not set", PageFetchEngine.ASYNC, cl.getPageFetchEngine(PageFetchEngine.JSOUP));
+            assertEquals("Executor type not set", CrawlExecutorType.FORK_JOIN, cl.getExecutorType(CrawlExecutorType.VIRTUAL));
+            assertEquals("Num threads not set", numThreads, cl.getNumThreads(0));
         } catch (RuntimeException e) {
             fail("Exception on running application with illegal value for option " + CrawldaddyCommandLine.CL_OPT_MAX_INT_LINKS + ": " + e.getMessage());
         }
@@ -138,6 +154,40 @@ public class CrawldaddyCommandLineTests {
         }
     }
     
+    @Test
+    public void testSetBadPageFetchEngine() {
+        PageFetchEngine expectedDefault = PageFetchEngine.JSOUP;
+        String[] args = createCommandLineArgs(CrawldaddyCommandLine.CL_OPT_PAGE_FETCH_ENGINE + " warpdrive");
+        try {
+            CrawldaddyCommandLine cl = parseAndAssertNonNullCommandLine(args);
+            assertEquals("Page fetch engine set to unexpected value", expectedDefault, cl.getPageFetchEngine(expectedDefault));
+        } catch (RuntimeException e) {
+            fail("Exception on running application with illegal value for option " + CrawldaddyCommandLine.CL_OPT_PAGE_FETCH_ENGINE + ": " + e.getMessage());
+        }
+    }
+    
+    @Test
+    public void testSetBadExecutorType() {
+        CrawlExecutorType expectedDefault = CrawlExecutorType.FORK_JOIN;
+        String[] args = createCommandLineArgs(CrawldaddyCommandLine.CL_OPT_EXECUTOR_TYPE + " hamsterwheel");
+        try {
+            CrawldaddyCommandLine cl = parseAndAssertNonNullCommandLine(args);
+            assertEquals("Executor type set to unexpected value", expectedDefault, cl.getExecutorType(expectedDefault));
+        } catch (RuntimeException e) {
+            fail("Exception on running application with illegal value for option " + CrawldaddyCommandLine.CL_OPT_EXECUTOR_TYPE + ": " + e.getMessage());
+        }
+    }
+    
+    @Test
+    public void testUrlNormalizationOptions() {
+        String[] args = { "-" + CrawldaddyCommandLine.CL_OPT_SORT_QUERY_PARAMS, 
+                          "-" + CrawldaddyCommandLine.CL_OPT_STRIP_QUERY_PARAMS, "utm_*, fbclid,," };
+        CrawldaddyCommandLine cl = parseAndAssertNonNullCommandLine(args);
+        assertTrue("Sort query parameters not set", cl.isSortQueryParametersSet());
+        assertEquals("Unexpected stripped query parameters", Arrays.asList("utm_*", "fbclid"), cl.getStrippedQueryParameters());
+        assertTrue("Url normalization turned off", !cl.isNoUrlNormalizationSet());
+    }
+    
     private String[] createCommandLineArgs(String... args) {
         return createCommandLineArgs(true, args);
     }
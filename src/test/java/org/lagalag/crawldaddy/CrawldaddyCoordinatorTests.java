@@ -0,0 +1,113 @@
+package org.lagalag.crawldaddy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Test;
+import org.lagalag.crawldaddy.pages.FetchPhase;
+import org.lagalag.crawldaddy.pages.PageFetchEngine;
+import org.lagalag.crawldaddy.util.ParsedUrl;
+
+/**
+ * Junit tests for crawls of a SyntheticSite served on localhost, distributed over several workers (in this JVM, but
+ * talking to the coordinator over TCP as separate processes would).
+ */
+public class CrawldaddyCoordinatorTests {
+    @Test
+    public void testPartitioner() {
+        int numPartitions = 4;
+        CrawlPartitioner partitioner = new CrawlPartitioner(numPartitions, true);
+        int[] numUrls = new int[numPartitions];
+        for (int i = 0; i < 10000; i++) {
+            ParsedUrl url = new ParsedUrl("http://www.example.com/section" + (i % 10) + "/page" + i + ".html");
+            int partition = partitioner.partitionOf(url);
+            assertEquals(partition, partitioner.partitionOf(new ParsedUrl(url.getUrl())));
+            numUrls[partition]++;
+        }
+        for (int i = 0; i < numPartitions; i++) {
+            assertTrue("Uneven partitions: " + numUrls[i], Math.abs(numUrls[i] - 2500) < 250);
+        }
+        // By host, all the pages of a host land together.
+        CrawlPartitioner hostPartitioner = new CrawlPartitioner(numPartitions, false);
+        assertEquals(hostPartitioner.partitionOf(new ParsedUrl("http://www.example.com/a")),
+                     hostPartitioner.partitionOf(new ParsedUrl("http://WWW.example.com/b?c=d")));
+    }
+
+    @Test
+    public void testDistributedCrawl() throws Exception {
+        doDistributedCrawl(PageFetchEngine.JSOUP, 3);
+    }
+
+    @Test
+    public void testDistributedCrawlAsyncEngine() throws Exception {
+        doDistributedCrawl(PageFetchEngine.ASYNC, 2);
+    }
+
+    @Test
+    public void testSingleWorker() throws Exception {
+        doDistributedCrawl(PageFetchEngine.JSOUP, 1);
+    }
+
+    @Test
+    public void testLimitOverAllWorkers() throws Exception {
+        SyntheticSite site = new SyntheticSite(400, 4);
+        try (SyntheticSiteServer server = new SyntheticSiteServer(site)) {
+            CrawldaddyParams params = new CrawldaddyParams(server.getUrl());
+            params.setMaxConcurrentFetches(8);
+            params.setMaxInternalLinks(100);
+            List<CompletableFuture<CrawldaddyResult>> workerCrawls = new ArrayList<>();
+            CrawldaddyResult result = crawlDistributed(params, 3, workerCrawls);
+            // Exactly the limit, however unevenly the links fall into the partitions.
+            assertEquals(100, result.getInternalLinkCount());
+            assertEquals(101, result.getPagesFetched());
+        }
+    }
+
+    private void doDistributedCrawl(PageFetchEngine engine, int numWorkers) throws Exception {
+        SyntheticSite site = new SyntheticSite(400, 4);
+        site.setNotFoundRatio(0.02);
+        site.setRedirectRatio(0.05);
+        SyntheticSite.Crawl expected = site.crawl();
+        try (SyntheticSiteServer server = new SyntheticSiteServer(site)) {
+            CrawldaddyParams params = new CrawldaddyParams(server.getUrl());
+            params.setPageFetchEngine(engine);
+            params.setMaxConcurrentFetches(8);
+            List<CompletableFuture<CrawldaddyResult>> workerCrawls = new ArrayList<>();
+            CrawldaddyResult result = crawlDistributed(params, numWorkers, workerCrawls);
+
+            assertTrue("Root page not fetched", result.isHttpStatusOK());
+            assertEquals(expected.getNumPagesFetched(), result.getPagesFetched());
+            assertEquals(expected.getNumInternalLinks(), result.getInternalLinkCount());
+            assertEquals(expected.getNumBrokenLinks(), result.getBrokenLinkCount());
+            assertEquals(expected.getNumExternalLinks(), result.getExternalLinkCount());
+            assertEquals(1, result.getExternalScriptsCount());
+            // Each page fetched exactly once, by whichever worker owns it; the timings of all of them are merged.
+            int numPagesFetched = 0;
+            long numFetchesTimed = 0;
+            for (CompletableFuture<CrawldaddyResult> workerCrawl : workerCrawls) {
+                CrawldaddyResult workerResult = workerCrawl.get();
+                assertTrue("Worker fetched nothing", workerResult.getPagesFetched() > 0);
+                numPagesFetched += workerResult.getPagesFetched();
+                numFetchesTimed += workerResult.getFetchTimings().getHistogram(FetchPhase.TTFB).getCount();
+            }
+            assertEquals(expected.getNumPagesFetched(), numPagesFetched);
+            assertTrue("Fetches not timed", numFetchesTimed > 0);
+            assertEquals(numFetchesTimed, result.getFetchTimings().getHistogram(FetchPhase.TTFB).getCount());
+        }
+    }
+
+    private static CrawldaddyResult crawlDistributed(CrawldaddyParams params, int numWorkers, 
+                                                     List<CompletableFuture<CrawldaddyResult>> workerCrawls) throws Exception {
+        CrawldaddyCoordinator coordinator = new CrawldaddyCoordinator(params, numWorkers, 0);
+        CompletableFuture<CrawldaddyResult> crawl = coordinator.crawl();
+        for (int i = 0; i < numWorkers; i++) {
+            workerCrawls.add(new CrawldaddyWorker(params, new InetSocketAddress("127.0.0.1", coordinator.getPort())).crawl());
+        }
+        return crawl.get();
+    }
+}
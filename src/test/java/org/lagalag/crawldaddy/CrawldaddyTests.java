@@ -8,6 +8,7 @@ import java.util.Set;
 import java.util.concurrent.Future;
 
 import org.junit.Test;
+import org.lagalag.crawldaddy.pages.PageFetchEngine;
 
 /**
  * Good ole junit tests to exercise our web crawling.
@@ -27,6 +28,35 @@ public class CrawldaddyTests {
         assertTrue("Bad url did not result in page fetch exception", cdr.hasPageFetchException());
     }
 
+    @Test
+    public void testNullUrlAsyncEngine() {
+        CrawldaddyResult cdr = doCrawl(null, null, PageFetchEngine.ASYNC);
+        assertNotNull("Crawling url=null returns null result", cdr);
+        assertTrue("Null url did not result in page fetch exception", cdr.hasPageFetchException());
+    }
+    
+    @Test
+    public void testBadUrlsAsyncEngine() {
+        CrawldaddyResult cdr = doCrawl("fakeurl", null, PageFetchEngine.ASYNC);
+        assertNotNull("Crawling bad url returns null result", cdr);
+        assertTrue("Bad url did not result in page fetch exception", cdr.hasPageFetchException());
+    }
+
+    @Test
+    public void testCrawlLocalSiteAsyncEngine() throws Exception {
+        SyntheticSite site = new SyntheticSite(20, 3);
+        site.setExternalLinksPerPage(0);
+        SyntheticSite.Crawl expected = site.crawl();
+        try (SyntheticSiteServer server = new SyntheticSiteServer(site)) {
+            CrawldaddyResult cdr = doCrawl(server.getUrl(), null, PageFetchEngine.ASYNC);
+            assertFalse("Page fetch exception crawling local site", cdr.hasPageFetchException());
+            assertEquals(HttpURLConnection.HTTP_OK, cdr.getHttpStatusCode());
+            assertEquals(expected.getNumPagesFetched(), cdr.getPagesFetched());
+            assertEquals(expected.getNumInternalLinks(), cdr.getInternalLinkCount());
+            assertEquals(1, cdr.getExternalScriptsCount());
+        }
+    }
+
     @Test
     public void test404() {
         CrawldaddyResult cdr = doCrawl("http://example.org/this-is-a-404");
@@ -80,11 +110,16 @@ public class CrawldaddyTests {
     }
     
     private CrawldaddyResult doCrawl(String url, Integer maxInternalLinks) {
+        return doCrawl(url, maxInternalLinks, null);
+    }
+    
+    private CrawldaddyResult doCrawl(String url, Integer maxInternalLinks, PageFetchEngine engine) {
         System.out.println("Crawling: " + url);
         CrawldaddyParams params = new CrawldaddyParams(url);
         if (maxInternalLinks != null) {
             params.setMaxInternalLinks(maxInternalLinks);
         }
+        params.setPageFetchEngine(engine);
         Crawldaddy cd = new Crawldaddy(params);
         Future<CrawldaddyResult> cdf = cd.crawlOnce();
         assertNotNull("Returned Future is null", cdf);
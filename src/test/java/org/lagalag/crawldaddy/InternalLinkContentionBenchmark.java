@@ -0,0 +1,151 @@
+package org.lagalag.crawldaddy;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.lagalag.crawldaddy.links.BloomVisitedUrlSet;
+import org.lagalag.crawldaddy.links.DedupMode;
+import org.lagalag.crawldaddy.links.ExactVisitedUrlSet;
+import org.lagalag.crawldaddy.links.FingerprintVisitedUrlSet;
+import org.lagalag.crawldaddy.links.VisitedUrlSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH benchmark of CrawldaddyResult.checkAndAddInternalLink called from 1, 2, 4 and 8 threads at once, for each 
+ * dedup mode, against a baseline ("synchronized") of the check it replaced: size() and putIfAbsent on a 
+ * ConcurrentHashMap, under a lock on the map. As in a real crawl, most urls offered are duplicates; the set of 
+ * visited urls starts empty on each iteration. Goes through CrawldaddyResult (and its result sink check), as the 
+ * crawl does.
+ * Not a unit test; run with the benchmarks profile (see README), or:
+ * 
+ *     mvn test-compile
+ *     java -cp target/classes:target/test-classes:<test classpath> org.lagalag.crawldaddy.InternalLinkContentionBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InternalLinkContentionBenchmark {
+    private static final int NUM_DISTINCT_URLS = 200000;
+    private static final int MAX_INTERNAL_LINKS = 100000;
+    private static final long DEDUP_MEMORY_BUDGET_BYTES = 16L * 1024 * 1024;
+    private static final double DEDUP_FALSE_POSITIVE_RATE = 0.001;
+    
+    private static final String SYNCHRONIZED_BASELINE = "synchronized";
+    
+    @Param({ SYNCHRONIZED_BASELINE, "exact", "fingerprint", "bloom" })
+    private String dedupMode;
+    
+    private String[] urls;
+    private CrawldaddyResult result;
+    private SynchronizedInternalLinks baseline;
+    
+    @Setup(Level.Trial)
+    public void createUrls() {
+        urls = new String[NUM_DISTINCT_URLS];
+        for (int i = 0; i < urls.length; i++) {
+            urls[i] = "https://www.example.org/section" + (i % 100) + "/page" + i + ".html";
+        }
+    }
+    
+    @Setup(Level.Iteration)
+    public void createResult() {
+        if (SYNCHRONIZED_BASELINE.equals(dedupMode)) {
+            baseline = new SynchronizedInternalLinks();
+        } else {
+            result = new CrawldaddyResult(urls[0], createVisitedUrlSet(DedupMode.fromName(dedupMode)));
+        }
+    }
+    
+    @TearDown(Level.Iteration)
+    public void closeResult() {
+        if (result != null) {
+            result.crawlFinished();
+        }
+        result = null;
+        baseline = null;
+    }
+    
+    @Benchmark
+    @Threads(1)
+    public boolean threads1() {
+        return checkAndAddInternalLink();
+    }
+    
+    @Benchmark
+    @Threads(2)
+    public boolean threads2() {
+        return checkAndAddInternalLink();
+    }
+    
+    @Benchmark
+    @Threads(4)
+    public boolean threads4() {
+        return checkAndAddInternalLink();
+    }
+    
+    @Benchmark
+    @Threads(8)
+    public boolean threads8() {
+        return checkAndAddInternalLink();
+    }
+    
+    private boolean checkAndAddInternalLink() {
+        String url = urls[ThreadLocalRandom.current().nextInt(urls.length)];
+        if (baseline != null) {
+            return baseline.checkAndAddInternalLink(url, MAX_INTERNAL_LINKS);
+        }
+        return result.checkAndAddInternalLink(url, MAX_INTERNAL_LINKS);
+    }
+    
+    private static VisitedUrlSet createVisitedUrlSet(DedupMode dedupMode) {
+        switch (dedupMode) {
+        case FINGERPRINT:
+            return new FingerprintVisitedUrlSet(MAX_INTERNAL_LINKS, DEDUP_MEMORY_BUDGET_BYTES, 0);
+        case BLOOM:
+            return new BloomVisitedUrlSet(MAX_INTERNAL_LINKS, DEDUP_FALSE_POSITIVE_RATE, DEDUP_MEMORY_BUDGET_BYTES);
+        case EXACT:
+        default:
+            return new ExactVisitedUrlSet();
+        }
+    }
+    
+    /* CrawldaddyResult's internal links as they were before the VisitedUrlSet: one lock for every check. */
+    private static class SynchronizedInternalLinks {
+        private final ConcurrentMap<String,Boolean> intLinks = new ConcurrentHashMap<>();
+        
+        boolean checkAndAddInternalLink(String url, int maxInternalLinks) {
+            synchronized(intLinks) {
+                if (intLinks.size() < maxInternalLinks) {
+                    // Return true only if the given link is not already in the map 
+                    return (intLinks.putIfAbsent(url, Boolean.TRUE) == null);
+                }
+            }
+            return false;
+        }
+    }
+    
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(InternalLinkContentionBenchmark.class.getSimpleName()).build()).run();
+    }
+}
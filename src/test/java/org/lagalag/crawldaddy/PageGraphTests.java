@@ -0,0 +1,104 @@
+package org.lagalag.crawldaddy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Junit tests for the page graph of incremental crawls (no network access needed).
+ */
+public class PageGraphTests {
+    private static final String URL = "http://example.org/";
+    
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+    
+    @Test
+    public void testSaveAndLoad() throws Exception {
+        File file = new File(tempFolder.getRoot(), "graph");
+        assertNull("Loaded a graph that was never saved", PageGraph.load(file));
+        PageGraph graph = new PageGraph(URL);
+        graph.put(page(URL, 1, Arrays.asList(URL + "a", URL + "b"), Collections.singletonList("http://other.org/")));
+        graph.put(PageGraph.PageRecord.onHttpNotOK(URL + "b", 404));
+        graph.save(file);
+        
+        PageGraph loadedGraph = PageGraph.load(file);
+        assertEquals(URL, loadedGraph.getUrl());
+        assertEquals(2, loadedGraph.size());
+        PageGraph.PageRecord page = loadedGraph.get(URL);
+        assertEquals(1, page.getNumChanges());
+        assertEquals(42, page.getContentFingerprint());
+        assertEquals(Arrays.asList(URL + "a", URL + "b"), page.getInternalLinks());
+        assertEquals(Collections.singletonList("http://other.org/"), page.getExternalLinks());
+        assertTrue(loadedGraph.get(URL + "b").isBroken());
+    }
+    
+    @Test
+    public void testPriorityOrder() {
+        PageGraph graph = new PageGraph(URL);
+        graph.put(page(URL, 9, Arrays.asList(URL + "a", URL + "b", URL + "c"), Collections.emptyList()));
+        graph.put(page(URL + "a", 0, Collections.singletonList(URL + "c"), Collections.emptyList()));
+        graph.put(page(URL + "b", 2, Collections.emptyList(), Collections.emptyList()));
+        graph.put(page(URL + "c", 0, Arrays.asList(URL + "a", URL + "b"), Collections.emptyList()));
+        List<String> expectedOrder = Arrays.asList(URL + "b", URL + "c", URL + "a");
+        assertEquals("Pages not in priority order (initial page excluded)", expectedOrder, graph.getUrlsByPriority());
+    }
+    
+    @Test
+    public void testOrphansNotKept() throws Exception {
+        PageGraph graph = new PageGraph(URL);
+        graph.put(page(URL, 0, Arrays.asList(URL + "a", URL + "missing", URL + "error"), Collections.emptyList()));
+        graph.put(page(URL + "a", 0, Collections.emptyList(), Collections.emptyList()));
+        graph.put(PageGraph.PageRecord.onHttpNotOK(URL + "missing", 404));
+        graph.put(PageGraph.PageRecord.onHttpNotOK(URL + "error", 500));
+        // Nothing links to them any more.
+        graph.put(page(URL + "orphan", 5, Collections.emptyList(), Collections.emptyList()));
+        graph.put(PageGraph.PageRecord.onHttpNotOK(URL + "deleted-orphan", 404));
+        assertEquals(Collections.singletonList(URL + "a"), graph.getUrlsByPriority());
+        
+        File file = new File(tempFolder.getRoot(), "graph");
+        graph.save(file);
+        PageGraph loadedGraph = PageGraph.load(file);
+        assertEquals(3, loadedGraph.size());
+        assertNull(loadedGraph.get(URL + "orphan"));
+        assertNull(loadedGraph.get(URL + "deleted-orphan"));
+        assertNull(loadedGraph.get(URL + "error"));
+        assertEquals(Collections.singleton(URL + "missing"), loadedGraph.getBrokenLinks());
+    }
+    
+    @Test
+    public void testDiff() {
+        PageGraph previousGraph = new PageGraph(URL);
+        previousGraph.put(page(URL, 0, Arrays.asList(URL + "a", URL + "b"), Collections.singletonList("http://old.org/")));
+        previousGraph.put(page(URL + "a", 0, Collections.emptyList(), Collections.singletonList("http://a.org/")));
+        previousGraph.put(page(URL + "b", 0, Collections.emptyList(), Collections.emptyList()));
+        
+        PageGraph currentGraph = new PageGraph(URL);
+        currentGraph.put(page(URL, 1, Arrays.asList(URL + "b", URL + "c"), Collections.singletonList("http://new.org/")));
+        // No longer linked to: neither it nor its links count any more.
+        currentGraph.put(page(URL + "a", 0, Collections.emptyList(), Collections.singletonList("http://a.org/")));
+        currentGraph.put(PageGraph.PageRecord.onHttpNotOK(URL + "b", 404));
+        currentGraph.put(page(URL + "c", 0, Collections.emptyList(), Collections.emptyList()));
+        
+        CrawlDiff diff = CrawlDiff.between(previousGraph, currentGraph);
+        assertEquals(Arrays.asList("http://example.org/c", "http://new.org/"), 
+                     Arrays.asList(diff.getNewLinks().toArray()));
+        assertEquals(Arrays.asList("http://a.org/", "http://example.org/a", "http://old.org/"), 
+                     Arrays.asList(diff.getRemovedLinks().toArray()));
+        assertEquals(Collections.singleton(URL + "b"), diff.getNewlyBrokenLinks());
+        assertTrue(CrawlDiff.between(currentGraph, currentGraph).isEmpty());
+    }
+    
+    private static PageGraph.PageRecord page(String url, int numChanges, List<String> internalLinks, List<String> externalLinks) {
+        return new PageGraph.PageRecord(url, 200, 42, numChanges, internalLinks, externalLinks, Collections.emptyList());
+    }
+}
@@ -0,0 +1,80 @@
+package org.lagalag.crawldaddy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.net.HttpURLConnection;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.lagalag.crawldaddy.pages.RobotsRules;
+import org.lagalag.crawldaddy.pages.RobotsTxtCache;
+import org.lagalag.crawldaddy.util.ParsedUrl;
+
+/**
+ * Junit tests for the fetching of robots.txt by the RobotsTxtCache, from SyntheticSites served on localhost.
+ */
+public class RobotsTxtCacheTests {
+    private static final String ROBOTS_TXT_PATH = "/robots.txt";
+    
+    private SyntheticSiteServer server;
+    private SyntheticSiteServer otherServer;
+    
+    @Before
+    public void startServers() throws Exception {
+        server = new SyntheticSiteServer(new SyntheticSite(10, 2));
+        otherServer = new SyntheticSiteServer(new SyntheticSite(10, 2));
+    }
+    
+    @After
+    public void stopServers() {
+        server.close();
+        otherServer.close();
+    }
+    
+    @Test
+    public void testFound() {
+        server.setRobotsTxt("User-agent: *\nDisallow: /p/\nCrawl-delay: 1\n");
+        RobotsTxtCache cache = new RobotsTxtCache();
+        assertFalse(cache.isAllowed(new ParsedUrl(server.getUrl() + "p/1.html")));
+        assertTrue(cache.isAllowed(new ParsedUrl(server.getUrl())));
+        assertEquals(1.0, cache.getCrawlDelaySeconds("127.0.0.1"), 0.0);
+        // Fetched once.
+        cache.isAllowed(new ParsedUrl(server.getUrl() + "p/2.html"));
+        assertEquals(1, server.getNumRequests());
+    }
+    
+    @Test
+    public void testMissing() {
+        assertSame(RobotsRules.ALLOW_ALL, new RobotsTxtCache().getRules(new ParsedUrl(server.getUrl())));
+    }
+    
+    @Test
+    public void testUnavailable() {
+        server.setErrorStatus(ROBOTS_TXT_PATH, HttpURLConnection.HTTP_UNAVAILABLE);
+        assertSame(RobotsRules.DISALLOW_ALL, new RobotsTxtCache().getRules(new ParsedUrl(server.getUrl())));
+    }
+    
+    @Test
+    public void testRedirected() {
+        // To another origin (as from http to https), then within it.
+        server.setRedirect(ROBOTS_TXT_PATH, otherServer.getUrl() + "moved/robots.txt");
+        otherServer.setRedirect("/moved/robots.txt", ROBOTS_TXT_PATH);
+        otherServer.setRobotsTxt("User-agent: *\nDisallow: /p/\n");
+        RobotsRules rules = new RobotsTxtCache().getRules(new ParsedUrl(server.getUrl()));
+        assertFalse(rules.isAllowed("/p/1.html"));
+        assertEquals(2, otherServer.getNumRequests());
+    }
+    
+    @Test
+    public void testTooManyRedirects() {
+        // Round and round: unavailable, like a missing robots.txt.
+        server.setRedirect(ROBOTS_TXT_PATH, otherServer.getUrl() + "robots.txt");
+        otherServer.setRedirect(ROBOTS_TXT_PATH, server.getUrl() + "robots.txt");
+        assertSame(RobotsRules.ALLOW_ALL, new RobotsTxtCache().getRules(new ParsedUrl(server.getUrl())));
+        assertEquals(6, server.getNumRequests() + otherServer.getNumRequests());
+    }
+}
@@ -0,0 +1,280 @@
+package org.lagalag.crawldaddy;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A generated web site, for crawling offline: pages are made up on the fly from their number, so a site of any size 
+ * costs no memory to serve. The root page is "/" and the others are "/p/N.html" (N from 1 to numPages - 1). Page N 
+ * links to the fanOut pages that follow N * fanOut (wrapping around), which makes every page reachable through a 
+ * tree, plus the links that wrap around. A given fraction of the links lead to missing pages ("/missing/N.html", 
+ * HTTP 404), and another to redirects ("/r/N.html", HTTP 301 to page N). Pages are padded to a given size, and 
+ * their responses delayed by a given latency. Which links are broken or redirected is fixed by the seed, so the 
+ * site, and what a crawl of it finds (see crawl()), is the same from one run to the next.
+ */
+class SyntheticSite {
+    static final int DEFAULT_FAN_OUT = 10;
+    static final int DEFAULT_PAGE_SIZE = 8 * 1024;
+    static final int DEFAULT_EXTERNAL_LINKS_PER_PAGE = 2;
+    static final int NUM_EXTERNAL_HOSTS = 500;
+    static final String SCRIPT_PATH = "/js/site.js";
+    
+    private static final String PAGE_PREFIX = "/p/";
+    private static final String REDIRECT_PREFIX = "/r/";
+    private static final String MISSING_PREFIX = "/missing/";
+    private static final String PAGE_SUFFIX = ".html";
+    private static final String FILLER = "<p>Lorem ipsum dolor sit amet, consectetur adipiscing elit, sed do eiusmod tempor "
+                                         + "incididunt ut labore et dolore magna aliqua. Ut enim ad minim veniam.</p>\n";
+    
+    /** How response delays are spread around the mean latency. */
+    enum LatencyDistribution {
+        /** Every response is delayed by the mean latency. */
+        FIXED,
+        /** Delays are spread evenly between 0 and twice the mean latency. */
+        UNIFORM,
+        /** Delays are exponentially distributed: most responses are quick, a few are very slow. */
+        EXPONENTIAL;
+        
+        static LatencyDistribution fromName(String name) {
+            if (name == null) {
+                return null;
+            }
+            for (LatencyDistribution distribution : values()) {
+                if (distribution.name().equalsIgnoreCase(name.trim())) {
+                    return distribution;
+                }
+            }
+            return null;
+        }
+    }
+    
+    private final int numPages;
+    private final int fanOut;
+    private int pageSize = DEFAULT_PAGE_SIZE;
+    private int externalLinksPerPage = DEFAULT_EXTERNAL_LINKS_PER_PAGE;
+    private double notFoundRatio;
+    private double redirectRatio;
+    private double meanLatencyMillis;
+    private LatencyDistribution latencyDistribution = LatencyDistribution.FIXED;
+    private long seed;
+    
+    SyntheticSite(int numPages, int fanOut) {
+        this.numPages = Math.max(1, numPages);
+        this.fanOut = Math.max(1, fanOut);
+    }
+    
+    int getNumPages() {
+        return numPages;
+    }
+    
+    void setPageSize(int pageSize) {
+        this.pageSize = Math.max(0, pageSize);
+    }
+    
+    void setExternalLinksPerPage(int externalLinksPerPage) {
+        this.externalLinksPerPage = Math.max(0, externalLinksPerPage);
+    }
+    
+    void setNotFoundRatio(double notFoundRatio) {
+        this.notFoundRatio = Math.max(0, Math.min(1, notFoundRatio));
+    }
+    
+    void setRedirectRatio(double redirectRatio) {
+        this.redirectRatio = Math.max(0, Math.min(1, redirectRatio));
+    }
+    
+    void setLatency(double meanLatencyMillis, LatencyDistribution latencyDistribution) {
+        this.meanLatencyMillis = Math.max(0, meanLatencyMillis);
+        if (latencyDistribution != null) {
+            this.latencyDistribution = latencyDistribution;
+        }
+    }
+    
+    void setSeed(long seed) {
+        this.seed = seed;
+    }
+    
+    /**
+     * Returns the page number served at the given path, or -1 if there is no page there.
+     */
+    int getPageNumber(String path) {
+        if ("/".equals(path)) {
+            return 0;
+        }
+        int pageNumber = parseNumber(path, PAGE_PREFIX);
+        return ((pageNumber > 0) && (pageNumber < numPages) ? pageNumber : -1);
+    }
+    
+    /**
+     * Returns the path to which the given path redirects, or null if it doesn't.
+     */
+    String getRedirectLocation(String path) {
+        int pageNumber = parseNumber(path, REDIRECT_PREFIX);
+        return ((pageNumber > 0) && (pageNumber < numPages) ? pathOf(pageNumber) : null);
+    }
+    
+    /**
+     * Returns a sitemap (sitemaps.org XML) listing every page of the site, for the site served at siteUrl.
+     */
+    byte[] getSitemap(String siteUrl) {
+        String origin = (siteUrl.endsWith("/") ? siteUrl.substring(0, siteUrl.length() - 1) : siteUrl);
+        StringBuilder sitemap = new StringBuilder(numPages * 64);
+        sitemap.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+               .append("<urlset xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">\n");
+        for (int pageNumber = 0; pageNumber < numPages; pageNumber++) {
+            sitemap.append("<url><loc>").append(origin).append(pathOf(pageNumber)).append("</loc></url>\n");
+        }
+        return sitemap.append("</urlset>\n").toString().getBytes(StandardCharsets.UTF_8);
+    }
+    
+    byte[] getPage(int pageNumber) {
+        StringBuilder page = new StringBuilder(pageSize + 1024);
+        page.append("<!DOCTYPE html>\n<html><head><title>Page ").append(pageNumber).append("</title>\n")
+            .append("<script src=\"").append(SCRIPT_PATH).append("\"></script></head>\n<body>\n<ul>\n");
+        for (String link : getLinks(pageNumber)) {
+            page.append("<li><a href=\"").append(link).append("\">").append(link).append("</a></li>\n");
+        }
+        page.append("</ul>\n<p>");
+        for (String externalLink : getExternalLinks(pageNumber)) {
+            page.append("<a href=\"").append(externalLink).append("\">elsewhere</a> ");
+        }
+        page.append("</p>\n");
+        while (page.length() < pageSize) {
+            page.append(FILLER);
+        }
+        return page.append("</body></html>\n").toString().getBytes(StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * Returns how long to delay the next response, in milliseconds.
+     */
+    long nextLatencyMillis() {
+        if (meanLatencyMillis <= 0) {
+            return 0;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        switch (latencyDistribution) {
+        case UNIFORM:
+            return Math.round(random.nextDouble() * 2 * meanLatencyMillis);
+        case EXPONENTIAL:
+            return Math.round(-Math.log(1 - random.nextDouble()) * meanLatencyMillis);
+        case FIXED:
+        default:
+            return Math.round(meanLatencyMillis);
+        }
+    }
+    
+    /**
+     * Works out what a crawl of the whole site (from "/") should find, by walking the site's links.
+     */
+    Crawl crawl() {
+        Crawl crawl = new Crawl();
+        Set<String> visitedPaths = new HashSet<>();
+        Queue<String> pathsToVisit = new ArrayDeque<>();
+        visitedPaths.add("/");
+        pathsToVisit.add("/");
+        String path;
+        while ((path = pathsToVisit.poll()) != null) {
+            String redirectLocation = getRedirectLocation(path);
+            int pageNumber = getPageNumber(redirectLocation != null ? redirectLocation : path);
+            if (pageNumber < 0) {
+                crawl.numBrokenLinks++;
+                continue;
+            }
+            for (String link : getLinks(pageNumber)) {
+                if (visitedPaths.add(link)) {
+                    pathsToVisit.add(link);
+                }
+            }
+            for (String externalLink : getExternalLinks(pageNumber)) {
+                crawl.externalLinks.add(externalLink);
+            }
+        }
+        crawl.numPagesFetched = visitedPaths.size();
+        return crawl;
+    }
+    
+    /** What a crawl of the site should find. */
+    static class Crawl {
+        private int numPagesFetched;
+        private int numBrokenLinks;
+        private final Set<String> externalLinks = new HashSet<>();
+        
+        int getNumPagesFetched() {
+            return numPagesFetched;
+        }
+        
+        /** All the urls fetched but the initial one. */
+        int getNumInternalLinks() {
+            return numPagesFetched - 1;
+        }
+        
+        int getNumBrokenLinks() {
+            return numBrokenLinks;
+        }
+        
+        int getNumExternalLinks() {
+            return externalLinks.size();
+        }
+    }
+    
+    private String[] getLinks(int pageNumber) {
+        if (numPages == 1) {
+            return new String[0];
+        }
+        String[] links = new String[fanOut];
+        for (int i = 0; i < fanOut; i++) {
+            long linkNumber = (long) pageNumber * fanOut + i;
+            // Page 0 is the root, which nothing links back to.
+            int target = (int) (linkNumber % (numPages - 1)) + 1;
+            double kind = toUnitInterval(mix(linkNumber ^ seed));
+            if (kind < notFoundRatio) {
+                links[i] = MISSING_PREFIX + target + PAGE_SUFFIX;
+            } else if (kind < notFoundRatio + redirectRatio) {
+                links[i] = REDIRECT_PREFIX + target + PAGE_SUFFIX;
+            } else {
+                links[i] = pathOf(target);
+            }
+        }
+        return links;
+    }
+    
+    private String[] getExternalLinks(int pageNumber) {
+        String[] externalLinks = new String[externalLinksPerPage];
+        for (int i = 0; i < externalLinksPerPage; i++) {
+            long linkNumber = (long) pageNumber * externalLinksPerPage + i;
+            externalLinks[i] = "https://external-" + (linkNumber % NUM_EXTERNAL_HOSTS) + ".example.com/";
+        }
+        return externalLinks;
+    }
+    
+    private static String pathOf(int pageNumber) {
+        return (pageNumber == 0 ? "/" : PAGE_PREFIX + pageNumber + PAGE_SUFFIX);
+    }
+    
+    private static int parseNumber(String path, String prefix) {
+        if ((path == null) || !path.startsWith(prefix) || !path.endsWith(PAGE_SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(path.substring(prefix.length(), path.length() - PAGE_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+    
+    /* SplitMix64 finalizer. */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+    
+    private static double toUnitInterval(long bits) {
+        return (bits >>> 11) * 0x1.0p-53;
+    }
+}
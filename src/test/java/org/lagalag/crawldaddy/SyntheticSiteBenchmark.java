@@ -0,0 +1,194 @@
+package org.lagalag.crawldaddy;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.lagalag.crawldaddy.pages.FetchPhase;
+import org.lagalag.crawldaddy.util.LatencyHistogram;
+
+/**
+ * Crawls a SyntheticSite served on localhost from end to end, and reports the crawl rate (pages/s), along with 
+ * whether the crawl found what it should have. Unlike crawls of live sites, the numbers are reproducible. Options 
+ * after "--" are passed on to the crawler, as on the crawldaddy command line (e.g. "-- -e async -t 8"). With 
+ * -workers, the crawl is distributed over that many worker processes (started with the same crawler options, 
+ * and logging to the temp directory), with the coordinator in this one. Every page is listed in /sitemap.xml, for
+ * crawls seeded with --sitemaps.
+ * Not a unit test; run with:
+ * 
+ *     mvn test-compile
+ *     java -cp target/classes:target/test-classes:<test classpath> org.lagalag.crawldaddy.SyntheticSiteBenchmark \
+ *          -pages 100000 -fanout 10 -latency 5 -notfound 0.01 -redirects 0.02 -- -e async -hc 64
+ */
+public class SyntheticSiteBenchmark {
+    private static final String CRAWLER_OPTIONS_SEPARATOR = "--";
+    private static final int DEFAULT_NUM_PAGES = 10000;
+    
+    private static final Options OPTIONS = new Options();
+    static {
+        OPTIONS.addOption(Option.builder("pages").hasArg().argName("NUM")
+                                .desc("Number of pages on the site (default=" + DEFAULT_NUM_PAGES + ").").build());
+        OPTIONS.addOption(Option.builder("fanout").hasArg().argName("NUM")
+                                .desc("Number of internal links per page (default=" + SyntheticSite.DEFAULT_FAN_OUT + ").").build());
+        OPTIONS.addOption(Option.builder("extlinks").hasArg().argName("NUM")
+                                .desc("Number of external links per page (default=" + SyntheticSite.DEFAULT_EXTERNAL_LINKS_PER_PAGE + ").").build());
+        OPTIONS.addOption(Option.builder("size").hasArg().argName("BYTES")
+                                .desc("Size of each page (default=" + SyntheticSite.DEFAULT_PAGE_SIZE + ").").build());
+        OPTIONS.addOption(Option.builder("latency").hasArg().argName("MS")
+                                .desc("Mean delay of each response (default=0).").build());
+        OPTIONS.addOption(Option.builder("latencydist").hasArg().argName("DIST")
+                                .desc("Distribution of response delays: fixed, uniform or exponential (default=fixed).").build());
+        OPTIONS.addOption(Option.builder("notfound").hasArg().argName("RATIO")
+                                .desc("Fraction of links that lead to a 404 (default=0).").build());
+        OPTIONS.addOption(Option.builder("redirects").hasArg().argName("RATIO")
+                                .desc("Fraction of links that lead to a 301 redirect (default=0).").build());
+        OPTIONS.addOption(Option.builder("seed").hasArg().argName("SEED")
+                                .desc("Seed that picks which links are broken or redirected (default=0).").build());
+        OPTIONS.addOption(Option.builder("workers").hasArg().argName("NUM")
+                                .desc("Distribute the crawl over NUM worker processes (default=0: crawl in this process).").build());
+        OPTIONS.addOption(Option.builder("serverthreads").hasArg().argName("NUM")
+                                .desc("Number of server threads (default=" + SyntheticSiteServer.DEFAULT_NUM_THREADS + ").").build());
+    }
+    
+    public static void main(String[] args) throws Exception {
+        List<String> siteArgs = new ArrayList<>(Arrays.asList(args));
+        List<String> crawlerArgs = new ArrayList<>();
+        int separatorIndex = siteArgs.indexOf(CRAWLER_OPTIONS_SEPARATOR);
+        if (separatorIndex >= 0) {
+            crawlerArgs.addAll(siteArgs.subList(separatorIndex + 1, siteArgs.size()));
+            siteArgs = siteArgs.subList(0, separatorIndex);
+        }
+        SyntheticSite site;
+        int numServerThreads;
+        int numWorkers;
+        try {
+            CommandLine commandLine = new DefaultParser().parse(OPTIONS, siteArgs.toArray(new String[0]));
+            site = createSite(commandLine);
+            numServerThreads = Integer.parseInt(commandLine.getOptionValue("serverthreads", 
+                                                                           String.valueOf(SyntheticSiteServer.DEFAULT_NUM_THREADS)));
+            numWorkers = getInt(commandLine, "workers", 0);
+        } catch (ParseException | NumberFormatException e) {
+            System.err.println(e.getMessage());
+            new HelpFormatter().printHelp("SyntheticSiteBenchmark [options] [-- crawler options]", OPTIONS);
+            return;
+        }
+        
+        System.out.println("Working out what the crawl should find...");
+        SyntheticSite.Crawl expected = site.crawl();
+        try (SyntheticSiteServer server = new SyntheticSiteServer(site, numServerThreads)) {
+            server.setResource("/sitemap.xml", "application/xml", site.getSitemap(server.getUrl()));
+            crawlerArgs.add(server.getUrl());
+            CrawldaddyCommandLine crawlerCommandLine = CrawldaddyCommandLine.parse(crawlerArgs.toArray(new String[0]));
+            CrawldaddyParams params = (crawlerCommandLine != null ? new CrawldaddyApp().createParams(crawlerCommandLine) : null);
+            if (params == null) {
+                CrawldaddyCommandLine.showHelp(System.err);
+                return;
+            }
+            if (!crawlerCommandLine.isMaxInternalLinksSet()) {
+                int maxInternalLinks = expected.getNumInternalLinks() + 1;
+                params.setMaxInternalLinks(maxInternalLinks);
+                crawlerArgs.addAll(Arrays.asList("-" + CrawldaddyCommandLine.CL_OPT_MAX_INT_LINKS, String.valueOf(maxInternalLinks)));
+            }
+            if (numWorkers > 0) {
+                System.out.println("Crawling " + site.getNumPages() + " pages at " + server.getUrl() + " with " + numWorkers 
+                                   + " worker process(es)...");
+                report(1, crawlDistributed(params, crawlerArgs, numWorkers), expected);
+            } else {
+                System.out.println("Crawling " + site.getNumPages() + " pages at " + server.getUrl() + "...");
+                CrawldaddyResultSet results = new Crawldaddy(params).crawl().get();
+                int pass = 1;
+                for (CrawldaddyResult result : results) {
+                    report(pass++, result, expected);
+                }
+            }
+            System.out.printf("Server: %d request(s), %.1f MB sent%n", server.getNumRequests(), 
+                              server.getNumBytesSent() / (1024.0 * 1024.0));
+        }
+    }
+    
+    /* Starts the workers as separate JVMs, with the classpath of this one. */
+    private static CrawldaddyResult crawlDistributed(CrawldaddyParams params, List<String> crawlerArgs, int numWorkers) 
+            throws Exception {
+        CrawldaddyCoordinator coordinator = new CrawldaddyCoordinator(params, numWorkers, 0);
+        CompletableFuture<CrawldaddyResult> crawl = coordinator.crawl();
+        List<Process> workers = new ArrayList<>();
+        try {
+            for (int i = 0; i < numWorkers; i++) {
+                workers.add(startWorker(crawlerArgs, coordinator.getPort(), i));
+            }
+            return crawl.get();
+        } finally {
+            for (Process worker : workers) {
+                worker.waitFor();
+            }
+        }
+    }
+    
+    private static Process startWorker(List<String> crawlerArgs, int coordinatorPort, int workerIndex) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getPath());
+        command.addAll(Arrays.asList("-cp", System.getProperty("java.class.path"), CrawldaddyApp.class.getName()));
+        command.addAll(crawlerArgs);
+        command.addAll(Arrays.asList("--" + CrawldaddyCommandLine.CL_LONGOPT_WORKER, "127.0.0.1:" + coordinatorPort));
+        File logFile = new File(System.getProperty("java.io.tmpdir"), "crawldaddy-worker-" + workerIndex + ".log");
+        return new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(ProcessBuilder.Redirect.to(logFile)).start();
+    }
+    
+    private static SyntheticSite createSite(CommandLine commandLine) throws ParseException {
+        SyntheticSite site = new SyntheticSite(getInt(commandLine, "pages", DEFAULT_NUM_PAGES), 
+                                               getInt(commandLine, "fanout", SyntheticSite.DEFAULT_FAN_OUT));
+        site.setExternalLinksPerPage(getInt(commandLine, "extlinks", SyntheticSite.DEFAULT_EXTERNAL_LINKS_PER_PAGE));
+        site.setPageSize(getInt(commandLine, "size", SyntheticSite.DEFAULT_PAGE_SIZE));
+        site.setNotFoundRatio(getDouble(commandLine, "notfound", 0));
+        site.setRedirectRatio(getDouble(commandLine, "redirects", 0));
+        site.setSeed(getInt(commandLine, "seed", 0));
+        String latencyDistribution = commandLine.getOptionValue("latencydist");
+        if ((latencyDistribution != null) && (SyntheticSite.LatencyDistribution.fromName(latencyDistribution) == null)) {
+            throw new ParseException("Unknown latency distribution: " + latencyDistribution);
+        }
+        site.setLatency(getDouble(commandLine, "latency", 0), SyntheticSite.LatencyDistribution.fromName(latencyDistribution));
+        return site;
+    }
+    
+    private static int getInt(CommandLine commandLine, String option, int defaultValue) {
+        String value = commandLine.getOptionValue(option);
+        return (value != null ? Integer.parseInt(value.trim()) : defaultValue);
+    }
+    
+    private static double getDouble(CommandLine commandLine, String option, double defaultValue) {
+        String value = commandLine.getOptionValue(option);
+        return (value != null ? Double.parseDouble(value.trim()) : defaultValue);
+    }
+    
+    private static void report(int pass, CrawldaddyResult result, SyntheticSite.Crawl expected) {
+        System.out.printf("PASS %d: %d pages in %.2f s = %.1f pages/s%n", pass, result.getPagesFetched(), 
+                          result.getCrawlTime().toMillis() / 1000.0, result.getPagesPerSecond());
+        LatencyHistogram ttfb = result.getFetchTimings().getHistogram(FetchPhase.TTFB);
+        if (ttfb.getCount() > 0) {
+            System.out.printf("        TTFB p50 %.2f ms, p99 %.2f ms%n", ttfb.getValueAtPercentile(50) / 1e6, 
+                              ttfb.getValueAtPercentile(99) / 1e6);
+        }
+        if (result.getConnectionPoolStats() != null) {
+            System.out.println("        Connection pool: " + result.getConnectionPoolStats());
+        }
+        check("pages fetched", expected.getNumPagesFetched(), result.getPagesFetched());
+        check("internal links", expected.getNumInternalLinks(), result.getInternalLinkCount());
+        check("broken links", expected.getNumBrokenLinks(), result.getBrokenLinkCount());
+        check("external links", expected.getNumExternalLinks(), result.getExternalLinkCount());
+    }
+    
+    private static void check(String what, int expected, int actual) {
+        if (expected != actual) {
+            System.out.printf("        MISMATCH: %d %s, expected %d%n", actual, what, expected);
+        }
+    }
+}
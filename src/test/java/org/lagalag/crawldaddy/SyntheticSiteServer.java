@@ -0,0 +1,166 @@
+package org.lagalag.crawldaddy;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Serves a SyntheticSite on a local port, with the JDK's embedded HTTP server. Responses are delayed (on the 
+ * server's own threads) by the site's latency, so the number of server threads caps the number of slow responses 
+ * in progress at once.
+ */
+class SyntheticSiteServer implements Closeable {
+    static final int DEFAULT_NUM_THREADS = 64;
+    
+    private static final int BACKLOG = 1024;
+    private static final byte[] SCRIPT = "function go(u) { location.href = u; }\n".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] MOVED = "<html><body>Moved</body></html>".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] ERROR = "<html><body>Error</body></html>".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] NOT_FOUND = "<html><body>Not found</body></html>".getBytes(StandardCharsets.UTF_8);
+    
+    private final SyntheticSite site;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final AtomicInteger numRequests = new AtomicInteger();
+    private final AtomicLong numBytesSent = new AtomicLong();
+    private final ConcurrentMap<String,Resource> resources = new ConcurrentHashMap<>();
+    
+    SyntheticSiteServer(SyntheticSite site) throws IOException {
+        this(site, DEFAULT_NUM_THREADS);
+    }
+    
+    SyntheticSiteServer(SyntheticSite site, int numThreads) throws IOException {
+        this.site = site;
+        this.executor = Executors.newFixedThreadPool(numThreads, runnable -> {
+            Thread thread = new Thread(runnable, "synthetic-site");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), BACKLOG);
+        this.server.createContext("/", this::handle);
+        this.server.setExecutor(executor);
+        this.server.start();
+    }
+    
+    /**
+     * Returns the url of the root page of the site.
+     */
+    String getUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+    }
+    
+    int getNumRequests() {
+        return numRequests.get();
+    }
+    
+    long getNumBytesSent() {
+        return numBytesSent.get();
+    }
+    
+    /**
+     * Serves the given robots.txt (by default, there is none: 404).
+     */
+    void setRobotsTxt(String robotsTxt) {
+        setResource("/robots.txt", "text/plain; charset=utf-8", robotsTxt.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * Serves the given body at the given path, on top of the pages of the site (e.g. a sitemap).
+     */
+    void setResource(String path, String contentType, byte[] body) {
+        resources.put(path, new Resource(HttpURLConnection.HTTP_OK, null, contentType, body));
+    }
+    
+    /**
+     * Redirects (301) the given path to the given location, on top of the pages of the site.
+     */
+    void setRedirect(String path, String location) {
+        resources.put(path, new Resource(HttpURLConnection.HTTP_MOVED_PERM, location, "text/html; charset=utf-8", MOVED));
+    }
+    
+    /**
+     * Answers requests for the given path with the given HTTP status (an error), on top of the pages of the site.
+     */
+    void setErrorStatus(String path, int httpStatusCode) {
+        resources.put(path, new Resource(httpStatusCode, null, "text/html; charset=utf-8", ERROR));
+    }
+    
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+    
+    private void handle(HttpExchange exchange) throws IOException {
+        numRequests.incrementAndGet();
+        try {
+            delay(site.nextLatencyMillis());
+            String path = exchange.getRequestURI().getPath();
+            String redirectLocation = site.getRedirectLocation(path);
+            int pageNumber = site.getPageNumber(path);
+            if (redirectLocation != null) {
+                exchange.getResponseHeaders().set("Location", redirectLocation);
+                send(exchange, HttpURLConnection.HTTP_MOVED_PERM, "text/html; charset=utf-8", MOVED);
+            } else if (pageNumber >= 0) {
+                send(exchange, HttpURLConnection.HTTP_OK, "text/html; charset=utf-8", site.getPage(pageNumber));
+            } else if (SyntheticSite.SCRIPT_PATH.equals(path)) {
+                send(exchange, HttpURLConnection.HTTP_OK, "application/javascript", SCRIPT);
+            } else if (resources.containsKey(path)) {
+                Resource resource = resources.get(path);
+                if (resource.location != null) {
+                    exchange.getResponseHeaders().set("Location", resource.location);
+                }
+                send(exchange, resource.httpStatusCode, resource.contentType, resource.body);
+            } else {
+                send(exchange, HttpURLConnection.HTTP_NOT_FOUND, "text/html; charset=utf-8", NOT_FOUND);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+    
+    private void send(HttpExchange exchange, int httpStatusCode, String contentType, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(httpStatusCode, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+        numBytesSent.addAndGet(body.length);
+    }
+    
+    private static class Resource {
+        final int httpStatusCode;
+        final String location;
+        final String contentType;
+        final byte[] body;
+        
+        Resource(int httpStatusCode, String location, String contentType, byte[] body) {
+            this.httpStatusCode = httpStatusCode;
+            this.location = location;
+            this.contentType = contentType;
+            this.body = body;
+        }
+    }
+    
+    private static void delay(long millis) {
+        if (millis > 0) {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package org.lagalag.crawldaddy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.lagalag.crawldaddy.pages.ConnectionPoolStats;
+import org.lagalag.crawldaddy.pages.PageFetchEngine;
+
+/**
+ * Junit tests that crawl a SyntheticSite, with 404s and redirects, served on localhost: no network needed, and the 
+ * crawl must find exactly what the site holds.
+ */
+public class SyntheticSiteTests {
+    @Test
+    public void testCrawlSyntheticSite() throws Exception {
+        doCrawlSyntheticSite(PageFetchEngine.JSOUP);
+    }
+    
+    @Test
+    public void testCrawlSyntheticSiteAsyncEngine() throws Exception {
+        doCrawlSyntheticSite(PageFetchEngine.ASYNC);
+    }
+    
+    @Test
+    public void testCrawlSyntheticSitePooledEngine() throws Exception {
+        CrawldaddyResult result = doCrawlSyntheticSite(PageFetchEngine.POOLED);
+        ConnectionPoolStats poolStats = result.getConnectionPoolStats();
+        // Redirects are requests too.
+        assertTrue("Too few requests: " + poolStats, poolStats.getNumHits() + poolStats.getNumMisses() > result.getPagesFetched());
+        // Never more connections than fetches in progress at once (on a site that keeps them alive).
+        assertTrue("Too many misses: " + poolStats, poolStats.getNumMisses() <= CrawldaddyParams.DEFAULT_MAX_CONNECTIONS_PER_HOST);
+    }
+    
+    @Test
+    public void testCrawlUppercaseHost() throws Exception {
+        SyntheticSite site = new SyntheticSite(50, 4);
+        SyntheticSite.Crawl expected = site.crawl();
+        try (SyntheticSiteServer server = new SyntheticSiteServer(site)) {
+            // Links are normalized to a lowercase host; they must still be found internal.
+            String url = server.getUrl().replace("127.0.0.1", "LOCALHOST");
+            CrawldaddyParams params = new CrawldaddyParams(url);
+            params.setMaxInternalLinks(expected.getNumInternalLinks() + 1);
+            CrawldaddyResult result = new Crawldaddy(params).crawlOnce().get();
+            assertTrue("Root page not fetched", result.isHttpStatusOK());
+            assertEquals(expected.getNumPagesFetched(), result.getPagesFetched());
+            assertEquals(expected.getNumInternalLinks(), result.getInternalLinkCount());
+        }
+    }
+    
+    @Test
+    public void testCrawlObeysRobotsTxt() throws Exception {
+        SyntheticSite site = new SyntheticSite(100, 4);
+        SyntheticSite.Crawl expected = site.crawl();
+        try (SyntheticSiteServer server = new SyntheticSiteServer(site)) {
+            // Only the group for crawldaddy applies, and it only allows the root page.
+            server.setRobotsTxt("User-agent: *\nDisallow:\n\nUser-agent: Crawldaddy/1.0\nAllow: /$\nDisallow: /\n");
+            CrawldaddyParams params = new CrawldaddyParams(server.getUrl());
+            CrawldaddyResult result = new Crawldaddy(params).crawlOnce().get();
+            assertTrue("Root page not fetched", result.isHttpStatusOK());
+            assertEquals(1, result.getPagesFetched());
+            assertEquals(0, result.getInternalLinkCount());
+            assertTrue("No links disallowed", result.getDisallowedLinkCount() > 0);
+            
+            params.setObeyRobotsTxt(false);
+            result = new Crawldaddy(params).crawlOnce().get();
+            assertEquals(expected.getNumPagesFetched(), result.getPagesFetched());
+            assertEquals(0, result.getDisallowedLinkCount());
+        }
+    }
+    
+    @Test
+    public void testCrawlHonorsCrawlDelay() throws Exception {
+        SyntheticSite site = new SyntheticSite(20, 4);
+        SyntheticSite.Crawl expected = site.crawl();
+        try (SyntheticSiteServer server = new SyntheticSiteServer(site)) {
+            server.setRobotsTxt("User-agent: *\nCrawl-delay: 0.05\n");
+            CrawldaddyParams params = new CrawldaddyParams(server.getUrl());
+            long startNanos = System.nanoTime();
+            CrawldaddyResult result = new Crawldaddy(params).crawlOnce().get();
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+            assertEquals(expected.getNumPagesFetched(), result.getPagesFetched());
+            // The root page is fetched before robots.txt is, then one page every 50 ms at most.
+            long minMillis = (expected.getNumPagesFetched() - 2) * 50;
+            assertTrue("Crawl-delay not honored: " + elapsedMillis + " ms", elapsedMillis >= minMillis * 9 / 10);
+        }
+    }
+    
+    @Test
+    public void testCrawlSeededFromSitemap() throws Exception {
+        // A chain of pages, each linking to the next only: without the sitemap, one fetch at a time.
+        SyntheticSite site = new SyntheticSite(60, 1);
+        SyntheticSite.Crawl expected = site.crawl();
+        try (SyntheticSiteServer server = new SyntheticSiteServer(site)) {
+            server.setResource("/sitemaps/pages.xml", "application/xml", site.getSitemap(server.getUrl()));
+            server.setRobotsTxt("Sitemap: " + server.getUrl() + "sitemaps/pages.xml\nUser-agent: *\nDisallow: /p/59.html\n");
+            CrawldaddyParams params = new CrawldaddyParams(server.getUrl());
+            params.setSeedFromSitemaps(true);
+            CrawldaddyResult result = new Crawldaddy(params).crawlOnce().get();
+            
+            assertTrue("Root page not fetched", result.isHttpStatusOK());
+            // All but the disallowed page, whether found in the sitemap or on a page first.
+            assertEquals(expected.getNumPagesFetched() - 1, result.getPagesFetched());
+            assertEquals(expected.getNumInternalLinks() - 1, result.getInternalLinkCount());
+            assertEquals(1, result.getDisallowedLinkCount());
+            assertTrue("Nothing seeded from the sitemap", result.getSitemapLinkCount() > 0);
+        }
+    }
+    
+    private CrawldaddyResult doCrawlSyntheticSite(PageFetchEngine engine) throws Exception {
+        SyntheticSite site = new SyntheticSite(500, 4);
+        site.setPageSize(2048);
+        site.setNotFoundRatio(0.02);
+        site.setRedirectRatio(0.05);
+        SyntheticSite.Crawl expected = site.crawl();
+        assertTrue("Site has no broken links", expected.getNumBrokenLinks() > 0);
+        try (SyntheticSiteServer server = new SyntheticSiteServer(site)) {
+            CrawldaddyParams params = new CrawldaddyParams(server.getUrl());
+            params.setPageFetchEngine(engine);
+            params.setMaxInternalLinks(expected.getNumInternalLinks() + 1);
+            CrawldaddyResult result = new Crawldaddy(params).crawlOnce().get();
+            
+            assertTrue("Root page not fetched", result.isHttpStatusOK());
+            assertEquals(expected.getNumPagesFetched(), result.getPagesFetched());
+            assertEquals(expected.getNumInternalLinks(), result.getInternalLinkCount());
+            assertEquals(expected.getNumBrokenLinks(), result.getBrokenLinkCount());
+            assertEquals(expected.getNumExternalLinks(), result.getExternalLinkCount());
+            assertEquals(1, result.getExternalScriptsCount());
+            return result;
+        }
+    }
+}
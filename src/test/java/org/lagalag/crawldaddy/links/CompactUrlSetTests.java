@@ -0,0 +1,99 @@
+package org.lagalag.crawldaddy.links;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.Test;
+
+/**
+ * Junit tests for CompactUrlSet.
+ */
+public class CompactUrlSetTests {
+    private static final int NUM_FOOTPRINT_URLS = 1000000;
+    
+    @Test
+    public void testUrlsRoundTrip() {
+        List<String> urls = Arrays.asList("https://www.example.org", 
+                                          "https://www.example.org/", 
+                                          "https://www.example.org/docs/", 
+                                          "https://www.example.org/docs/index.html", 
+                                          "https://www.example.org/docs//guide.html", 
+                                          "https://www.example.org/docs/index.html?q=a/b/c#top", 
+                                          "https://www.example.org?q=/x", 
+                                          "http://www.example.org:8080/docs/index.html", 
+                                          "https://www.example.org/café/menü.html", 
+                                          "mailto:someone@example.org", 
+                                          "");
+        CompactUrlSet set = new CompactUrlSet();
+        for (String url : urls) {
+            assertTrue("New url not added: " + url, set.add(url));
+        }
+        for (String url : urls) {
+            assertFalse("Duplicate url added: " + url, set.add(url));
+            assertTrue("Url not found: " + url, set.contains(url));
+        }
+        assertFalse("Unknown url found", set.contains("https://www.example.org/docs/other.html"));
+        assertFalse("Unknown url found", set.contains("https://www.example.com/docs/index.html"));
+        assertEquals("Unexpected size", urls.size(), set.size());
+        assertEquals("Urls don't round-trip", new HashSet<>(urls), new HashSet<>(set));
+    }
+    
+    @Test
+    public void testManyUrls() {
+        CompactUrlSet set = new CompactUrlSet();
+        for (int i = 0; i < 100000; i++) {
+            set.add(createUrl(i));
+        }
+        assertEquals("Unexpected size", 100000, set.size());
+        Set<String> decoded = new HashSet<>(set);
+        for (int i = 0; i < 100000; i++) {
+            assertTrue("Url lost", decoded.contains(createUrl(i)));
+        }
+    }
+    
+    /*
+     * Compares the heap retained by 1M urls in a CompactUrlSet with that of the ConcurrentHashMap key set it replaces.
+     */
+    @Test
+    public void testHeapFootprint() {
+        long baseline = getUsedHeapAfterGc();
+        Set<String> hashSet = ConcurrentHashMap.newKeySet();
+        for (int i = 0; i < NUM_FOOTPRINT_URLS; i++) {
+            hashSet.add(createUrl(i));
+        }
+        long hashSetBytes = getUsedHeapAfterGc() - baseline;
+        assertEquals(NUM_FOOTPRINT_URLS, hashSet.size());
+        hashSet = null;
+        
+        baseline = getUsedHeapAfterGc();
+        Set<String> compactSet = new CompactUrlSet();
+        for (int i = 0; i < NUM_FOOTPRINT_URLS; i++) {
+            compactSet.add(createUrl(i));
+        }
+        long compactSetBytes = getUsedHeapAfterGc() - baseline;
+        assertEquals(NUM_FOOTPRINT_URLS, compactSet.size());
+        
+        assertTrue("CompactUrlSet should retain at most a third of the heap (" + compactSetBytes + " vs " + hashSetBytes + " bytes)", 
+                   compactSetBytes * 3 <= hashSetBytes);
+    }
+    
+    /* Typical links of a large site: a handful of hosts, a few hundred directories and a unique page name. */
+    private static String createUrl(int i) {
+        return "https://www" + (i % 4) + ".example.org/blog/" + (2000 + i % 20) + "/" + (i % 12 + 1) + "/post-about-things-" + i + ".html";
+    }
+    
+    private static long getUsedHeapAfterGc() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
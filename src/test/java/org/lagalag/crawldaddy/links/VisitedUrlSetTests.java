@@ -0,0 +1,146 @@
+package org.lagalag.crawldaddy.links;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+
+/**
+ * Junit tests for the bounded, concurrent visited url sets.
+ */
+public class VisitedUrlSetTests {
+    private static final long MEMORY_BUDGET_BYTES = 4L * 1024 * 1024;
+    
+    @Test
+    public void testDuplicatesRejected() {
+        forEachImplementation(this::assertDuplicatesRejected);
+    }
+    
+    @Test
+    public void testMaxSizeEnforced() {
+        forEachImplementation(this::assertMaxSizeEnforced);
+    }
+    
+    @Test
+    public void testConcurrentAdds() throws Exception {
+        assertConcurrentAdds(new ExactVisitedUrlSet());
+        assertConcurrentAdds(new FingerprintVisitedUrlSet(20000, MEMORY_BUDGET_BYTES, 0));
+        assertConcurrentAdds(new FingerprintVisitedUrlSet(20000, MEMORY_BUDGET_BYTES, 0.01));
+    }
+    
+    @Test
+    public void testFingerprintSetIsExactForManyUrls() {
+        final int numUrls = 200000;
+        VisitedUrlSet visited = new FingerprintVisitedUrlSet(numUrls, 16L * 1024 * 1024, 0.01);
+        for (int i = 0; i < numUrls; i++) {
+            assertTrue("Distinct url rejected", visited.addIfAbsent("https://www.example.org/page" + i, numUrls));
+        }
+        for (int i = 0; i < numUrls; i++) {
+            assertFalse("Duplicate url added", visited.addIfAbsent("https://www.example.org/page" + i, numUrls));
+        }
+        assertEquals("Unexpected size", numUrls, visited.size());
+        assertFalse("Fingerprint set claims to retain urls", visited.isRetainingUrls());
+    }
+    
+    @Test
+    public void testBloomSetFalsePositiveRate() {
+        final int numUrls = 100000;
+        final double falsePositiveRate = 0.01;
+        VisitedUrlSet visited = new BloomVisitedUrlSet(numUrls, falsePositiveRate, MEMORY_BUDGET_BYTES);
+        for (int i = 0; i < numUrls; i++) {
+            visited.addIfAbsent("https://www.example.org/page" + i, numUrls);
+        }
+        int numFalsePositives = 0;
+        for (int i = 0; i < numUrls; i++) {
+            if (visited.contains("https://www.example.org/other" + i)) {
+                numFalsePositives++;
+            }
+        }
+        assertTrue("False-positive rate too high (" + numFalsePositives + " of " + numUrls + ")", 
+                   numFalsePositives < numUrls * falsePositiveRate * 2);
+        // Urls wrongly taken for duplicates while filling the set are the only ones missing from its size.
+        assertTrue("Too many urls rejected (size=" + visited.size() + ")", 
+                   visited.size() > numUrls - numUrls * falsePositiveRate * 2);
+    }
+    
+    @Test
+    public void testSpooledUrls() throws Exception {
+        File file = File.createTempFile("visited-urls", ".txt");
+        file.deleteOnExit();
+        try (VisitedUrlSet visited = new SpoolingVisitedUrlSet(new FingerprintVisitedUrlSet(10, MEMORY_BUDGET_BYTES, 0), file)) {
+            visited.addIfAbsent("http://example.org/a", 10);
+            visited.addIfAbsent("http://example.org/b", 10);
+            visited.addIfAbsent("http://example.org/a", 10);
+        }
+        List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        assertEquals("Unexpected spooled urls", 2, lines.size());
+        assertTrue("Spooled url missing", lines.contains("http://example.org/a") && lines.contains("http://example.org/b"));
+    }
+    
+    private void forEachImplementation(java.util.function.Consumer<Supplier<VisitedUrlSet>> test) {
+        test.accept(ExactVisitedUrlSet::new);
+        test.accept(() -> new FingerprintVisitedUrlSet(100, MEMORY_BUDGET_BYTES, 0));
+        test.accept(() -> new FingerprintVisitedUrlSet(100, MEMORY_BUDGET_BYTES, 0.01));
+        test.accept(() -> new BloomVisitedUrlSet(100, 0.01, MEMORY_BUDGET_BYTES));
+    }
+    
+    private void assertDuplicatesRejected(Supplier<VisitedUrlSet> factory) {
+        VisitedUrlSet visited = factory.get();
+        assertTrue("New url not added", visited.addIfAbsent("http://example.org/a", 10));
+        assertFalse("Duplicate url added", visited.addIfAbsent("http://example.org/a", 10));
+        assertTrue("Added url not found", visited.contains("http://example.org/a"));
+        assertEquals("Unexpected size", 1, visited.size());
+    }
+    
+    private void assertMaxSizeEnforced(Supplier<VisitedUrlSet> factory) {
+        VisitedUrlSet visited = factory.get();
+        assertTrue(visited.addIfAbsent("http://example.org/a", 2));
+        assertTrue(visited.addIfAbsent("http://example.org/b", 2));
+        assertFalse("Url added beyond max size", visited.addIfAbsent("http://example.org/c", 2));
+        assertEquals("Unexpected size", 2, visited.size());
+    }
+    
+    private void assertConcurrentAdds(VisitedUrlSet visited) throws Exception {
+        final int numThreads = 8;
+        final int numUrls = 20000;
+        final int maxSize = 5000;
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        try {
+            List<Callable<Integer>> adders = new ArrayList<>();
+            for (int t = 0; t < numThreads; t++) {
+                // Every thread tries to add the same urls, so there is plenty of contention on duplicates too.
+                adders.add(() -> {
+                    int numAdded = 0;
+                    for (int i = 0; i < numUrls; i++) {
+                        if (visited.addIfAbsent("http://example.org/page" + i, maxSize)) {
+                            numAdded++;
+                        }
+                    }
+                    return numAdded;
+                });
+            }
+            int totalAdded = 0;
+            for (Future<Integer> numAdded : executor.invokeAll(adders)) {
+                totalAdded += numAdded.get();
+            }
+            assertEquals("Urls reported as added don't match set size", visited.size(), totalAdded);
+            assertTrue("Set grew beyond max size", visited.size() <= maxSize);
+            // Slots are only ever briefly held for duplicates, so the set should be (nearly) full.
+            assertTrue("Set did not fill up (size=" + visited.size() + ")", visited.size() >= maxSize - numThreads);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package org.lagalag.crawldaddy.pages;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Junit tests for the decoding of compressed response bodies, on its own and by each page fetch engine.
+ */
+public class ContentEncodingsTests {
+    private static final byte[] PAGE = createPage();
+    
+    private HttpServer server;
+    private String baseUrl;
+    
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::handle);
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+    
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+    
+    @Test
+    public void testDecode() throws IOException {
+        assertArrayEquals(PAGE, decode(PAGE, null));
+        assertArrayEquals(PAGE, decode(PAGE, "identity"));
+        assertArrayEquals(PAGE, decode(gzip(PAGE), "gzip"));
+        assertArrayEquals(PAGE, decode(gzip(PAGE), "X-GZIP"));
+        assertArrayEquals(PAGE, decode(deflate(PAGE, false), "deflate"));
+        assertArrayEquals(PAGE, decode(deflate(PAGE, true), "deflate"));
+        assertArrayEquals(new byte[0], decode(new byte[0], "gzip"));
+        try {
+            decode(PAGE, "br");
+            throw new AssertionError("Expected an IOException");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("br"));
+        }
+    }
+    
+    @Test
+    public void testDecodeIncrementally() throws IOException {
+        byte[] gzipped = gzip(PAGE);
+        for (int chunkSize : new int[] { 1, 3, 1000, Integer.MAX_VALUE }) {
+            assertArrayEquals(PAGE, decodeIncrementally(PAGE, null, chunkSize));
+            assertArrayEquals(PAGE, decodeIncrementally(gzipped, "gzip", chunkSize));
+            assertArrayEquals(PAGE, decodeIncrementally(deflate(PAGE, false), "deflate", chunkSize));
+            assertArrayEquals(PAGE, decodeIncrementally(deflate(PAGE, true), "deflate", chunkSize));
+            // Concatenated gzip members decode as one body; whatever follows the last one is ignored.
+            byte[] twoMembers = concat(gzipped, gzip(PAGE), new byte[] { 0, 0 });
+            assertArrayEquals(concat(PAGE, PAGE), decodeIncrementally(twoMembers, "gzip", chunkSize));
+        }
+        assertArrayEquals(new byte[0], decodeIncrementally(new byte[0], "gzip", 1));
+        try {
+            decodeIncrementally(Arrays.copyOf(gzipped, gzipped.length - 4), "gzip", 100);
+            throw new AssertionError("Expected an EOFException");
+        } catch (EOFException e) {
+            // Cut short.
+        }
+        try {
+            decodeIncrementally(PAGE, "gzip", 100);
+            throw new AssertionError("Expected an IOException");
+        } catch (IOException e) {
+            assertFalse(e instanceof EOFException);
+        }
+        try {
+            decodeIncrementally(PAGE, "br", 100);
+            throw new AssertionError("Expected an IOException");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("br"));
+        }
+    }
+    
+    @Test
+    public void testEnginesDecodeAndCountBytes() throws Exception {
+        LinkExtractor linkExtractor = new StreamingLinkExtractor();
+        try (PooledPageFetchService pooledService = new PooledPageFetchService(4, 5, linkExtractor, ContentPolicy.DEFAULT)) {
+            PageFetchService[] services = { new JsoupPageFetchService(linkExtractor), 
+                                            new AsyncPageFetchService(4, linkExtractor), pooledService };
+            for (PageFetchService service : services) {
+                String engine = service.getClass().getSimpleName();
+                PageFetchResults results = fetch(service, baseUrl + "/page");
+                assertEquals(engine, Arrays.asList(baseUrl + "/next"), results.getLinkUrls());
+                assertEquals(engine, PAGE.length, results.getNumBytesDecoded());
+                assertEquals(engine, gzip(PAGE).length, results.getNumBytesReceived());
+                // Without a Content-Length, the size as received is only known to engines that decode bodies themselves.
+                results = fetch(service, baseUrl + "/chunked");
+                assertEquals(engine, PAGE.length, results.getNumBytesDecoded());
+                TransferStats transferStats = new TransferStats();
+                transferStats.record("localhost", results.getNumBytesReceived(), results.getNumBytesDecoded());
+                if (service instanceof JsoupPageFetchService) {
+                    assertEquals(engine, -1, results.getNumBytesReceived());
+                    assertEquals(engine, 1, transferStats.getNumUnmeasuredFetches());
+                    assertEquals(engine, PAGE.length, transferStats.getNumUnmeasuredBytesDecoded());
+                } else {
+                    assertEquals(engine, gzip(PAGE).length, results.getNumBytesReceived());
+                    assertEquals(engine, 0, transferStats.getNumUnmeasuredFetches());
+                    assertEquals(engine, PAGE.length, transferStats.getNumBytesDecoded());
+                }
+            }
+        }
+    }
+    
+    private byte[] decode(byte[] body, String contentEncoding) throws IOException {
+        try (InputStream in = ContentEncodings.decode(new ByteArrayInputStream(body), contentEncoding)) {
+            return readAll(in);
+        }
+    }
+    
+    private byte[] decodeIncrementally(byte[] body, String contentEncoding, int chunkSize) throws IOException {
+        try (IncrementalDecoder decoder = new IncrementalDecoder(contentEncoding, 16)) {
+            for (int offset = 0; offset < body.length; offset += chunkSize) {
+                decoder.decode(body, offset, Math.min(chunkSize, body.length - offset));
+            }
+            decoder.finish();
+            assertEquals(body.length, decoder.getNumBytesReceived());
+            return readAll(decoder.getDecodedBody());
+        }
+    }
+    
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        for (int numRead = in.read(buffer); numRead >= 0; numRead = in.read(buffer)) {
+            out.write(buffer, 0, numRead);
+        }
+        return out.toByteArray();
+    }
+    
+    private static byte[] concat(byte[]... arrays) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] array : arrays) {
+            out.write(array, 0, array.length);
+        }
+        return out.toByteArray();
+    }
+    
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzipOut = new GZIPOutputStream(out)) {
+            gzipOut.write(bytes);
+        }
+        return out.toByteArray();
+    }
+    
+    private static byte[] deflate(byte[] bytes, boolean raw) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (DeflaterOutputStream deflateOut = new DeflaterOutputStream(out, new Deflater(Deflater.DEFAULT_COMPRESSION, raw))) {
+            deflateOut.write(bytes);
+        }
+        return out.toByteArray();
+    }
+    
+    private static byte[] createPage() {
+        StringBuilder sb = new StringBuilder("<html><body><a href=\"/next\">next</a>");
+        for (int i = 0; i < 500; i++) {
+            sb.append("<p>Very compressible filler</p>");
+        }
+        return sb.append("</body></html>").toString().getBytes(StandardCharsets.UTF_8);
+    }
+    
+    private PageFetchResults fetch(PageFetchService service, String url) throws PageFetchException {
+        AtomicReference<PageFetchResults> results = new AtomicReference<>();
+        service.fetch(url, results::set);
+        return results.get();
+    }
+    
+    /* Compresses the page for clients that accept gzip, as servers do. */
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+            byte[] body = PAGE;
+            if ((acceptEncoding != null) && acceptEncoding.contains("gzip")) {
+                body = gzip(PAGE);
+                exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            }
+            exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+            // A response length of 0 has the server send the body in chunks, without a Content-Length.
+            boolean chunked = exchange.getRequestURI().getPath().equals("/chunked");
+            exchange.sendResponseHeaders(200, (chunked ? 0 : body.length));
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package org.lagalag.crawldaddy.pages;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Junit tests for the content policy, on its own and applied by each page fetch engine to a local HTTP server.
+ */
+public class ContentPolicyTests {
+    private static final byte[] PAGE = "<html><body><a href=\"/next\">next</a></body></html>".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] PNG = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n', 0, 0, 0, 0x0d, 'I', 'H', 'D', 'R' };
+    private static final int MAX_BODY_BYTES = 64 * 1024;
+    
+    private HttpServer server;
+    private String baseUrl;
+    
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::handle);
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+    
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+    
+    @Test
+    public void testCheckHeaders() {
+        ContentPolicy policy = new ContentPolicy(Arrays.asList("text/html", "application/*"), 1000);
+        assertNull(policy.checkHeaders("Text/HTML; charset=UTF-8", 500));
+        assertNull(policy.checkHeaders("application/xhtml+xml", -1));
+        assertNull(policy.checkHeaders(null, -1));
+        assertEquals(FetchAbortReason.CONTENT_TYPE, policy.checkHeaders("image/png", 500));
+        assertEquals(FetchAbortReason.CONTENT_TYPE, policy.checkHeaders("text/plain", 500));
+        assertEquals(FetchAbortReason.BODY_TOO_LARGE, policy.checkHeaders("text/html", 1001));
+        assertNull(new ContentPolicy(Arrays.asList("text/html"), 0).checkHeaders("text/html", Long.MAX_VALUE));
+    }
+    
+    @Test
+    public void testSniffingAndBodyLimit() throws IOException {
+        ContentPolicy policy = new ContentPolicy(ContentPolicy.DEFAULT_CONTENT_TYPES, 1000);
+        LinkExtractor linkExtractor = new JsoupLinkExtractor();
+        assertEquals(FetchAbortReason.SNIFFED_CONTENT, 
+                     extract(policy, PNG, null, linkExtractor).getAbortReason());
+        assertEquals(FetchAbortReason.SNIFFED_CONTENT, 
+                     extract(policy, "just text".getBytes(StandardCharsets.UTF_8), "application/octet-stream", linkExtractor).getAbortReason());
+        assertEquals(Arrays.asList("http://example.com/next"), extract(policy, PAGE, null, linkExtractor).getLinkUrls());
+        assertEquals(FetchAbortReason.BODY_TOO_LARGE, 
+                     extract(policy, createLargePage(2000), "text/html", linkExtractor).getAbortReason());
+        assertEquals(FetchAbortReason.BODY_TOO_LARGE, 
+                     extract(policy, createLargePage(2000), null, new StreamingLinkExtractor()).getAbortReason());
+    }
+    
+    @Test
+    public void testEnginesAbortEarly() throws Exception {
+        ContentPolicy policy = new ContentPolicy(ContentPolicy.DEFAULT_CONTENT_TYPES, MAX_BODY_BYTES);
+        LinkExtractor linkExtractor = new JsoupLinkExtractor();
+        try (PooledPageFetchService pooledService = new PooledPageFetchService(4, 5, linkExtractor, policy)) {
+            PageFetchService[] services = { new JsoupPageFetchService(linkExtractor, policy), 
+                                            new AsyncPageFetchService().withContentPolicy(policy), pooledService };
+            for (PageFetchService service : services) {
+                String engine = service.getClass().getSimpleName();
+                PageFetchResults results = fetch(service, baseUrl + "/page");
+                assertFalse(engine, results.isFetchAborted());
+                assertEquals(engine, Arrays.asList(baseUrl + "/next"), results.getLinkUrls());
+                assertEquals(engine, FetchAbortReason.CONTENT_TYPE, fetch(service, baseUrl + "/image").getAbortReason());
+                assertEquals(engine, FetchAbortReason.SNIFFED_CONTENT, fetch(service, baseUrl + "/download?id=123").getAbortReason());
+                assertEquals(engine, FetchAbortReason.BODY_TOO_LARGE, fetch(service, baseUrl + "/large").getAbortReason());
+                assertEquals(engine, FetchAbortReason.BODY_TOO_LARGE, fetch(service, baseUrl + "/large-chunked").getAbortReason());
+            }
+        }
+    }
+    
+    private PageFetchResults extract(ContentPolicy policy, byte[] body, String contentType, LinkExtractor linkExtractor) 
+            throws IOException {
+        return policy.extract("http://example.com/", new ByteArrayInputStream(body), contentType, null, "http://example.com/", 
+                              linkExtractor);
+    }
+    
+    private PageFetchResults fetch(PageFetchService service, String url) throws PageFetchException {
+        AtomicReference<PageFetchResults> results = new AtomicReference<>();
+        service.fetch(url, results::set);
+        return results.get();
+    }
+    
+    private static byte[] createLargePage(int size) {
+        StringBuilder sb = new StringBuilder("<html><body>");
+        while (sb.length() < size) {
+            sb.append("<p>filler</p>");
+        }
+        return sb.append("</body></html>").toString().getBytes(StandardCharsets.UTF_8);
+    }
+    
+    private void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        try {
+            if (path.equals("/page")) {
+                send(exchange, "text/html; charset=utf-8", PAGE, PAGE.length);
+            } else if (path.equals("/image")) {
+                send(exchange, "image/png", PNG, PNG.length);
+            } else if (path.equals("/download")) {
+                send(exchange, null, PNG, PNG.length);
+            } else if (path.equals("/large")) {
+                byte[] largePage = createLargePage(4 * MAX_BODY_BYTES);
+                send(exchange, "text/html", largePage, largePage.length);
+            } else if (path.equals("/large-chunked")) {
+                send(exchange, "text/html", createLargePage(4 * MAX_BODY_BYTES), 0);
+            } else {
+                exchange.sendResponseHeaders(404, -1);
+            }
+        } catch (IOException e) {
+            // The client hung up on us, as it should have.
+        } finally {
+            exchange.close();
+        }
+    }
+    
+    /* A responseLength of 0 sends the body chunked, without a Content-Length. */
+    private void send(HttpExchange exchange, String contentType, byte[] body, long responseLength) throws IOException {
+        if (contentType != null) {
+            exchange.getResponseHeaders().set("Content-Type", contentType);
+        }
+        exchange.sendResponseHeaders(200, responseLength);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package org.lagalag.crawldaddy.pages;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH benchmark of link extraction, as done by the page fetch engines on each page fetched, over a corpus of saved 
+ * HTML pages (src/test/resources/corpus) of different kinds: a blog index, a documentation page, a news article 
+ * heavy on scripts, and old-style tag soup. To add a page, save it in the corpus and add its name below. Unlike 
+ * LinkExtractionBenchmark, the body is read through the same stream wrapper the engines use. Not a unit test; run 
+ * with the benchmarks profile (see README), or:
+ * 
+ *     mvn test-compile
+ *     java -cp target/classes:target/test-classes:<test classpath> org.lagalag.crawldaddy.pages.CorpusLinkExtractionBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CorpusLinkExtractionBenchmark {
+    private static final String CORPUS_DIRECTORY = "/corpus/";
+    private static final String PAGE_URL = "https://www.example.org/pages/page.html";
+    
+    @Param({ "blog-index.html", "docs-page.html", "news-article.html", "tag-soup.html" })
+    private String page;
+    
+    @Param({ "jsoup", "streaming" })
+    private String extractor;
+    
+    private byte[] pageBytes;
+    private LinkExtractor linkExtractor;
+    
+    @Setup
+    public void loadPage() throws IOException {
+        try (InputStream in = getClass().getResourceAsStream(CORPUS_DIRECTORY + page)) {
+            if (in == null) {
+                throw new IOException("No page " + page + " in the corpus");
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int numBytes;
+            while ((numBytes = in.read(buffer)) > 0) {
+                out.write(buffer, 0, numBytes);
+            }
+            pageBytes = out.toByteArray();
+        }
+        linkExtractor = (LinkExtractorType.fromName(extractor) == LinkExtractorType.STREAMING 
+                         ? new StreamingLinkExtractor() : new JsoupLinkExtractor());
+    }
+    
+    @Benchmark
+    public PageFetchResults extract() throws IOException {
+        TimedInputStream body = new TimedInputStream(new ByteArrayInputStream(pageBytes));
+        return linkExtractor.extract(PAGE_URL, body, null, PAGE_URL);
+    }
+    
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(CorpusLinkExtractionBenchmark.class.getSimpleName())
+                                       .addProfiler("gc")
+                                       .build()).run();
+    }
+}
@@ -0,0 +1,106 @@
+package org.lagalag.crawldaddy.pages;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Junit tests for the external link verifier, against a local HTTP server.
+ */
+public class ExternalLinkVerifierTests {
+    private HttpServer server;
+    private String baseUrl;
+    private final AtomicInteger numGetRequests = new AtomicInteger();
+    private final ConcurrentMap<String,AtomicInteger> numHeadRequestsByPath = new ConcurrentHashMap<>();
+    
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::handle);
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+    
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+    
+    @Test
+    public void testHeadAndGetFallback() throws Exception {
+        ExternalLinkVerifier verifier = new ExternalLinkVerifier(8, 8);
+        assertTrue("Live link reported dead", verify(verifier, baseUrl + "/ok").isAlive());
+        assertEquals(404, verify(verifier, baseUrl + "/gone").getHttpStatusCode());
+        assertFalse("Missing link reported alive", verify(verifier, baseUrl + "/gone").isAlive());
+        assertTrue("HEAD-less link reported dead", verify(verifier, baseUrl + "/nohead").isAlive());
+        assertTrue("No GET after rejected HEAD", numGetRequests.get() > 0);
+        assertFalse(verify(verifier, "http://127.0.0.1:1/refused").isAlive());
+        assertFalse(verify(verifier, "http:/malformed").isAlive());
+    }
+    
+    @Test
+    public void testEachLinkCheckedOnce() throws Exception {
+        ExternalLinkVerifier verifier = new ExternalLinkVerifier(4, 4);
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[1000];
+        for (int i = 0; i < futures.length; i++) {
+            futures[i] = verifier.verify(baseUrl + "/ok" + (i % 10));
+        }
+        CompletableFuture.allOf(futures).get(30, TimeUnit.SECONDS);
+        for (CompletableFuture<?> future : futures) {
+            assertTrue("Live link reported dead", ((ExternalLinkStatus) future.get()).isAlive());
+        }
+        assertEquals(10, verifier.getNumLinksChecked());
+        for (AtomicInteger numRequests : numHeadRequestsByPath.values()) {
+            assertEquals("Link checked more than once", 1, numRequests.get());
+        }
+    }
+    
+    @Test
+    public void testCheckAfterClose() throws Exception {
+        ExternalLinkVerifier verifier = new ExternalLinkVerifier(4, 4);
+        assertTrue("Live link reported dead", verify(verifier, baseUrl + "/ok").isAlive());
+        verifier.close();
+        assertTrue("Checked link forgotten", verify(verifier, baseUrl + "/ok").isAlive());
+        assertFalse("Unchecked link reported alive", verify(verifier, baseUrl + "/ok2").isAlive());
+        assertEquals("Failed check cached", 1, verifier.getNumLinksChecked());
+    }
+    
+    private static ExternalLinkStatus verify(ExternalLinkVerifier verifier, String url) throws Exception {
+        return verifier.verify(url).get(30, TimeUnit.SECONDS);
+    }
+    
+    private void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        boolean isHead = "HEAD".equals(exchange.getRequestMethod());
+        if (isHead) {
+            numHeadRequestsByPath.computeIfAbsent(path, p -> new AtomicInteger()).incrementAndGet();
+        } else {
+            numGetRequests.incrementAndGet();
+        }
+        int httpStatusCode;
+        if (path.startsWith("/gone")) {
+            httpStatusCode = 404;
+        } else if (path.startsWith("/nohead") && isHead) {
+            httpStatusCode = 405;
+        } else {
+            httpStatusCode = 200;
+        }
+        exchange.sendResponseHeaders(httpStatusCode, -1);
+        exchange.close();
+    }
+}
@@ -0,0 +1,87 @@
+package org.lagalag.crawldaddy.pages;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH comparison of the Jsoup (Document based) and streaming link extractors on synthetic pages of various sizes: 
+ * throughput (pages/s) and, with the gc profiler, bytes allocated per page (gc.alloc.rate.norm). Not a unit test; 
+ * run with:
+ * 
+ *     mvn test-compile
+ *     java -cp target/classes:target/test-classes:<test classpath> org.lagalag.crawldaddy.pages.LinkExtractionBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LinkExtractionBenchmark {
+    private static final String PAGE_URL = "https://www.example.org/blog/2018/10/page.html";
+    
+    /* Number of article blocks on the page (each ~1 KB, with a few links and some markup and text). */
+    @Param({ "10", "200" })
+    private int numBlocks;
+    
+    private byte[] page;
+    private final LinkExtractor jsoupExtractor = new JsoupLinkExtractor();
+    private final LinkExtractor streamingExtractor = new StreamingLinkExtractor();
+    
+    @Setup
+    public void createPage() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<!DOCTYPE html><html><head><title>Benchmark page</title><meta charset=\"utf-8\">")
+          .append("<link rel=\"stylesheet\" href=\"/css/site.css\"><script src=\"/js/app.js\"></script>")
+          .append("<script>window.dataLayer = []; function track(a, b) { return a < b; }</script></head><body>")
+          .append("<nav><ul><li><a href=\"/\">Home</a></li><li><a href=\"/about\">About</a></li></ul></nav>");
+        for (int i = 0; i < numBlocks; i++) {
+            sb.append("<div class=\"post\" id=\"post-").append(i).append("\"><h2><a href=\"/blog/post-").append(i)
+              .append(".html\">Post number ").append(i).append("</a></h2><p class=\"meta\">Posted by <a href=\"/authors/")
+              .append(i % 7).append("\">Author</a> on <span>2018-10-").append(i % 28 + 1).append("</span></p>")
+              .append("<p>Lorem ipsum dolor sit amet, consectetur adipiscing elit, sed do eiusmod tempor incididunt ")
+              .append("ut labore et dolore magna aliqua. Ut enim ad minim veniam, quis nostrud exercitation ullamco ")
+              .append("laboris nisi ut aliquip ex ea commodo consequat &amp; more. <em>Duis aute</em> irure dolor in ")
+              .append("reprehenderit in <a href=\"https://external.example.com/ref?id=").append(i)
+              .append("&amp;src=blog\">voluptate</a> velit esse cillum dolore eu fugiat nulla pariatur.</p>")
+              .append("<img src=\"/img/").append(i).append(".png\" alt=\"image\"><!-- comment ").append(i).append(" -->")
+              .append("<ul class=\"tags\"><li><a href=\"/tags/a\">a</a></li><li><a href=\"tags/b\">b</a></li></ul></div>");
+        }
+        sb.append("<footer><a href=\"/privacy\">Privacy</a><script src=\"https://cdn.example.net/lib.js\"></script>")
+          .append("</footer></body></html>");
+        page = sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+    
+    @Benchmark
+    public PageFetchResults jsoup() throws IOException {
+        return jsoupExtractor.extract(PAGE_URL, new ByteArrayInputStream(page), "UTF-8", PAGE_URL);
+    }
+    
+    @Benchmark
+    public PageFetchResults streaming() throws IOException {
+        return streamingExtractor.extract(PAGE_URL, new ByteArrayInputStream(page), "UTF-8", PAGE_URL);
+    }
+    
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(LinkExtractionBenchmark.class.getSimpleName())
+                                       .addProfiler("gc")
+                                       .build()).run();
+    }
+}
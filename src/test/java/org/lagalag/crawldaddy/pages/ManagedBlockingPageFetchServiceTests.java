@@ -0,0 +1,50 @@
+package org.lagalag.crawldaddy.pages;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.util.Collections;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+/**
+ * Junit tests for the running of blocking page fetches as ForkJoinPool managed blocks.
+ */
+public class ManagedBlockingPageFetchServiceTests {
+    private static final String URL = "http://www.example.com/";
+
+    @Test
+    public void testResultsHandedOver() throws Exception {
+        PageFetchService service = new ManagedBlockingPageFetchService(
+                (url, consumer) -> consumer.handlePageFetchResults(PageFetchResults.onHttpNotOK(url, 404)), 1);
+        PageFetchResults results = fetchOnPool(service);
+        assertEquals(404, results.getHttpStatusCode());
+    }
+
+    @Test
+    public void testNoResultsHandedOver() throws Exception {
+        // A delegate that never calls back.
+        PageFetchService service = new ManagedBlockingPageFetchService((url, consumer) -> { }, 1);
+        PageFetchResults results = fetchOnPool(service);
+        assertNotNull("Consumer given no results", results);
+        assertEquals(URL, results.getUrl());
+        assertEquals(FetchAbortReason.NO_RESULTS, results.getAbortReason());
+        assertEquals(Collections.emptyList(), results.getLinkUrls());
+    }
+
+    private static PageFetchResults fetchOnPool(PageFetchService service) throws Exception {
+        AtomicReference<PageFetchResults> results = new AtomicReference<>();
+        ForkJoinPool pool = new ForkJoinPool(1);
+        try {
+            pool.submit(() -> {
+                service.fetch(URL, results::set);
+                return null;
+            }).get();
+        } finally {
+            pool.shutdown();
+        }
+        return results.get();
+    }
+}
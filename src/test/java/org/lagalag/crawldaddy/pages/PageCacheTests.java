@@ -0,0 +1,129 @@
+package org.lagalag.crawldaddy.pages;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Junit tests for the on-disk page cache and conditional GETs (no network access needed).
+ */
+public class PageCacheTests {
+    private static final String ETAG = "\"v1\"";
+    private static final String LAST_MODIFIED = "Sun, 18 Oct 2026 01:00:00 GMT";
+    
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+    
+    @Test
+    public void testRoundTripSurvivesReopen() throws Exception {
+        File directory = tempFolder.newFolder();
+        PageCache cache = new PageCache(directory, 1024 * 1024, CacheEvictionPolicy.LRU);
+        cache.put(createResults("http://example.org/a", ETAG, null));
+        cache.put(createResults("http://example.org/b", null, LAST_MODIFIED));
+        // Nothing to revalidate with: not kept.
+        cache.put(createResults("http://example.org/c", null, null));
+        assertEquals("Unexpected number of cached pages", 2, cache.size());
+        
+        PageCache reopenedCache = new PageCache(directory, 1024 * 1024, CacheEvictionPolicy.LRU);
+        assertEquals("Cached pages lost on reopen", 2, reopenedCache.size());
+        PageFetchResults results = reopenedCache.get("http://example.org/a");
+        assertNotNull("Cached page not found", results);
+        assertEquals(ETAG, results.getEtag());
+        assertNull(results.getLastModified());
+        assertEquals(Arrays.asList("http://example.org/a/1", "http://example.org/a/2"), results.getLinkUrls());
+        assertEquals(Collections.singletonList("http://cdn.example.com/a.js"), results.getScriptUrls());
+        assertEquals(LAST_MODIFIED, reopenedCache.get("http://example.org/b").getLastModified());
+        assertNull("Uncacheable page found", reopenedCache.get("http://example.org/c"));
+    }
+    
+    @Test
+    public void testEviction() throws Exception {
+        long entrySize = getEntrySize();
+        for (CacheEvictionPolicy policy : CacheEvictionPolicy.values()) {
+            PageCache cache = new PageCache(tempFolder.newFolder(), 3 * entrySize, policy);
+            cache.put(createResults("http://example.org/a", ETAG, null));
+            cache.put(createResults("http://example.org/b", ETAG, null));
+            cache.put(createResults("http://example.org/c", ETAG, null));
+            assertNotNull(cache.get("http://example.org/a"));
+            cache.put(createResults("http://example.org/d", ETAG, null));
+            assertEquals("Cache not limited in size with " + policy, 3, cache.size());
+            assertTrue("Cache too large with " + policy, cache.getSizeBytes() <= 3 * entrySize);
+            if (policy == CacheEvictionPolicy.LRU) {
+                assertNotNull("Recently used page evicted", cache.get("http://example.org/a"));
+                assertNull("Least recently used page kept", cache.get("http://example.org/b"));
+            } else {
+                assertNull("Oldest page kept", cache.get("http://example.org/a"));
+                assertNotNull("Newer page evicted", cache.get("http://example.org/b"));
+            }
+        }
+    }
+    
+    @Test
+    public void testConditionalGet() throws Exception {
+        PageCache cache = new PageCache(tempFolder.newFolder(), 1024 * 1024, CacheEvictionPolicy.LRU);
+        ConditionalPageFetchService server = new ConditionalPageFetchService();
+        CachingPageFetchService service = new CachingPageFetchService(server, cache);
+        AtomicReference<PageFetchResults> resultsRef = new AtomicReference<>();
+        
+        service.fetch("http://example.org/a", resultsRef::set);
+        assertTrue("First fetch was conditional", server.lastRequestHeaders.isEmpty());
+        assertFalse("First fetch served from cache", resultsRef.get().isFromCache());
+        
+        service.fetch("http://example.org/a", resultsRef::set);
+        assertEquals(ETAG, server.lastRequestHeaders.get("If-None-Match"));
+        assertEquals(LAST_MODIFIED, server.lastRequestHeaders.get("If-Modified-Since"));
+        assertTrue("Unchanged page not served from cache", resultsRef.get().isFromCache());
+        assertTrue(resultsRef.get().isHttpStatusOK());
+        assertEquals(2, resultsRef.get().getLinkUrls().size());
+        
+        server.etag = "\"v2\"";
+        service.fetch("http://example.org/a", resultsRef::set);
+        assertFalse("Changed page served from cache", resultsRef.get().isFromCache());
+        assertEquals("Cache not updated", "\"v2\"", cache.get("http://example.org/a").getEtag());
+    }
+    
+    private long getEntrySize() throws Exception {
+        PageCache cache = new PageCache(tempFolder.newFolder(), 1024 * 1024, CacheEvictionPolicy.LRU);
+        cache.put(createResults("http://example.org/x", ETAG, null));
+        return cache.getSizeBytes();
+    }
+    
+    private static PageFetchResults createResults(String url, String etag, String lastModified) {
+        return PageFetchResults.onHttpOK(url, Arrays.asList(url + "/1", url + "/2"), 
+                                         Collections.singletonList("http://cdn.example.com/" + url.substring(url.length() - 1) + ".js"))
+                               .withValidators(etag, lastModified);
+    }
+    
+    /* Plays the part of a server that honours If-None-Match. */
+    private static class ConditionalPageFetchService implements PageFetchService {
+        volatile String etag = ETAG;
+        volatile Map<String,String> lastRequestHeaders;
+        
+        @Override
+        public void fetch(String url, PageFetchConsumer resultsConsumer) throws PageFetchException {
+            fetch(url, Collections.emptyMap(), resultsConsumer);
+        }
+        
+        @Override
+        public void fetch(String url, Map<String,String> requestHeaders, PageFetchConsumer resultsConsumer) {
+            lastRequestHeaders = requestHeaders;
+            if (etag.equals(requestHeaders.get("If-None-Match"))) {
+                resultsConsumer.handlePageFetchResults(PageFetchResults.onHttpNotModified(url));
+            } else {
+                resultsConsumer.handlePageFetchResults(createResults(url, etag, LAST_MODIFIED));
+            }
+        }
+    }
+}
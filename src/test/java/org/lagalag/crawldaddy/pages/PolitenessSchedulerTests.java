@@ -0,0 +1,166 @@
+package org.lagalag.crawldaddy.pages;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Junit tests for the per-host politeness scheduler (no network access needed).
+ */
+public class PolitenessSchedulerTests {
+    private ExecutorService executor = Executors.newFixedThreadPool(16);
+    
+    @After
+    public void shutdownExecutor() {
+        executor.shutdownNow();
+    }
+    
+    @Test
+    public void testMaxConnectionsPerHost() throws Exception {
+        final int maxConnectionsPerHost = 3;
+        SlowPageFetchService slowService = new SlowPageFetchService(20);
+        PolitenessScheduler scheduler = new PolitenessScheduler(slowService, maxConnectionsPerHost, 0);
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[30];
+        for (int i = 0; i < futures.length; i++) {
+            futures[i] = scheduler.fetchAsync("http://busy.example.com/page" + i, results -> {}, executor);
+        }
+        CompletableFuture.allOf(futures).get(30, TimeUnit.SECONDS);
+        assertEquals("Not all fetches were performed", futures.length, slowService.getNumFetches());
+        assertTrue("More than " + maxConnectionsPerHost + " concurrent fetches to one host", 
+                   slowService.getMaxConcurrentFetches("busy.example.com") <= maxConnectionsPerHost);
+    }
+    
+    @Test
+    public void testRateLimitPerHost() throws Exception {
+        final double maxRequestsPerSecond = 20;
+        final int numFetches = 30;
+        PolitenessScheduler scheduler = new PolitenessScheduler(new SlowPageFetchService(0), 100, maxRequestsPerSecond);
+        long startNanos = System.nanoTime();
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[numFetches];
+        for (int i = 0; i < futures.length; i++) {
+            futures[i] = scheduler.fetchAsync("http://limited.example.com/page" + i, results -> {}, executor);
+        }
+        CompletableFuture.allOf(futures).get(30, TimeUnit.SECONDS);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        // The first 20 requests are allowed as a burst; the remaining 10 need (at least) another half second.
+        assertTrue("Rate limit not enforced (took " + elapsedMillis + " ms)", elapsedMillis >= 400);
+    }
+    
+    @Test
+    public void testThrottledHostDoesNotBlockOtherHosts() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        PageFetchService blockingService = (url, consumer) -> {
+            if (url.contains("stuck.example.com")) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            consumer.handlePageFetchResults(PageFetchResults.onHttpOK(url, Collections.emptyList(), Collections.emptyList()));
+        };
+        PolitenessScheduler scheduler = new PolitenessScheduler(blockingService, 1, 0);
+        CompletableFuture<Void> stuck1 = scheduler.fetchAsync("http://stuck.example.com/1", results -> {}, executor);
+        CompletableFuture<Void> stuck2 = scheduler.fetchAsync("http://stuck.example.com/2", results -> {}, executor);
+        CompletableFuture<Void> other = scheduler.fetchAsync("http://other.example.com/1", results -> {}, executor);
+        other.get(10, TimeUnit.SECONDS);
+        assertTrue("Second fetch to a host with a single connection started too early", !stuck2.isDone());
+        release.countDown();
+        CompletableFuture.allOf(stuck1, stuck2).get(10, TimeUnit.SECONDS);
+    }
+    
+    @Test
+    public void testFetchLimiterCapsFetchesOverAllHosts() throws Exception {
+        final int maxConcurrentFetches = 4;
+        SlowPageFetchService slowService = new SlowPageFetchService(20);
+        FetchLimiter limiter = new FetchLimiter(slowService, maxConcurrentFetches);
+        PolitenessScheduler scheduler = new PolitenessScheduler(limiter, 3, 0);
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[30];
+        for (int i = 0; i < futures.length; i++) {
+            futures[i] = scheduler.fetchAsync("http://site" + (i % 3) + ".example.com/page" + i, results -> {}, executor);
+        }
+        CompletableFuture.allOf(futures).get(30, TimeUnit.SECONDS);
+        assertEquals("Not all fetches were performed", futures.length, slowService.getNumFetches());
+        assertTrue("More than " + maxConcurrentFetches + " concurrent fetches", 
+                   slowService.getMaxConcurrentFetches() <= maxConcurrentFetches);
+        assertEquals(0, limiter.getNumPendingFetches());
+    }
+    
+    @Test
+    public void testIdleHostsDropped() throws Exception {
+        PolitenessScheduler scheduler = new PolitenessScheduler(new SlowPageFetchService(5), 2, 0);
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[40];
+        for (int i = 0; i < futures.length; i++) {
+            futures[i] = scheduler.fetchAsync("http://host" + (i % 20) + ".example.com/page" + i, results -> {}, executor);
+        }
+        CompletableFuture.allOf(futures).get(30, TimeUnit.SECONDS);
+        assertEquals(0, scheduler.getNumHosts());
+        
+        // Rate-limited hosts are kept until their token bucket is full again (a tenth of a second here).
+        PolitenessScheduler limitedScheduler = new PolitenessScheduler(new SlowPageFetchService(0), 2, 10);
+        limitedScheduler.fetchAsync("http://limited.example.com/page", results -> {}, executor).get(30, TimeUnit.SECONDS);
+        assertEquals(1, limitedScheduler.getNumHosts());
+        long deadlineNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while ((limitedScheduler.getNumHosts() > 0) && (System.nanoTime() < deadlineNanos)) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, limitedScheduler.getNumHosts());
+    }
+    
+    /* Pretends to fetch pages, keeping track of the number of concurrent fetches per host and overall. */
+    private static class SlowPageFetchService implements PageFetchService {
+        private final long fetchMillis;
+        private final AtomicInteger numFetches = new AtomicInteger();
+        private final ConcurrentMap<String,AtomicInteger> activeFetches = new ConcurrentHashMap<>();
+        private final ConcurrentMap<String,Integer> maxActiveFetches = new ConcurrentHashMap<>();
+        private final AtomicInteger totalActiveFetches = new AtomicInteger();
+        private final AtomicInteger maxTotalActiveFetches = new AtomicInteger();
+        
+        SlowPageFetchService(long fetchMillis) {
+            this.fetchMillis = fetchMillis;
+        }
+
+        @Override
+        public void fetch(String url, PageFetchConsumer resultsConsumer) throws PageFetchException {
+            String host = url.split("/")[2];
+            AtomicInteger active = activeFetches.computeIfAbsent(host, h -> new AtomicInteger());
+            int numActive = active.incrementAndGet();
+            maxActiveFetches.merge(host, numActive, Math::max);
+            maxTotalActiveFetches.accumulateAndGet(totalActiveFetches.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(fetchMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                active.decrementAndGet();
+                totalActiveFetches.decrementAndGet();
+            }
+            numFetches.incrementAndGet();
+            resultsConsumer.handlePageFetchResults(PageFetchResults.onHttpOK(url, Collections.emptyList(), Collections.emptyList()));
+        }
+        
+        int getNumFetches() {
+            return numFetches.get();
+        }
+        
+        int getMaxConcurrentFetches(String host) {
+            return maxActiveFetches.getOrDefault(host, 0);
+        }
+        
+        int getMaxConcurrentFetches() {
+            return maxTotalActiveFetches.get();
+        }
+    }
+}
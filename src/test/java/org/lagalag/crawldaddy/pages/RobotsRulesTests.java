@@ -0,0 +1,103 @@
+package org.lagalag.crawldaddy.pages;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * Junit tests for the parsing and matching of robots.txt rules.
+ */
+public class RobotsRulesTests {
+    @Test
+    public void testGroupSelection() {
+        String robotsTxt = "# Comment\n"
+                           + "User-agent: *\n"
+                           + "Disallow: /private/\n"
+                           + "\n"
+                           + "User-agent: googlebot\n"
+                           + "User-agent: crawldaddy\n"
+                           + "Disallow: /nobots/   # trailing comment\n"
+                           + "Crawl-delay: 2.5\n"
+                           + "\n"
+                           + "Sitemap: http://www.example.com/sitemap.xml\n"
+                           + "User-agent: CrawlDaddy/2.0\n"
+                           + "Disallow: /more/\n";
+        RobotsRules rules = RobotsRules.parse(robotsTxt);
+        // Both crawldaddy groups merged; the "*" group doesn't apply.
+        assertFalse(rules.isAllowed("/nobots/page.html"));
+        assertFalse(rules.isAllowed("/more/"));
+        assertTrue(rules.isAllowed("/private/page.html"));
+        assertEquals(2.5, rules.getCrawlDelaySeconds(), 0.0);
+        assertEquals(Arrays.asList("http://www.example.com/sitemap.xml"), rules.getSitemapUrls());
+
+        RobotsRules otherRules = RobotsRules.parse(robotsTxt, "otherbot");
+        assertFalse(otherRules.isAllowed("/private/page.html"));
+        assertTrue(otherRules.isAllowed("/nobots/page.html"));
+        assertEquals(0.0, otherRules.getCrawlDelaySeconds(), 0.0);
+    }
+
+    @Test
+    public void testOwnGroupWithoutRules() {
+        // An empty Disallow for crawldaddy allows it everything, whatever the "*" group says.
+        String robotsTxt = "User-agent: *\nDisallow: /\n\nUser-agent: crawldaddy\nDisallow:\n";
+        RobotsRules rules = RobotsRules.parse(robotsTxt);
+        assertTrue(rules.isAllowed("/page.html"));
+        assertEquals(0, rules.getNumRules());
+        assertFalse(RobotsRules.parse(robotsTxt, "otherbot").isAllowed("/page.html"));
+        // Likewise for a group that is all User-agent lines.
+        assertTrue(RobotsRules.parse("User-agent: *\nDisallow: /\n\nUser-agent: crawldaddy\n").isAllowed("/page.html"));
+    }
+
+    @Test
+    public void testLongestMatchWins() {
+        RobotsRules rules = RobotsRules.parse("User-agent: *\nDisallow: /docs/\nAllow: /docs/public/\nDisallow: /docs/public/drafts\n"
+                                              + "Allow: /tie\nDisallow: /tie\nDisallow:\n");
+        assertTrue(rules.isAllowed("/"));
+        assertFalse(rules.isAllowed("/docs/index.html"));
+        assertTrue(rules.isAllowed("/docs/public/index.html"));
+        assertFalse(rules.isAllowed("/docs/public/drafts/1.html"));
+        assertTrue(rules.isAllowed("/tie"));
+        assertEquals(5, rules.getNumRules());
+    }
+
+    @Test
+    public void testWildcards() {
+        RobotsRules rules = RobotsRules.parse("User-agent: *\nDisallow: /*.pdf$\nDisallow: /*?sessionid=\nDisallow: /a*b*c\nAllow: /$\nDisallow: /\n"
+                                              + "Allow: /open*\n");
+        assertFalse(rules.isAllowed("/files/report.pdf"));
+        // "$" anchors at the end of the query too, so only "Disallow: /" matches.
+        assertFalse(rules.isAllowed("/files/report.pdf?download=1"));
+        assertTrue(rules.isAllowed("/"));
+        assertFalse(rules.isAllowed("/index.html"));
+        assertTrue(rules.isAllowed("/open/report.html"));
+        assertFalse(rules.isAllowed("/open/report.pdf"));
+        assertFalse(rules.isAllowed("/open/page?sessionid=42"));
+        assertTrue(rules.isAllowed("/openaXbXc"));
+
+        RobotsRules wildcardRules = RobotsRules.parse("User-agent: *\nDisallow: /a*b*c\nDisallow: /x*$\nDisallow: /*/y$\n");
+        assertFalse(wildcardRules.isAllowed("/a-b-c"));
+        assertFalse(wildcardRules.isAllowed("/abbc/d"));
+        assertTrue(wildcardRules.isAllowed("/acb"));
+        assertFalse(wildcardRules.isAllowed("/xyz"));
+        assertFalse(wildcardRules.isAllowed("/z/y"));
+        assertTrue(wildcardRules.isAllowed("/z/y/"));
+    }
+
+    @Test
+    public void testSpecialCases() {
+        assertTrue(RobotsRules.ALLOW_ALL.isAllowed("/anything"));
+        assertFalse(RobotsRules.DISALLOW_ALL.isAllowed("/anything"));
+        // robots.txt itself is always allowed.
+        assertTrue(RobotsRules.DISALLOW_ALL.isAllowed("/robots.txt"));
+        // No group for anyone: everything allowed.
+        RobotsRules rules = RobotsRules.parse("<html><body>Not a robots.txt</body></html>\r\nDisallow: /\r\n");
+        assertTrue(rules.isAllowed("/page.html"));
+        assertEquals(0, rules.getNumRules());
+        // Bad Crawl-delay values are ignored.
+        assertEquals(0.0, RobotsRules.parse("User-agent: *\nCrawl-delay: soon\n").getCrawlDelaySeconds(), 0.0);
+    }
+}
@@ -0,0 +1,143 @@
+package org.lagalag.crawldaddy.pages;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Junit tests for the reading of sitemaps served by a local HTTP server.
+ */
+public class SitemapReaderTests {
+    private static final int NUM_URLS_IN_LARGE_SITEMAP = 50000;
+
+    private final Map<String,byte[]> sitemaps = new HashMap<>();
+    private HttpServer server;
+    private String baseUrl;
+
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::handle);
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testSitemapIndex() throws IOException {
+        sitemaps.put("/sitemap_index.xml", toBytes("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<sitemapindex xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">\n"
+                + "<sitemap><loc>" + baseUrl + "/pages.xml</loc><lastmod>2024-01-01</lastmod></sitemap>\n"
+                + "<sitemap><loc>" + baseUrl + "/large.xml.gz</loc></sitemap>\n"
+                + "<sitemap><loc>" + baseUrl + "/pages.xml</loc></sitemap>\n"
+                + "<sitemap><loc>" + baseUrl + "/missing.xml</loc></sitemap>\n"
+                + "</sitemapindex>\n"));
+        sitemaps.put("/pages.xml", toBytes("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<urlset xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\" "
+                + "xmlns:image=\"http://www.google.com/schemas/sitemap-image/1.1\">\n"
+                + "<url><loc>\n  " + baseUrl + "/a.html\n</loc><priority>0.5</priority>"
+                + "<image:image><image:loc>" + baseUrl + "/a.png</image:loc></image:image></url>\n"
+                + "<url><loc>" + baseUrl + "/b.html?x=1&amp;y=2</loc></url>\n"
+                + "</urlset>\n"));
+        sitemaps.put("/large.xml.gz", createLargeSitemap());
+
+        List<String> pageUrls = new ArrayList<>();
+        SitemapReader reader = new SitemapReader();
+        long numPageUrls = reader.read(Arrays.asList(baseUrl + "/sitemap_index.xml"), pageUrls::add);
+        // The index, each sitemap once, and the missing one.
+        assertEquals(4, reader.getNumSitemapsRead());
+        assertEquals(2 + NUM_URLS_IN_LARGE_SITEMAP, numPageUrls);
+        assertEquals(numPageUrls, pageUrls.size());
+        assertEquals(baseUrl + "/a.html", pageUrls.get(0));
+        assertEquals(baseUrl + "/b.html?x=1&y=2", pageUrls.get(1));
+        assertEquals(baseUrl + "/large/" + (NUM_URLS_IN_LARGE_SITEMAP - 1) + ".html", pageUrls.get(pageUrls.size() - 1));
+    }
+
+    @Test
+    public void testStopReading() throws IOException {
+        sitemaps.put("/sitemap.xml", createLargeSitemap());
+        List<String> pageUrls = new ArrayList<>();
+        long numPageUrls = new SitemapReader().read(Collections.singletonList(baseUrl + "/sitemap.xml"),
+                                                    url -> pageUrls.add(url) && (pageUrls.size() < 10));
+        assertEquals(10, numPageUrls);
+        assertEquals(10, pageUrls.size());
+    }
+
+    @Test
+    public void testTextSitemapAndLimits() throws IOException {
+        sitemaps.put("/sitemap.txt", toBytes(baseUrl + "/one.html\n\n" + baseUrl + "/two.html\r\n"));
+        sitemaps.put("/broken.xml", toBytes("<urlset><url><loc>" + baseUrl + "/kept.html</loc></url><url><loc>"));
+        sitemaps.put("/doctype.xml", toBytes("<?xml version=\"1.0\"?>\n<!DOCTYPE urlset [<!ENTITY x SYSTEM \"file:///etc/passwd\">]>\n"
+                                             + "<urlset><url><loc>&x;</loc></url></urlset>\n"));
+        List<String> pageUrls = new ArrayList<>();
+        SitemapReader reader = new SitemapReader(2);
+        reader.read(Arrays.asList(baseUrl + "/sitemap.txt", baseUrl + "/broken.xml", baseUrl + "/doctype.xml"), pageUrls::add);
+        // Only the first two sitemaps are read; the urls of the broken one read before it broke are kept.
+        assertEquals(2, reader.getNumSitemapsRead());
+        assertEquals(Arrays.asList(baseUrl + "/one.html", baseUrl + "/two.html", baseUrl + "/kept.html"), pageUrls);
+
+        // DTDs aren't processed.
+        pageUrls.clear();
+        new SitemapReader().read(Collections.singletonList(baseUrl + "/doctype.xml"), pageUrls::add);
+        assertTrue("Entity expanded: " + pageUrls, pageUrls.isEmpty());
+    }
+
+    private byte[] createLargeSitemap() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (Writer out = new OutputStreamWriter(new GZIPOutputStream(bytes), StandardCharsets.UTF_8)) {
+            out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<urlset xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">\n");
+            for (int i = 0; i < NUM_URLS_IN_LARGE_SITEMAP; i++) {
+                out.write("<url><loc>" + baseUrl + "/large/" + i + ".html</loc></url>\n");
+            }
+            out.write("</urlset>\n");
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] toBytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        byte[] body = sitemaps.get(path);
+        try {
+            if (body == null) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type", path.endsWith(".txt") ? "text/plain" : "application/xml");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package org.lagalag.crawldaddy.pages;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * Junit tests for StreamingLinkExtractor, checked against the (Jsoup Document based) JsoupLinkExtractor.
+ */
+public class StreamingLinkExtractorTests {
+    private static final String PAGE_URL = "http://www.example.org/docs/page.html";
+    
+    @Test
+    public void testLinksAndScripts() throws IOException {
+        String html = "<!DOCTYPE html><html><head><title>a <a href='/title'> title</title>"
+                      + "<script src=\"/js/app.js\"></script>"
+                      + "<script>var s = '<a href=\"/in-script\">'; if (a < b) {}</script>"
+                      + "<style>a[href='/in-style'] { color: red }</style></head>"
+                      + "<body><!-- <a href='/commented'> -->"
+                      + "<a href=\"other.html\">relative</a>"
+                      + "<A HREF='/upper.html' href='/second-href.html'>upper case</A>"
+                      + "<a\nclass=x\thref = /unquoted.html?a=1&amp;b=2&c=3>unquoted</a>"
+                      + "<a href=\"/entities?x=&#49;&#x32;&lt;&quot;\">entities</a>"
+                      + "<a href=\"http://other.example.com/abs\">absolute</a>"
+                      + "<a href=\"\">empty</a><a href>no value</a><a name=\"anchor\">no href</a>"
+                      + "<p>1 < 2 and 3 > 2</p><img src=\"/img.png\">"
+                      + "<a href='mailto:someone@example.org'>mail</a>"
+                      + "<textarea><a href='/in-textarea'></textarea>"
+                      + "<script src=/js/unclosed.js>";
+        assertSameAsJsoup(html);
+    }
+    
+    @Test
+    public void testBaseHref() throws IOException {
+        assertSameAsJsoup("<html><head><base href=\"/base/dir/\"><base href=\"/ignored/\"></head>"
+                          + "<body><a href=\"page.html\">page</a><script src=\"app.js\"></script></body></html>");
+        assertSameAsJsoup("<a href=\"before.html\">before</a><base href=\"http://cdn.example.net/\"><a href=\"after.html\">after</a>");
+    }
+    
+    @Test
+    public void testCharset() throws IOException {
+        String html = "<a href=\"/café.html\">café</a>";
+        PageFetchResults results = new StreamingLinkExtractor().extract(PAGE_URL, toStream(html, "ISO-8859-1"), "ISO-8859-1", PAGE_URL);
+        assertEquals(Arrays.asList("http://www.example.org/café.html"), results.getLinkUrls());
+    }
+    
+    private void assertSameAsJsoup(String html) throws IOException {
+        PageFetchResults expected = new JsoupLinkExtractor().extract(PAGE_URL, toStream(html, "UTF-8"), "UTF-8", PAGE_URL);
+        PageFetchResults actual = new StreamingLinkExtractor().extract(PAGE_URL, toStream(html, "UTF-8"), "UTF-8", PAGE_URL);
+        assertEquals("Links differ from Jsoup's", expected.getLinkUrls(), actual.getLinkUrls());
+        assertEquals("Scripts differ from Jsoup's", expected.getScriptUrls(), actual.getScriptUrls());
+    }
+    
+    private static ByteArrayInputStream toStream(String html, String charsetName) {
+        return new ByteArrayInputStream(html.getBytes(Charset.forName(charsetName)));
+    }
+}
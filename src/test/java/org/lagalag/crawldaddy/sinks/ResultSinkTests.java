@@ -0,0 +1,81 @@
+package org.lagalag.crawldaddy.sinks;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Test;
+import org.lagalag.crawldaddy.CrawldaddyResult;
+import org.lagalag.crawldaddy.links.ExactVisitedUrlSet;
+
+/**
+ * Junit tests for the ResultSinks, and for streaming results to them.
+ */
+public class ResultSinkTests {
+    @Test
+    public void testNdjsonEscaping() throws IOException {
+        StringWriter out = new StringWriter();
+        try (ResultSink sink = new NdjsonResultSink(out)) {
+            sink.accept(ResultType.EXTERNAL_LINK, "http://example.org/a\"b\\c");
+            sink.accept(ResultType.BROKEN_LINK, "http://example.org/tab\there");
+        }
+        String[] lines = out.toString().split("\\R");
+        assertEquals(2, lines.length);
+        assertEquals("{\"type\":\"external_link\",\"url\":\"http://example.org/a\\\"b\\\\c\"}", lines[0]);
+        assertEquals("{\"type\":\"broken_link\",\"url\":\"http://example.org/tab\\u0009here\"}", lines[1]);
+    }
+
+    @Test
+    public void testCsvQuoting() throws IOException {
+        StringWriter out = new StringWriter();
+        try (ResultSink sink = new CsvResultSink(out)) {
+            sink.accept(ResultType.EXTERNAL_SCRIPT, "http://cdn.example.org/x.js");
+            sink.accept(ResultType.INTERNAL_LINK, "http://example.org/?a=1,2&q=\"x\"");
+        }
+        String[] lines = out.toString().split("\\R");
+        assertEquals(3, lines.length);
+        assertEquals("type,url", lines[0]);
+        assertEquals("external_script,http://cdn.example.org/x.js", lines[1]);
+        assertEquals("internal_link,\"http://example.org/?a=1,2&q=\"\"x\"\"\"", lines[2]);
+    }
+
+    @Test
+    public void testCountsOnlyResultStreamsEachUrlOnce() {
+        List<String> streamed = new ArrayList<>();
+        CrawldaddyResult result = new CrawldaddyResult("http://example.org/", new ExactVisitedUrlSet(), false);
+        result.setResultSink(new ResultSink() {
+            @Override
+            public void accept(ResultType type, String url) {
+                streamed.add(type.getLabel() + " " + url);
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+        assertTrue(result.checkAndAddInternalLink("http://example.org/a", 10));
+        assertFalse(result.checkAndAddInternalLink("http://example.org/a", 10));
+        assertTrue(result.addExternalLink("http://other.org/"));
+        assertFalse(result.addExternalLink("http://other.org/"));
+        assertTrue(result.addBrokenLink("http://example.org/missing"));
+        assertTrue(result.addExternalScript("http://cdn.org/x.js"));
+        
+        assertEquals(4, streamed.size());
+        assertEquals("internal_link http://example.org/a", streamed.get(0));
+        assertEquals("external_link http://other.org/", streamed.get(1));
+        assertFalse(result.isUrlsRetained());
+        assertEquals(1, result.getExternalLinkCount());
+        assertEquals(1, result.getBrokenLinkCount());
+        assertEquals(1, result.getExternalScriptsCount());
+        assertTrue("Urls retained in counts-only mode", result.getExternalLinks().isEmpty());
+        // Plain (empty) sets, which can be copied and printed.
+        assertEquals(new HashSet<>(), new HashSet<>(result.getBrokenLinks()));
+        assertEquals("[]", result.getExternalScripts().toString());
+    }
+}
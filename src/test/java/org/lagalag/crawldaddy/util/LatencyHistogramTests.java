@@ -0,0 +1,75 @@
+package org.lagalag.crawldaddy.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Junit tests for LatencyHistogram.
+ */
+public class LatencyHistogramTests {
+    private static final double MAX_RELATIVE_ERROR = 1.0 / 32;
+
+    @Test
+    public void testPercentilesWithinPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        // 1 to 100 milliseconds, in nanoseconds.
+        for (int i = 1; i <= 100000; i++) {
+            histogram.record(i * 1000L);
+        }
+        assertEquals(100000, histogram.getCount());
+        assertEquals(100000000L, histogram.getMax());
+        assertWithinPrecision(50000000L, histogram.getValueAtPercentile(50));
+        assertWithinPrecision(90000000L, histogram.getValueAtPercentile(90));
+        assertWithinPrecision(99000000L, histogram.getValueAtPercentile(99));
+        assertEquals(histogram.getMax(), histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void testEncodeAndDecode() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 12345L);
+        }
+        LatencyHistogram decoded = LatencyHistogram.decode(histogram.encode());
+        assertEquals(histogram.getCount(), decoded.getCount());
+        assertEquals(histogram.getMax(), decoded.getMax());
+        assertEquals(histogram.getValueAtPercentile(50), decoded.getValueAtPercentile(50));
+        assertEquals(histogram.getValueAtPercentile(99), decoded.getValueAtPercentile(99));
+        assertEquals(0, LatencyHistogram.decode(new LatencyHistogram().encode()).getCount());
+    }
+
+    @Test
+    public void testSmallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 10; i++) {
+            histogram.record(i);
+        }
+        assertEquals(4, histogram.getValueAtPercentile(50));
+        assertEquals(9, histogram.getValueAtPercentile(99));
+        assertEquals(0, new LatencyHistogram().getValueAtPercentile(50));
+    }
+
+    @Test
+    public void testAdd() {
+        LatencyHistogram fast = new LatencyHistogram();
+        LatencyHistogram slow = new LatencyHistogram();
+        for (int i = 0; i < 90; i++) {
+            fast.record(1000);
+        }
+        for (int i = 0; i < 10; i++) {
+            slow.record(1000000);
+        }
+        fast.add(slow);
+        assertEquals(100, fast.getCount());
+        assertEquals(1000000, fast.getMax());
+        assertWithinPrecision(1000, fast.getValueAtPercentile(90));
+        assertWithinPrecision(1000000, fast.getValueAtPercentile(91));
+    }
+
+    private void assertWithinPrecision(long expected, long actual) {
+        assertTrue("Expected ~" + expected + " but was " + actual, 
+                   Math.abs(actual - expected) <= expected * MAX_RELATIVE_ERROR);
+    }
+}
@@ -0,0 +1,65 @@
+package org.lagalag.crawldaddy.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * Junit tests for UrlNormalizer.
+ */
+public class UrlNormalizerTests {
+    private final UrlNormalizer normalizer = new UrlNormalizer();
+    
+    @Test
+    public void testCaseAndPort() {
+        assertEquals("http://www.example.org/a/B", normalizer.normalize("HTTP://WWW.Example.ORG/a/B"));
+        assertEquals("http://www.example.org/a", normalizer.normalize("http://www.example.org:80/a"));
+        assertEquals("https://www.example.org/a", normalizer.normalize("https://www.example.org:443/a"));
+        assertEquals("https://www.example.org/a", normalizer.normalize("https://www.example.org:/a"));
+        assertEquals("http://www.example.org:8080/a", normalizer.normalize("http://www.example.org:08080/a"));
+        assertEquals("https://www.example.org:80/a", normalizer.normalize("https://www.example.org:80/a"));
+        assertEquals("http://User:Pw@www.example.org/", normalizer.normalize("http://User:Pw@WWW.example.org"));
+        assertEquals("http://[2001:db8::1]:8080/", normalizer.normalize("http://[2001:DB8::1]:8080"));
+    }
+    
+    @Test
+    public void testDotSegments() {
+        assertEquals("http://host/a/b", normalizer.normalize("http://Host/a/./b"));
+        assertEquals("http://host/b", normalizer.normalize("http://host/a/../b"));
+        assertEquals("http://host/b", normalizer.normalize("http://host/../../b"));
+        assertEquals("http://host/a/", normalizer.normalize("http://host/a/b/.."));
+        assertEquals("http://host/a/g", normalizer.normalize("http://host/a/b/c/./../../g"));
+        assertEquals("http://host/index.html", normalizer.normalize("http://host/index.html"));
+    }
+    
+    @Test
+    public void testPercentEncoding() {
+        assertEquals("http://host/~user/a%2Fb", normalizer.normalize("http://host/%7euser/a%2fb"));
+        assertEquals("http://host/a?q=x%26y%3D", normalizer.normalize("http://host/a?q=%78%26y%3d"));
+        assertEquals("http://host/100%", normalizer.normalize("http://host/100%"));
+    }
+    
+    @Test
+    public void testQueryAndFragment() {
+        assertEquals("http://host/a", normalizer.normalize("http://host/a?"));
+        assertEquals("http://host/a", normalizer.normalize("http://host/a#top"));
+        assertEquals("http://host/a?b=2&a=1", normalizer.normalize("http://host/a?b=2&a=1#top"));
+        
+        UrlNormalizer sortingNormalizer = new UrlNormalizer(true, Arrays.asList("utm_*", "fbclid"));
+        assertEquals("http://host/a?a=1&b=2&b=1", sortingNormalizer.normalize("http://host/a?b=2&utm_source=x&a=1&b=1&fbclid=abc"));
+        assertEquals("http://host/a", sortingNormalizer.normalize("http://host/a?utm_medium=email&utm_campaign=y"));
+        assertEquals("http://host/a?fbclid2=1", sortingNormalizer.normalize("http://host/a?fbclid2=1"));
+    }
+    
+    @Test
+    public void testOtherUrlsUnchanged() {
+        String url = "http://www.example.org/a/b.html?q=1";
+        assertSame(url, normalizer.normalize(url));
+        assertEquals("mailto:Someone@Example.org", normalizer.normalize("mailto:Someone@Example.org"));
+        assertEquals("docs/../index.html", normalizer.normalize("docs/../index.html"));
+        assertEquals("ftp://FTP.example.org/./a", normalizer.normalize("ftp://FTP.example.org/./a"));
+    }
+}
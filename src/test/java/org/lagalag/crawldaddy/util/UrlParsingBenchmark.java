@@ -0,0 +1,125 @@
+package org.lagalag.crawldaddy.util;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH comparison of the per-link url checks done by CrawldaddyAction (host, path and extension), using ParsedUrl 
+ * against the java.net.URL based URLUtils it replaced (reproduced below). The links are a typical mix, including a 
+ * few malformed and non-http ones. Not a unit test; run with:
+ * 
+ *     mvn test-compile
+ *     java -cp target/classes:target/test-classes:<test classpath> org.lagalag.crawldaddy.util.UrlParsingBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UrlParsingBenchmark {
+    private static final List<String> UNSUPPORTED_TYPES = Arrays.asList("jpg", "pdf", "png", "gif", "zip", 
+                                                                        "tar", "jar", "gz", "svg", "ppt", "pptx");
+    private static final String HOST = "www.example.org";
+    
+    private final String[] links = { 
+        "https://www.example.org/", 
+        "https://www.example.org/blog/2018/10/crawling-the-web.html", 
+        "https://www.example.org/about/team", 
+        "https://www.example.org/images/logo.png", 
+        "https://www.example.org/search?q=crawler&page=2", 
+        "https://cdn.example.net/static/app.js", 
+        "https://twitter.com/example", 
+        "https://www.example.org/downloads/report-2018.pdf", 
+        "mailto:info@example.org", 
+        "javascript:void(0)", 
+    };
+    private final ParsedUrl parsedUrl = new ParsedUrl();
+    
+    @Benchmark
+    public void urlUtils(Blackhole blackhole) {
+        for (String link : links) {
+            blackhole.consume(LegacyURLUtils.isSupportedType(link) && HOST.equals(LegacyURLUtils.getHost(link)));
+        }
+    }
+    
+    @Benchmark
+    public void parsedUrl(Blackhole blackhole) {
+        for (String link : links) {
+            parsedUrl.parse(link);
+            blackhole.consume(isSupportedType(parsedUrl) && parsedUrl.hasHost(HOST));
+        }
+    }
+    
+    private static boolean isSupportedType(ParsedUrl url) {
+        if (!url.isValid()) {
+            return false;
+        }
+        if (!url.hasPath() || !url.hasExtension()) {
+            return true;
+        }
+        for (String unsupportedType : UNSUPPORTED_TYPES) {
+            if (url.hasExtension(unsupportedType)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /* The way URLUtils and CrawldaddyAction used to do it. */
+    private static class LegacyURLUtils {
+        static boolean isSupportedType(String url) {
+            String path = getPath(url);
+            if (path == null) {
+                return false;
+            }
+            if (path.isEmpty()) {
+                return true;
+            }
+            String ext = URLUtils.getExtension(path);
+            return (ext == null) || !UNSUPPORTED_TYPES.contains(ext);
+        }
+        
+        static String getPath(String url) {
+            try {
+                return new URL(url).getPath().trim();
+            } catch (MalformedURLException e) {
+                return null;
+            }
+        }
+        
+        static String getHost(String url) {
+            if ((url == null) || (url.trim().length() == 0)) {
+                return "";
+            }
+            try {
+                return new URL(url).getHost();
+            } catch (MalformedURLException e) {
+                return "";
+            }
+        }
+    }
+    
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(UrlParsingBenchmark.class.getSimpleName())
+                                       .addProfiler("gc")
+                                       .build()).run();
+    }
+}